@@ -21,6 +21,7 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+import org.apache.ibatis.cache.CacheSerializer;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 
@@ -29,7 +30,7 @@ import org.apache.ibatis.cache.impl.PerpetualCache;
  * @author Kazuki Shimizu
  *
  * 为给定的命名空间（比如类）配置缓存。
- * 属性有：implemetation, eviction, flushInterval, size, readWrite, blocking 和properties。
+ * 属性有：implemetation, eviction, flushInterval, size, readWrite, blocking, serializer 和properties。
  * 相对应的 XML	为<cache>
  */
 @Documented
@@ -48,6 +49,12 @@ public @interface CacheNamespace {
 
   boolean blocking() default false;
 
+  /**
+   * The serializer of a read/write cache, {@link CacheSerializer} itself means the one of the configuration.
+   * @since 3.5.2
+   */
+  Class<? extends CacheSerializer> serializer() default CacheSerializer.class;
+
   /**
    * Property values for a implementation object.
    * @since 3.4.2
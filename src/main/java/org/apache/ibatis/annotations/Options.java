@@ -63,4 +63,16 @@ public @interface Options {
   String keyColumn() default "";
 
   String resultSets() default "";
+
+  /**
+   * @return The tables the statement reads or writes, found in the SQL when empty
+   * @since 3.5.2
+   */
+  String[] tables() default {};
+
+  /**
+   * @return True if a grouping batch may run the statement before statements batched earlier
+   * @since 3.5.2
+   */
+  boolean reorderable() default false;
 }
@@ -66,6 +66,7 @@ import org.apache.ibatis.builder.CacheRefResolver;
 import org.apache.ibatis.builder.IncompleteElementException;
 import org.apache.ibatis.builder.MapperBuilderAssistant;
 import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.cache.CacheSerializer;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
@@ -217,8 +218,10 @@ public class MapperAnnotationBuilder {
       Long flushInterval = cacheDomain.flushInterval() == 0 ? null : cacheDomain.flushInterval();
       //读取Property，里面的${}已被具体的值替换
       Properties props = convertToProperties(cacheDomain.properties());
+      //serializer为CacheSerializer接口本身时表示未设置，使用Configuration中的cacheSerializer
+      Class<? extends CacheSerializer> serializer = cacheDomain.serializer() == CacheSerializer.class ? null : cacheDomain.serializer();
       //创建缓存对象并添加到Configuration对象中
-      assistant.useNewCache(cacheDomain.implementation(), cacheDomain.eviction(), flushInterval, size, cacheDomain.readWrite(), cacheDomain.blocking(), props);
+      assistant.useNewCache(cacheDomain.implementation(), cacheDomain.eviction(), flushInterval, size, cacheDomain.readWrite(), cacheDomain.blocking(), serializer, props);
     }
   }
 
@@ -412,7 +415,10 @@ public class MapperAnnotationBuilder {
           null,
           languageDriver,
           // ResultSets
-          options != null ? nullOrEmpty(options.resultSets()) : null);
+          options != null ? nullOrEmpty(options.resultSets()) : null,
+          // Tables
+          options != null && options.tables().length > 0 ? String.join(",", options.tables()) : null,
+          options != null && options.reorderable());
     }
   }
 
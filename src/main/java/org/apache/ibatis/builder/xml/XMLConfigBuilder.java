@@ -22,6 +22,8 @@ import javax.sql.DataSource;
 
 import org.apache.ibatis.builder.BaseBuilder;
 import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.cache.invalidation.InvalidationTransport;
 import org.apache.ibatis.datasource.DataSourceFactory;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.loader.ProxyFactory;
@@ -40,6 +42,7 @@ import org.apache.ibatis.reflection.factory.ObjectFactory;
 import org.apache.ibatis.reflection.wrapper.ObjectWrapperFactory;
 import org.apache.ibatis.session.AutoMappingBehavior;
 import org.apache.ibatis.session.AutoMappingUnknownColumnBehavior;
+import org.apache.ibatis.session.CacheFlushScope;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.LocalCacheScope;
@@ -355,6 +358,12 @@ public class XMLConfigBuilder extends BaseBuilder {
     configuration.setAutoMappingUnknownColumnBehavior(AutoMappingUnknownColumnBehavior.valueOf(props.getProperty("autoMappingUnknownColumnBehavior", "NONE")));
     configuration.setCacheEnabled(booleanValueOf(props.getProperty("cacheEnabled"), true));
     configuration.setProxyFactory((ProxyFactory) createInstance(props.getProperty("proxyFactory")));
+    configuration.setCacheSerializer((CacheSerializer) createInstance(props.getProperty("cacheSerializer")));
+    configuration.setCacheSingleFlightEnabled(booleanValueOf(props.getProperty("cacheSingleFlightEnabled"), false));
+    configuration.setCacheSingleFlightTimeout(integerValueOf(props.getProperty("cacheSingleFlightTimeout"), 10000));
+    configuration.setCacheFlushScope(CacheFlushScope.valueOf(props.getProperty("cacheFlushScope", "NAMESPACE")));
+    configuration.setCacheInvalidationBatchInterval(integerValueOf(props.getProperty("cacheInvalidationBatchInterval"), 0));
+    configuration.setCacheInvalidationTransport((InvalidationTransport) createInstance(props.getProperty("cacheInvalidationTransport")));
     configuration.setLazyLoadingEnabled(booleanValueOf(props.getProperty("lazyLoadingEnabled"), false));
     configuration.setAggressiveLazyLoading(booleanValueOf(props.getProperty("aggressiveLazyLoading"), false));
     configuration.setMultipleResultSetsEnabled(booleanValueOf(props.getProperty("multipleResultSetsEnabled"), true));
@@ -363,6 +372,16 @@ public class XMLConfigBuilder extends BaseBuilder {
     configuration.setDefaultExecutorType(ExecutorType.valueOf(props.getProperty("defaultExecutorType", "SIMPLE")));
     configuration.setDefaultStatementTimeout(integerValueOf(props.getProperty("defaultStatementTimeout"), null));
     configuration.setDefaultFetchSize(integerValueOf(props.getProperty("defaultFetchSize"), null));
+    configuration.setBatchMaxSize(integerValueOf(props.getProperty("batchMaxSize"), null));
+    configuration.setBatchMaxBytes(integerValueOf(props.getProperty("batchMaxBytes"), null));
+    configuration.setBatchRetainParameterObjects(booleanValueOf(props.getProperty("batchRetainParameterObjects"), true));
+    configuration.setBatchAdaptiveSizing(booleanValueOf(props.getProperty("batchAdaptiveSizing"), false));
+    configuration.setBatchTargetLatency(integerValueOf(props.getProperty("batchTargetLatency"), 100));
+    configuration.setBatchGroupingEnabled(booleanValueOf(props.getProperty("batchGroupingEnabled"), false));
+    configuration.setBatchRewriteInserts(booleanValueOf(props.getProperty("batchRewriteInserts"), false));
+    configuration.setBatchRewriteMaxParameters(integerValueOf(props.getProperty("batchRewriteMaxParameters"), 1000));
+    configuration.setReuseStatementCacheSize(integerValueOf(props.getProperty("reuseStatementCacheSize"), null));
+    configuration.setNestedQueryParallelism(integerValueOf(props.getProperty("nestedQueryParallelism"), null));
     configuration.setMapUnderscoreToCamelCase(booleanValueOf(props.getProperty("mapUnderscoreToCamelCase"), false));
     configuration.setSafeRowBoundsEnabled(booleanValueOf(props.getProperty("safeRowBoundsEnabled"), false));
     configuration.setLocalCacheScope(LocalCacheScope.valueOf(props.getProperty("localCacheScope", "SESSION")));
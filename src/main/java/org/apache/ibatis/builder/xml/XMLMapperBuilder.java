@@ -33,6 +33,7 @@ import org.apache.ibatis.builder.IncompleteElementException;
 import org.apache.ibatis.builder.MapperBuilderAssistant;
 import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheSerializer;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.mapping.Discriminator;
@@ -211,7 +212,7 @@ public class XMLMapperBuilder extends BaseBuilder {
   }
 
   /**
-   * <cache eviction="FIFO" flushInterval="60000" size="512" readOnly="true">
+   * <cache eviction="FIFO" flushInterval="60000" size="512" readOnly="true" serializer="BINARY_SERIALIZER">
    *    <property name="cacheFile" value="/tmp/my-custom-cache.tmp"/>
    * </cache>
    * @param context
@@ -234,10 +235,12 @@ public class XMLMapperBuilder extends BaseBuilder {
       boolean readWrite = !context.getBooleanAttribute("readOnly", false);
       //读取blocking属性，未设置则默认为false
       boolean blocking = context.getBooleanAttribute("blocking", false);
+      //读取serializer属性，未设置则使用Configuration中的cacheSerializer
+      Class<? extends CacheSerializer> serializerClass = typeAliasRegistry.resolveAlias(context.getStringAttribute("serializer"));
       //读取所有的property
       Properties props = context.getChildrenAsProperties();
       //创建缓存对象，并保持到Configuration对象中
-      builderAssistant.useNewCache(typeClass, evictionClass, flushInterval, size, readWrite, blocking, props);
+      builderAssistant.useNewCache(typeClass, evictionClass, flushInterval, size, readWrite, blocking, serializerClass, props);
     }
   }
 
@@ -535,13 +538,15 @@ public class XMLMapperBuilder extends BaseBuilder {
     String foreignColumn = context.getStringAttribute("foreignColumn");
     //可选的。有效值为 lazy 和 eager。 指定属性后，将在映射中忽略全局配置参数 lazyLoadingEnabled，使用属性的值。
     boolean lazy = "lazy".equals(context.getStringAttribute("fetchType", configuration.isLazyLoadingEnabled() ? "lazy" : "eager"));
+    //可选的。与select、foreignColumn一起使用，把多个父对象的嵌套查询合并执行，每次最多传入batchSize个键，由嵌套查询用foreach拼成IN列表
+    int batchSize = context.getIntAttribute("batchSize", 0);
     //获取javaType的class
     Class<?> javaTypeClass = resolveClass(javaType);
     //获取typeHandler的class
     Class<? extends TypeHandler<?>> typeHandlerClass = resolveClass(typeHandler);
     //获取JdbcType的枚举
     JdbcType jdbcTypeEnum = resolveJdbcType(jdbcType);
-    return builderAssistant.buildResultMapping(resultType, property, column, javaTypeClass, jdbcTypeEnum, nestedSelect, nestedResultMap, notNullColumn, columnPrefix, typeHandlerClass, flags, resultSet, foreignColumn, lazy);
+    return builderAssistant.buildResultMapping(resultType, property, column, javaTypeClass, jdbcTypeEnum, nestedSelect, nestedResultMap, notNullColumn, columnPrefix, typeHandlerClass, flags, resultSet, foreignColumn, lazy, batchSize);
   }
 
   /**
@@ -0,0 +1,37 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * Reloads a second level cache entry outside of any session.
+ * <p>
+ * It is attached to the key of an entry with a {@link RefreshableCacheKey}, so that a decorator such as
+ * {@link org.apache.ibatis.cache.decorators.ScheduledCache} can refresh the entry in the background.
+ *
+ * @since 3.5.2
+ */
+@FunctionalInterface
+public interface CacheRefresher {
+
+  /**
+   * Runs the query of the entry again and puts the result in the cache it came from.
+   *
+   * @param key - the key of the entry
+   * @throws Exception if the query or the put fails
+   */
+  void refresh(CacheKey key) throws Exception;
+
+}
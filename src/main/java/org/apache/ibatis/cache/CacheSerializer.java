@@ -0,0 +1,42 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * SPI for turning cached values into bytes, used by caches that store copies of the results.
+ * <p>
+ * Implementations must be thread safe and have a public no-args constructor when they are configured by class name.
+ *
+ * @see org.apache.ibatis.cache.serializer.JavaCacheSerializer
+ * @since 3.5.2
+ */
+public interface CacheSerializer {
+
+  /**
+   * @param value - the value to serialize, may be null
+   * @return The serialized form of the value
+   * @throws CacheException if the value cannot be serialized
+   */
+  byte[] serialize(Object value);
+
+  /**
+   * @param bytes - bytes produced by {@link #serialize(Object)} of the same serializer
+   * @return A new copy of the value
+   * @throws CacheException if the bytes cannot be read back
+   */
+  Object deserialize(byte[] bytes);
+
+}
@@ -0,0 +1,43 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * A cache key that also knows how to reload its entry.
+ * <p>
+ * It is equal to a plain {@link CacheKey} with the same values, the refresher is not part of the key.
+ *
+ * @since 3.5.2
+ */
+public class RefreshableCacheKey extends CacheKey {
+
+  private static final long serialVersionUID = -1590546937623441094L;
+
+  private final transient CacheRefresher refresher;
+
+  public RefreshableCacheKey(CacheKey key, CacheRefresher refresher) {
+    super(key);
+    this.refresher = refresher;
+  }
+
+  /**
+   * @return The refresher, null once the key has been serialized
+   */
+  public CacheRefresher getRefresher() {
+    return refresher;
+  }
+
+}
@@ -0,0 +1,152 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.cache.decorators.BlockingCache;
+
+/**
+ * Remembers which second level cache entries depend on which tables, so that a write only removes the entries that
+ * read the tables it changed, in every namespace.
+ * <p>
+ * Entries whose tables are unknown depend on any table. When a table has more than {@code maxKeysPerTable} entries in
+ * a cache, or the cache cannot remove single entries, a write to the table clears that whole cache instead.
+ *
+ * @since 3.5.2
+ */
+public class TableDependencyIndex {
+
+  /**
+   * The table name entries with unknown tables are registered under.
+   */
+  public static final String ANY_TABLE = "*";
+
+  private static final Set<Object> OVERFLOWED = Collections.unmodifiableSet(new HashSet<>());
+
+  private final Map<String, Map<Cache, Set<Object>>> tables = new ConcurrentHashMap<>();
+  private volatile int maxKeysPerTable = 10000;
+
+  /**
+   * @param maxKeysPerTable - how many entries of a cache are tracked per table before a write clears the whole cache
+   */
+  public void setMaxKeysPerTable(int maxKeysPerTable) {
+    this.maxKeysPerTable = maxKeysPerTable;
+  }
+
+  /**
+   * Records that an entry put in the cache was read from the tables.
+   *
+   * @param cache - the cache holding the entry
+   * @param key - the key of the entry
+   * @param dependencies - the tables the entry was read from, empty if unknown
+   */
+  public void register(Cache cache, Object key, Collection<String> dependencies) {
+    if (dependencies.isEmpty()) {
+      register(cache, key, ANY_TABLE);
+    } else {
+      for (String table : dependencies) {
+        register(cache, key, table);
+      }
+    }
+  }
+
+  /**
+   * Removes the entries read from any of the tables, in every cache.
+   *
+   * @param changedTables - the tables that were written
+   */
+  public void invalidate(Collection<String> changedTables) {
+    Set<Cache> cleared = new HashSet<>();
+    invalidate(ANY_TABLE, cleared);
+    for (String table : changedTables) {
+      invalidate(table, cleared);
+    }
+  }
+
+  /**
+   * Forgets the entries of a cache that is about to be cleared. Call it before clearing the cache: an entry put in
+   * between would otherwise lose its registration and never be invalidated.
+   *
+   * @param cache - the cache to clear
+   */
+  public void clear(Cache cache) {
+    for (Map<Cache, Set<Object>> caches : tables.values()) {
+      caches.remove(cache);
+    }
+  }
+
+  /**
+   * @param cache - a second level cache
+   * @param table - a lower cased table name
+   * @return The number of entries registered under the table, -1 if there are too many to track
+   */
+  public int getKeyCount(Cache cache, String table) {
+    Map<Cache, Set<Object>> caches = tables.get(table);
+    Set<Object> keys = caches == null ? null : caches.get(cache);
+    if (keys == OVERFLOWED) {
+      return -1;
+    }
+    return keys == null ? 0 : keys.size();
+  }
+
+  private void register(Cache cache, Object key, String table) {
+    // runs under the lock of the table, so a concurrent invalidate either sees the key or removes the map before it
+    tables.compute(table, (t, caches) -> {
+      if (caches == null) {
+        caches = new ConcurrentHashMap<>();
+      }
+      Set<Object> keys = caches.computeIfAbsent(cache, k -> ConcurrentHashMap.newKeySet());
+      if (keys != OVERFLOWED) {
+        keys.add(key);
+        if (keys.size() > maxKeysPerTable) {
+          caches.put(cache, OVERFLOWED);
+        }
+      }
+      return caches;
+    });
+  }
+
+  private void invalidate(String table, Set<Cache> cleared) {
+    // detached atomically, later registrations go to a new map and are not lost
+    Map<Cache, Set<Object>> caches = tables.remove(table);
+    if (caches == null) {
+      return;
+    }
+    for (Map.Entry<Cache, Set<Object>> entry : caches.entrySet()) {
+      Cache cache = entry.getKey();
+      if (cleared.contains(cache)) {
+        continue;
+      }
+      // a blocking cache only releases its lock on removeObject
+      if (entry.getValue() == OVERFLOWED || cache instanceof BlockingCache) {
+        clear(cache);
+        cache.clear();
+        cleared.add(cache);
+      } else {
+        for (Object key : entry.getValue()) {
+          cache.removeObject(key);
+        }
+      }
+    }
+  }
+
+}
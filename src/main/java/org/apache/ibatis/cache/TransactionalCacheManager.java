@@ -15,10 +15,15 @@
  */
 package org.apache.ibatis.cache;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.invalidation.InvalidationPublisher;
 
 /**
  * @author Clinton Begin
@@ -26,6 +31,32 @@ import org.apache.ibatis.cache.decorators.TransactionalCache;
 public class TransactionalCacheManager {
 
   private final Map<Cache, TransactionalCache> transactionalCaches = new HashMap<>();
+  private final TableDependencyIndex tableDependencyIndex;
+  private final InvalidationPublisher invalidationPublisher;
+  // tables written by this transaction, their entries are invalidated on commit
+  private final Set<String> tablesToInvalidate = new HashSet<>();
+
+  public TransactionalCacheManager() {
+    this(null);
+  }
+
+  /**
+   * @param tableDependencyIndex - enables table level invalidation when not null
+   * @since 3.5.2
+   */
+  public TransactionalCacheManager(TableDependencyIndex tableDependencyIndex) {
+    this(tableDependencyIndex, null);
+  }
+
+  /**
+   * @param tableDependencyIndex - enables table level invalidation when not null
+   * @param invalidationPublisher - sends the invalidations of each commit to the other nodes when not null
+   * @since 3.5.2
+   */
+  public TransactionalCacheManager(TableDependencyIndex tableDependencyIndex, InvalidationPublisher invalidationPublisher) {
+    this.tableDependencyIndex = tableDependencyIndex;
+    this.invalidationPublisher = invalidationPublisher;
+  }
 
   public void clear(Cache cache) {
     getTransactionalCache(cache).clear();
@@ -39,20 +70,85 @@ public class TransactionalCacheManager {
     getTransactionalCache(cache).putObject(key, value);
   }
 
+  /**
+   * Returns a cached value unless it may depend on a table written by this transaction.
+   *
+   * @param cache - a second level cache
+   * @param key - the key of the query
+   * @param tables - the tables the query reads, empty if unknown
+   * @return The cached value, or null
+   * @since 3.5.2
+   */
+  public Object getObject(Cache cache, CacheKey key, Set<String> tables) {
+    Object value = getTransactionalCache(cache).getObject(key);
+    return value != null && isInvalidated(tables) ? null : value;
+  }
+
+  /**
+   * @param cache - a second level cache
+   * @param key - the key of the query
+   * @param value - the result of the query
+   * @param tables - the tables the query reads, empty if unknown
+   * @since 3.5.2
+   */
+  public void putObject(Cache cache, CacheKey key, Object value, Set<String> tables) {
+    getTransactionalCache(cache).putObject(key, value, tables);
+  }
+
+  /**
+   * Invalidates, on commit, the entries of every cache that were read from the tables.
+   *
+   * @param tables - the tables written by a statement
+   * @since 3.5.2
+   */
+  public void invalidate(Collection<String> tables) {
+    tablesToInvalidate.addAll(tables);
+    for (TransactionalCache txCache : transactionalCaches.values()) {
+      txCache.discardEntriesToAdd(tables);
+    }
+  }
+
+  /**
+   * @param tables - the tables a query reads, empty if unknown
+   * @return True if this transaction wrote one of the tables and has not committed yet
+   * @since 3.5.2
+   */
+  public boolean isInvalidated(Set<String> tables) {
+    return !tablesToInvalidate.isEmpty() && (tables.isEmpty() || !Collections.disjoint(tables, tablesToInvalidate));
+  }
+
+  /**
+   * @param cache - a second level cache
+   * @return True if this session flushed the cache and the flush is not committed yet
+   * @since 3.5.2
+   */
+  public boolean isClearPending(Cache cache) {
+    TransactionalCache txCache = transactionalCaches.get(cache);
+    return txCache != null && txCache.isClearOnCommit();
+  }
+
   public void commit() {
+    if (tableDependencyIndex != null && !tablesToInvalidate.isEmpty()) {
+      tableDependencyIndex.invalidate(tablesToInvalidate);
+      if (invalidationPublisher != null) {
+        invalidationPublisher.tablesInvalidated(tablesToInvalidate);
+      }
+    }
+    tablesToInvalidate.clear();
     for (TransactionalCache txCache : transactionalCaches.values()) {
       txCache.commit();
     }
   }
 
   public void rollback() {
+    tablesToInvalidate.clear();
     for (TransactionalCache txCache : transactionalCaches.values()) {
       txCache.rollback();
     }
   }
 
   private TransactionalCache getTransactionalCache(Cache cache) {
-    return transactionalCaches.computeIfAbsent(cache, TransactionalCache::new);
+    return transactionalCaches.computeIfAbsent(cache, c -> new TransactionalCache(c, tableDependencyIndex, invalidationPublisher));
   }
 
 }
@@ -0,0 +1,36 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * Estimates how many bytes a cached entry takes, used by weight bounded caches.
+ * <p>
+ * Implementations must have a public no-args constructor when they are configured by class name.
+ *
+ * @see org.apache.ibatis.cache.decorators.WeightedCache
+ * @since 3.5.2
+ */
+@FunctionalInterface
+public interface Weigher {
+
+  /**
+   * @param key - the key of the entry, usually a {@link CacheKey}
+   * @param value - the cached value, a {@code byte[]} when the cache is read/write and the value is not immutable
+   * @return The estimated weight of the entry in bytes, must not be negative
+   */
+  long weigh(Object key, Object value);
+
+}
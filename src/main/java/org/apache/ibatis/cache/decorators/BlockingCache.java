@@ -16,10 +16,9 @@
 package org.apache.ibatis.cache.decorators;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
@@ -30,6 +29,8 @@ import org.apache.ibatis.cache.CacheException;
  * Simple and inefficient version of EhCache's BlockingCache decorator.
  * It sets a lock over a cache key when the element is not found in cache.
  * This way, other threads will wait until this element is filled instead of hitting the database.
+ * <p>
+ * A lock only lives in the map while it is held, so keys that were missed once do not pile up.
  *
  * @author Eduardo Macarron
  *
@@ -38,7 +39,7 @@ public class BlockingCache implements Cache {
 
   private long timeout;
   private final Cache delegate;
-  private final ConcurrentHashMap<Object, ReentrantLock> locks;
+  private final ConcurrentHashMap<Object, KeyLock> locks;
 
   public BlockingCache(Cache delegate) {
     this.delegate = delegate;
@@ -91,33 +92,47 @@ public class BlockingCache implements Cache {
     return null;
   }
 
-  private ReentrantLock getLockForKey(Object key) {
-    return locks.computeIfAbsent(key, k -> new ReentrantLock());
-  }
-
   private void acquireLock(Object key) {
-    Lock lock = getLockForKey(key);
-    if (timeout > 0) {
+    Thread current = Thread.currentThread();
+    long deadline = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0L;
+    KeyLock newLock = new KeyLock(current);
+    for (;;) {
+      KeyLock lock = locks.putIfAbsent(key, newLock);
+      if (lock == null || lock.owner == current) {
+        // the same session may miss the same key twice before committing, a single release frees it
+        return;
+      }
       try {
-        boolean acquired = lock.tryLock(timeout, TimeUnit.MILLISECONDS);
-        if (!acquired) {
-          throw new CacheException("Couldn't get a lock in " + timeout + " for the key " +  key + " at the cache " + delegate.getId());
+        if (timeout > 0) {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0L || !lock.latch.await(remaining, TimeUnit.NANOSECONDS)) {
+            throw new CacheException("Couldn't get a lock in " + timeout + " for the key " +  key + " at the cache " + delegate.getId());
+          }
+        } else {
+          lock.latch.await();
         }
       } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
         throw new CacheException("Got interrupted while trying to acquire lock for key " + key, e);
       }
-    } else {
-      lock.lock();
     }
   }
 
   private void releaseLock(Object key) {
-    ReentrantLock lock = locks.get(key);
-    if (lock.isHeldByCurrentThread()) {
-      lock.unlock();
+    KeyLock lock = locks.get(key);
+    if (lock != null && lock.owner == Thread.currentThread() && locks.remove(key, lock)) {
+      lock.latch.countDown();
     }
   }
 
+  /**
+   * @return The number of keys currently locked by a thread that missed them
+   * @since 3.5.2
+   */
+  public int getLockCount() {
+    return locks.size();
+  }
+
   public long getTimeout() {
     return timeout;
   }
@@ -125,4 +140,14 @@ public class BlockingCache implements Cache {
   public void setTimeout(long timeout) {
     this.timeout = timeout;
   }
+
+  private static class KeyLock {
+    private final Thread owner;
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    KeyLock(Thread owner) {
+      this.owner = owner;
+    }
+  }
+
 }
@@ -0,0 +1,98 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+
+/**
+ * Thread safe FIFO (first in, first out) cache decorator for a concurrent delegate.
+ *
+ * @see FifoCache
+ * @see org.apache.ibatis.cache.impl.ConcurrentPerpetualCache
+ */
+public class ConcurrentFifoCache implements Cache {
+
+  private final Cache delegate;
+  private final Queue<Object> keyList;
+  private final AtomicInteger keyCount;
+  private volatile int size;
+
+  public ConcurrentFifoCache(Cache delegate) {
+    this.delegate = delegate;
+    this.keyList = new ConcurrentLinkedQueue<>();
+    this.keyCount = new AtomicInteger();
+    this.size = 1024;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  public void setSize(int size) {
+    this.size = size;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    cycleKeyList(key);
+    delegate.putObject(key, value);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return delegate.getObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+    keyList.clear();
+    keyCount.set(0);
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  private void cycleKeyList(Object key) {
+    keyList.offer(key);
+    if (keyCount.incrementAndGet() > size) {
+      Object oldestKey = keyList.poll();
+      if (oldestKey != null) {
+        keyCount.decrementAndGet();
+        delegate.removeObject(oldestKey);
+      }
+    }
+  }
+
+}
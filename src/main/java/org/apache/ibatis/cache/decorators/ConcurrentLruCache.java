@@ -0,0 +1,119 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+
+/**
+ * Thread safe Lru (least recently used) cache decorator for a concurrent delegate.
+ * <p>
+ * Unlike {@link LruCache}, a read does not reorder the key list. It is recorded in a {@link ReadBuffer}
+ * and replayed in batches by whichever thread holds the eviction lock, so readers never block each other.
+ *
+ * @see org.apache.ibatis.cache.impl.ConcurrentPerpetualCache
+ */
+public class ConcurrentLruCache implements Cache {
+
+  private final Cache delegate;
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final ReadBuffer readBuffer = new ReadBuffer();
+  private final LinkedHashMap<Object, Object> keyMap = new LinkedHashMap<>(16, .75F, true);
+  private volatile int size;
+
+  public ConcurrentLruCache(Cache delegate) {
+    this.delegate = delegate;
+    setSize(1024);
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  public void setSize(final int size) {
+    this.size = size;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    delegate.putObject(key, value);
+    evictionLock.lock();
+    try {
+      drainReadBuffer();
+      keyMap.put(key, key);
+      Iterator<Object> eldestKeys = keyMap.keySet().iterator();
+      while (keyMap.size() > size && eldestKeys.hasNext()) {
+        Object eldestKey = eldestKeys.next();
+        eldestKeys.remove();
+        delegate.removeObject(eldestKey);
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Object value = delegate.getObject(key);
+    if (readBuffer.offer(key) && evictionLock.tryLock()) {
+      try {
+        drainReadBuffer();
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    evictionLock.lock();
+    try {
+      delegate.clear();
+      readBuffer.drainTo(key -> { });
+      keyMap.clear();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  private void drainReadBuffer() {
+    // touch, without re-adding keys that were evicted in the meantime
+    readBuffer.drainTo(keyMap::get);
+  }
+
+}
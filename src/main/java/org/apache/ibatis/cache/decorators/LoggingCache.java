@@ -15,6 +15,7 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
@@ -28,8 +29,13 @@ public class LoggingCache implements Cache {
 
   private final Log log;
   private final Cache delegate;
+  // the adders below do the counting, their sums are copied here for subclasses that still read these
+  @Deprecated
   protected int requests = 0;
+  @Deprecated
   protected int hits = 0;
+  private final LongAdder requestCount = new LongAdder();
+  private final LongAdder hitCount = new LongAdder();
 
   public LoggingCache(Cache delegate) {
     this.delegate = delegate;
@@ -52,11 +58,14 @@ public class LoggingCache implements Cache {
   }
 
   @Override
+  @SuppressWarnings("deprecation")
   public Object getObject(Object key) {
-    requests++;
+    requestCount.increment();
+    requests = requestCount.intValue();
     final Object value = delegate.getObject(key);
     if (value != null) {
-      hits++;
+      hitCount.increment();
+      hits = hitCount.intValue();
     }
     if (log.isDebugEnabled()) {
       log.debug("Cache Hit Ratio [" + getId() + "]: " + getHitRatio());
@@ -90,7 +99,7 @@ public class LoggingCache implements Cache {
   }
 
   private double getHitRatio() {
-    return (double) hits / (double) requests;
+    return (double) hitCount.sum() / (double) requestCount.sum();
   }
 
 }
@@ -0,0 +1,88 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Lossy, striped buffer that records cache reads without taking the eviction lock.
+ * <p>
+ * Each thread writes into the stripe picked by its id. When a stripe is full further reads are dropped,
+ * which only makes the eviction policy slightly less precise, and the caller is told to drain. Draining must
+ * be done by a single thread at a time, usually while holding the eviction lock.
+ */
+class ReadBuffer {
+
+  private static final int STRIPE_CAPACITY = 16;
+  private static final int STRIPE_MASK = STRIPE_CAPACITY - 1;
+  private static final int STRIPES = ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors() * 4);
+
+  private final AtomicReferenceArray<Object> buffer = new AtomicReferenceArray<>(STRIPES * STRIPE_CAPACITY);
+  private final AtomicIntegerArray writeCounts = new AtomicIntegerArray(STRIPES);
+  private final AtomicIntegerArray readCounts = new AtomicIntegerArray(STRIPES);
+
+  /**
+   * Records a read.
+   *
+   * @param key - the key that was read
+   * @return True if the stripe is full and should be drained
+   */
+  boolean offer(Object key) {
+    int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+    int writes = writeCounts.get(stripe);
+    int pending = writes - readCounts.get(stripe);
+    if (pending >= STRIPE_CAPACITY) {
+      return true;
+    }
+    if (writeCounts.compareAndSet(stripe, writes, writes + 1)) {
+      buffer.lazySet(stripe * STRIPE_CAPACITY + (writes & STRIPE_MASK), key);
+      return pending + 1 >= STRIPE_CAPACITY;
+    }
+    // lost the race to another reader of the same stripe, dropping the read is fine
+    return false;
+  }
+
+  /**
+   * Hands every recorded read to the consumer. Must not be called concurrently.
+   *
+   * @param consumer - receives the keys in the order they were recorded per stripe
+   */
+  void drainTo(Consumer<Object> consumer) {
+    for (int stripe = 0; stripe < STRIPES; stripe++) {
+      int reads = readCounts.get(stripe);
+      int writes = writeCounts.get(stripe);
+      while (reads != writes) {
+        int index = stripe * STRIPE_CAPACITY + (reads & STRIPE_MASK);
+        Object key = buffer.get(index);
+        if (key == null) {
+          // the writer has not published it yet, pick it up on the next drain
+          break;
+        }
+        buffer.lazySet(index, null);
+        consumer.accept(key);
+        reads++;
+      }
+      readCounts.lazySet(stripe, reads);
+    }
+  }
+
+  private static int ceilingPowerOfTwo(int value) {
+    return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+  }
+
+}
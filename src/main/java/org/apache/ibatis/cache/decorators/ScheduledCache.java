@@ -15,18 +15,58 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.CacheRefresher;
+import org.apache.ibatis.cache.RefreshableCacheKey;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
 
 /**
+ * Clears the whole cache every {@code clearInterval} milliseconds and, when {@code timeToLive} is set, expires
+ * each entry on its own.
+ * <p>
+ * Entries put with a {@link RefreshableCacheKey} can be reloaded in the background instead of expiring:
+ * <ul>
+ * <li>{@code refreshAhead}: a hit in the last milliseconds of the time to live starts a reload and is still served
+ * the current value.</li>
+ * <li>{@code staleWhileRevalidate}: an expired entry is still served for that many milliseconds while it is
+ * reloaded.</li>
+ * </ul>
+ * At most one reload per entry runs at a time, on {@code refreshThreads} daemon threads. A reload that finishes
+ * after the cache was cleared or the entry was removed is dropped.
+ *
  * @author Clinton Begin
  */
 public class ScheduledCache implements Cache {
 
+  private static final Log log = LogFactory.getLog(ScheduledCache.class);
+  private static final AtomicInteger threadNumber = new AtomicInteger();
+
   private final Cache delegate;
-  protected long clearInterval;
-  protected long lastClear;
+  protected volatile long clearInterval;
+  protected volatile long lastClear;
+  private volatile long timeToLive;
+  private volatile long refreshAhead;
+  private volatile long staleWhileRevalidate;
+  private int refreshThreads = 1;
+
+  private final Map<Object, Entry> entries = new ConcurrentHashMap<>();
+  private final Object clearLock = new Object();
+  // the entry being reloaded, set on the refresh threads only
+  private final ThreadLocal<Entry> refreshedEntry = new ThreadLocal<>();
+  private volatile long nextSweep;
+  private volatile ThreadPoolExecutor refreshExecutor;
 
   public ScheduledCache(Cache delegate) {
     this.delegate = delegate;
@@ -34,10 +74,53 @@ public class ScheduledCache implements Cache {
     this.lastClear = System.currentTimeMillis();
   }
 
+  /**
+   * @param clearInterval - how often the whole cache is cleared in milliseconds, 0 or less to never clear it
+   */
   public void setClearInterval(long clearInterval) {
     this.clearInterval = clearInterval;
   }
 
+  /**
+   * @param timeToLive - how long an entry lives in milliseconds, 0 or less to keep it until the cache is cleared
+   * @since 3.5.2
+   */
+  public void setTimeToLive(long timeToLive) {
+    this.timeToLive = timeToLive;
+  }
+
+  /**
+   * @param refreshAhead - how many milliseconds before expiring a hit starts a reload
+   * @since 3.5.2
+   */
+  public void setRefreshAhead(long refreshAhead) {
+    this.refreshAhead = refreshAhead;
+  }
+
+  /**
+   * @param staleWhileRevalidate - how many milliseconds an expired entry is still served while it is reloaded
+   * @since 3.5.2
+   */
+  public void setStaleWhileRevalidate(long staleWhileRevalidate) {
+    this.staleWhileRevalidate = staleWhileRevalidate;
+  }
+
+  /**
+   * @param refreshThreads - the maximum number of concurrent reloads, 1 by default
+   * @since 3.5.2
+   */
+  public void setRefreshThreads(int refreshThreads) {
+    this.refreshThreads = Math.max(1, refreshThreads);
+  }
+
+  /**
+   * @return Whether entries put with a {@link RefreshableCacheKey} are reloaded instead of expiring
+   * @since 3.5.2
+   */
+  public boolean isRefreshing() {
+    return timeToLive > 0 && (refreshAhead > 0 || staleWhileRevalidate > 0);
+  }
+
   @Override
   public String getId() {
     return delegate.getId();
@@ -52,24 +135,64 @@ public class ScheduledCache implements Cache {
   @Override
   public void putObject(Object key, Object object) {
     clearWhenStale();
-    delegate.putObject(key, object);
+    Entry refreshed = refreshedEntry.get();
+    if (refreshed == null) {
+      put(key, object);
+    } else {
+      synchronized (clearLock) {
+        // dropped if the entry was cleared or removed while it was reloaded
+        if (entries.get(key) == refreshed) {
+          put(key, object);
+        }
+      }
+    }
   }
 
   @Override
   public Object getObject(Object key) {
-    return clearWhenStale() ? null : delegate.getObject(key);
+    if (clearWhenStale()) {
+      return null;
+    }
+    Object value = delegate.getObject(key);
+    if (value == null || timeToLive <= 0) {
+      return value;
+    }
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return value;
+    }
+    long age = System.currentTimeMillis() - entry.writeTime;
+    if (age < timeToLive - refreshAhead) {
+      return value;
+    }
+    if (age < timeToLive) {
+      refresh(key, entry);
+      return value;
+    }
+    if (age < timeToLive + staleWhileRevalidate && entry.refresher != null) {
+      refresh(key, entry);
+      return value;
+    }
+    expire(key, entry);
+    return null;
   }
 
   @Override
   public Object removeObject(Object key) {
     clearWhenStale();
-    return delegate.removeObject(key);
+    synchronized (clearLock) {
+      entries.remove(key);
+      return delegate.removeObject(key);
+    }
   }
 
   @Override
   public void clear() {
-    lastClear = System.currentTimeMillis();
-    delegate.clear();
+    synchronized (clearLock) {
+      lastClear = System.currentTimeMillis();
+      entries.clear();
+      delegate.clear();
+    }
   }
 
   @Override
@@ -88,11 +211,94 @@ public class ScheduledCache implements Cache {
   }
 
   private boolean clearWhenStale() {
-    if (System.currentTimeMillis() - lastClear > clearInterval) {
+    if (clearInterval > 0 && System.currentTimeMillis() - lastClear > clearInterval) {
       clear();
       return true;
     }
     return false;
   }
 
+  private void put(Object key, Object object) {
+    delegate.putObject(key, object);
+    if (timeToLive <= 0) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    if (object == null) {
+      // a miss that was not filled, only releases locks below
+      entries.remove(key);
+    } else {
+      CacheRefresher refresher = key instanceof RefreshableCacheKey ? ((RefreshableCacheKey) key).getRefresher() : null;
+      entries.put(key, new Entry(now, refresher));
+    }
+    if (now >= nextSweep) {
+      nextSweep = now + timeToLive;
+      sweep(now);
+    }
+  }
+
+  private void sweep(long now) {
+    // entries evicted below are never read again, drop them once they could no longer be served
+    for (Iterator<Map.Entry<Object, Entry>> iterator = entries.entrySet().iterator(); iterator.hasNext();) {
+      Map.Entry<Object, Entry> mapEntry = iterator.next();
+      if (now - mapEntry.getValue().writeTime >= timeToLive + staleWhileRevalidate) {
+        expire(mapEntry.getKey(), mapEntry.getValue());
+      }
+    }
+  }
+
+  private void expire(Object key, Entry entry) {
+    if (entries.remove(key, entry)) {
+      delegate.removeObject(key);
+    }
+  }
+
+  private void refresh(Object key, Entry entry) {
+    if (entry.refresher == null || !entry.refreshing.compareAndSet(false, true)) {
+      return;
+    }
+    getRefreshExecutor().execute(() -> {
+      refreshedEntry.set(entry);
+      try {
+        entry.refresher.refresh((CacheKey) key);
+      } catch (Exception e) {
+        log.warn("Could not refresh " + key + " in cache " + getId() + ". Cause: " + e);
+        entry.refreshing.set(false);
+      } finally {
+        refreshedEntry.remove();
+      }
+    });
+  }
+
+  private ThreadPoolExecutor getRefreshExecutor() {
+    ThreadPoolExecutor executor = refreshExecutor;
+    if (executor == null) {
+      synchronized (clearLock) {
+        executor = refreshExecutor;
+        if (executor == null) {
+          executor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "ScheduledCache-refresh-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+          // idle caches do not keep a thread
+          executor.allowCoreThreadTimeOut(true);
+          refreshExecutor = executor;
+        }
+      }
+    }
+    return executor;
+  }
+
+  private static class Entry {
+    private final long writeTime;
+    private final CacheRefresher refresher;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    Entry(long writeTime, CacheRefresher refresher) {
+      this.writeTime = writeTime;
+      this.refresher = refresher;
+    }
+  }
+
 }
@@ -15,29 +15,61 @@
  */
 package org.apache.ibatis.cache.decorators;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
 import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.locks.ReadWriteLock;
 
+import org.apache.ibatis.annotations.Immutable;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.cache.serializer.JavaCacheSerializer;
 import org.apache.ibatis.io.Resources;
 
 /**
+ * Read/write cache decorator, every hit returns a copy of the cached value made by a {@link CacheSerializer}.
+ * <p>
+ * Values that cannot change (strings, numbers, enums, {@code java.time} types, classes annotated with
+ * {@link Immutable}) and lists of them are not serialized at all, a hit only copies the list.
+ *
  * @author Clinton Begin
  */
 public class SerializedCache implements Cache {
 
+  private static final List<Class<?>> IMMUTABLE_TYPES = Arrays.asList(
+      String.class, Integer.class, Long.class, Short.class, Byte.class, Double.class, Float.class,
+      Boolean.class, Character.class, BigDecimal.class, BigInteger.class, UUID.class);
+
+  private static final ClassValue<Boolean> immutableTypes = new ClassValue<Boolean>() {
+    @Override
+    protected Boolean computeValue(Class<?> type) {
+      return IMMUTABLE_TYPES.contains(type) || Enum.class.isAssignableFrom(type)
+          || type.getName().startsWith("java.time.") || type.isAnnotationPresent(Immutable.class);
+    }
+  };
+
   private final Cache delegate;
+  private final CacheSerializer serializer;
 
   public SerializedCache(Cache delegate) {
+    this(delegate, new JavaCacheSerializer());
+  }
+
+  /**
+   * @since 3.5.2
+   */
+  public SerializedCache(Cache delegate, CacheSerializer serializer) {
     this.delegate = delegate;
+    this.serializer = serializer;
   }
 
   @Override
@@ -52,8 +84,11 @@ public class SerializedCache implements Cache {
 
   @Override
   public void putObject(Object key, Object object) {
-    if (object == null || object instanceof Serializable) {
-      delegate.putObject(key, serialize((Serializable) object));
+    if (object != null && isImmutable(object)) {
+      // the caller keeps the list it got, so the cache needs its own
+      delegate.putObject(key, new ImmutableValue(object instanceof List ? new ArrayList<>((List<?>) object) : object));
+    } else if (object == null || object instanceof Serializable) {
+      delegate.putObject(key, serializer.serialize(object));
     } else {
       throw new CacheException("SharedCache failed to make a copy of a non-serializable object: " + object);
     }
@@ -62,7 +97,12 @@ public class SerializedCache implements Cache {
   @Override
   public Object getObject(Object key) {
     Object object = delegate.getObject(key);
-    return object == null ? null : deserialize((byte[]) object);
+    if (object instanceof ImmutableValue) {
+      Object value = ((ImmutableValue) object).value;
+      // the elements are shared, only the list itself needs a copy
+      return value instanceof List ? new ArrayList<>((List<?>) value) : value;
+    }
+    return object == null ? null : serializer.deserialize((byte[]) object);
   }
 
   @Override
@@ -90,26 +130,33 @@ public class SerializedCache implements Cache {
     return delegate.equals(obj);
   }
 
-  private byte[] serialize(Serializable value) {
-    try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-         ObjectOutputStream oos = new ObjectOutputStream(bos)) {
-      oos.writeObject(value);
-      oos.flush();
-      return bos.toByteArray();
-    } catch (Exception e) {
-      throw new CacheException("Error serializing object.  Cause: " + e, e);
+  private static boolean isImmutable(Object object) {
+    if (object instanceof List) {
+      for (Object element : (List<?>) object) {
+        if (element != null && !immutableTypes.get(element.getClass())) {
+          return false;
+        }
+      }
+      return true;
     }
+    return immutableTypes.get(object.getClass());
   }
 
-  private Serializable deserialize(byte[] value) {
-    Serializable result;
-    try (ByteArrayInputStream bis = new ByteArrayInputStream(value);
-         ObjectInputStream ois = new CustomObjectInputStream(bis)) {
-      result = (Serializable) ois.readObject();
-    } catch (Exception e) {
-      throw new CacheException("Error deserializing object.  Cause: " + e, e);
+  /**
+   * @param cached - a value as this decorator passes it to its delegate
+   * @return The immutable value held by {@code cached}, or {@code cached} itself when it is not one
+   */
+  static Object unwrapImmutableValue(Object cached) {
+    return cached instanceof ImmutableValue ? ((ImmutableValue) cached).value : cached;
+  }
+
+  private static class ImmutableValue implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final Object value;
+
+    ImmutableValue(Object value) {
+      this.value = value;
     }
-    return result;
   }
 
   public static class CustomObjectInputStream extends ObjectInputStream {
@@ -0,0 +1,256 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+
+/**
+ * W-TinyLFU cache decorator, selected with {@code eviction="TINYLFU"}.
+ * <p>
+ * New entries first go to a small LRU window (1% of the size). An entry leaving the window only enters the main
+ * space if a {@link FrequencySketch} estimates it has been read more often than the entry it would evict, so a
+ * large scan cannot flush the working set. The main space is a segmented LRU where entries read again are
+ * promoted from probation to the protected segment (80% of the main space).
+ * <p>
+ * Reads are recorded in a {@link ReadBuffer} and replayed in batches by whichever thread holds the eviction lock,
+ * so the decorator is thread safe on top of a concurrent delegate and readers never block each other.
+ *
+ * @see org.apache.ibatis.cache.impl.ConcurrentPerpetualCache
+ */
+public class TinyLfuCache implements Cache {
+
+  private final Cache delegate;
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final ReadBuffer readBuffer = new ReadBuffer();
+  private final FrequencySketch sketch;
+  private final LinkedHashMap<Object, Object> window = new LinkedHashMap<>(16, .75F, true);
+  private final LinkedHashMap<Object, Object> probation = new LinkedHashMap<>(16, .75F, true);
+  private final LinkedHashMap<Object, Object> protectedKeys = new LinkedHashMap<>(16, .75F, true);
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private volatile int size;
+  private int windowSize;
+  private int protectedSize;
+
+  public TinyLfuCache(Cache delegate) {
+    this.delegate = delegate;
+    this.sketch = new FrequencySketch(1024);
+    setSize(1024);
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  public void setSize(final int size) {
+    evictionLock.lock();
+    try {
+      this.size = size;
+      this.windowSize = Math.max(1, size / 100);
+      this.protectedSize = (int) ((size - windowSize) * 0.8);
+      sketch.ensureCapacity(size);
+      evict();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    delegate.putObject(key, value);
+    evictionLock.lock();
+    try {
+      drainReadBuffer();
+      if (!touch(key)) {
+        window.put(key, key);
+      }
+      sketch.increment(key);
+      evict();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Object value = delegate.getObject(key);
+    if (value == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    // misses are recorded as well, the sketch has to know how popular a key is before it is admitted
+    if (readBuffer.offer(key) && evictionLock.tryLock()) {
+      try {
+        drainReadBuffer();
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    evictionLock.lock();
+    try {
+      if (window.remove(key) == null && probation.remove(key) == null) {
+        protectedKeys.remove(key);
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    evictionLock.lock();
+    try {
+      delegate.clear();
+      readBuffer.drainTo(key -> { });
+      window.clear();
+      probation.clear();
+      protectedKeys.clear();
+      sketch.clear();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * @return The ratio of reads that found a value, 0 if there were no reads yet
+   */
+  public double getHitRatio() {
+    long hitCount = hits.sum();
+    long requests = hitCount + misses.sum();
+    return requests == 0 ? 0 : (double) hitCount / requests;
+  }
+
+  private void drainReadBuffer() {
+    readBuffer.drainTo(key -> {
+      sketch.increment(key);
+      touch(key);
+    });
+  }
+
+  /**
+   * Moves a resident key to the most recently used position of its segment, promoting it out of probation.
+   */
+  private boolean touch(Object key) {
+    if (window.get(key) != null || protectedKeys.get(key) != null) {
+      return true;
+    }
+    if (probation.remove(key) == null) {
+      return false;
+    }
+    protectedKeys.put(key, key);
+    if (protectedKeys.size() > protectedSize) {
+      Iterator<Object> eldestKeys = protectedKeys.keySet().iterator();
+      Object demoted = eldestKeys.next();
+      eldestKeys.remove();
+      probation.put(demoted, demoted);
+    }
+    return true;
+  }
+
+  private void evict() {
+    while (window.size() > windowSize) {
+      Object candidate = removeEldest(window);
+      if (window.size() + probation.size() + protectedKeys.size() < size) {
+        probation.put(candidate, candidate);
+        continue;
+      }
+      Object victim = eldest();
+      if (victim != null && sketch.frequency(candidate) > sketch.frequency(victim)) {
+        remove(victim);
+        probation.put(candidate, candidate);
+      } else {
+        evicted(candidate);
+      }
+    }
+    // only needed when the size was reduced
+    while (window.size() + probation.size() + protectedKeys.size() > size) {
+      Object victim = eldest();
+      if (victim == null) {
+        victim = removeEldest(window);
+        evicted(victim);
+      } else {
+        remove(victim);
+      }
+    }
+  }
+
+  private Object eldest() {
+    if (!probation.isEmpty()) {
+      return probation.keySet().iterator().next();
+    }
+    if (!protectedKeys.isEmpty()) {
+      return protectedKeys.keySet().iterator().next();
+    }
+    return null;
+  }
+
+  private void remove(Object victim) {
+    if (probation.remove(victim) == null) {
+      protectedKeys.remove(victim);
+    }
+    evicted(victim);
+  }
+
+  private void evicted(Object key) {
+    delegate.removeObject(key);
+    evictions.increment();
+  }
+
+  private static Object removeEldest(LinkedHashMap<Object, Object> keys) {
+    Iterator<Object> eldestKeys = keys.keySet().iterator();
+    Object eldest = eldestKeys.next();
+    eldestKeys.remove();
+    return eldest;
+  }
+
+}
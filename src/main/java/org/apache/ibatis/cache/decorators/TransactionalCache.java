@@ -15,13 +15,18 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.TableDependencyIndex;
+import org.apache.ibatis.cache.invalidation.InvalidationPublisher;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
@@ -44,12 +49,37 @@ public class TransactionalCache implements Cache {
   private boolean clearOnCommit;
   private final Map<Object, Object> entriesToAddOnCommit;
   private final Set<Object> entriesMissedInCache;
+  private final TableDependencyIndex tableDependencyIndex;
+  private final Map<Object, Set<String>> tablesOfEntriesToAdd;
+  private final InvalidationPublisher invalidationPublisher;
 
   public TransactionalCache(Cache delegate) {
+    this(delegate, null);
+  }
+
+  /**
+   * @param delegate - the second level cache
+   * @param tableDependencyIndex - records the tables of the entries put on commit, may be null
+   * @since 3.5.2
+   */
+  public TransactionalCache(Cache delegate, TableDependencyIndex tableDependencyIndex) {
+    this(delegate, tableDependencyIndex, null);
+  }
+
+  /**
+   * @param delegate - the second level cache
+   * @param tableDependencyIndex - records the tables of the entries put on commit, may be null
+   * @param invalidationPublisher - tells the other nodes when a commit clears the cache, may be null
+   * @since 3.5.2
+   */
+  public TransactionalCache(Cache delegate, TableDependencyIndex tableDependencyIndex, InvalidationPublisher invalidationPublisher) {
     this.delegate = delegate;
     this.clearOnCommit = false;
     this.entriesToAddOnCommit = new HashMap<>();
     this.entriesMissedInCache = new HashSet<>();
+    this.tableDependencyIndex = tableDependencyIndex;
+    this.tablesOfEntriesToAdd = new HashMap<>();
+    this.invalidationPublisher = invalidationPublisher;
   }
 
   @Override
@@ -84,7 +114,39 @@ public class TransactionalCache implements Cache {
 
   @Override
   public void putObject(Object key, Object object) {
+    putObject(key, object, null);
+  }
+
+  /**
+   * @param key - the key of the entry
+   * @param object - the value of the entry
+   * @param tables - the tables the value was read from, empty if unknown, null if not tracked
+   * @since 3.5.2
+   */
+  public void putObject(Object key, Object object, Set<String> tables) {
     entriesToAddOnCommit.put(key, object);
+    if (tables == null) {
+      tablesOfEntriesToAdd.remove(key);
+    } else {
+      tablesOfEntriesToAdd.put(key, tables);
+    }
+  }
+
+  /**
+   * Drops the pending entries read from any of the tables, they are older than a write of this transaction.
+   *
+   * @param tables - the tables written by this transaction
+   * @since 3.5.2
+   */
+  public void discardEntriesToAdd(Collection<String> tables) {
+    for (Iterator<Object> iterator = entriesToAddOnCommit.keySet().iterator(); iterator.hasNext();) {
+      Object key = iterator.next();
+      Set<String> entryTables = tablesOfEntriesToAdd.get(key);
+      if (entryTables == null || entryTables.isEmpty() || !Collections.disjoint(entryTables, tables)) {
+        iterator.remove();
+        tablesOfEntriesToAdd.remove(key);
+      }
+    }
   }
 
   @Override
@@ -96,11 +158,26 @@ public class TransactionalCache implements Cache {
   public void clear() {
     clearOnCommit = true;
     entriesToAddOnCommit.clear();
+    tablesOfEntriesToAdd.clear();
+  }
+
+  /**
+   * @return True if the cache will be cleared on commit, hits are hidden until then
+   * @since 3.5.2
+   */
+  public boolean isClearOnCommit() {
+    return clearOnCommit;
   }
 
   public void commit() {
     if (clearOnCommit) {
+      if (tableDependencyIndex != null) {
+        tableDependencyIndex.clear(delegate);
+      }
       delegate.clear();
+      if (invalidationPublisher != null) {
+        invalidationPublisher.cacheCleared(delegate.getId());
+      }
     }
     flushPendingEntries();
     reset();
@@ -115,11 +192,16 @@ public class TransactionalCache implements Cache {
     clearOnCommit = false;
     entriesToAddOnCommit.clear();
     entriesMissedInCache.clear();
+    tablesOfEntriesToAdd.clear();
   }
 
   private void flushPendingEntries() {
     for (Map.Entry<Object, Object> entry : entriesToAddOnCommit.entrySet()) {
       delegate.putObject(entry.getKey(), entry.getValue());
+      Set<String> tables = tablesOfEntriesToAdd.get(entry.getKey());
+      if (tableDependencyIndex != null && tables != null) {
+        tableDependencyIndex.register(delegate, entry.getKey(), tables);
+      }
     }
     for (Object entry : entriesMissedInCache) {
       if (!entriesToAddOnCommit.containsKey(entry)) {
@@ -0,0 +1,177 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.Weigher;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * Weight bounded Lru cache decorator, evicts the least recently used entries until the estimated weight of the
+ * cache fits in {@code maximumWeight} bytes.
+ * <p>
+ * Unless another {@link Weigher} is set, a {@code byte[]} (the value of a read/write cache) weighs its length,
+ * a collection weighs its size times {@code estimatedRowSize} and any other value weighs one row. Immutable values
+ * that a read/write cache keeps without serializing them are weighed as they are.
+ * An entry heavier than the whole cache is not kept at all.
+ *
+ * <pre>
+ * &lt;cache eviction="WEIGHTED"&gt;
+ *   &lt;property name="maximumWeight" value="67108864"/&gt;
+ *   &lt;property name="weigherType" value="com.example.MyWeigher"/&gt;
+ * &lt;/cache&gt;
+ * </pre>
+ *
+ * @since 3.5.2
+ */
+public class WeightedCache implements Cache {
+
+  private final Cache delegate;
+  private final LinkedHashMap<Object, Long> weights = new LinkedHashMap<>(16, .75F, true);
+  private long maximumWeight = 64L * 1024 * 1024;
+  private long estimatedRowSize = 512;
+  private Weigher weigher = this::defaultWeight;
+  private long weight;
+  private long evictionCount;
+
+  public WeightedCache(Cache delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  public void setMaximumWeight(long maximumWeight) {
+    this.maximumWeight = maximumWeight;
+    evict();
+  }
+
+  public long getMaximumWeight() {
+    return maximumWeight;
+  }
+
+  public void setEstimatedRowSize(long estimatedRowSize) {
+    this.estimatedRowSize = estimatedRowSize;
+  }
+
+  public void setWeigher(Weigher weigher) {
+    this.weigher = weigher;
+  }
+
+  /**
+   * @param type - the fully qualified name of a {@link Weigher} implementation
+   */
+  public void setWeigherType(String type) {
+    try {
+      this.weigher = (Weigher) Resources.classForName(type).getDeclaredConstructor().newInstance();
+    } catch (Exception e) {
+      throw new CacheException("Could not instantiate weigher (" + type + "). Cause: " + e, e);
+    }
+  }
+
+  /**
+   * @return The estimated weight of all cached entries in bytes
+   */
+  public long getWeight() {
+    return weight;
+  }
+
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    // an immutable value of a read/write cache is stored as is, wrapped by SerializedCache
+    long entryWeight = weigher.weigh(key, SerializedCache.unwrapImmutableValue(value));
+    Long previous = weights.remove(key);
+    if (previous != null) {
+      weight -= previous;
+    }
+    if (entryWeight > maximumWeight) {
+      delegate.removeObject(key);
+      evictionCount++;
+      return;
+    }
+    delegate.putObject(key, value);
+    weights.put(key, entryWeight);
+    weight += entryWeight;
+    evict();
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    weights.get(key); //touch
+    return delegate.getObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Long previous = weights.remove(key);
+    if (previous != null) {
+      weight -= previous;
+    }
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+    weights.clear();
+    weight = 0;
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<Object, Long>> eldestEntries = weights.entrySet().iterator();
+    while (weight > maximumWeight && eldestEntries.hasNext()) {
+      Map.Entry<Object, Long> eldest = eldestEntries.next();
+      eldestEntries.remove();
+      weight -= eldest.getValue();
+      delegate.removeObject(eldest.getKey());
+      evictionCount++;
+    }
+  }
+
+  private long defaultWeight(Object key, Object value) {
+    if (value instanceof byte[]) {
+      return ((byte[]) value).length;
+    }
+    if (value instanceof Collection) {
+      return Math.max(1, ((Collection<?>) value).size()) * estimatedRowSize;
+    }
+    return estimatedRowSize;
+  }
+
+}
@@ -0,0 +1,54 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread safe {@link PerpetualCache} backed by a {@link ConcurrentHashMap}.
+ * <p>
+ * Reads never lock and writes only lock the hash bin they touch, so the cache builder does not wrap
+ * it in a {@code SynchronizedCache} as long as every decorator on top of it is thread safe as well.
+ * Null values, which are put when a transaction misses the cache, are stored as a placeholder.
+ */
+public class ConcurrentPerpetualCache extends PerpetualCache {
+
+  private static final Object NULL_VALUE = new Object();
+
+  public ConcurrentPerpetualCache(String id) {
+    super(id, new ConcurrentHashMap<>());
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    super.putObject(key, value == null ? NULL_VALUE : value);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return unmask(super.getObject(key));
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return unmask(super.removeObject(key));
+  }
+
+  private Object unmask(Object value) {
+    return value == NULL_VALUE ? null : value;
+  }
+
+}
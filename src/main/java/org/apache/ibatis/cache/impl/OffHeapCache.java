@@ -0,0 +1,416 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.cache.serializer.JavaCacheSerializer;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * Cache that keeps serialized values outside of the Java heap, selected with {@code type="OFFHEAP"}.
+ * <p>
+ * Values are appended to fixed size slabs, direct buffers by default or memory mapped temporary files when
+ * {@code directory} is set. Only the keys and the location of each value stay on the heap. Entries are evicted in
+ * LRU order once the live bytes reach three quarters of {@code capacity}. When no slab has room left, the slab with
+ * the fewest live bytes is compacted into a spare slab, or dropped entirely if even that would not make enough room.
+ * <p>
+ * A {@code byte[]} value (what {@link org.apache.ibatis.cache.decorators.SerializedCache} hands down) is stored as is,
+ * anything else goes through the configured {@link CacheSerializer}. Every read returns a new copy.
+ * <p>
+ * This is a base cache, so it is thread safe by itself and is not wrapped by the eviction decorators.
+ *
+ * <pre>
+ * &lt;cache type="OFFHEAP"&gt;
+ *   &lt;property name="capacity" value="1073741824"/&gt;
+ *   &lt;property name="slabSize" value="16777216"/&gt;
+ * &lt;/cache&gt;
+ * </pre>
+ *
+ * @since 3.5.2
+ */
+public class OffHeapCache implements Cache {
+
+  private final String id;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final LinkedHashMap<Object, Location> index = new LinkedHashMap<>(16, .75F, true);
+  private final List<Slab> slabs = new ArrayList<>();
+  private CacheSerializer serializer = new JavaCacheSerializer();
+  private long capacity = 64L * 1024 * 1024;
+  private int slabSize = 4 * 1024 * 1024;
+  private String directory;
+  private Slab current;
+  private Slab spare;
+  private long liveBytes;
+  private long evictionCount;
+
+  public OffHeapCache(String id) {
+    this.id = id;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public int getSize() {
+    lock.lock();
+    try {
+      return index.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param capacity - the off-heap memory used by all slabs in bytes, changing it clears the cache
+   */
+  public void setCapacity(long capacity) {
+    this.capacity = capacity;
+    reset();
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @param slabSize - the size of one slab in bytes, which is also the largest value that can be cached
+   */
+  public void setSlabSize(int slabSize) {
+    this.slabSize = slabSize;
+    reset();
+  }
+
+  /**
+   * @param directory - where to create the memory mapped slab files, direct buffers are used when not set
+   */
+  public void setDirectory(String directory) {
+    this.directory = directory;
+    reset();
+  }
+
+  public void setSerializer(CacheSerializer serializer) {
+    this.serializer = serializer;
+  }
+
+  /**
+   * @param type - the fully qualified name of a {@link CacheSerializer} implementation
+   */
+  public void setSerializerType(String type) {
+    try {
+      this.serializer = (CacheSerializer) Resources.classForName(type).getDeclaredConstructor().newInstance();
+    } catch (Exception e) {
+      throw new CacheException("Could not instantiate serializer (" + type + "). Cause: " + e, e);
+    }
+  }
+
+  /**
+   * @return The bytes taken by the cached values, not counting the space left by removed ones
+   */
+  public long getLiveBytes() {
+    lock.lock();
+    try {
+      return liveBytes;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getEvictionCount() {
+    lock.lock();
+    try {
+      return evictionCount;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    boolean raw = value instanceof byte[];
+    byte[] bytes = raw ? (byte[]) value : serializer.serialize(value);
+    lock.lock();
+    try {
+      release(index.remove(key));
+      if (bytes.length > slabSize) {
+        evictionCount++;
+        return;
+      }
+      long maximumLiveBytes = Math.max(slabSize, dataSlabCount() * (long) slabSize / 4 * 3);
+      Iterator<Map.Entry<Object, Location>> eldestEntries = index.entrySet().iterator();
+      while (liveBytes + bytes.length > maximumLiveBytes && eldestEntries.hasNext()) {
+        Location eldest = eldestEntries.next().getValue();
+        eldestEntries.remove();
+        release(eldest);
+        evictionCount++;
+      }
+      Location location = allocate(bytes.length, raw);
+      write(location, bytes);
+      index.put(key, location);
+      location.slab.liveBytes += bytes.length;
+      liveBytes += bytes.length;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    byte[] bytes;
+    boolean raw;
+    lock.lock();
+    try {
+      Location location = index.get(key);
+      if (location == null) {
+        return null;
+      }
+      bytes = read(location);
+      raw = location.raw;
+    } finally {
+      lock.unlock();
+    }
+    return raw ? bytes : serializer.deserialize(bytes);
+  }
+
+  /**
+   * Removes the entry without reading it back.
+   *
+   * @return Always null
+   */
+  @Override
+  public Object removeObject(Object key) {
+    lock.lock();
+    try {
+      release(index.remove(key));
+      return null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    lock.lock();
+    try {
+      index.clear();
+      for (Slab slab : slabs) {
+        slab.position = 0;
+        slab.liveBytes = 0;
+      }
+      liveBytes = 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  private void reset() {
+    lock.lock();
+    try {
+      // the old buffers are freed by the garbage collector
+      index.clear();
+      slabs.clear();
+      current = null;
+      spare = null;
+      liveBytes = 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private int dataSlabCount() {
+    // one slab of the capacity is kept as the compaction target
+    return (int) Math.max(1, capacity / slabSize - 1);
+  }
+
+  private Location allocate(int length, boolean raw) {
+    if (current == null || slabSize - current.position < length) {
+      current = nextSlab(length);
+    }
+    Location location = new Location(current, current.position, length, raw);
+    current.position += length;
+    return location;
+  }
+
+  private Slab nextSlab(int length) {
+    if (slabs.size() < dataSlabCount()) {
+      Slab slab = new Slab(newBuffer());
+      slabs.add(slab);
+      return slab;
+    }
+    Slab victim = null;
+    for (Slab slab : slabs) {
+      if (slab.liveBytes == 0) {
+        slab.position = 0;
+        return slab;
+      }
+      if (victim == null || slab.liveBytes < victim.liveBytes) {
+        victim = slab;
+      }
+    }
+    if (victim.liveBytes + length <= slabSize) {
+      return compact(victim);
+    }
+    for (Iterator<Location> locations = index.values().iterator(); locations.hasNext();) {
+      Location location = locations.next();
+      if (location.slab == victim) {
+        locations.remove();
+        liveBytes -= location.length;
+        evictionCount++;
+      }
+    }
+    victim.position = 0;
+    victim.liveBytes = 0;
+    return victim;
+  }
+
+  /**
+   * Copies the live entries of the slab into the spare one, which takes its place.
+   */
+  private Slab compact(Slab victim) {
+    if (spare == null) {
+      spare = new Slab(newBuffer());
+    }
+    Slab target = spare;
+    target.position = 0;
+    target.liveBytes = 0;
+    for (Location location : index.values()) {
+      if (location.slab == victim) {
+        byte[] bytes = read(location);
+        location.slab = target;
+        location.offset = target.position;
+        write(location, bytes);
+        target.position += location.length;
+        target.liveBytes += location.length;
+      }
+    }
+    slabs.set(slabs.indexOf(victim), target);
+    spare = victim;
+    return target;
+  }
+
+  private ByteBuffer newBuffer() {
+    if (directory == null) {
+      return ByteBuffer.allocateDirect(slabSize);
+    }
+    try {
+      File file = File.createTempFile("mybatis-cache-", ".slab", new File(directory));
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+           FileChannel channel = raf.getChannel()) {
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, slabSize);
+      } finally {
+        // the mapping stays valid once the file is unlinked
+        if (!file.delete()) {
+          file.deleteOnExit();
+        }
+      }
+    } catch (IOException e) {
+      throw new CacheException("Could not create cache slab in " + directory + ". Cause: " + e, e);
+    }
+  }
+
+  private void release(Location location) {
+    if (location != null) {
+      location.slab.liveBytes -= location.length;
+      liveBytes -= location.length;
+    }
+  }
+
+  private static byte[] read(Location location) {
+    byte[] bytes = new byte[location.length];
+    ByteBuffer buffer = location.slab.buffer.duplicate();
+    // ByteBuffer.position(int) only exists from Java 9 on, classes built against it would not link on Java 8
+    ((Buffer) buffer).position(location.offset);
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private static void write(Location location, byte[] bytes) {
+    ByteBuffer buffer = location.slab.buffer.duplicate();
+    ((Buffer) buffer).position(location.offset);
+    buffer.put(bytes);
+  }
+
+  private static class Slab {
+    private final ByteBuffer buffer;
+    private int position;
+    private int liveBytes;
+
+    Slab(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+  }
+
+  private static class Location {
+    private Slab slab;
+    private int offset;
+    private final int length;
+    private final boolean raw;
+
+    Location(Slab slab, int offset, int length, boolean raw) {
+      this.slab = slab;
+      this.offset = offset;
+      this.length = length;
+      this.raw = raw;
+    }
+  }
+
+}
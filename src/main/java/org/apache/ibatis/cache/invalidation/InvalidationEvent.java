@@ -0,0 +1,64 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The caches cleared and the tables written by the transactions a node committed since its last event.
+ *
+ * @since 3.5.2
+ */
+public final class InvalidationEvent implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String origin;
+  private final Set<String> cacheIds;
+  private final Set<String> tables;
+
+  /**
+   * @param origin - the id of the node that committed the changes
+   * @param cacheIds - the ids of the caches to clear
+   * @param tables - the tables whose entries must be invalidated
+   */
+  public InvalidationEvent(String origin, Set<String> cacheIds, Set<String> tables) {
+    this.origin = origin;
+    this.cacheIds = Collections.unmodifiableSet(new LinkedHashSet<>(cacheIds));
+    this.tables = Collections.unmodifiableSet(new LinkedHashSet<>(tables));
+  }
+
+  public String getOrigin() {
+    return origin;
+  }
+
+  public Set<String> getCacheIds() {
+    return cacheIds;
+  }
+
+  public Set<String> getTables() {
+    return tables;
+  }
+
+  @Override
+  public String toString() {
+    return "InvalidationEvent [origin=" + origin + ", cacheIds=" + cacheIds + ", tables=" + tables + "]";
+  }
+
+}
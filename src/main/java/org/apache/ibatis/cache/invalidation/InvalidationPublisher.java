@@ -0,0 +1,153 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * Sends the invalidations committed on this node to the other nodes.
+ * <p>
+ * With a positive {@code batchInterval}, the invalidations committed during the interval are coalesced and sent as a
+ * single event at its end, so a burst of commits on the same namespaces costs one message. Otherwise each commit is
+ * sent right away. A failure of the transport is logged, the commit that caused the invalidation is not affected.
+ *
+ * @since 3.5.2
+ */
+public class InvalidationPublisher {
+
+  private static final Log log = LogFactory.getLog(InvalidationPublisher.class);
+
+  private final String nodeId = UUID.randomUUID().toString();
+  private final InvalidationTransport transport;
+  private volatile long batchInterval;
+
+  private final Object lock = new Object();
+  private Set<String> pendingCacheIds = new LinkedHashSet<>();
+  private Set<String> pendingTables = new LinkedHashSet<>();
+  private boolean flushScheduled;
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * @param transport - carries the events to the other nodes
+   * @param batchInterval - how many milliseconds invalidations are coalesced before being sent, 0 to send on commit
+   */
+  public InvalidationPublisher(InvalidationTransport transport, long batchInterval) {
+    this.transport = transport;
+    this.batchInterval = batchInterval;
+  }
+
+  /**
+   * @return The id identifying the events of this node
+   */
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  public void setBatchInterval(long batchInterval) {
+    this.batchInterval = batchInterval;
+  }
+
+  /**
+   * @param cacheId - the id of a cache cleared by a committed transaction
+   */
+  public void cacheCleared(String cacheId) {
+    publish(Collections.singleton(cacheId), Collections.emptySet());
+  }
+
+  /**
+   * @param tables - the tables written by a committed transaction
+   */
+  public void tablesInvalidated(Collection<String> tables) {
+    publish(Collections.emptySet(), tables);
+  }
+
+  /**
+   * Sends the pending invalidations now.
+   */
+  public void flush() {
+    Set<String> cacheIds;
+    Set<String> tables;
+    synchronized (lock) {
+      flushScheduled = false;
+      if (pendingCacheIds.isEmpty() && pendingTables.isEmpty()) {
+        return;
+      }
+      cacheIds = pendingCacheIds;
+      tables = pendingTables;
+      pendingCacheIds = new LinkedHashSet<>();
+      pendingTables = new LinkedHashSet<>();
+    }
+    InvalidationEvent event = new InvalidationEvent(nodeId, cacheIds, tables);
+    try {
+      transport.send(event);
+    } catch (RuntimeException e) {
+      log.warn("Error sending " + event + ". Other nodes may serve stale entries. Cause: " + e);
+    }
+  }
+
+  /**
+   * Sends the pending invalidations and stops the batching thread.
+   */
+  public void close() {
+    flush();
+    synchronized (lock) {
+      if (scheduler != null) {
+        scheduler.shutdown();
+        scheduler = null;
+      }
+    }
+  }
+
+  private void publish(Collection<String> cacheIds, Collection<String> tables) {
+    long interval = batchInterval;
+    synchronized (lock) {
+      pendingCacheIds.addAll(cacheIds);
+      pendingTables.addAll(tables);
+      if (interval > 0) {
+        if (!flushScheduled) {
+          flushScheduled = true;
+          getScheduler().schedule(this::flush, interval, TimeUnit.MILLISECONDS);
+        }
+        return;
+      }
+    }
+    flush();
+  }
+
+  private ScheduledExecutorService getScheduler() {
+    if (scheduler == null) {
+      ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "InvalidationPublisher-" + nodeId);
+        thread.setDaemon(true);
+        return thread;
+      });
+      executor.setRemoveOnCancelPolicy(true);
+      scheduler = executor;
+    }
+    return scheduler;
+  }
+
+}
@@ -0,0 +1,67 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.util.function.Consumer;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * Applies the invalidations of the other nodes to the second level caches of this node.
+ *
+ * @since 3.5.2
+ */
+public class InvalidationReceiver implements Consumer<InvalidationEvent> {
+
+  private static final Log log = LogFactory.getLog(InvalidationReceiver.class);
+
+  private final Configuration configuration;
+  private final String nodeId;
+
+  /**
+   * @param configuration - holds the caches to invalidate
+   * @param nodeId - the id of this node, its own events are ignored
+   */
+  public InvalidationReceiver(Configuration configuration, String nodeId) {
+    this.configuration = configuration;
+    this.nodeId = nodeId;
+  }
+
+  @Override
+  public void accept(InvalidationEvent event) {
+    if (nodeId.equals(event.getOrigin())) {
+      return;
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("Received " + event);
+    }
+    for (String cacheId : event.getCacheIds()) {
+      // a node may not have loaded every mapper
+      if (configuration.hasCache(cacheId)) {
+        Cache cache = configuration.getCache(cacheId);
+        configuration.getTableDependencyIndex().clear(cache);
+        cache.clear();
+      }
+    }
+    if (!event.getTables().isEmpty()) {
+      configuration.getTableDependencyIndex().invalidate(event.getTables());
+    }
+  }
+
+}
@@ -0,0 +1,47 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries invalidation events between the nodes sharing a database.
+ * <p>
+ * An event sent by a node must be delivered to the receivers opened on the other nodes. Delivering it back to the
+ * sender is allowed, receivers ignore their own events.
+ *
+ * @since 3.5.2
+ */
+public interface InvalidationTransport {
+
+  /**
+   * Starts receiving the events of the other nodes.
+   *
+   * @param receiver - called for each event received
+   */
+  void open(Consumer<InvalidationEvent> receiver);
+
+  /**
+   * @param event - the event to deliver to the other nodes
+   */
+  void send(InvalidationEvent event);
+
+  /**
+   * Stops receiving events and releases the resources of the transport.
+   */
+  void close();
+
+}
@@ -0,0 +1,122 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * Delivers events to the transports opened on the same channel in this JVM, synchronously on the sending thread.
+ * Useful to run several session factories as nodes of a cluster in one process, for example in tests.
+ * <p>
+ * Every transport created with the default constructor joins the same channel, give each cluster its own channel when
+ * several of them run in the same JVM. A transport leaves its channel when it is closed, which
+ * {@link org.apache.ibatis.session.Configuration#setCacheInvalidationTransport} does when it is replaced, or when the
+ * configuration holding it is garbage collected.
+ *
+ * @since 3.5.2
+ */
+public class LoopbackTransport implements InvalidationTransport {
+
+  private static final Log log = LogFactory.getLog(LoopbackTransport.class);
+
+  // members are weakly held, so a configuration that is dropped without closing its transport does not stay reachable
+  private static final Map<String, Set<LoopbackTransport>> channels = new ConcurrentHashMap<>();
+
+  private final String channel;
+  private volatile Consumer<InvalidationEvent> receiver;
+
+  public LoopbackTransport() {
+    this("default");
+  }
+
+  /**
+   * @param channel - only the transports of the same channel receive each other's events
+   */
+  public LoopbackTransport(String channel) {
+    this.channel = channel;
+  }
+
+  @Override
+  public void open(Consumer<InvalidationEvent> receiver) {
+    this.receiver = receiver;
+    channels.compute(channel, (c, members) -> {
+      if (members == null) {
+        members = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+      }
+      members.add(this);
+      return members;
+    });
+  }
+
+  @Override
+  public void send(InvalidationEvent event) {
+    Set<LoopbackTransport> members = channels.get(channel);
+    if (members == null) {
+      return;
+    }
+    List<LoopbackTransport> recipients;
+    synchronized (members) {
+      recipients = new ArrayList<>(members);
+    }
+    if (recipients.isEmpty()) {
+      // every member was collected
+      removeIfEmpty();
+    }
+    for (LoopbackTransport member : recipients) {
+      if (member != this) {
+        member.deliver(event);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    receiver = null;
+    Set<LoopbackTransport> members = channels.get(channel);
+    if (members != null) {
+      members.remove(this);
+      removeIfEmpty();
+    }
+  }
+
+  private void removeIfEmpty() {
+    channels.computeIfPresent(channel, (c, members) -> members.isEmpty() ? null : members);
+  }
+
+  private void deliver(InvalidationEvent event) {
+    Consumer<InvalidationEvent> current = receiver;
+    if (current == null) {
+      return;
+    }
+    try {
+      current.accept(event);
+    } catch (RuntimeException e) {
+      // a failing node must not prevent the others from being invalidated
+      log.warn("Error while delivering " + event + " on channel " + channel + ". Cause: " + e);
+    }
+  }
+
+}
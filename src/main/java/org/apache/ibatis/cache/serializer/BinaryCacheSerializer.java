@@ -0,0 +1,476 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * Compact binary serializer for mapped result objects, selected with the {@code BINARY_SERIALIZER} alias.
+ * <p>
+ * The fields of every bean class are looked up once and cached, and a stream only carries the class name the first
+ * time a class is seen, then the field values in a fixed order, with primitives written raw. Shared and cyclic
+ * references between beans, collections and maps are preserved.
+ * <p>
+ * Beans need a no-args constructor. Classes that do not have one, JDK classes that are not handled natively and
+ * classes with custom serialization (which includes lazy loading proxies) are written with Java serialization.
+ *
+ * @since 3.5.2
+ */
+public class BinaryCacheSerializer implements CacheSerializer {
+
+  private static final byte NULL = 0;
+  private static final byte REFERENCE = 1;
+  private static final byte STRING = 2;
+  private static final byte INTEGER = 3;
+  private static final byte LONG = 4;
+  private static final byte DOUBLE = 5;
+  private static final byte FLOAT = 6;
+  private static final byte SHORT = 7;
+  private static final byte BYTE = 8;
+  private static final byte TRUE = 9;
+  private static final byte FALSE = 10;
+  private static final byte CHARACTER = 11;
+  private static final byte BIG_DECIMAL = 12;
+  private static final byte BIG_INTEGER = 13;
+  private static final byte DATE = 14;
+  private static final byte BYTES = 15;
+  private static final byte ENUM = 16;
+  private static final byte COLLECTION = 17;
+  private static final byte MAP = 18;
+  private static final byte ARRAY = 19;
+  private static final byte BEAN = 20;
+  private static final byte JAVA = 21;
+
+  private static final List<Class<?>> COLLECTION_TYPES = Arrays.asList(
+      ArrayList.class, LinkedList.class, HashSet.class, LinkedHashSet.class);
+  private static final List<Class<?>> MAP_TYPES = Arrays.asList(HashMap.class, LinkedHashMap.class);
+
+  private static final ClassValue<BeanDescriptor> descriptors = new ClassValue<BeanDescriptor>() {
+    @Override
+    protected BeanDescriptor computeValue(Class<?> type) {
+      return new BeanDescriptor(type);
+    }
+  };
+
+  private final JavaCacheSerializer javaSerializer = new JavaCacheSerializer();
+
+  @Override
+  public byte[] serialize(Object value) {
+    try {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      new Writer(new DataOutputStream(bos)).writeValue(value);
+      return bos.toByteArray();
+    } catch (Exception e) {
+      throw new CacheException("Error serializing object.  Cause: " + e, e);
+    }
+  }
+
+  @Override
+  public Object deserialize(byte[] bytes) {
+    try {
+      return new Reader(new DataInputStream(new ByteArrayInputStream(bytes))).readValue();
+    } catch (Exception e) {
+      throw new CacheException("Error deserializing object.  Cause: " + e, e);
+    }
+  }
+
+  private class Writer {
+    private final DataOutputStream out;
+    private final Map<Class<?>, Integer> classes = new HashMap<>();
+    private final Map<Object, Integer> references = new IdentityHashMap<>();
+
+    Writer(DataOutputStream out) {
+      this.out = out;
+    }
+
+    void writeValue(Object value) throws Exception {
+      if (value == null) {
+        out.writeByte(NULL);
+        return;
+      }
+      Class<?> type = value.getClass();
+      if (type == String.class) {
+        out.writeByte(STRING);
+        writeString((String) value);
+      } else if (type == Integer.class) {
+        out.writeByte(INTEGER);
+        out.writeInt((Integer) value);
+      } else if (type == Long.class) {
+        out.writeByte(LONG);
+        out.writeLong((Long) value);
+      } else if (type == Double.class) {
+        out.writeByte(DOUBLE);
+        out.writeDouble((Double) value);
+      } else if (type == Float.class) {
+        out.writeByte(FLOAT);
+        out.writeFloat((Float) value);
+      } else if (type == Short.class) {
+        out.writeByte(SHORT);
+        out.writeShort((Short) value);
+      } else if (type == Byte.class) {
+        out.writeByte(BYTE);
+        out.writeByte((Byte) value);
+      } else if (type == Boolean.class) {
+        out.writeByte((Boolean) value ? TRUE : FALSE);
+      } else if (type == Character.class) {
+        out.writeByte(CHARACTER);
+        out.writeChar((Character) value);
+      } else if (type == BigDecimal.class) {
+        out.writeByte(BIG_DECIMAL);
+        BigDecimal decimal = (BigDecimal) value;
+        out.writeInt(decimal.scale());
+        writeBytes(decimal.unscaledValue().toByteArray());
+      } else if (type == BigInteger.class) {
+        out.writeByte(BIG_INTEGER);
+        writeBytes(((BigInteger) value).toByteArray());
+      } else if (type == Date.class) {
+        out.writeByte(DATE);
+        out.writeLong(((Date) value).getTime());
+      } else if (type == byte[].class) {
+        out.writeByte(BYTES);
+        writeBytes((byte[]) value);
+      } else if (value instanceof Enum) {
+        out.writeByte(ENUM);
+        writeClass(((Enum<?>) value).getDeclaringClass());
+        writeString(((Enum<?>) value).name());
+      } else if (!writeReference(value)) {
+        writeObject(type, value);
+      }
+    }
+
+    private boolean writeReference(Object value) throws IOException {
+      Integer handle = references.get(value);
+      if (handle == null) {
+        references.put(value, references.size());
+        return false;
+      }
+      out.writeByte(REFERENCE);
+      writeInt(handle);
+      return true;
+    }
+
+    private void writeObject(Class<?> type, Object value) throws Exception {
+      if (COLLECTION_TYPES.contains(type)) {
+        out.writeByte(COLLECTION);
+        writeClass(type);
+        Collection<?> collection = (Collection<?>) value;
+        writeInt(collection.size());
+        for (Object element : collection) {
+          writeValue(element);
+        }
+      } else if (MAP_TYPES.contains(type)) {
+        out.writeByte(MAP);
+        writeClass(type);
+        Map<?, ?> map = (Map<?, ?>) value;
+        writeInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          writeValue(entry.getKey());
+          writeValue(entry.getValue());
+        }
+      } else if (type.isArray() && !type.getComponentType().isPrimitive()) {
+        out.writeByte(ARRAY);
+        writeClass(type.getComponentType());
+        int length = Array.getLength(value);
+        writeInt(length);
+        for (int i = 0; i < length; i++) {
+          writeValue(Array.get(value, i));
+        }
+      } else {
+        BeanDescriptor descriptor = descriptors.get(type);
+        if (descriptor.constructor == null) {
+          out.writeByte(JAVA);
+          writeBytes(javaSerializer.serialize(value));
+          return;
+        }
+        out.writeByte(BEAN);
+        writeClass(type);
+        for (Field field : descriptor.fields) {
+          Class<?> fieldType = field.getType();
+          if (fieldType == int.class) {
+            out.writeInt(field.getInt(value));
+          } else if (fieldType == long.class) {
+            out.writeLong(field.getLong(value));
+          } else if (fieldType == boolean.class) {
+            out.writeBoolean(field.getBoolean(value));
+          } else if (fieldType == double.class) {
+            out.writeDouble(field.getDouble(value));
+          } else if (fieldType == float.class) {
+            out.writeFloat(field.getFloat(value));
+          } else if (fieldType == short.class) {
+            out.writeShort(field.getShort(value));
+          } else if (fieldType == byte.class) {
+            out.writeByte(field.getByte(value));
+          } else if (fieldType == char.class) {
+            out.writeChar(field.getChar(value));
+          } else {
+            writeValue(field.get(value));
+          }
+        }
+      }
+    }
+
+    private void writeClass(Class<?> type) throws IOException {
+      Integer handle = classes.get(type);
+      if (handle == null) {
+        classes.put(type, classes.size());
+        writeInt(0);
+        writeString(type.getName());
+      } else {
+        writeInt(handle + 1);
+      }
+    }
+
+    private void writeString(String value) throws IOException {
+      writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+      writeInt(bytes.length);
+      out.write(bytes);
+    }
+
+    private void writeInt(int value) throws IOException {
+      // unsigned variable length, lengths and handles are small
+      while ((value & ~0x7f) != 0) {
+        out.writeByte((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      out.writeByte(value);
+    }
+  }
+
+  private class Reader {
+    private final DataInputStream in;
+    private final List<Class<?>> classes = new ArrayList<>();
+    private final List<Object> references = new ArrayList<>();
+
+    Reader(DataInputStream in) {
+      this.in = in;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    Object readValue() throws Exception {
+      byte tag = in.readByte();
+      switch (tag) {
+        case NULL:
+          return null;
+        case REFERENCE:
+          return references.get(readInt());
+        case STRING:
+          return readString();
+        case INTEGER:
+          return in.readInt();
+        case LONG:
+          return in.readLong();
+        case DOUBLE:
+          return in.readDouble();
+        case FLOAT:
+          return in.readFloat();
+        case SHORT:
+          return in.readShort();
+        case BYTE:
+          return in.readByte();
+        case TRUE:
+          return Boolean.TRUE;
+        case FALSE:
+          return Boolean.FALSE;
+        case CHARACTER:
+          return in.readChar();
+        case BIG_DECIMAL:
+          int scale = in.readInt();
+          return new BigDecimal(new BigInteger(readBytes()), scale);
+        case BIG_INTEGER:
+          return new BigInteger(readBytes());
+        case DATE:
+          return new Date(in.readLong());
+        case BYTES:
+          return readBytes();
+        case ENUM:
+          return Enum.valueOf((Class) readClass(), readString());
+        case COLLECTION:
+          Collection<Object> collection = (Collection<Object>) readClass().getDeclaredConstructor().newInstance();
+          references.add(collection);
+          for (int size = readInt(); size > 0; size--) {
+            collection.add(readValue());
+          }
+          return collection;
+        case MAP:
+          Map<Object, Object> map = (Map<Object, Object>) readClass().getDeclaredConstructor().newInstance();
+          references.add(map);
+          for (int size = readInt(); size > 0; size--) {
+            map.put(readValue(), readValue());
+          }
+          return map;
+        case ARRAY:
+          Class<?> componentType = readClass();
+          Object array = Array.newInstance(componentType, readInt());
+          references.add(array);
+          for (int i = 0; i < Array.getLength(array); i++) {
+            Array.set(array, i, readValue());
+          }
+          return array;
+        case BEAN:
+          return readBean(descriptors.get(readClass()));
+        case JAVA:
+          Object value = javaSerializer.deserialize(readBytes());
+          references.add(value);
+          return value;
+        default:
+          throw new CacheException("Unknown type tag " + tag + " in serialized cache entry.");
+      }
+    }
+
+    private Object readBean(BeanDescriptor descriptor) throws Exception {
+      Object bean = descriptor.constructor.newInstance();
+      references.add(bean);
+      for (Field field : descriptor.fields) {
+        Class<?> fieldType = field.getType();
+        if (fieldType == int.class) {
+          field.setInt(bean, in.readInt());
+        } else if (fieldType == long.class) {
+          field.setLong(bean, in.readLong());
+        } else if (fieldType == boolean.class) {
+          field.setBoolean(bean, in.readBoolean());
+        } else if (fieldType == double.class) {
+          field.setDouble(bean, in.readDouble());
+        } else if (fieldType == float.class) {
+          field.setFloat(bean, in.readFloat());
+        } else if (fieldType == short.class) {
+          field.setShort(bean, in.readShort());
+        } else if (fieldType == byte.class) {
+          field.setByte(bean, in.readByte());
+        } else if (fieldType == char.class) {
+          field.setChar(bean, in.readChar());
+        } else {
+          field.set(bean, readValue());
+        }
+      }
+      return bean;
+    }
+
+    private Class<?> readClass() throws IOException, ClassNotFoundException {
+      int handle = readInt();
+      if (handle == 0) {
+        Class<?> type = Resources.classForName(readString());
+        classes.add(type);
+        return type;
+      }
+      return classes.get(handle - 1);
+    }
+
+    private String readString() throws IOException {
+      return new String(readBytes(), StandardCharsets.UTF_8);
+    }
+
+    private byte[] readBytes() throws IOException {
+      byte[] bytes = new byte[readInt()];
+      in.readFully(bytes);
+      return bytes;
+    }
+
+    private int readInt() throws IOException {
+      int value = 0;
+      for (int shift = 0;; shift += 7) {
+        int b = in.readUnsignedByte();
+        value |= (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+    }
+  }
+
+  /**
+   * Fields of a bean class, in the order they are written. The constructor is null when the class has to be
+   * written with Java serialization.
+   */
+  private static class BeanDescriptor {
+    private final Constructor<?> constructor;
+    private final Field[] fields;
+
+    BeanDescriptor(Class<?> type) {
+      Constructor<?> noArgsConstructor = null;
+      List<Field> fieldList = new ArrayList<>();
+      if (!type.getName().startsWith("java.") && !Externalizable.class.isAssignableFrom(type)
+          && !hasSerializationMethods(type)) {
+        try {
+          noArgsConstructor = type.getDeclaredConstructor();
+          noArgsConstructor.setAccessible(true);
+          for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            Field[] declaredFields = current.getDeclaredFields();
+            Arrays.sort(declaredFields, Comparator.comparing(Field::getName));
+            for (Field field : declaredFields) {
+              if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers())) {
+                field.setAccessible(true);
+                fieldList.add(field);
+              }
+            }
+          }
+        } catch (Exception e) {
+          // no usable constructor or fields are not accessible, use Java serialization
+          noArgsConstructor = null;
+          fieldList.clear();
+        }
+      }
+      this.constructor = noArgsConstructor;
+      this.fields = fieldList.toArray(new Field[0]);
+    }
+
+    private static boolean hasSerializationMethods(Class<?> type) {
+      for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+        for (Method method : current.getDeclaredMethods()) {
+          String name = method.getName();
+          if ("writeReplace".equals(name) || "readResolve".equals(name)
+              || "writeObject".equals(name) || "readObject".equals(name)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+  }
+
+}
@@ -0,0 +1,199 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free holder of the idle connections used when {@link PooledDataSource#setPoolLockFree(boolean)} is enabled.
+ * <p>
+ * A borrowing thread first tries the connection it returned last (thread affinity), then the shared deque, and
+ * finally waits on a fair handoff queue. Ownership of an idle connection is decided by a CAS on its
+ * {@link PooledConnection#compareAndSetCheckoutState(int, int) checkout state}, so stale entries may briefly remain
+ * in the deque and are skipped by the next poller.
+ */
+class ConnectionBag {
+
+  private final ConcurrentLinkedDeque<PooledConnection> sharedList = new ConcurrentLinkedDeque<>();
+  private final ThreadLocal<PooledConnection> threadList = new ThreadLocal<>();
+  private final SynchronousQueue<PooledConnection> handoffQueue = new SynchronousQueue<>(true);
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicInteger waiters = new AtomicInteger();
+
+  /**
+   * Claims an idle connection without waiting.
+   *
+   * @return An idle connection, now in the {@link PooledConnection#STATE_IN_USE} state, or null if none is available
+   */
+  PooledConnection borrow() {
+    PooledConnection local = threadList.get();
+    if (local != null) {
+      threadList.remove();
+      if (claim(local)) {
+        removeFromSharedList(local);
+        return local;
+      }
+    }
+    PooledConnection conn;
+    while ((conn = sharedList.pollFirst()) != null) {
+      if (claim(conn)) {
+        return conn;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Claims an idle connection, waiting in arrival order for one to be returned.
+   *
+   * @param timeout - how long to wait
+   * @param unit - the unit of the timeout
+   * @return An idle connection, or null if the timeout elapsed first
+   * @throws InterruptedException if the waiting thread is interrupted
+   */
+  PooledConnection borrow(long timeout, TimeUnit unit) throws InterruptedException {
+    long remaining = unit.toNanos(timeout);
+    waiters.incrementAndGet();
+    try {
+      do {
+        // re-scan after registering as a waiter, a connection may have been returned in between
+        PooledConnection conn = borrow();
+        if (conn != null) {
+          return conn;
+        }
+        long start = System.nanoTime();
+        conn = handoffQueue.poll(remaining, TimeUnit.NANOSECONDS);
+        if (conn != null && claim(conn)) {
+          removeFromSharedList(conn);
+          return conn;
+        }
+        remaining -= System.nanoTime() - start;
+      } while (remaining > 10_000L);
+      return null;
+    } finally {
+      waiters.decrementAndGet();
+    }
+  }
+
+  /**
+   * Returns a connection to the bag, handing it directly to a waiting thread when there is one.
+   *
+   * @param conn - a connection in the {@link PooledConnection#STATE_IDLE} state
+   * @param maximumIdle - the idle limit, ignored while other threads are waiting
+   * @return True if the bag took the connection, false if the caller should close it
+   */
+  boolean requite(PooledConnection conn, int maximumIdle) {
+    for (;;) {
+      int current = size.get();
+      if (current >= maximumIdle && waiters.get() == 0) {
+        return false;
+      }
+      if (size.compareAndSet(current, current + 1)) {
+        break;
+      }
+    }
+    sharedList.addFirst(conn);
+    for (int i = 0; waiters.get() > 0; i++) {
+      if (conn.getCheckoutState() != PooledConnection.STATE_IDLE || handoffQueue.offer(conn)) {
+        return true;
+      }
+      if ((i & 0xff) == 0xff) {
+        LockSupport.parkNanos(10_000L);
+      } else {
+        Thread.yield();
+      }
+    }
+    threadList.set(conn);
+    return true;
+  }
+
+  /**
+   * Takes a specific idle connection out of the bag so that it can be validated or evicted.
+   *
+   * @param conn - a connection previously returned by {@link #values()}
+   * @return True if the connection was still idle and is now owned by the caller
+   */
+  boolean reserve(PooledConnection conn) {
+    if (claim(conn)) {
+      removeFromSharedList(conn);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return A snapshot of the connections that are currently idle
+   */
+  List<PooledConnection> values() {
+    List<PooledConnection> values = new ArrayList<>();
+    for (PooledConnection conn : sharedList) {
+      if (conn.getCheckoutState() == PooledConnection.STATE_IDLE) {
+        values.add(conn);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Claims and removes every idle connection, used when the pool is closed or reconfigured.
+   *
+   * @return The connections that were idle
+   */
+  List<PooledConnection> drain() {
+    List<PooledConnection> drained = new ArrayList<>();
+    PooledConnection conn;
+    while ((conn = sharedList.pollFirst()) != null) {
+      if (claim(conn)) {
+        drained.add(conn);
+      }
+    }
+    return drained;
+  }
+
+  int size() {
+    return size.get();
+  }
+
+  int getWaitingThreadCount() {
+    return waiters.get();
+  }
+
+  private boolean claim(PooledConnection conn) {
+    if (conn.compareAndSetCheckoutState(PooledConnection.STATE_IDLE, PooledConnection.STATE_IN_USE)) {
+      size.decrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  private void removeFromSharedList(PooledConnection conn) {
+    // PooledConnection.equals() compares the real connection, so remove by identity
+    for (Iterator<PooledConnection> iterator = sharedList.iterator(); iterator.hasNext();) {
+      if (iterator.next() == conn) {
+        iterator.remove();
+        return;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,83 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * Runs {@link PooledDataSource#runHousekeeping()} on a daemon thread so that idle validation, eviction,
+ * minimum idle pre-fill and leak detection stay off the borrowing threads.
+ * <p>
+ * Only a weak reference to the data source is kept, so an abandoned pool can still be collected and the
+ * thread stops itself on the next run.
+ */
+class PoolHousekeeper implements Runnable {
+
+  private static final Log log = LogFactory.getLog(PoolHousekeeper.class);
+  private static final AtomicInteger threadNumber = new AtomicInteger();
+
+  private final WeakReference<PooledDataSource> dataSource;
+  private final ScheduledExecutorService executor;
+
+  private PoolHousekeeper(PooledDataSource dataSource) {
+    this.dataSource = new WeakReference<>(dataSource);
+    this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+      Thread thread = new Thread(runnable, "PooledDataSource-housekeeper-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Starts housekeeping, the first run happens immediately so that the minimum idle connections are created.
+   *
+   * @param dataSource - the pool to maintain
+   * @param interval - the delay between two runs in milliseconds
+   * @return The started housekeeper
+   */
+  static PoolHousekeeper start(PooledDataSource dataSource, long interval) {
+    PoolHousekeeper housekeeper = new PoolHousekeeper(dataSource);
+    housekeeper.executor.scheduleWithFixedDelay(housekeeper, 0, interval, TimeUnit.MILLISECONDS);
+    return housekeeper;
+  }
+
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Override
+  public void run() {
+    PooledDataSource pool = dataSource.get();
+    if (pool == null) {
+      executor.shutdown();
+      return;
+    }
+    try {
+      pool.runHousekeeping();
+    } catch (Exception e) {
+      // never let an exception cancel the schedule
+      log.warn("Pool housekeeping failed: " + e.getMessage());
+    }
+  }
+
+}
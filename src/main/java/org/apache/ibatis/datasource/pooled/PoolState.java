@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2018 the original author or authors.
+ *    Copyright 2009-2019 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -17,6 +17,10 @@ package org.apache.ibatis.datasource.pooled;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @author Clinton Begin
@@ -27,63 +31,190 @@ public class PoolState {
 
   protected final List<PooledConnection> idleConnections = new ArrayList<>();
   protected final List<PooledConnection> activeConnections = new ArrayList<>();
+  // idle connections the maintenance thread took out of idleConnections to check them, counted as active
+  protected int housekeepingConnectionCount;
+  // used instead of the two lists above when the pool runs lock-free
+  protected final ConnectionBag idleConnectionBag = new ConnectionBag();
+  protected final Set<PooledConnection> concurrentActiveConnections = ConcurrentHashMap.newKeySet();
+  protected final AtomicInteger concurrentConnectionCount = new AtomicInteger();
+  // no longer read by the pool, use the getters: kept in step with the counters below for subclasses,
+  // they may lag behind them while connections are checked out concurrently
+  @Deprecated
   protected long requestCount = 0;
+  @Deprecated
   protected long accumulatedRequestTime = 0;
+  @Deprecated
   protected long accumulatedCheckoutTime = 0;
+  @Deprecated
   protected long claimedOverdueConnectionCount = 0;
+  @Deprecated
   protected long accumulatedCheckoutTimeOfOverdueConnections = 0;
+  @Deprecated
   protected long accumulatedWaitTime = 0;
+  @Deprecated
   protected long hadToWaitCount = 0;
+  @Deprecated
   protected long badConnectionCount = 0;
+  // the counters themselves, updated without holding the state lock
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder requestTime = new LongAdder();
+  private final LongAdder checkoutTime = new LongAdder();
+  private final LongAdder claimedOverdueConnections = new LongAdder();
+  private final LongAdder overdueCheckoutTime = new LongAdder();
+  private final LongAdder waitTime = new LongAdder();
+  private final LongAdder waits = new LongAdder();
+  private final LongAdder badConnections = new LongAdder();
+  private final LongAdder statementCacheHits = new LongAdder();
+  private final LongAdder statementCacheMisses = new LongAdder();
+  private final LongAdder statementCacheEvictions = new LongAdder();
 
   public PoolState(PooledDataSource dataSource) {
     this.dataSource = dataSource;
   }
 
-  public synchronized long getRequestCount() {
-    return requestCount;
+  @SuppressWarnings("deprecation")
+  void recordRequest(long time) {
+    requests.increment();
+    requestTime.add(time);
+    requestCount = requests.sum();
+    accumulatedRequestTime = requestTime.sum();
   }
 
-  public synchronized long getAverageRequestTime() {
-    return requestCount == 0 ? 0 : accumulatedRequestTime / requestCount;
+  @SuppressWarnings("deprecation")
+  void recordCheckout(long time) {
+    checkoutTime.add(time);
+    accumulatedCheckoutTime = checkoutTime.sum();
   }
 
-  public synchronized long getAverageWaitTime() {
-    return hadToWaitCount == 0 ? 0 : accumulatedWaitTime / hadToWaitCount;
+  @SuppressWarnings("deprecation")
+  void recordClaimedOverdueConnection(long time) {
+    claimedOverdueConnections.increment();
+    overdueCheckoutTime.add(time);
+    claimedOverdueConnectionCount = claimedOverdueConnections.sum();
+    accumulatedCheckoutTimeOfOverdueConnections = overdueCheckoutTime.sum();
+    recordCheckout(time);
+  }
+
+  @SuppressWarnings("deprecation")
+  void recordHadToWait() {
+    waits.increment();
+    hadToWaitCount = waits.sum();
+  }
+
+  @SuppressWarnings("deprecation")
+  void recordWait(long time) {
+    waitTime.add(time);
+    accumulatedWaitTime = waitTime.sum();
+  }
+
+  @SuppressWarnings("deprecation")
+  void recordBadConnection() {
+    badConnections.increment();
+    badConnectionCount = badConnections.sum();
+  }
+
+  void recordStatementCacheHit() {
+    statementCacheHits.increment();
+  }
+
+  void recordStatementCacheMiss() {
+    statementCacheMisses.increment();
+  }
+
+  void recordStatementCacheEviction() {
+    statementCacheEvictions.increment();
+  }
 
+  public long getRequestCount() {
+    return requests.sum();
   }
 
-  public synchronized long getHadToWaitCount() {
-    return hadToWaitCount;
+  public long getAverageRequestTime() {
+    long count = requests.sum();
+    return count == 0 ? 0 : requestTime.sum() / count;
   }
 
-  public synchronized long getBadConnectionCount() {
-    return badConnectionCount;
+  public long getAverageWaitTime() {
+    long count = waits.sum();
+    return count == 0 ? 0 : waitTime.sum() / count;
+
+  }
+
+  public long getHadToWaitCount() {
+    return waits.sum();
   }
 
-  public synchronized long getClaimedOverdueConnectionCount() {
-    return claimedOverdueConnectionCount;
+  public long getBadConnectionCount() {
+    return badConnections.sum();
   }
 
-  public synchronized long getAverageOverdueCheckoutTime() {
-    return claimedOverdueConnectionCount == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections / claimedOverdueConnectionCount;
+  public long getClaimedOverdueConnectionCount() {
+    return claimedOverdueConnections.sum();
   }
 
-  public synchronized long getAverageCheckoutTime() {
-    return requestCount == 0 ? 0 : accumulatedCheckoutTime / requestCount;
+  public long getAverageOverdueCheckoutTime() {
+    long count = claimedOverdueConnections.sum();
+    return count == 0 ? 0 : overdueCheckoutTime.sum() / count;
   }
 
+  public long getAverageCheckoutTime() {
+    long count = requests.sum();
+    return count == 0 ? 0 : checkoutTime.sum() / count;
+  }
+
+
+  public int getIdleConnectionCount() {
+    if (dataSource.isPoolLockFree()) {
+      return idleConnectionBag.size();
+    }
+    synchronized (this) {
+      return idleConnections.size();
+    }
+  }
+
+  public int getActiveConnectionCount() {
+    if (dataSource.isPoolLockFree()) {
+      // checked out connections are the ones that are open but not idle
+      return Math.max(0, concurrentConnectionCount.get() - idleConnectionBag.size());
+    }
+    synchronized (this) {
+      return activeConnections.size();
+    }
+  }
+
+  /**
+   * @return The number of prepareStatement calls served by a cached statement
+   * @since 3.5.2
+   */
+  public long getStatementCacheHitCount() {
+    return statementCacheHits.sum();
+  }
+
+  /**
+   * @return The number of prepareStatement calls that had to prepare a new statement
+   * @since 3.5.2
+   */
+  public long getStatementCacheMissCount() {
+    return statementCacheMisses.sum();
+  }
 
-  public synchronized int getIdleConnectionCount() {
-    return idleConnections.size();
+  /**
+   * @return The number of cached statements closed to stay within the cache size
+   * @since 3.5.2
+   */
+  public long getStatementCacheEvictionCount() {
+    return statementCacheEvictions.sum();
   }
 
-  public synchronized int getActiveConnectionCount() {
-    return activeConnections.size();
+  /**
+   * @return The number of threads currently waiting for a connection in the lock-free pool mode
+   */
+  public int getWaitingThreadCount() {
+    return idleConnectionBag.getWaitingThreadCount();
   }
 
   @Override
-  public synchronized String toString() {
+  public String toString() {
     StringBuilder builder = new StringBuilder();
     builder.append("\n===CONFINGURATION==============================================");
     builder.append("\n jdbcDriver                     ").append(dataSource.getDriver());
@@ -97,6 +228,13 @@ public class PoolState {
     builder.append("\n poolPingEnabled                ").append(dataSource.poolPingEnabled);
     builder.append("\n poolPingQuery                  ").append(dataSource.poolPingQuery);
     builder.append("\n poolPingConnectionsNotUsedFor  ").append(dataSource.poolPingConnectionsNotUsedFor);
+    builder.append("\n poolLockFree                   ").append(dataSource.poolLockFree);
+    builder.append("\n poolMaintenanceInterval        ").append(dataSource.poolMaintenanceInterval);
+    builder.append("\n poolMinimumIdleConnections     ").append(dataSource.poolMinimumIdleConnections);
+    builder.append("\n poolMaximumLifetime            ").append(dataSource.poolMaximumLifetime);
+    builder.append("\n poolIdleTimeout                ").append(dataSource.poolIdleTimeout);
+    builder.append("\n poolLeakDetectionThreshold     ").append(dataSource.poolLeakDetectionThreshold);
+    builder.append("\n poolPreparedStatementCacheSize ").append(dataSource.poolPreparedStatementCacheSize);
     builder.append("\n ---STATUS-----------------------------------------------------");
     builder.append("\n activeConnections              ").append(getActiveConnectionCount());
     builder.append("\n idleConnections                ").append(getIdleConnectionCount());
@@ -108,6 +246,9 @@ public class PoolState {
     builder.append("\n hadToWait                      ").append(getHadToWaitCount());
     builder.append("\n averageWaitTime                ").append(getAverageWaitTime());
     builder.append("\n badConnectionCount             ").append(getBadConnectionCount());
+    builder.append("\n statementCacheHits             ").append(getStatementCacheHitCount());
+    builder.append("\n statementCacheMisses           ").append(getStatementCacheMissCount());
+    builder.append("\n statementCacheEvictions        ").append(getStatementCacheEvictionCount());
     builder.append("\n===============================================================");
     return builder.toString();
   }
@@ -20,6 +20,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ibatis.reflection.ExceptionUtil;
 
@@ -29,17 +30,26 @@ import org.apache.ibatis.reflection.ExceptionUtil;
 class PooledConnection implements InvocationHandler {
 
   private static final String CLOSE = "close";
+  private static final String PREPARE_STATEMENT = "prepareStatement";
   private static final Class<?>[] IFACES = new Class<?>[] { Connection.class };
 
+  static final int STATE_IDLE = 0;
+  static final int STATE_IN_USE = 1;
+  static final int STATE_RELEASED = 2;
+
   private final int hashCode;
   private final PooledDataSource dataSource;
   private final Connection realConnection;
   private final Connection proxyConnection;
-  private long checkoutTimestamp;
+  private final PreparedStatementCache statementCache;
+  private final AtomicInteger checkoutState = new AtomicInteger(STATE_IDLE);
+  private volatile long checkoutTimestamp;
   private long createdTimestamp;
-  private long lastUsedTimestamp;
+  private volatile long lastUsedTimestamp;
+  private volatile long lastValidatedTimestamp;
+  private volatile Throwable checkoutStackTrace;
   private int connectionTypeCode;
-  private boolean valid;
+  private volatile boolean valid;
 
   /**
    * Constructor for SimplePooledConnection that uses the Connection and PooledDataSource passed in.
@@ -48,12 +58,24 @@ class PooledConnection implements InvocationHandler {
    * @param dataSource - the dataSource that the connection is from
    */
   public PooledConnection(Connection connection, PooledDataSource dataSource) {
+    this(connection, dataSource, dataSource.newStatementCache());
+  }
+
+  /**
+   * Constructor used when a physical connection is wrapped again and keeps the statements it already prepared.
+   *
+   * @param connection     - the connection that is to be presented as a pooled connection
+   * @param dataSource     - the dataSource that the connection is from
+   * @param statementCache - the prepared statements of the connection, or null if they are not cached
+   */
+  PooledConnection(Connection connection, PooledDataSource dataSource, PreparedStatementCache statementCache) {
     this.hashCode = connection.hashCode();
     this.realConnection = connection;
     this.dataSource = dataSource;
     this.createdTimestamp = System.currentTimeMillis();
     this.lastUsedTimestamp = System.currentTimeMillis();
     this.valid = true;
+    this.statementCache = statementCache;
     this.proxyConnection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), IFACES, this);
   }
 
@@ -73,6 +95,37 @@ class PooledConnection implements InvocationHandler {
     return valid && realConnection != null && dataSource.pingConnection(this);
   }
 
+  /**
+   * Getter for the checkout state used by the lock-free pool mode.
+   *
+   * @return One of {@link #STATE_IDLE}, {@link #STATE_IN_USE} or {@link #STATE_RELEASED}
+   */
+  int getCheckoutState() {
+    return checkoutState.get();
+  }
+
+  /**
+   * Setter for the checkout state, only safe while no other thread can see this connection.
+   *
+   * @param checkoutState - the new state
+   */
+  void setCheckoutState(int checkoutState) {
+    this.checkoutState.set(checkoutState);
+  }
+
+  /**
+   * Atomically moves this connection from one checkout state to another.
+   * Exactly one caller wins each transition, which is what lets the lock-free
+   * pool mode hand out, return and reclaim connections without a pool monitor.
+   *
+   * @param expect - the expected current state
+   * @param update - the new state
+   * @return True if the transition succeeded
+   */
+  boolean compareAndSetCheckoutState(int expect, int update) {
+    return checkoutState.compareAndSet(expect, update);
+  }
+
   /**
    * Getter for the *real* connection that this wraps.
    *
@@ -91,6 +144,15 @@ class PooledConnection implements InvocationHandler {
     return proxyConnection;
   }
 
+  /**
+   * Getter for the prepared statements cached for the real connection.
+   *
+   * @return The statement cache, or null if statements are not cached
+   */
+  PreparedStatementCache getStatementCache() {
+    return statementCache;
+  }
+
   /**
    * Gets the hashcode of the real connection (or 0 if it is null).
    *
@@ -154,6 +216,51 @@ class PooledConnection implements InvocationHandler {
     this.lastUsedTimestamp = lastUsedTimestamp;
   }
 
+  /**
+   * Getter for the time that the connection was last validated with the ping query.
+   *
+   * @return - the timestamp
+   */
+  public long getLastValidatedTimestamp() {
+    return lastValidatedTimestamp;
+  }
+
+  /**
+   * Setter for the time that the connection was last validated with the ping query.
+   *
+   * @param lastValidatedTimestamp - the timestamp
+   */
+  public void setLastValidatedTimestamp(long lastValidatedTimestamp) {
+    this.lastValidatedTimestamp = lastValidatedTimestamp;
+  }
+
+  /**
+   * Getter for the time since this connection was last used or validated, whichever is more recent.
+   *
+   * @return - the time since the last use or validation
+   */
+  public long getTimeElapsedSinceLastValidation() {
+    return System.currentTimeMillis() - Math.max(lastUsedTimestamp, lastValidatedTimestamp);
+  }
+
+  /**
+   * Getter for the stack trace captured when the connection was checked out, if leak detection is enabled.
+   *
+   * @return the stack trace, or null if none was captured or the leak was already reported
+   */
+  public Throwable getCheckoutStackTrace() {
+    return checkoutStackTrace;
+  }
+
+  /**
+   * Setter for the stack trace captured when the connection was checked out.
+   *
+   * @param checkoutStackTrace - the stack trace
+   */
+  public void setCheckoutStackTrace(Throwable checkoutStackTrace) {
+    this.checkoutStackTrace = checkoutStackTrace;
+  }
+
   /**
    * Getter for the time since this connection was last used.
    *
@@ -242,6 +349,9 @@ class PooledConnection implements InvocationHandler {
         // throw an SQLException instead of a Runtime
         checkConnection();
       }
+      if (statementCache != null && PREPARE_STATEMENT.equals(methodName)) {
+        return statementCache.prepareStatement(realConnection, proxyConnection, method, args);
+      }
       return method.invoke(realConnection, args);
     } catch (Throwable t) {
       throw ExceptionUtil.unwrapThrowable(t);
@@ -16,13 +16,19 @@
 package org.apache.ibatis.datasource.pooled;
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 
 import javax.sql.DataSource;
@@ -53,8 +59,17 @@ public class PooledDataSource implements DataSource {
   protected String poolPingQuery = "NO PING QUERY SET";
   protected boolean poolPingEnabled;
   protected int poolPingConnectionsNotUsedFor;
+  protected volatile boolean poolLockFree;
+  protected int poolMaintenanceInterval;
+  protected int poolMinimumIdleConnections;
+  protected int poolMaximumLifetime;
+  protected int poolIdleTimeout;
+  protected int poolLeakDetectionThreshold;
+  protected int poolPreparedStatementCacheSize;
 
-  private int expectedConnectionTypeCode;
+  private volatile PoolHousekeeper housekeeper;
+
+  private volatile int expectedConnectionTypeCode;
 
   public PooledDataSource() {
     dataSource = new UnpooledDataSource();
@@ -247,6 +262,93 @@ public class PooledDataSource implements DataSource {
     forceCloseAll();
   }
 
+  /**
+   * Determines if idle connections are kept in a lock-free structure instead of behind the {@link PoolState} monitor.
+   * Borrowers prefer the connection their thread returned last and wait in arrival order when the pool is exhausted.
+   *
+   * @param poolLockFree True to use the lock-free pool mode
+   * @since 3.5.2
+   */
+  public void setPoolLockFree(boolean poolLockFree) {
+    this.poolLockFree = poolLockFree;
+    forceCloseAll();
+  }
+
+  /**
+   * How often, in milliseconds, a background thread validates and evicts idle connections, tops up
+   * the minimum idle connections and looks for leaked connections. Zero (the default) disables it.
+   * The thread starts with the first connection request.
+   *
+   * @param poolMaintenanceInterval The delay between two maintenance runs
+   * @since 3.5.2
+   */
+  public void setPoolMaintenanceInterval(int poolMaintenanceInterval) {
+    this.poolMaintenanceInterval = poolMaintenanceInterval;
+    stopHousekeeper();
+    forceCloseAll();
+  }
+
+  /**
+   * The number of idle connections the maintenance thread keeps open, capped by the maximum idle
+   * and maximum active connections. Checked out connections count toward it, as they are idle again once returned.
+   *
+   * @param poolMinimumIdleConnections The minimum number of idle connections
+   * @since 3.5.2
+   */
+  public void setPoolMinimumIdleConnections(int poolMinimumIdleConnections) {
+    this.poolMinimumIdleConnections = poolMinimumIdleConnections;
+    forceCloseAll();
+  }
+
+  /**
+   * The maximum time in milliseconds a physical connection is kept open. Expired idle connections
+   * are evicted by the maintenance thread and expired active ones are closed when returned.
+   * Zero (the default) means no limit.
+   *
+   * @param poolMaximumLifetime The maximum lifetime
+   * @since 3.5.2
+   */
+  public void setPoolMaximumLifetime(int poolMaximumLifetime) {
+    this.poolMaximumLifetime = poolMaximumLifetime;
+    forceCloseAll();
+  }
+
+  /**
+   * The time in milliseconds after which the maintenance thread closes an unused idle connection,
+   * as long as more than the minimum idle connections remain. Zero (the default) disables it.
+   *
+   * @param poolIdleTimeout The idle timeout
+   * @since 3.5.2
+   */
+  public void setPoolIdleTimeout(int poolIdleTimeout) {
+    this.poolIdleTimeout = poolIdleTimeout;
+    forceCloseAll();
+  }
+
+  /**
+   * The time in milliseconds a connection can be checked out before the maintenance thread logs a
+   * possible leak together with the stack trace of the checkout. Zero (the default) disables it.
+   *
+   * @param poolLeakDetectionThreshold The leak detection threshold
+   * @since 3.5.2
+   */
+  public void setPoolLeakDetectionThreshold(int poolLeakDetectionThreshold) {
+    this.poolLeakDetectionThreshold = poolLeakDetectionThreshold;
+    forceCloseAll();
+  }
+
+  /**
+   * The number of prepared statements each physical connection keeps open after they are closed, so that preparing
+   * the same SQL again on that connection reuses them. Zero (the default) disables the cache.
+   *
+   * @param poolPreparedStatementCacheSize The maximum number of cached statements per connection
+   * @since 3.5.2
+   */
+  public void setPoolPreparedStatementCacheSize(int poolPreparedStatementCacheSize) {
+    this.poolPreparedStatementCacheSize = poolPreparedStatementCacheSize;
+    forceCloseAll();
+  }
+
   public String getDriver() {
     return dataSource.getDriver();
   }
@@ -314,6 +416,55 @@ public class PooledDataSource implements DataSource {
     return poolPingConnectionsNotUsedFor;
   }
 
+  /**
+   * @since 3.5.2
+   */
+  public boolean isPoolLockFree() {
+    return poolLockFree;
+  }
+
+  /**
+   * @since 3.5.2
+   */
+  public int getPoolMaintenanceInterval() {
+    return poolMaintenanceInterval;
+  }
+
+  /**
+   * @since 3.5.2
+   */
+  public int getPoolMinimumIdleConnections() {
+    return poolMinimumIdleConnections;
+  }
+
+  /**
+   * @since 3.5.2
+   */
+  public int getPoolMaximumLifetime() {
+    return poolMaximumLifetime;
+  }
+
+  /**
+   * @since 3.5.2
+   */
+  public int getPoolIdleTimeout() {
+    return poolIdleTimeout;
+  }
+
+  /**
+   * @since 3.5.2
+   */
+  public int getPoolLeakDetectionThreshold() {
+    return poolLeakDetectionThreshold;
+  }
+
+  /**
+   * @since 3.5.2
+   */
+  public int getPoolPreparedStatementCacheSize() {
+    return poolPreparedStatementCacheSize;
+  }
+
   /**
    * Closes all active and idle connections in the pool.
    */
@@ -349,6 +500,17 @@ public class PooledDataSource implements DataSource {
         }
       }
     }
+    for (PooledConnection conn : state.concurrentActiveConnections) {
+      if (conn.compareAndSetCheckoutState(PooledConnection.STATE_IN_USE, PooledConnection.STATE_RELEASED)) {
+        state.concurrentActiveConnections.remove(conn);
+        state.concurrentConnectionCount.decrementAndGet();
+        closeQuietly(conn);
+      }
+    }
+    for (PooledConnection conn : state.idleConnectionBag.drain()) {
+      state.concurrentConnectionCount.decrementAndGet();
+      closeQuietly(conn);
+    }
     if (log.isDebugEnabled()) {
       log.debug("PooledDataSource forcefully closed/removed all connections.");
     }
@@ -362,27 +524,58 @@ public class PooledDataSource implements DataSource {
     return ("" + url + username + password).hashCode();
   }
 
+  PreparedStatementCache newStatementCache() {
+    return poolPreparedStatementCacheSize > 0 ? new PreparedStatementCache(poolPreparedStatementCacheSize, state) : null;
+  }
+
+  private void closeStatementCache(PooledConnection conn) {
+    // the claimed connection starts over, statements its previous owner still holds are closed when released
+    if (conn.getStatementCache() != null) {
+      conn.getStatementCache().close();
+    }
+  }
+
+  private void closeQuietly(PooledConnection conn) {
+    try {
+      conn.invalidate();
+
+      Connection realConn = conn.getRealConnection();
+      if (!realConn.getAutoCommit()) {
+        realConn.rollback();
+      }
+      realConn.close();
+    } catch (Exception e) {
+      // ignore
+    }
+  }
+
   protected void pushConnection(PooledConnection conn) throws SQLException {
+    if (poolLockFree) {
+      pushConnectionLockFree(conn);
+      return;
+    }
 
     synchronized (state) {
       state.activeConnections.remove(conn);
       if (conn.isValid()) {
-        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
-          state.accumulatedCheckoutTime += conn.getCheckoutTime();
+        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode
+            && !isExpired(conn)) {
+          state.recordCheckout(conn.getCheckoutTime());
           if (!conn.getRealConnection().getAutoCommit()) {
             conn.getRealConnection().rollback();
           }
-          PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
+          PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this, conn.getStatementCache());
           state.idleConnections.add(newConn);
           newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
           newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
+          newConn.setLastValidatedTimestamp(conn.getLastValidatedTimestamp());
           conn.invalidate();
           if (log.isDebugEnabled()) {
             log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
           }
           state.notifyAll();
         } else {
-          state.accumulatedCheckoutTime += conn.getCheckoutTime();
+          state.recordCheckout(conn.getCheckoutTime());
           if (!conn.getRealConnection().getAutoCommit()) {
             conn.getRealConnection().rollback();
           }
@@ -396,12 +589,61 @@ public class PooledDataSource implements DataSource {
         if (log.isDebugEnabled()) {
           log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
         }
-        state.badConnectionCount++;
+        state.recordBadConnection();
       }
     }
   }
 
+  private void pushConnectionLockFree(PooledConnection conn) throws SQLException {
+    if (!conn.compareAndSetCheckoutState(PooledConnection.STATE_IN_USE, PooledConnection.STATE_RELEASED)) {
+      // already claimed as overdue, closed by forceCloseAll() or closed twice
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      state.recordBadConnection();
+      return;
+    }
+    state.concurrentActiveConnections.remove(conn);
+    if (conn.isValid()) {
+      state.recordCheckout(conn.getCheckoutTime());
+      if (!conn.getRealConnection().getAutoCommit()) {
+        conn.getRealConnection().rollback();
+      }
+      if (conn.getConnectionTypeCode() == expectedConnectionTypeCode && !isExpired(conn)) {
+        PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this, conn.getStatementCache());
+        newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
+        newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
+        newConn.setLastValidatedTimestamp(conn.getLastValidatedTimestamp());
+        conn.invalidate();
+        if (state.idleConnectionBag.requite(newConn, poolMaximumIdleConnections)) {
+          if (log.isDebugEnabled()) {
+            log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
+          }
+          return;
+        }
+      }
+      state.concurrentConnectionCount.decrementAndGet();
+      conn.getRealConnection().close();
+      if (log.isDebugEnabled()) {
+        log.debug("Closed connection " + conn.getRealHashCode() + ".");
+      }
+      conn.invalidate();
+    } else {
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      state.concurrentConnectionCount.decrementAndGet();
+      state.recordBadConnection();
+    }
+  }
+
   private PooledConnection popConnection(String username, String password) throws SQLException {
+    if (poolMaintenanceInterval > 0 && housekeeper == null) {
+      startHousekeeper();
+    }
+    if (poolLockFree) {
+      return popConnectionLockFree(username, password);
+    }
     boolean countedWait = false;
     PooledConnection conn = null;
     long t = System.currentTimeMillis();
@@ -417,7 +659,7 @@ public class PooledDataSource implements DataSource {
           }
         } else {
           // Pool does not have available connection
-          if (state.activeConnections.size() < poolMaximumActiveConnections) {
+          if (state.activeConnections.size() + state.housekeepingConnectionCount < poolMaximumActiveConnections) {
             // Can create new connection
             conn = new PooledConnection(dataSource.getConnection(), this);
             if (log.isDebugEnabled()) {
@@ -429,9 +671,7 @@ public class PooledDataSource implements DataSource {
             long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
             if (longestCheckoutTime > poolMaximumCheckoutTime) {
               // Can claim overdue connection
-              state.claimedOverdueConnectionCount++;
-              state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
-              state.accumulatedCheckoutTime += longestCheckoutTime;
+              state.recordClaimedOverdueConnection(longestCheckoutTime);
               state.activeConnections.remove(oldestActiveConnection);
               if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
                 try {
@@ -448,6 +688,7 @@ public class PooledDataSource implements DataSource {
                   log.debug("Bad connection. Could not roll back");
                 }
               }
+              closeStatementCache(oldestActiveConnection);
               conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
               conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
               conn.setLastUsedTimestamp(oldestActiveConnection.getLastUsedTimestamp());
@@ -459,7 +700,7 @@ public class PooledDataSource implements DataSource {
               // Must wait
               try {
                 if (!countedWait) {
-                  state.hadToWaitCount++;
+                  state.recordHadToWait();
                   countedWait = true;
                 }
                 if (log.isDebugEnabled()) {
@@ -467,7 +708,7 @@ public class PooledDataSource implements DataSource {
                 }
                 long wt = System.currentTimeMillis();
                 state.wait(poolTimeToWait);
-                state.accumulatedWaitTime += System.currentTimeMillis() - wt;
+                state.recordWait(System.currentTimeMillis() - wt);
               } catch (InterruptedException e) {
                 break;
               }
@@ -483,14 +724,14 @@ public class PooledDataSource implements DataSource {
             conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
             conn.setCheckoutTimestamp(System.currentTimeMillis());
             conn.setLastUsedTimestamp(System.currentTimeMillis());
+            captureCheckoutStackTrace(conn);
             state.activeConnections.add(conn);
-            state.requestCount++;
-            state.accumulatedRequestTime += System.currentTimeMillis() - t;
+            state.recordRequest(System.currentTimeMillis() - t);
           } else {
             if (log.isDebugEnabled()) {
               log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
             }
-            state.badConnectionCount++;
+            state.recordBadConnection();
             localBadConnectionCount++;
             conn = null;
             if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
@@ -515,6 +756,370 @@ public class PooledDataSource implements DataSource {
     return conn;
   }
 
+  private PooledConnection popConnectionLockFree(String username, String password) throws SQLException {
+    boolean countedWait = false;
+    PooledConnection conn = null;
+    long t = System.currentTimeMillis();
+    int localBadConnectionCount = 0;
+
+    while (conn == null) {
+      conn = state.idleConnectionBag.borrow();
+      if (conn != null) {
+        // Pool has available connection
+        if (log.isDebugEnabled()) {
+          log.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
+        }
+      } else if (reserveNewConnection()) {
+        // Can create new connection
+        try {
+          conn = new PooledConnection(dataSource.getConnection(), this);
+        } catch (SQLException e) {
+          state.concurrentConnectionCount.decrementAndGet();
+          throw e;
+        }
+        conn.setCheckoutState(PooledConnection.STATE_IN_USE);
+        if (log.isDebugEnabled()) {
+          log.debug("Created connection " + conn.getRealHashCode() + ".");
+        }
+      } else {
+        // Cannot create new connection
+        conn = claimOverdueConnection();
+        if (conn == null) {
+          // Must wait
+          if (!countedWait) {
+            state.recordHadToWait();
+            countedWait = true;
+          }
+          if (log.isDebugEnabled()) {
+            log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
+          }
+          long wt = System.currentTimeMillis();
+          try {
+            conn = state.idleConnectionBag.borrow(poolTimeToWait, TimeUnit.MILLISECONDS);
+          } catch (InterruptedException e) {
+            break;
+          } finally {
+            state.recordWait(System.currentTimeMillis() - wt);
+          }
+        }
+      }
+      if (conn != null) {
+        // ping to server and check the connection is valid or not
+        if (conn.isValid() && rollbackQuietly(conn)) {
+          conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+          conn.setCheckoutTimestamp(System.currentTimeMillis());
+          conn.setLastUsedTimestamp(System.currentTimeMillis());
+          captureCheckoutStackTrace(conn);
+          state.concurrentActiveConnections.add(conn);
+          state.recordRequest(System.currentTimeMillis() - t);
+        } else {
+          if (log.isDebugEnabled()) {
+            log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+          }
+          conn.setCheckoutState(PooledConnection.STATE_RELEASED);
+          state.concurrentConnectionCount.decrementAndGet();
+          state.recordBadConnection();
+          localBadConnectionCount++;
+          conn = null;
+          if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
+            if (log.isDebugEnabled()) {
+              log.debug("PooledDataSource: Could not get a good connection to the database.");
+            }
+            throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
+          }
+        }
+      }
+    }
+
+    if (conn == null) {
+      if (log.isDebugEnabled()) {
+        log.debug("PooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
+      }
+      throw new SQLException("PooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
+    }
+
+    return conn;
+  }
+
+  /**
+   * Rolls back a connection that is about to be handed out.
+   * The connection is already counted, so a failure must not escape before the caller gives its slot back.
+   */
+  private boolean rollbackQuietly(PooledConnection conn) {
+    try {
+      if (!conn.getRealConnection().getAutoCommit()) {
+        conn.getRealConnection().rollback();
+      }
+      return true;
+    } catch (SQLException e) {
+      log.debug("Bad connection. Could not roll back");
+      conn.invalidate();
+      try {
+        conn.getRealConnection().close();
+      } catch (SQLException ignore) {
+        // the connection is dropped anyway
+      }
+      return false;
+    }
+  }
+
+  private boolean reserveNewConnection() {
+    for (;;) {
+      // idle connections are part of the count, but new ones are only created once the idle bag is empty
+      int total = state.concurrentConnectionCount.get();
+      if (total >= poolMaximumActiveConnections) {
+        return false;
+      }
+      if (state.concurrentConnectionCount.compareAndSet(total, total + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Reclaims the connection that has been checked out the longest if it is overdue.
+   * The real connection moves to the returned wrapper, so the connection count is left unchanged.
+   */
+  private PooledConnection claimOverdueConnection() {
+    PooledConnection oldestActiveConnection = null;
+    for (PooledConnection candidate : state.concurrentActiveConnections) {
+      if (oldestActiveConnection == null || candidate.getCheckoutTimestamp() < oldestActiveConnection.getCheckoutTimestamp()) {
+        oldestActiveConnection = candidate;
+      }
+    }
+    if (oldestActiveConnection == null) {
+      return null;
+    }
+    long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
+    if (longestCheckoutTime <= poolMaximumCheckoutTime
+        || !oldestActiveConnection.compareAndSetCheckoutState(PooledConnection.STATE_IN_USE, PooledConnection.STATE_RELEASED)) {
+      return null;
+    }
+    // Can claim overdue connection
+    state.concurrentActiveConnections.remove(oldestActiveConnection);
+    state.recordClaimedOverdueConnection(longestCheckoutTime);
+    try {
+      if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
+        oldestActiveConnection.getRealConnection().rollback();
+      }
+    } catch (SQLException e) {
+      // same as the synchronized mode, let the validity check below decide
+      log.debug("Bad connection. Could not roll back");
+    }
+    closeStatementCache(oldestActiveConnection);
+    PooledConnection conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
+    conn.setCheckoutState(PooledConnection.STATE_IN_USE);
+    conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
+    conn.setLastUsedTimestamp(oldestActiveConnection.getLastUsedTimestamp());
+    oldestActiveConnection.invalidate();
+    if (log.isDebugEnabled()) {
+      log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+    }
+    return conn;
+  }
+
+  private synchronized void startHousekeeper() {
+    if (housekeeper == null) {
+      housekeeper = PoolHousekeeper.start(this, poolMaintenanceInterval);
+    }
+  }
+
+  private synchronized void stopHousekeeper() {
+    if (housekeeper != null) {
+      housekeeper.shutdown();
+      housekeeper = null;
+    }
+  }
+
+  private boolean isExpired(PooledConnection conn) {
+    return poolMaximumLifetime > 0 && conn.getAge() > poolMaximumLifetime;
+  }
+
+  private void captureCheckoutStackTrace(PooledConnection conn) {
+    if (poolLeakDetectionThreshold > 0) {
+      conn.setCheckoutStackTrace(new Throwable("Connection " + conn.getRealHashCode() + " was checked out here"));
+    }
+  }
+
+  /**
+   * One maintenance pass, called periodically by the {@link PoolHousekeeper} thread.
+   * Idle connections are taken out of the pool while they are checked, so borrowers never wait on a ping.
+   */
+  void runHousekeeping() {
+    // evict expired and timed out idle connections
+    int[] evictable = { state.getIdleConnectionCount() - poolMinimumIdleConnections };
+    List<PooledConnection> evicted = takeIdleConnections(conn -> {
+      if (isExpired(conn)) {
+        return true;
+      }
+      if (poolIdleTimeout > 0 && evictable[0] > 0 && conn.getTimeElapsedSinceLastUse() > poolIdleTimeout) {
+        evictable[0]--;
+        return true;
+      }
+      return false;
+    });
+    for (PooledConnection conn : evicted) {
+      if (log.isDebugEnabled()) {
+        log.debug("Evicted idle connection " + conn.getRealHashCode() + ".");
+      }
+      releaseTakenConnection();
+      discardIdleConnection(conn);
+    }
+
+    // validate idle connections that have not been used or pinged for a while
+    if (poolPingEnabled && poolPingConnectionsNotUsedFor >= 0) {
+      List<PooledConnection> candidates = takeIdleConnections(
+          conn -> conn.getTimeElapsedSinceLastValidation() > poolPingConnectionsNotUsedFor);
+      for (PooledConnection conn : candidates) {
+        if (pingConnection(conn)) {
+          returnIdleConnection(conn);
+        } else {
+          state.recordBadConnection();
+          releaseTakenConnection();
+          discardIdleConnection(conn);
+        }
+      }
+    }
+
+    // pre-fill the minimum idle connections, checked out connections count as they come back idle
+    int minimumIdle = Math.min(poolMinimumIdleConnections, poolMaximumIdleConnections);
+    while (state.getIdleConnectionCount() + state.getActiveConnectionCount() < minimumIdle && addIdleConnection(minimumIdle)) {
+      // keep filling
+    }
+
+    // report connections that were checked out for too long
+    if (poolLeakDetectionThreshold > 0) {
+      List<PooledConnection> active;
+      if (poolLockFree) {
+        active = new ArrayList<>(state.concurrentActiveConnections);
+      } else {
+        synchronized (state) {
+          active = new ArrayList<>(state.activeConnections);
+        }
+      }
+      for (PooledConnection conn : active) {
+        Throwable checkoutStackTrace = conn.getCheckoutStackTrace();
+        if (checkoutStackTrace != null && conn.getCheckoutTime() > poolLeakDetectionThreshold) {
+          // report each checkout only once
+          conn.setCheckoutStackTrace(null);
+          StringWriter stackTrace = new StringWriter();
+          checkoutStackTrace.printStackTrace(new PrintWriter(stackTrace));
+          log.warn("Connection leak detection triggered for connection " + conn.getRealHashCode() + ", checked out for "
+              + conn.getCheckoutTime() + " milliseconds: " + stackTrace);
+        }
+      }
+    }
+  }
+
+  private List<PooledConnection> takeIdleConnections(Predicate<PooledConnection> filter) {
+    List<PooledConnection> taken = new ArrayList<>();
+    if (poolLockFree) {
+      for (PooledConnection conn : state.idleConnectionBag.values()) {
+        if (filter.test(conn) && state.idleConnectionBag.reserve(conn)) {
+          taken.add(conn);
+        }
+      }
+    } else {
+      synchronized (state) {
+        for (Iterator<PooledConnection> iterator = state.idleConnections.iterator(); iterator.hasNext();) {
+          PooledConnection conn = iterator.next();
+          if (filter.test(conn)) {
+            iterator.remove();
+            taken.add(conn);
+          }
+        }
+        // still open, so they count against the maximum active connections until they are back
+        state.housekeepingConnectionCount += taken.size();
+      }
+    }
+    return taken;
+  }
+
+  private void returnIdleConnection(PooledConnection conn) {
+    final boolean expectedType = conn.getConnectionTypeCode() == expectedConnectionTypeCode;
+    if (poolLockFree) {
+      if (expectedType) {
+        conn.setCheckoutState(PooledConnection.STATE_IDLE);
+        if (state.idleConnectionBag.requite(conn, poolMaximumIdleConnections)) {
+          return;
+        }
+      }
+    } else {
+      synchronized (state) {
+        state.housekeepingConnectionCount--;
+        if (expectedType && state.idleConnections.size() < poolMaximumIdleConnections) {
+          state.idleConnections.add(conn);
+          state.notifyAll();
+          return;
+        }
+        state.notifyAll();
+      }
+    }
+    discardIdleConnection(conn);
+  }
+
+  private void releaseTakenConnection() {
+    if (!poolLockFree) {
+      synchronized (state) {
+        state.housekeepingConnectionCount--;
+        // a waiting borrower may now open a new connection
+        state.notifyAll();
+      }
+    }
+  }
+
+  private void discardIdleConnection(PooledConnection conn) {
+    if (poolLockFree) {
+      conn.setCheckoutState(PooledConnection.STATE_RELEASED);
+      state.concurrentConnectionCount.decrementAndGet();
+    }
+    closeQuietly(conn);
+  }
+
+  private boolean addIdleConnection(int minimumIdle) {
+    if (poolLockFree) {
+      if (!reserveNewConnection()) {
+        return false;
+      }
+    } else {
+      synchronized (state) {
+        if (state.activeConnections.size() + state.idleConnections.size() + state.housekeepingConnectionCount >= poolMaximumActiveConnections) {
+          return false;
+        }
+      }
+    }
+    PooledConnection conn;
+    try {
+      conn = new PooledConnection(dataSource.getConnection(), this);
+    } catch (SQLException e) {
+      if (poolLockFree) {
+        state.concurrentConnectionCount.decrementAndGet();
+      }
+      log.warn("Could not pre-fill the minimum idle connections: " + e.getMessage());
+      return false;
+    }
+    conn.setConnectionTypeCode(expectedConnectionTypeCode);
+    if (log.isDebugEnabled()) {
+      log.debug("Created idle connection " + conn.getRealHashCode() + ".");
+    }
+    if (poolLockFree) {
+      if (state.idleConnectionBag.requite(conn, minimumIdle)) {
+        return true;
+      }
+    } else {
+      synchronized (state) {
+        int openConnections = state.activeConnections.size() + state.idleConnections.size() + state.housekeepingConnectionCount;
+        if (state.activeConnections.size() + state.idleConnections.size() < minimumIdle && openConnections < poolMaximumActiveConnections) {
+          state.idleConnections.add(conn);
+          state.notifyAll();
+          return true;
+        }
+      }
+    }
+    discardIdleConnection(conn);
+    return false;
+  }
+
   /**
    * Method to check to see if a connection is still usable
    *
@@ -535,7 +1140,7 @@ public class PooledDataSource implements DataSource {
 
     if (result) {
       if (poolPingEnabled) {
-        if (poolPingConnectionsNotUsedFor >= 0 && conn.getTimeElapsedSinceLastUse() > poolPingConnectionsNotUsedFor) {
+        if (poolPingConnectionsNotUsedFor >= 0 && conn.getTimeElapsedSinceLastValidation() > poolPingConnectionsNotUsedFor) {
           try {
             if (log.isDebugEnabled()) {
               log.debug("Testing connection " + conn.getRealHashCode() + " ...");
@@ -548,6 +1153,7 @@ public class PooledDataSource implements DataSource {
               realConn.rollback();
             }
             result = true;
+            conn.setLastValidatedTimestamp(System.currentTimeMillis());
             if (log.isDebugEnabled()) {
               log.debug("Connection " + conn.getRealHashCode() + " is GOOD!");
             }
@@ -586,6 +1192,7 @@ public class PooledDataSource implements DataSource {
   }
 
   protected void finalize() throws Throwable {
+    stopHousekeeper();
     forceCloseAll();
     super.finalize();
   }
@@ -0,0 +1,264 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * Prepared statements of one physical connection that are kept open between checkouts.
+ * <p>
+ * Statements are keyed by the arguments of the {@code prepareStatement} call, that is the SQL plus the result set
+ * type, concurrency, holdability or generated keys request. Callers get a logical statement whose {@code close()}
+ * resets the physical statement and puts it back here. A statement is handed out to one caller at a time, so two
+ * logical statements open for the same SQL use two physical statements. The least recently used idle statement is
+ * closed once more than {@code maxSize} are idle.
+ */
+class PreparedStatementCache {
+
+  private static final Log log = LogFactory.getLog(PreparedStatementCache.class);
+
+  private static final String CLOSE = "close";
+  private static final String IS_CLOSED = "isClosed";
+  private static final String GET_CONNECTION = "getConnection";
+  private static final String CLOSE_ON_COMPLETION = "closeOnCompletion";
+  private static final Class<?>[] IFACES = new Class<?>[] { PreparedStatement.class };
+
+  private final int maxSize;
+  private final PoolState state;
+  private final Map<StatementKey, CachedStatement> idleStatements = new LinkedHashMap<>(16, 0.75f, true);
+  private boolean closed;
+
+  /**
+   * @param maxSize - the maximum number of idle statements kept open
+   * @param state   - the pool state that records hits, misses and evictions
+   */
+  PreparedStatementCache(int maxSize, PoolState state) {
+    this.maxSize = maxSize;
+    this.state = state;
+  }
+
+  /**
+   * Returns a logical statement for a {@code prepareStatement} call on the proxy connection.
+   *
+   * @param realConnection  - the physical connection
+   * @param proxyConnection - the connection returned by {@link java.sql.Statement#getConnection()}
+   * @param method          - the {@code prepareStatement} overload that was called
+   * @param args            - the arguments of the call
+   * @return The logical statement
+   */
+  PreparedStatement prepareStatement(Connection realConnection, Connection proxyConnection, Method method, Object[] args)
+      throws Throwable {
+    StatementKey key = new StatementKey(args);
+    CachedStatement statement;
+    synchronized (this) {
+      statement = idleStatements.remove(key);
+    }
+    if (statement != null) {
+      state.recordStatementCacheHit();
+    } else {
+      state.recordStatementCacheMiss();
+      try {
+        statement = new CachedStatement(key, (PreparedStatement) method.invoke(realConnection, args));
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+    }
+    return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), IFACES,
+        new LogicalStatement(statement, proxyConnection));
+  }
+
+  /**
+   * Closes the idle statements. Statements still checked out are closed instead of being cached when they are
+   * released.
+   */
+  void close() {
+    List<CachedStatement> statements;
+    synchronized (this) {
+      closed = true;
+      statements = new ArrayList<>(idleStatements.values());
+      idleStatements.clear();
+    }
+    for (CachedStatement statement : statements) {
+      statement.closeQuietly();
+    }
+  }
+
+  synchronized int size() {
+    return idleStatements.size();
+  }
+
+  private void release(CachedStatement statement, boolean cacheable) {
+    List<CachedStatement> evicted = new ArrayList<>();
+    if (cacheable && statement.reset()) {
+      synchronized (this) {
+        if (closed || idleStatements.containsKey(statement.key)) {
+          evicted.add(statement);
+        } else {
+          idleStatements.put(statement.key, statement);
+          Iterator<CachedStatement> iterator = idleStatements.values().iterator();
+          while (idleStatements.size() > maxSize && iterator.hasNext()) {
+            evicted.add(iterator.next());
+            iterator.remove();
+            state.recordStatementCacheEviction();
+          }
+        }
+      }
+    } else {
+      evicted.add(statement);
+    }
+    for (CachedStatement each : evicted) {
+      each.closeQuietly();
+    }
+  }
+
+  private static class StatementKey {
+
+    private final Object[] args;
+    private final int hashCode;
+
+    StatementKey(Object[] args) {
+      this.args = args.clone();
+      this.hashCode = Arrays.deepHashCode(this.args);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof StatementKey && Arrays.deepEquals(args, ((StatementKey) obj).args);
+    }
+  }
+
+  private static class CachedStatement {
+
+    private final StatementKey key;
+    private final PreparedStatement statement;
+    // settings the driver gave the statement, restored on release because they outlive a checkout
+    private final int queryTimeout;
+    private final int fetchSize;
+    private final int maxRows;
+    private final int maxFieldSize;
+
+    CachedStatement(StatementKey key, PreparedStatement statement) throws SQLException {
+      this.key = key;
+      this.statement = statement;
+      this.queryTimeout = statement.getQueryTimeout();
+      this.fetchSize = statement.getFetchSize();
+      this.maxRows = statement.getMaxRows();
+      this.maxFieldSize = statement.getMaxFieldSize();
+    }
+
+    boolean reset() {
+      try {
+        if (statement.isClosed()) {
+          return false;
+        }
+        ResultSet rs = statement.getResultSet();
+        if (rs != null) {
+          rs.close();
+        }
+        statement.clearParameters();
+        statement.clearBatch();
+        statement.clearWarnings();
+        statement.setQueryTimeout(queryTimeout);
+        statement.setFetchSize(fetchSize);
+        statement.setMaxRows(maxRows);
+        statement.setMaxFieldSize(maxFieldSize);
+        return true;
+      } catch (SQLException e) {
+        log.debug("Could not reset cached statement, closing it. Cause: " + e);
+        return false;
+      }
+    }
+
+    void closeQuietly() {
+      try {
+        statement.close();
+      } catch (SQLException e) {
+        // ignore
+      }
+    }
+  }
+
+  private class LogicalStatement implements InvocationHandler {
+
+    private final CachedStatement statement;
+    private final Connection connection;
+    private boolean closed;
+    private boolean cacheable = true;
+
+    LogicalStatement(CachedStatement statement, Connection connection) {
+      this.statement = statement;
+      this.connection = connection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String methodName = method.getName();
+      if (Object.class.equals(method.getDeclaringClass())) {
+        if ("equals".equals(methodName)) {
+          return proxy == args[0];
+        } else if ("hashCode".equals(methodName)) {
+          return System.identityHashCode(proxy);
+        }
+        return method.invoke(statement.statement, args);
+      }
+      if (CLOSE.equals(methodName)) {
+        if (!closed) {
+          closed = true;
+          release(statement, cacheable);
+        }
+        return null;
+      } else if (IS_CLOSED.equals(methodName)) {
+        return closed;
+      }
+      if (closed) {
+        throw new SQLException("Statement is closed.");
+      }
+      if (GET_CONNECTION.equals(methodName)) {
+        return connection;
+      } else if (CLOSE_ON_COMPLETION.equals(methodName)) {
+        // the driver will close the statement behind our back
+        cacheable = false;
+      }
+      try {
+        return method.invoke(statement.statement, args);
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+    }
+  }
+
+}
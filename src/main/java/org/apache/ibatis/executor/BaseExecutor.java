@@ -34,6 +34,7 @@ import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.StatementType;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
@@ -109,12 +110,17 @@ public abstract class BaseExecutor implements Executor {
 
   @Override
   public int update(MappedStatement ms, Object parameter) throws SQLException {
+    return update(ms, parameter, null);
+  }
+
+  @Override
+  public int update(MappedStatement ms, Object parameter, BoundSql boundSql) throws SQLException {
     ErrorContext.instance().resource(ms.getResource()).activity("executing an update").object(ms.getId());
     if (closed) {
       throw new ExecutorException("Executor was closed.");
     }
     clearLocalCache();
-    return doUpdate(ms, parameter);
+    return boundSql == null ? doUpdate(ms, parameter) : doUpdate(ms, parameter, boundSql);
   }
 
   @Override
@@ -132,10 +138,29 @@ public abstract class BaseExecutor implements Executor {
   @Override
   public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException {
     BoundSql boundSql = ms.getBoundSql(parameter);
-    CacheKey key = createCacheKey(ms, parameter, rowBounds, boundSql);
+    CacheKey key = isLocalCacheKeyRequired(ms) ? createCacheKey(ms, parameter, rowBounds, boundSql) : CacheKey.NULL_CACHE_KEY;
     return query(ms, parameter, rowBounds, resultHandler, key, boundSql);
   }
 
+  /**
+   * With a STATEMENT scoped local cache, a top level query can only be found again by the nested queries it runs
+   * (circular references) and by the output parameters of a callable statement.
+   * Nested queries of discriminator cases and nested result maps are not flagged on the top level result map,
+   * so any of those keeps the key as well.
+   */
+  private boolean isLocalCacheKeyRequired(MappedStatement ms) {
+    if (queryStack > 0 || configuration.getLocalCacheScope() == LocalCacheScope.SESSION
+        || ms.getStatementType() == StatementType.CALLABLE) {
+      return true;
+    }
+    for (ResultMap resultMap : ms.getResultMaps()) {
+      if (resultMap.hasNestedQueries() || resultMap.hasNestedResultMaps() || resultMap.getDiscriminator() != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, CacheKey key, BoundSql boundSql) throws SQLException {
@@ -203,6 +228,7 @@ public abstract class BaseExecutor implements Executor {
     cacheKey.update(boundSql.getSql());
     List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
     TypeHandlerRegistry typeHandlerRegistry = ms.getConfiguration().getTypeHandlerRegistry();
+    MetaObject metaObject = null;
     // mimic DefaultParameterHandler logic
     for (ParameterMapping parameterMapping : parameterMappings) {
       if (parameterMapping.getMode() != ParameterMode.OUT) {
@@ -215,7 +241,9 @@ public abstract class BaseExecutor implements Executor {
         } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
           value = parameterObject;
         } else {
-          MetaObject metaObject = configuration.newMetaObject(parameterObject);
+          if (metaObject == null) {
+            metaObject = configuration.newMetaObject(parameterObject);
+          }
           value = metaObject.getValue(propertyName);
         }
         cacheKey.update(value);
@@ -270,6 +298,16 @@ public abstract class BaseExecutor implements Executor {
   protected abstract int doUpdate(MappedStatement ms, Object parameter)
       throws SQLException;
 
+  /**
+   * Runs an update whose SQL was already built by the caller, executors that cannot reuse it build it again.
+   *
+   * @since 3.5.2
+   */
+  protected int doUpdate(MappedStatement ms, Object parameter, BoundSql boundSql)
+      throws SQLException {
+    return doUpdate(ms, parameter);
+  }
+
   protected abstract List<BatchResult> doFlushStatements(boolean isRollback)
       throws SQLException;
 
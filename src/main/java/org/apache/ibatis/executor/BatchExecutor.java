@@ -20,8 +20,11 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
@@ -30,51 +33,138 @@ import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.type.TypeHandlerRegistry;
 
 /**
+ * Runs the updates as JDBC batches, one statement per run of consecutive updates with the same SQL.
+ * <p>
+ * Batches run on {@link #flushStatements()}, or as soon as the pending updates reach {@code batchMaxSize} updates or
+ * {@code batchMaxBytes} estimated parameter bytes. An automatic run executes every pending statement in order, so
+ * updates still run in the order they were issued, and keeps the last statement open to add the next updates to it.
+ * Its results are returned by the next flush. With {@code batchAdaptiveSizing}, the number of updates per run follows
+ * the time the previous runs took per update, to make a run last about {@code batchTargetLatency} milliseconds.
+ * <p>
+ * With {@code batchGroupingEnabled}, an update of a statement declared {@code reorderable} joins the open statement of
+ * an earlier update with the same SQL instead of opening a new one, so alternating inserts into a parent table, declared
+ * reorderable, and a child table make two batches instead of one per call. This runs the update before the statements
+ * opened after that earlier one, which is only done when none of them touches the tables of the update, and never for
+ * deletes. The tables do not show foreign keys, so the other statements only join the last open statement: an insert
+ * into a child table never runs before the insert of its parent row.
+ * <p>
+ * With {@code batchRewriteInserts}, the rows batched for a single row {@code INSERT ... VALUES (...)} run as multi row
+ * inserts of up to {@code batchRewriteMaxParameters} parameters, for drivers that do not rewrite batches themselves.
+ * Generated keys are still assigned to the parameter objects when the driver returns them for multi row inserts.
+ *
  * @author Jeff Butler
  */
 public class BatchExecutor extends BaseExecutor {
 
   public static final int BATCH_UPDATE_RETURN_VALUE = Integer.MIN_VALUE + 1002;
 
+  private static final int INITIAL_ADAPTIVE_SIZE = 100;
+
   private final List<Statement> statementList = new ArrayList<>();
   private final List<BatchResult> batchResultList = new ArrayList<>();
+  // the statements already run by an automatic flush, returned by the next flush
+  private final List<BatchResult> executedResultList = new ArrayList<>();
+  // the tables of each open statement, used to decide whether an update can join it when grouping
+  private final List<Set<String>> tablesList = new ArrayList<>();
+  // the rows of each open statement rewritten to multi row inserts, null for the other statements
+  private final List<MultiRowInsert> rowInsertList = new ArrayList<>();
   private String currentSql;
   private MappedStatement currentStatement;
+  private final boolean grouping;
+  private final boolean rewriteInserts;
+  private final int rewriteMaxParameters;
+
+  private final int maxSize;
+  private final long maxBytes;
+  private final boolean retainParameterObjects;
+  private final boolean adaptiveSizing;
+  private final long targetLatencyNanos;
+  private int sizeLimit;
+  private double nanosPerUpdate;
+  private int pendingUpdates;
+  private long pendingBytes;
 
   public BatchExecutor(Configuration configuration, Transaction transaction) {
     super(configuration, transaction);
+    Integer batchMaxSize = configuration.getBatchMaxSize();
+    Integer batchMaxBytes = configuration.getBatchMaxBytes();
+    this.adaptiveSizing = configuration.isBatchAdaptiveSizing();
+    this.maxSize = batchMaxSize != null && batchMaxSize > 0 ? batchMaxSize : adaptiveSizing ? Integer.MAX_VALUE : 0;
+    this.maxBytes = batchMaxBytes != null && batchMaxBytes > 0 ? batchMaxBytes : 0;
+    this.retainParameterObjects = configuration.isBatchRetainParameterObjects();
+    this.grouping = configuration.isBatchGroupingEnabled();
+    this.rewriteInserts = configuration.isBatchRewriteInserts();
+    this.rewriteMaxParameters = configuration.getBatchRewriteMaxParameters();
+    this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, configuration.getBatchTargetLatency()));
+    this.sizeLimit = adaptiveSizing ? Math.min(maxSize, INITIAL_ADAPTIVE_SIZE) : maxSize;
   }
 
   @Override
   public int doUpdate(MappedStatement ms, Object parameterObject) throws SQLException {
+    return doUpdate(ms, parameterObject, null);
+  }
+
+  @Override
+  protected int doUpdate(MappedStatement ms, Object parameterObject, BoundSql builtSql) throws SQLException {
     final Configuration configuration = ms.getConfiguration();
-    final StatementHandler handler = configuration.newStatementHandler(this, ms, parameterObject, RowBounds.DEFAULT, null, null);
+    final StatementHandler handler = configuration.newStatementHandler(this, ms, parameterObject, RowBounds.DEFAULT, null, builtSql);
     final BoundSql boundSql = handler.getBoundSql();
     final String sql = boundSql.getSql();
-    final Statement stmt;
-    if (sql.equals(currentSql) && ms.equals(currentStatement)) {
-      int last = statementList.size() - 1;
-      stmt = statementList.get(last);
-      applyTransactionTimeout(stmt);
-      handler.parameterize(stmt);//fix Issues 322
-      BatchResult batchResult = batchResultList.get(last);
-      batchResult.addParameterObject(parameterObject);
+    final Set<String> tables = grouping ? ms.getTables(boundSql) : null;
+    int group;
+    if (grouping) {
+      group = findGroup(ms, sql, tables);
     } else {
-      Connection connection = getConnection(ms.getStatementLog());
-      stmt = handler.prepare(connection, transaction.getTimeout());
-      handler.parameterize(stmt);    //fix Issues 322
+      group = sql.equals(currentSql) && ms.equals(currentStatement) ? statementList.size() - 1 : -1;
+    }
+    if (group >= 0) {
+      batchResultList.get(group).addParameterObject(parameterObject);
+      MultiRowInsert rowInsert = rowInsertList.get(group);
+      if (rowInsert != null) {
+        rowInsert.addRow(handler);
+      } else {
+        Statement stmt = statementList.get(group);
+        applyTransactionTimeout(stmt);
+        handler.parameterize(stmt);//fix Issues 322
+        handler.batch(stmt);
+      }
+    } else {
+      MultiRowInsert rowInsert = rewriteInserts ? MultiRowInsert.of(ms, boundSql, rewriteMaxParameters) : null;
+      if (rowInsert != null) {
+        // the rows are parameterized when the multi row statements are prepared
+        rowInsert.addRow(handler);
+        statementList.add(null);
+      } else {
+        Connection connection = getConnection(ms.getStatementLog());
+        Statement stmt = handler.prepare(connection, transaction.getTimeout());
+        handler.parameterize(stmt);    //fix Issues 322
+        handler.batch(stmt);
+        statementList.add(stmt);
+      }
       currentSql = sql;
       currentStatement = ms;
-      statementList.add(stmt);
       batchResultList.add(new BatchResult(ms, sql, parameterObject));
+      tablesList.add(tables);
+      rowInsertList.add(rowInsert);
+    }
+    pendingUpdates++;
+    if (maxBytes > 0) {
+      pendingBytes += estimateBytes(configuration, boundSql, parameterObject);
+    }
+    if ((sizeLimit > 0 && pendingUpdates >= sizeLimit) || (maxBytes > 0 && pendingBytes >= maxBytes)) {
+      executePendingBatches();
     }
-    handler.batch(stmt);
     return BATCH_UPDATE_RETURN_VALUE;
   }
 
@@ -110,18 +200,84 @@ public class BatchExecutor extends BaseExecutor {
   @Override
   public List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException {
     try {
-      List<BatchResult> results = new ArrayList<>();
       if (isRollback) {
         return Collections.emptyList();
       }
-      for (int i = 0, n = statementList.size(); i < n; i++) {
-        Statement stmt = statementList.get(i);
-        applyTransactionTimeout(stmt);
-        BatchResult batchResult = batchResultList.get(i);
-        try {
-          batchResult.setUpdateCounts(stmt.executeBatch());
+      List<BatchResult> results = new ArrayList<>(executedResultList);
+      executeBatches(results, false);
+      return results;
+    } finally {
+      clearBatches();
+    }
+  }
+
+  /**
+   * @return How many updates are added before the pending batches run, 0 when they only run on flush
+   * @since 3.5.2
+   */
+  int getSizeLimit() {
+    return sizeLimit;
+  }
+
+  /**
+   * Finds the open statement of the SQL the update can be added to without running it before a conflicting one.
+   *
+   * @return The index of the statement, -1 to open a new one
+   */
+  private int findGroup(MappedStatement ms, String sql, Set<String> tables) {
+    for (int i = statementList.size() - 1; i >= 0; i--) {
+      BatchResult batchResult = batchResultList.get(i);
+      if (ms.equals(batchResult.getMappedStatement()) && sql.equals(batchResult.getSql())) {
+        return i;
+      }
+      // the tables do not show foreign keys, only a statement declared reorderable may move before another one
+      Set<String> groupTables = tablesList.get(i);
+      if (!ms.isReorderable() || ms.getSqlCommandType() == SqlCommandType.DELETE || tables.isEmpty() || groupTables.isEmpty()
+          || !Collections.disjoint(tables, groupTables)) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  private void executePendingBatches() throws SQLException {
+    int updates = pendingUpdates;
+    long start = System.nanoTime();
+    try {
+      executeBatches(executedResultList, true);
+    } catch (SQLException | RuntimeException e) {
+      clearBatches();
+      throw e;
+    }
+    if (adaptiveSizing) {
+      adjustSizeLimit(updates, System.nanoTime() - start);
+    }
+  }
+
+  private void executeBatches(List<BatchResult> results, boolean keepOpen) throws SQLException {
+    List<Statement> openStatements = new ArrayList<>();
+    List<BatchResult> openResults = new ArrayList<>();
+    List<Set<String>> openTables = new ArrayList<>();
+    List<MultiRowInsert> openRowInserts = new ArrayList<>();
+    int last = statementList.size() - 1;
+    for (int i = 0; i <= last; i++) {
+      Statement stmt = statementList.get(i);
+      BatchResult batchResult = batchResultList.get(i);
+      MultiRowInsert rowInsert = rowInsertList.get(i);
+      try {
+        List<Object> parameterObjects = getPendingParameterObjects(batchResult);
+        if (!parameterObjects.isEmpty() && rowInsert != null) {
+          // assigns the generated keys of each multi row statement itself
+          MappedStatement ms = batchResult.getMappedStatement();
+          Connection connection = getConnection(ms.getStatementLog());
+          batchResult.setUpdateCounts(append(batchResult.getUpdateCounts(), rowInsert.execute(this, connection, transaction.getTimeout())));
+          if (!retainParameterObjects) {
+            batchResult.getParameterObjects().clear();
+          }
+        } else if (!parameterObjects.isEmpty()) {
+          applyTransactionTimeout(stmt);
+          batchResult.setUpdateCounts(append(batchResult.getUpdateCounts(), stmt.executeBatch()));
           MappedStatement ms = batchResult.getMappedStatement();
-          List<Object> parameterObjects = batchResult.getParameterObjects();
           KeyGenerator keyGenerator = ms.getKeyGenerator();
           if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
             Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
@@ -131,33 +287,130 @@ public class BatchExecutor extends BaseExecutor {
               keyGenerator.processAfter(this, ms, stmt, parameter);
             }
           }
-          // Close statement to close cursor #1109
-          closeStatement(stmt);
-        } catch (BatchUpdateException e) {
-          StringBuilder message = new StringBuilder();
-          message.append(batchResult.getMappedStatement().getId())
-              .append(" (batch index #")
-              .append(i + 1)
-              .append(")")
-              .append(" failed.");
-          if (i > 0) {
-            message.append(" ")
-                .append(i)
-                .append(" prior sub executor(s) completed successfully, but will be rolled back.");
+          if (!retainParameterObjects) {
+            batchResult.getParameterObjects().clear();
           }
-          throw new BatchExecutorException(message.toString(), e, results, batchResult);
         }
-        results.add(batchResult);
-      }
-      return results;
-    } finally {
-      for (Statement stmt : statementList) {
+        if (keepOpen && (grouping || i == last)) {
+          // JDBC empties the batch of a statement once it ran, the next updates are added to it
+          openStatements.add(stmt);
+          openResults.add(batchResult);
+          openTables.add(tablesList.get(i));
+          openRowInserts.add(rowInsert);
+          continue;
+        }
+        // Close statement to close cursor #1109
         closeStatement(stmt);
+      } catch (BatchUpdateException e) {
+        StringBuilder message = new StringBuilder();
+        message.append(batchResult.getMappedStatement().getId())
+            .append(" (batch index #")
+            .append(results.size() + 1)
+            .append(")")
+            .append(" failed.");
+        if (!results.isEmpty()) {
+          message.append(" ")
+              .append(results.size())
+              .append(" prior sub executor(s) completed successfully, but will be rolled back.");
+        }
+        throw new BatchExecutorException(message.toString(), e, new ArrayList<>(results), batchResult);
       }
-      currentSql = null;
+      results.add(batchResult);
+    }
+    if (keepOpen) {
       statementList.clear();
+      statementList.addAll(openStatements);
       batchResultList.clear();
+      batchResultList.addAll(openResults);
+      tablesList.clear();
+      tablesList.addAll(openTables);
+      rowInsertList.clear();
+      rowInsertList.addAll(openRowInserts);
+    }
+    pendingUpdates = 0;
+    pendingBytes = 0;
+  }
+
+  /**
+   * @return The parameter objects added since the statement last ran
+   */
+  private List<Object> getPendingParameterObjects(BatchResult batchResult) {
+    List<Object> parameterObjects = batchResult.getParameterObjects();
+    int[] updateCounts = batchResult.getUpdateCounts();
+    int executed = retainParameterObjects && updateCounts != null ? Math.min(updateCounts.length, parameterObjects.size()) : 0;
+    // keep the list an ArrayList, Jdbc3KeyGenerator checks for it
+    return executed == 0 ? parameterObjects : new ArrayList<>(parameterObjects.subList(executed, parameterObjects.size()));
+  }
+
+  private void clearBatches() {
+    for (Statement stmt : statementList) {
+      closeStatement(stmt);
+    }
+    currentSql = null;
+    statementList.clear();
+    batchResultList.clear();
+    tablesList.clear();
+    rowInsertList.clear();
+    executedResultList.clear();
+    pendingUpdates = 0;
+    pendingBytes = 0;
+  }
+
+  private void adjustSizeLimit(int updates, long nanos) {
+    double observed = (double) nanos / updates;
+    nanosPerUpdate = nanosPerUpdate == 0 ? observed : nanosPerUpdate * 0.7 + observed * 0.3;
+    // grow at most twice per run so that one fast run does not queue a huge batch
+    long size = Math.min((long) (targetLatencyNanos / nanosPerUpdate), sizeLimit * 2L);
+    sizeLimit = (int) Math.max(1, Math.min(maxSize, size));
+  }
+
+  private static int[] append(int[] updateCounts, int[] moreUpdateCounts) {
+    if (updateCounts == null) {
+      return moreUpdateCounts;
+    }
+    int[] result = Arrays.copyOf(updateCounts, updateCounts.length + moreUpdateCounts.length);
+    System.arraycopy(moreUpdateCounts, 0, result, updateCounts.length, moreUpdateCounts.length);
+    return result;
+  }
+
+  private static long estimateBytes(Configuration configuration, BoundSql boundSql, Object parameterObject) {
+    TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+    MetaObject metaObject = null;
+    long bytes = 0;
+    // mimic DefaultParameterHandler logic
+    for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+      if (parameterMapping.getMode() != ParameterMode.OUT) {
+        Object value;
+        String propertyName = parameterMapping.getProperty();
+        if (boundSql.hasAdditionalParameter(propertyName)) {
+          value = boundSql.getAdditionalParameter(propertyName);
+        } else if (parameterObject == null) {
+          value = null;
+        } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
+          value = parameterObject;
+        } else {
+          if (metaObject == null) {
+            metaObject = configuration.newMetaObject(parameterObject);
+          }
+          value = metaObject.getValue(propertyName);
+        }
+        bytes += estimateBytes(value);
+      }
+    }
+    return bytes;
+  }
+
+  private static long estimateBytes(Object value) {
+    if (value == null) {
+      return 1;
+    } else if (value instanceof CharSequence) {
+      return 2L * ((CharSequence) value).length();
+    } else if (value instanceof byte[]) {
+      return ((byte[]) value).length;
+    } else if (value instanceof char[]) {
+      return 2L * ((char[]) value).length;
     }
+    return 8;
   }
 
 }
@@ -17,17 +17,23 @@ package org.apache.ibatis.executor;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.TableDependencyIndex;
 import org.apache.ibatis.cache.TransactionalCacheManager;
+import org.apache.ibatis.cache.invalidation.InvalidationPublisher;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.keygen.SelectKeyGenerator;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.mapping.StatementType;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
@@ -39,10 +45,48 @@ import org.apache.ibatis.transaction.Transaction;
 public class CachingExecutor implements Executor {
 
   private final Executor delegate;
-  private final TransactionalCacheManager tcm = new TransactionalCacheManager();
+  private final TransactionalCacheManager tcm;
+  private final SingleFlightLoader singleFlightLoader;
+  private final boolean tableInvalidation;
+  private int leadingLoads;
+  private boolean uncommittedWrites;
 
   public CachingExecutor(Executor delegate) {
+    this(delegate, null);
+  }
+
+  /**
+   * @param delegate - the executor that runs the queries
+   * @param singleFlightLoader - shares the result of concurrent misses on the same key between sessions, may be null
+   * @since 3.5.2
+   */
+  public CachingExecutor(Executor delegate, SingleFlightLoader singleFlightLoader) {
+    this(delegate, singleFlightLoader, null);
+  }
+
+  /**
+   * @param delegate - the executor that runs the queries
+   * @param singleFlightLoader - shares the result of concurrent misses on the same key between sessions, may be null
+   * @param tableDependencyIndex - when not null, writes only invalidate the entries read from the tables they change
+   * @since 3.5.2
+   */
+  public CachingExecutor(Executor delegate, SingleFlightLoader singleFlightLoader, TableDependencyIndex tableDependencyIndex) {
+    this(delegate, singleFlightLoader, tableDependencyIndex, null);
+  }
+
+  /**
+   * @param delegate - the executor that runs the queries
+   * @param singleFlightLoader - shares the result of concurrent misses on the same key between sessions, may be null
+   * @param tableDependencyIndex - when not null, writes only invalidate the entries read from the tables they change
+   * @param invalidationPublisher - when not null, the invalidations of each commit are sent to the other nodes
+   * @since 3.5.2
+   */
+  public CachingExecutor(Executor delegate, SingleFlightLoader singleFlightLoader, TableDependencyIndex tableDependencyIndex,
+      InvalidationPublisher invalidationPublisher) {
     this.delegate = delegate;
+    this.singleFlightLoader = singleFlightLoader;
+    this.tcm = new TransactionalCacheManager(tableDependencyIndex, invalidationPublisher);
+    this.tableInvalidation = tableDependencyIndex != null;
     delegate.setExecutorWrapper(this);
   }
 
@@ -72,12 +116,31 @@ public class CachingExecutor implements Executor {
 
   @Override
   public int update(MappedStatement ms, Object parameterObject) throws SQLException {
-    flushCacheIfRequired(ms);
+    uncommittedWrites = true;
+    if (tableInvalidation && ms.isFlushCacheRequired() && ms.getSqlCommandType() != SqlCommandType.SELECT) {
+      if (ms.getTables() != null) {
+        invalidateTables(ms, ms.getTables());
+      } else if (ms.getKeyGenerator() instanceof SelectKeyGenerator) {
+        // issue #435, the delegate builds the SQL again once the keys are generated
+        invalidateTables(ms, ms.getTables(ms.getBoundSql(parameterObject)));
+      } else {
+        BoundSql boundSql = ms.getBoundSql(parameterObject);
+        invalidateTables(ms, ms.getTables(boundSql));
+        return delegate.update(ms, parameterObject, boundSql);
+      }
+    } else {
+      flushCacheIfRequired(ms);
+    }
     return delegate.update(ms, parameterObject);
   }
 
   @Override
   public <E> List<E> query(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException {
+    if (ms.getCache() == null || !ms.isUseCache() || resultHandler != null) {
+      // the second level cache cannot be hit, let the delegate decide whether the local cache needs a key
+      flushCacheIfRequired(ms);
+      return delegate.query(ms, parameterObject, rowBounds, resultHandler);
+    }
     BoundSql boundSql = ms.getBoundSql(parameterObject);
     CacheKey key = createCacheKey(ms, parameterObject, rowBounds, boundSql);
     return query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
@@ -97,11 +160,25 @@ public class CachingExecutor implements Executor {
       flushCacheIfRequired(ms);
       if (ms.isUseCache() && resultHandler == null) {
         ensureNoOutParams(ms, boundSql);
+        Set<String> tables = tableInvalidation ? ms.getTables(boundSql) : null;
         @SuppressWarnings("unchecked")
-        List<E> list = (List<E>) tcm.getObject(cache, key);
+        List<E> list = (List<E>) (tables == null ? tcm.getObject(cache, key) : tcm.getObject(cache, key, tables));
         if (list == null) {
-          list = delegate.query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
-          tcm.putObject(cache, key, list); // issue #578 and #116
+          if (isSingleFlight(cache, tables)) {
+            Configuration configuration = ms.getConfiguration();
+            Integer timeout = configuration.getCacheSingleFlightTimeout();
+            list = singleFlightLoader.load(cache, key, configuration.getCacheSerializer(cache.getId()), timeout == null ? 0L : timeout,
+                () -> lead(ms, parameterObject, rowBounds, key, boundSql));
+          } else {
+            list = delegate.query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
+          }
+          // the key carries a refresher so that an expiring entry can be reloaded in the background
+          CacheKey storedKey = ms.isCacheRefreshing() ? StatementCacheRefresher.refreshableKey(ms, parameterObject, rowBounds, key, boundSql) : key;
+          if (tables == null) {
+            tcm.putObject(cache, storedKey, list); // issue #578 and #116
+          } else {
+            tcm.putObject(cache, storedKey, list, tables);
+          }
         }
         return list;
       }
@@ -118,6 +195,7 @@ public class CachingExecutor implements Executor {
   public void commit(boolean required) throws SQLException {
     delegate.commit(required);
     tcm.commit();
+    uncommittedWrites = false;
   }
 
   @Override
@@ -128,6 +206,24 @@ public class CachingExecutor implements Executor {
       if (required) {
         tcm.rollback();
       }
+      uncommittedWrites = false;
+    }
+  }
+
+  private boolean isSingleFlight(Cache cache, Set<String> tables) {
+    // nested queries of a leader run alone so that two leaders never wait for each other.
+    // A session that wrote, through any namespace and whether it flushed the cache or not, may read its own
+    // uncommitted changes: they must not be shared, and the result of another session would not show them
+    return singleFlightLoader != null && leadingLoads == 0 && !uncommittedWrites && !tcm.isClearPending(cache)
+        && (tables == null || !tcm.isInvalidated(tables));
+  }
+
+  private <E> List<E> lead(MappedStatement ms, Object parameterObject, RowBounds rowBounds, CacheKey key, BoundSql boundSql) throws SQLException {
+    leadingLoads++;
+    try {
+      return delegate.query(ms, parameterObject, rowBounds, null, key, boundSql);
+    } finally {
+      leadingLoads--;
     }
   }
 
@@ -161,6 +257,15 @@ public class CachingExecutor implements Executor {
     delegate.clearLocalCache();
   }
 
+  private void invalidateTables(MappedStatement ms, Set<String> tables) {
+    if (!tables.isEmpty()) {
+      tcm.invalidate(tables);
+    } else if (ms.getCache() != null) {
+      // the changed tables are unknown, e.g. a stored procedure, fall back to the namespace
+      tcm.clear(ms.getCache());
+    }
+  }
+
   private void flushCacheIfRequired(MappedStatement ms) {
     Cache cache = ms.getCache();
     if (cache != null && ms.isFlushCacheRequired()) {
@@ -36,6 +36,19 @@ public interface Executor {
 
   int update(MappedStatement ms, Object parameter) throws SQLException;
 
+  /**
+   * Runs an insert, update or delete whose SQL the caller has already built.
+   *
+   * @param ms - the statement
+   * @param parameter - the parameter object
+   * @param boundSql - the SQL built for the parameter, after the keys it needs were generated
+   * @return The number of rows affected
+   * @since 3.5.2
+   */
+  default int update(MappedStatement ms, Object parameter, BoundSql boundSql) throws SQLException {
+    return update(ms, parameter);
+  }
+
   <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, CacheKey cacheKey, BoundSql boundSql) throws SQLException;
 
   <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException;
@@ -0,0 +1,258 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
+import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * The rows batched for a single row {@code INSERT ... VALUES (...)}, run as multi row inserts of up to
+ * {@code maxParameters} parameters each.
+ * <p>
+ * Each row is parameterized by its own statement handler, shifted to the place of the row in the multi row statement,
+ * so type handlers and parameter logging work as for a single row insert.
+ */
+class MultiRowInsert {
+
+  private final MappedStatement ms;
+  private final String prefix;
+  private final String row;
+  private final int parametersPerRow;
+  private final int rowsPerStatement;
+  private final List<StatementHandler> rows = new ArrayList<>();
+
+  private MultiRowInsert(MappedStatement ms, String prefix, String row, int parametersPerRow, int rowsPerStatement) {
+    this.ms = ms;
+    this.prefix = prefix;
+    this.row = row;
+    this.parametersPerRow = parametersPerRow;
+    this.rowsPerStatement = rowsPerStatement;
+  }
+
+  /**
+   * @param ms - the statement of the insert
+   * @param boundSql - the SQL of the first row
+   * @param maxParameters - how many parameters a statement may have
+   * @return The rows of the insert, null if the statement cannot be rewritten
+   */
+  static MultiRowInsert of(MappedStatement ms, BoundSql boundSql, int maxParameters) {
+    if (ms.getSqlCommandType() != SqlCommandType.INSERT || ms.getStatementType() != StatementType.PREPARED) {
+      return null;
+    }
+    // other key generators run once per row around the insert
+    Class<? extends KeyGenerator> keyGeneratorType = ms.getKeyGenerator().getClass();
+    if (!NoKeyGenerator.class.equals(keyGeneratorType) && !Jdbc3KeyGenerator.class.equals(keyGeneratorType)) {
+      return null;
+    }
+    int parameters = boundSql.getParameterMappings().size();
+    if (parameters == 0 || maxParameters / parameters < 2) {
+      return null;
+    }
+    String sql = boundSql.getSql().trim();
+    while (sql.endsWith(";")) {
+      sql = sql.substring(0, sql.length() - 1).trim();
+    }
+    int start = findValuesTuple(sql);
+    if (start < 0) {
+      return null;
+    }
+    String prefix = sql.substring(0, start);
+    if (!prefix.toLowerCase(Locale.ENGLISH).trim().startsWith("insert")
+        || !prefix.toLowerCase(Locale.ENGLISH).trim().matches("(?s).*\\bvalues")) {
+      return null;
+    }
+    String row = sql.substring(start);
+    if (countPlaceholders(row) != parameters || countPlaceholders(prefix) != 0) {
+      return null;
+    }
+    return new MultiRowInsert(ms, prefix, row, parameters, maxParameters / parameters);
+  }
+
+  void addRow(StatementHandler handler) {
+    rows.add(handler);
+  }
+
+  /**
+   * Runs the rows added since the last run and assigns their generated keys.
+   *
+   * @return An update count per row
+   */
+  int[] execute(Executor executor, Connection connection, Integer transactionTimeout) throws SQLException {
+    List<StatementHandler> pending = new ArrayList<>(rows);
+    rows.clear();
+    int[] updateCounts = new int[pending.size()];
+    PreparedStatement fullStatement = null;
+    int done = 0;
+    try {
+      while (done < pending.size()) {
+        List<StatementHandler> chunk = pending.subList(done, Math.min(done + rowsPerStatement, pending.size()));
+        PreparedStatement ps;
+        if (chunk.size() == rowsPerStatement) {
+          if (fullStatement == null) {
+            fullStatement = prepare(executor, connection, transactionTimeout, chunk);
+          }
+          ps = fullStatement;
+        } else {
+          ps = prepare(executor, connection, transactionTimeout, chunk);
+        }
+        try {
+          execute(ps, chunk, updateCounts, done);
+        } finally {
+          if (ps != fullStatement) {
+            close(ps);
+          }
+        }
+        done += chunk.size();
+      }
+    } catch (SQLException e) {
+      throw new BatchUpdateException(e.getMessage(), e.getSQLState(), e.getErrorCode(), Arrays.copyOf(updateCounts, done), e);
+    } finally {
+      close(fullStatement);
+    }
+    return updateCounts;
+  }
+
+  private PreparedStatement prepare(Executor executor, Connection connection, Integer transactionTimeout, List<StatementHandler> chunk)
+      throws SQLException {
+    StringBuilder sql = new StringBuilder(prefix.length() + chunk.size() * (row.length() + 1)).append(prefix);
+    for (int i = 0; i < chunk.size(); i++) {
+      sql.append(i == 0 ? "" : ",").append(row);
+    }
+    Configuration configuration = ms.getConfiguration();
+    Object parameterObject = chunk.get(0).getBoundSql().getParameterObject();
+    BoundSql boundSql = new BoundSql(configuration, sql.toString(), Collections.emptyList(), parameterObject);
+    StatementHandler handler = configuration.newStatementHandler(executor, ms, parameterObject, RowBounds.DEFAULT, null, boundSql);
+    return (PreparedStatement) handler.prepare(connection, transactionTimeout);
+  }
+
+  private void execute(PreparedStatement ps, List<StatementHandler> chunk, int[] updateCounts, int offset) throws SQLException {
+    ps.clearParameters();
+    List<Object> parameterObjects = new ArrayList<>(chunk.size());
+    for (int i = 0; i < chunk.size(); i++) {
+      StatementHandler handler = chunk.get(i);
+      handler.parameterize(shift(ps, i * parametersPerRow));
+      parameterObjects.add(handler.getBoundSql().getParameterObject());
+    }
+    int count = ps.executeUpdate();
+    Arrays.fill(updateCounts, offset, offset + chunk.size(), count == chunk.size() ? 1 : Statement.SUCCESS_NO_INFO);
+    if (ms.getKeyGenerator() instanceof Jdbc3KeyGenerator) {
+      ((Jdbc3KeyGenerator) ms.getKeyGenerator()).processBatch(ms, ps, parameterObjects);
+    }
+  }
+
+  private static void close(Statement statement) {
+    if (statement != null) {
+      try {
+        statement.close();
+      } catch (SQLException e) {
+        // ignore
+      }
+    }
+  }
+
+  /**
+   * @return The index of the opening parenthesis of the last parenthesized group when it ends the SQL, or -1
+   */
+  private static int findValuesTuple(String sql) {
+    int depth = 0;
+    int start = -1;
+    char quote = 0;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      } else if (c == '(') {
+        if (depth++ == 0) {
+          start = i;
+        }
+      } else if (c == ')') {
+        if (--depth < 0) {
+          return -1;
+        }
+      } else if (depth == 0 && !Character.isWhitespace(c)) {
+        // text after the group
+        start = -1;
+      }
+    }
+    return depth == 0 && quote == 0 ? start : -1;
+  }
+
+  private static int countPlaceholders(String sql) {
+    int count = 0;
+    char quote = 0;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      } else if (c == '?') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return The statement, with the indexes of the parameters set through it moved by the offset
+   */
+  private static PreparedStatement shift(PreparedStatement ps, int offset) {
+    if (offset == 0) {
+      return ps;
+    }
+    InvocationHandler handler = (proxy, method, args) -> {
+      if (method.getName().startsWith("set") && args != null && args.length > 1 && method.getParameterTypes()[0] == int.class) {
+        args[0] = (Integer) args[0] + offset;
+      }
+      try {
+        return method.invoke(ps, args);
+      } catch (InvocationTargetException e) {
+        throw ExceptionUtil.unwrapThrowable(e);
+      }
+    };
+    return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[] {PreparedStatement.class}, handler);
+  }
+
+}
@@ -15,13 +15,18 @@
  */
 package org.apache.ibatis.executor;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.statement.StatementHandler;
@@ -34,20 +39,39 @@ import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
 
 /**
+ * Keeps the statements it prepares open until the session commits, rolls back or closes, and reuses them for the same SQL.
+ * <p>
+ * When {@code reuseStatementCacheSize} is set, the least recently used statement is closed once more statements are
+ * open. Statements whose results are being read, by a query or by a cursor, are never closed this way.
+ *
  * @author Clinton Begin
  */
 public class ReuseExecutor extends BaseExecutor {
 
-  private final Map<String, Statement> statementMap = new HashMap<>();
+  private final Map<String, Statement> statementMap = new LinkedHashMap<>(16, 0.75f, true);
+  // the statements whose result set is being mapped by a query
+  private final Set<Statement> busyStatements = new HashSet<>();
+  // the statements whose result set is read by a cursor, until it is closed or consumed
+  private final Map<Statement, Cursor<?>> cursorStatements = new HashMap<>();
+  private final int maxStatements;
+  private final StatementCacheMetrics metrics;
 
   public ReuseExecutor(Configuration configuration, Transaction transaction) {
     super(configuration, transaction);
+    Integer cacheSize = configuration.getReuseStatementCacheSize();
+    this.maxStatements = cacheSize == null ? 0 : Math.max(1, cacheSize);
+    this.metrics = configuration.getReuseStatementCacheMetrics();
   }
 
   @Override
   public int doUpdate(MappedStatement ms, Object parameter) throws SQLException {
+    return doUpdate(ms, parameter, null);
+  }
+
+  @Override
+  protected int doUpdate(MappedStatement ms, Object parameter, BoundSql boundSql) throws SQLException {
     Configuration configuration = ms.getConfiguration();
-    StatementHandler handler = configuration.newStatementHandler(this, ms, parameter, RowBounds.DEFAULT, null, null);
+    StatementHandler handler = configuration.newStatementHandler(this, ms, parameter, RowBounds.DEFAULT, null, boundSql);
     Statement stmt = prepareStatement(handler, ms.getStatementLog());
     return handler.update(stmt);
   }
@@ -57,7 +81,13 @@ public class ReuseExecutor extends BaseExecutor {
     Configuration configuration = ms.getConfiguration();
     StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, resultHandler, boundSql);
     Statement stmt = prepareStatement(handler, ms.getStatementLog());
-    return handler.query(stmt, resultHandler);
+    // nested queries must not evict the statement whose results are being mapped
+    busyStatements.add(stmt);
+    try {
+      return handler.query(stmt, resultHandler);
+    } finally {
+      busyStatements.remove(stmt);
+    }
   }
 
   @Override
@@ -65,7 +95,10 @@ public class ReuseExecutor extends BaseExecutor {
     Configuration configuration = ms.getConfiguration();
     StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
     Statement stmt = prepareStatement(handler, ms.getStatementLog());
-    return handler.queryCursor(stmt);
+    // the cursor reads the results after this method returns
+    Cursor<E> cursor = new StatementCursor<>(handler.queryCursor(stmt), stmt);
+    cursorStatements.put(stmt, cursor);
+    return cursor;
   }
 
   @Override
@@ -74,6 +107,8 @@ public class ReuseExecutor extends BaseExecutor {
       closeStatement(stmt);
     }
     statementMap.clear();
+    busyStatements.clear();
+    cursorStatements.clear();
     return Collections.emptyList();
   }
 
@@ -84,7 +119,9 @@ public class ReuseExecutor extends BaseExecutor {
     if (hasStatementFor(sql)) {
       stmt = getStatement(sql);
       applyTransactionTimeout(stmt);
+      metrics.recordHit();
     } else {
+      metrics.recordMiss();
       Connection connection = getConnection(statementLog);
       stmt = handler.prepare(connection, transaction.getTimeout());
       putStatement(sql, stmt);
@@ -106,7 +143,84 @@ public class ReuseExecutor extends BaseExecutor {
   }
 
   private void putStatement(String sql, Statement stmt) {
-    statementMap.put(sql, stmt);
+    Statement previous = statementMap.put(sql, stmt);
+    if (previous != null && previous != stmt) {
+      // its connection was closed
+      busyStatements.remove(previous);
+      cursorStatements.remove(previous);
+      closeStatement(previous);
+    }
+    if (maxStatements > 0 && statementMap.size() > maxStatements) {
+      evictStatements(stmt);
+    }
+  }
+
+  private void evictStatements(Statement added) {
+    Iterator<Statement> iterator = statementMap.values().iterator();
+    while (statementMap.size() > maxStatements && iterator.hasNext()) {
+      Statement stmt = iterator.next();
+      if (stmt != added && !isBusy(stmt)) {
+        iterator.remove();
+        closeStatement(stmt);
+        metrics.recordEviction();
+      }
+    }
+  }
+
+  private boolean isBusy(Statement stmt) {
+    if (busyStatements.contains(stmt)) {
+      return true;
+    }
+    Cursor<?> cursor = cursorStatements.get(stmt);
+    if (cursor != null && cursor.isConsumed()) {
+      cursorStatements.remove(stmt);
+      return false;
+    }
+    return cursor != null;
+  }
+
+  /**
+   * Releases its statement when it is closed, so that it can be closed when more statements are open.
+   */
+  private class StatementCursor<T> implements Cursor<T> {
+
+    private final Cursor<T> delegate;
+    private final Statement statement;
+
+    StatementCursor(Cursor<T> delegate, Statement statement) {
+      this.delegate = delegate;
+      this.statement = statement;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return delegate.isOpen();
+    }
+
+    @Override
+    public boolean isConsumed() {
+      return delegate.isConsumed();
+    }
+
+    @Override
+    public int getCurrentIndex() {
+      return delegate.getCurrentIndex();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      return delegate.iterator();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        delegate.close();
+      } finally {
+        // the same statement may have been executed again for a later cursor
+        cursorStatements.remove(statement, this);
+      }
+    }
   }
 
 }
@@ -0,0 +1,199 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * Coalesces concurrent second level cache misses on the same key so that only one session queries the database.
+ * <p>
+ * The first session that misses a key becomes the leader and runs the query, the others wait for its result. A
+ * follower gets its own copy made with the {@link CacheSerializer} of the cache, so it never shares mutable objects
+ * with the leader. The result of a read-only cache, which has no serializer, is shared as the cache would share it. A
+ * follower queries the database itself when the leader takes longer than the timeout, or when the result cannot be
+ * copied. If the leader fails, its exception is passed on to the followers.
+ * <p>
+ * One loader is shared by all the executors of a {@link org.apache.ibatis.session.Configuration}. An entry only
+ * lives in the map while its query runs.
+ *
+ * @since 3.5.2
+ */
+public class SingleFlightLoader {
+
+  private static final Log log = LogFactory.getLog(SingleFlightLoader.class);
+
+  private final ConcurrentHashMap<FlightKey, Flight> flights = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the result of the query, running it only if no other session is already running it.
+   *
+   * @param cache - the second level cache the result will be stored in
+   * @param key - the cache key of the query
+   * @param serializer - used to copy the result for the followers, null to share it as a read-only cache does
+   * @param timeout - how long a follower waits in milliseconds, 0 or less to wait until the leader is done
+   * @param query - runs the query in the caller's session
+   * @return The result, never shared with another session unless the serializer is null
+   * @throws SQLException if the query fails in this session
+   */
+  public <E> List<E> load(Cache cache, CacheKey key, CacheSerializer serializer, long timeout, Query<E> query) throws SQLException {
+    FlightKey flightKey = new FlightKey(cache, key);
+    Flight newFlight = new Flight(serializer);
+    Flight flight = flights.putIfAbsent(flightKey, newFlight);
+    if (flight == null) {
+      return lead(flightKey, newFlight, query);
+    }
+    List<E> list = follow(flight, cache, key, timeout);
+    return list != null ? list : query.run();
+  }
+
+  /**
+   * @return The number of queries currently running on behalf of several sessions
+   */
+  public int getInFlightCount() {
+    return flights.size();
+  }
+
+  private <E> List<E> lead(FlightKey flightKey, Flight flight, Query<E> query) throws SQLException {
+    try {
+      List<E> list = query.run();
+      flight.result = list;
+      return list;
+    } catch (SQLException | RuntimeException | Error e) {
+      flight.failure = e;
+      throw e;
+    } finally {
+      flights.remove(flightKey, flight);
+      flight.done.countDown();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private <E> List<E> follow(Flight flight, Cache cache, CacheKey key, long timeout) {
+    try {
+      if (timeout > 0) {
+        if (!flight.done.await(timeout, TimeUnit.MILLISECONDS)) {
+          if (log.isDebugEnabled()) {
+            log.debug("Gave up waiting " + timeout + "ms for a concurrent load of " + key + " in cache " + cache.getId());
+          }
+          return null;
+        }
+      } else {
+        flight.done.await();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ExecutorException("Interrupted while waiting for a concurrent load of " + key + " in cache " + cache.getId(), e);
+    }
+    if (flight.failure != null) {
+      throw new ExecutorException("A concurrent load of " + key + " in cache " + cache.getId() + " failed. Cause: " + flight.failure, flight.failure);
+    }
+    List<E> copy = (List<E>) flight.copy();
+    if (copy == null && log.isDebugEnabled()) {
+      log.debug("Could not copy the result of a concurrent load of " + key + " in cache " + cache.getId() + ", querying it again");
+    }
+    return copy;
+  }
+
+  /**
+   * The query of the calling session.
+   */
+  @FunctionalInterface
+  public interface Query<E> {
+    List<E> run() throws SQLException;
+  }
+
+  private static class Flight {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final CacheSerializer serializer;
+    private volatile List<?> result;
+    private volatile Throwable failure;
+    private byte[] serialized;
+    private boolean unserializable;
+
+    Flight(CacheSerializer serializer) {
+      this.serializer = serializer;
+    }
+
+    /**
+     * @return A copy of the result, the result itself without a serializer, null if it could not be copied
+     */
+    Object copy() {
+      if (serializer == null) {
+        return result;
+      }
+      byte[] bytes = serializeOnce();
+      if (bytes == null) {
+        return null;
+      }
+      try {
+        return serializer.deserialize(bytes);
+      } catch (CacheException e) {
+        return null;
+      }
+    }
+
+    private synchronized byte[] serializeOnce() {
+      if (serialized == null && result != null && !unserializable) {
+        try {
+          serialized = serializer.serialize(result);
+        } catch (CacheException e) {
+          // never share the instance of the leader, the follower queries on its own
+          unserializable = true;
+        }
+      }
+      return serialized;
+    }
+  }
+
+  private static class FlightKey {
+    private final Cache cache;
+    private final CacheKey key;
+
+    FlightKey(Cache cache, CacheKey key) {
+      this.cache = cache;
+      this.key = key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof FlightKey)) {
+        return false;
+      }
+      FlightKey other = (FlightKey) o;
+      return cache == other.cache && key.equals(other.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(cache) + key.hashCode();
+    }
+  }
+
+}
@@ -0,0 +1,129 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.CacheRefresher;
+import org.apache.ibatis.cache.RefreshableCacheKey;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+
+/**
+ * Reloads a second level cache entry through its original statement, in a transaction of its own.
+ * <p>
+ * The parameter values are copied when the entry is loaded, so later changes to the parameter object do not leak
+ * into the reload.
+ */
+class StatementCacheRefresher implements CacheRefresher {
+
+  private final MappedStatement ms;
+  private final RowBounds rowBounds;
+  private final String sql;
+  private final List<ParameterMapping> parameterMappings;
+  private final Map<String, Object> parameterValues;
+
+  private StatementCacheRefresher(MappedStatement ms, RowBounds rowBounds, BoundSql boundSql, Map<String, Object> parameterValues) {
+    this.ms = ms;
+    this.rowBounds = rowBounds;
+    this.sql = boundSql.getSql();
+    this.parameterMappings = boundSql.getParameterMappings();
+    this.parameterValues = parameterValues;
+  }
+
+  static RefreshableCacheKey refreshableKey(MappedStatement ms, Object parameterObject, RowBounds rowBounds, CacheKey key, BoundSql boundSql) {
+    Configuration configuration = ms.getConfiguration();
+    TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+    Map<String, Object> parameterValues = new HashMap<>();
+    MetaObject metaObject = null;
+    // mimic DefaultParameterHandler logic
+    for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+      if (parameterMapping.getMode() != ParameterMode.OUT) {
+        Object value;
+        String propertyName = parameterMapping.getProperty();
+        if (boundSql.hasAdditionalParameter(propertyName)) {
+          value = boundSql.getAdditionalParameter(propertyName);
+        } else if (parameterObject == null) {
+          value = null;
+        } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
+          value = parameterObject;
+        } else {
+          if (metaObject == null) {
+            metaObject = configuration.newMetaObject(parameterObject);
+          }
+          value = metaObject.getValue(propertyName);
+        }
+        parameterValues.put(propertyName, value);
+      }
+    }
+    return new RefreshableCacheKey(key, new StatementCacheRefresher(ms, rowBounds, boundSql, parameterValues));
+  }
+
+  @Override
+  public void refresh(CacheKey key) throws SQLException {
+    Configuration configuration = ms.getConfiguration();
+    Environment environment = configuration.getEnvironment();
+    if (environment == null || environment.getDataSource() == null) {
+      throw new ExecutorException("Could not refresh the cache entry of " + ms.getId() + ".  Environment was not configured.");
+    }
+    Transaction transaction = environment.getTransactionFactory().newTransaction(environment.getDataSource(), null, false);
+    // a caching executor would answer from the entry being refreshed
+    Executor executor = new SimpleExecutor(configuration, transaction);
+    for (Interceptor interceptor : configuration.getInterceptors()) {
+      executor = (Executor) interceptor.plugin(executor);
+    }
+    try {
+      BoundSql boundSql = new SnapshotBoundSql(configuration, sql, parameterMappings, parameterValues);
+      List<Object> list = executor.query(ms, null, rowBounds, Executor.NO_RESULT_HANDLER, key, boundSql);
+      ms.getCache().putObject(new RefreshableCacheKey(key, this), list);
+    } finally {
+      executor.close(false);
+    }
+  }
+
+  private static class SnapshotBoundSql extends BoundSql {
+    private final Map<String, Object> parameterValues;
+
+    SnapshotBoundSql(Configuration configuration, String sql, List<ParameterMapping> parameterMappings, Map<String, Object> parameterValues) {
+      super(configuration, sql, parameterMappings, null);
+      this.parameterValues = parameterValues;
+    }
+
+    @Override
+    public boolean hasAdditionalParameter(String name) {
+      return parameterValues.containsKey(name) || super.hasAdditionalParameter(name);
+    }
+
+    @Override
+    public Object getAdditionalParameter(String name) {
+      return parameterValues.containsKey(name) ? parameterValues.get(name) : super.getAdditionalParameter(name);
+    }
+  }
+
+}
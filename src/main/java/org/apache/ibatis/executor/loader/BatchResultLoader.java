@@ -0,0 +1,220 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.ResultExtractor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.defaults.DefaultSqlSession.StrictMap;
+
+/**
+ * Loads a nested select for many parent objects at once.
+ * <p>
+ * Used for mappings with a {@link ResultMapping#getBatchSize() batchSize}. Instead of running the nested select once
+ * per parent key, the keys are collected and the select runs once per chunk of {@code batchSize} keys. It receives
+ * them as its {@code list} (or {@code collection}) parameter, typically for a {@code <foreach>} that builds an IN
+ * list. Each child row is given back to the parents whose key equals the child's
+ * {@link ResultMapping#getForeignColumn() foreignColumn}.
+ */
+public class BatchResultLoader {
+
+  private final Configuration configuration;
+  private final Executor executor;
+  private final MappedStatement mappedStatement;
+  private final ResultMapping resultMapping;
+  private final Class<?> targetType;
+  private final ResultExtractor resultExtractor;
+  private final long creatorThreadId;
+  // parent key -> the parents waiting for it, in the order the keys were added
+  private final Map<Object, KeyedParents> pendingParents = new LinkedHashMap<>();
+  private String foreignProperty;
+
+  public BatchResultLoader(Configuration configuration, Executor executor, MappedStatement mappedStatement, ResultMapping resultMapping, Class<?> targetType) {
+    this.configuration = configuration;
+    this.executor = executor;
+    this.mappedStatement = mappedStatement;
+    this.resultMapping = resultMapping;
+    this.targetType = targetType;
+    this.resultExtractor = new ResultExtractor(configuration, configuration.getObjectFactory());
+    this.creatorThreadId = Thread.currentThread().getId();
+  }
+
+  /**
+   * Registers a parent whose property is set by a later {@link #load()}. The pending keys are loaded right away once
+   * there are {@code batchSize} of them.
+   *
+   * @param key - the parameter the nested select would have been called with for this parent
+   * @param metaResultObject - the parent
+   */
+  public void addParent(Object key, MetaObject metaResultObject) throws SQLException {
+    pendingParents.computeIfAbsent(normalize(key), k -> new KeyedParents(key)).parents.add(metaResultObject);
+    if (pendingParents.size() >= resultMapping.getBatchSize()) {
+      load();
+    }
+  }
+
+  public boolean isEmpty() {
+    return pendingParents.isEmpty();
+  }
+
+  /**
+   * Runs the nested select for the pending keys and sets the property of their parents.
+   */
+  public void load() throws SQLException {
+    if (pendingParents.isEmpty()) {
+      return;
+    }
+    List<Object> keys = new ArrayList<>(pendingParents.size());
+    for (KeyedParents keyedParents : pendingParents.values()) {
+      keys.add(keyedParents.key);
+    }
+    Map<Object, KeyedParents> parents = new HashMap<>(pendingParents);
+    pendingParents.clear();
+
+    List<Object> children = selectList(keys);
+    Map<Object, List<Object>> childrenByKey = new HashMap<>();
+    for (Object child : children) {
+      Object foreignKey = getForeignKey(child);
+      if (foreignKey != null) {
+        childrenByKey.computeIfAbsent(normalize(foreignKey), k -> new ArrayList<>()).add(child);
+      }
+    }
+    String property = resultMapping.getProperty();
+    for (Map.Entry<Object, KeyedParents> entry : parents.entrySet()) {
+      List<Object> keyChildren = childrenByKey.getOrDefault(entry.getKey(), new ArrayList<>());
+      Object value = resultExtractor.extractObjectFromList(keyChildren, targetType);
+      for (MetaObject metaResultObject : entry.getValue().parents) {
+        if (value != null || (configuration.isCallSettersOnNulls() && !metaResultObject.getSetterType(property).isPrimitive())) {
+          setValue(metaResultObject, property, value);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sets the loaded property of a parent.
+   *
+   * @param metaResultObject - the parent
+   * @param property - the property of the mapping
+   * @param value - the children of the parent, extracted for the type of the property
+   */
+  protected void setValue(MetaObject metaResultObject, String property, Object value) {
+    metaResultObject.setValue(property, value);
+  }
+
+  /**
+   * Builds the parameter a batched nested select is called with. Lazy loads and statements that cannot be batched
+   * call it with a single key through this parameter as well.
+   *
+   * @param keys - the parent keys
+   * @return The parameter object
+   */
+  public static Object newParameterObject(List<Object> keys) {
+    StrictMap<Object> parameterObject = new StrictMap<>();
+    parameterObject.put("collection", keys);
+    parameterObject.put("list", keys);
+    return parameterObject;
+  }
+
+  protected List<Object> selectList(List<Object> keys) throws SQLException {
+    Object parameterObject = newParameterObject(keys);
+    BoundSql boundSql = mappedStatement.getBoundSql(parameterObject);
+    // same as ResultLoader, a lazy load may happen on another thread or after the session was closed
+    Executor localExecutor = executor;
+    if (Thread.currentThread().getId() != creatorThreadId || localExecutor.isClosed()) {
+      localExecutor = ResultLoader.newExecutor(configuration);
+    }
+    try {
+      CacheKey cacheKey = localExecutor.createCacheKey(mappedStatement, parameterObject, RowBounds.DEFAULT, boundSql);
+      return localExecutor.query(mappedStatement, parameterObject, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER, cacheKey, boundSql);
+    } finally {
+      if (localExecutor != executor) {
+        localExecutor.close(false);
+      }
+    }
+  }
+
+  private Object getForeignKey(Object child) {
+    if (child instanceof Map) {
+      // column labels of a map result keep the case the driver reports
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) child).entrySet()) {
+        if (resultMapping.getForeignColumn().equalsIgnoreCase(String.valueOf(entry.getKey()))) {
+          return entry.getValue();
+        }
+      }
+      return null;
+    }
+    MetaObject metaChild = configuration.newMetaObject(child);
+    if (foreignProperty == null) {
+      foreignProperty = findForeignProperty(metaChild);
+    }
+    return metaChild.getValue(foreignProperty);
+  }
+
+  private String findForeignProperty(MetaObject metaChild) {
+    String foreignColumn = resultMapping.getForeignColumn();
+    for (ResultMap resultMap : mappedStatement.getResultMaps()) {
+      for (ResultMapping childMapping : resultMap.getPropertyResultMappings()) {
+        if (childMapping.getProperty() != null && foreignColumn.equalsIgnoreCase(childMapping.getColumn())) {
+          return childMapping.getProperty();
+        }
+      }
+    }
+    String property = metaChild.findProperty(foreignColumn, configuration.isMapUnderscoreToCamelCase());
+    if (property == null) {
+      throw new ExecutorException("No property of " + metaChild.getOriginalObject().getClass().getName()
+          + " is mapped to the foreignColumn '" + foreignColumn + "' needed to batch the nested select '"
+          + mappedStatement.getId() + "' of property '" + resultMapping.getProperty() + "'.");
+    }
+    return property;
+  }
+
+  /**
+   * Keys read from the parent and from the children may be of different numeric types.
+   */
+  private static Object normalize(Object key) {
+    if (key instanceof Number) {
+      return new BigDecimal(key.toString()).stripTrailingZeros();
+    }
+    return key;
+  }
+
+  private static class KeyedParents {
+    private final Object key;
+    private final List<MetaObject> parents = new ArrayList<>();
+
+    KeyedParents(Object key) {
+      this.key = key;
+    }
+  }
+
+}
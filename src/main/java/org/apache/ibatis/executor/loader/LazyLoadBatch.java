@@ -0,0 +1,186 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.loader.ResultLoaderMap.LoadPair;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * The lazy loaders of one {@link ResultMapping#getBatchSize() batched} property for the objects of a result set.
+ * <p>
+ * When one of these objects loads the property, the siblings that have not loaded it yet are loaded along with it,
+ * up to {@code batchSize} of them, with one call of the nested select through a {@link BatchResultLoader}.
+ * <p>
+ * The values of the siblings are kept here and set by their own loaders, the next time the siblings are read. A
+ * sibling read while its value is being loaded waits for it. The loading thread never sets the property of another
+ * object, which would need the lock its lazy loading proxy holds.
+ */
+public class LazyLoadBatch {
+
+  private final Configuration configuration;
+  private final Executor executor;
+  private final MappedStatement mappedStatement;
+  private final ResultMapping resultMapping;
+  private final Class<?> targetType;
+  // siblings that may still be loading the property, in the order of the rows
+  private final List<Sibling> siblings = new ArrayList<>();
+  // siblings loaded along with another object, until they read their value
+  private final Map<LoadPair, Batch> loadedSiblings = new IdentityHashMap<>();
+
+  public LazyLoadBatch(Configuration configuration, Executor executor, MappedStatement mappedStatement, ResultMapping resultMapping, Class<?> targetType) {
+    this.configuration = configuration;
+    this.executor = executor;
+    this.mappedStatement = mappedStatement;
+    this.resultMapping = resultMapping;
+    this.targetType = targetType;
+  }
+
+  synchronized void add(ResultLoaderMap resultLoaderMap, LoadPair loadPair, Object key) {
+    siblings.add(new Sibling(resultLoaderMap, loadPair, key));
+  }
+
+  /**
+   * Loads the property of the object of {@code loadPair} and of the next pending siblings.
+   *
+   * @param loadPair - the loader that was triggered, already removed from its {@link ResultLoaderMap}
+   */
+  void load(LoadPair loadPair) throws SQLException {
+    Batch batch;
+    List<Sibling> claimed = null;
+    synchronized (this) {
+      batch = loadedSiblings.remove(loadPair);
+      if (batch == null) {
+        batch = new Batch();
+        claimed = claim(loadPair, batch);
+      }
+    }
+    if (claimed == null) {
+      // loaded, or being loaded, along with another object
+      batch.setValue(loadPair);
+      return;
+    }
+    if (claimed.isEmpty()) {
+      // another thread dropped it while this one was removing it from its ResultLoaderMap
+      loadPair.loadAlone();
+      return;
+    }
+    load(claimed, batch);
+    batch.setValue(loadPair);
+  }
+
+  private void load(List<Sibling> claimed, Batch batch) throws SQLException {
+    BatchResultLoader batchResultLoader = new BatchResultLoader(configuration, executor, mappedStatement, resultMapping, targetType) {
+      @Override
+      protected void setValue(MetaObject metaResultObject, String property, Object value) {
+        batch.values.put(metaResultObject, value);
+      }
+    };
+    for (Sibling sibling : claimed) {
+      batchResultLoader.addParent(sibling.key, sibling.loadPair.getMetaResultObject());
+    }
+    try {
+      batchResultLoader.load();
+      batch.loaded();
+    } finally {
+      batch.done.countDown();
+    }
+  }
+
+  private List<Sibling> claim(LoadPair loadPair, Batch batch) {
+    List<Sibling> claimed = new ArrayList<>();
+    int start = 0;
+    while (start < siblings.size() && siblings.get(start).loadPair != loadPair) {
+      start++;
+    }
+    if (start == siblings.size()) {
+      return claimed;
+    }
+    claimed.add(siblings.remove(start));
+    // the rows after the triggering one are the likeliest to be read next
+    Iterator<Sibling> iterator = siblings.listIterator(start);
+    collect(iterator, claimed, batch);
+    collect(siblings.iterator(), claimed, batch);
+    return claimed;
+  }
+
+  private void collect(Iterator<Sibling> iterator, List<Sibling> claimed, Batch batch) {
+    while (claimed.size() < resultMapping.getBatchSize() && iterator.hasNext()) {
+      Sibling sibling = iterator.next();
+      // false when the sibling set the property, or is loading it and will not find itself here
+      if (sibling.resultLoaderMap.isPending(sibling.loadPair)) {
+        claimed.add(sibling);
+        loadedSiblings.put(sibling.loadPair, batch);
+      }
+      iterator.remove();
+    }
+  }
+
+  private static class Sibling {
+    private final ResultLoaderMap resultLoaderMap;
+    private final LoadPair loadPair;
+    private final Object key;
+
+    Sibling(ResultLoaderMap resultLoaderMap, LoadPair loadPair, Object key) {
+      this.resultLoaderMap = resultLoaderMap;
+      this.loadPair = loadPair;
+      this.key = key;
+    }
+  }
+
+  /**
+   * The values loaded by one call of the nested select.
+   */
+  private static class Batch {
+    private final CountDownLatch done = new CountDownLatch(1);
+    // written by the loading thread before done is counted down
+    private final Map<MetaObject, Object> values = new IdentityHashMap<>();
+    private volatile boolean loaded;
+
+    void loaded() {
+      loaded = true;
+    }
+
+    void setValue(LoadPair loadPair) throws SQLException {
+      try {
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (!loaded) {
+        // the nested select failed, or this thread was interrupted
+        loadPair.loadAlone();
+        return;
+      }
+      MetaObject metaResultObject = loadPair.getMetaResultObject();
+      if (values.containsKey(metaResultObject)) {
+        loadPair.setValue(values.get(metaResultObject));
+      }
+    }
+  }
+
+}
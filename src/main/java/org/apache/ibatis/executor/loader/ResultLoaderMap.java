@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.BaseExecutor;
@@ -47,16 +48,36 @@ import org.apache.ibatis.session.RowBounds;
  */
 public class ResultLoaderMap {
 
-  private final Map<String, LoadPair> loaderMap = new HashMap<>();
+  // concurrent because a LazyLoadBatch checks the loaders of sibling objects from the thread loading any of them
+  private final Map<String, LoadPair> loaderMap = new ConcurrentHashMap<>();
 
   public void addLoader(String property, MetaObject metaResultObject, ResultLoader resultLoader) {
+    addLoader(property, metaResultObject, resultLoader, null, null);
+  }
+
+  /**
+   * Adds a loader whose property is loaded together with the same property of its siblings.
+   *
+   * @param property - the property to load
+   * @param metaResultObject - the object to set the property of
+   * @param resultLoader - the loader used when the object is loaded on its own, after deserialization
+   * @param batch - the loaders of the siblings, or null
+   * @param batchKey - the key of this object within the batch
+   * @since 3.5.2
+   */
+  public void addLoader(String property, MetaObject metaResultObject, ResultLoader resultLoader, LazyLoadBatch batch, Object batchKey) {
     String upperFirst = getUppercaseFirstProperty(property);
     if (!upperFirst.equalsIgnoreCase(property) && loaderMap.containsKey(upperFirst)) {
       throw new ExecutorException("Nested lazy loaded result property '" + property
               + "' for query id '" + resultLoader.mappedStatement.getId()
               + " already exists in the result map. The leftmost property of all lazy loaded properties must be unique within a result map.");
     }
-    loaderMap.put(upperFirst, new LoadPair(property, metaResultObject, resultLoader));
+    LoadPair loadPair = new LoadPair(property, metaResultObject, resultLoader);
+    loaderMap.put(upperFirst, loadPair);
+    if (batch != null) {
+      loadPair.batch = batch;
+      batch.add(this, loadPair, batchKey);
+    }
   }
 
   public final Map<String, LoadPair> getProperties() {
@@ -88,6 +109,13 @@ public class ResultLoaderMap {
     loaderMap.remove(property.toUpperCase(Locale.ENGLISH));
   }
 
+  /**
+   * @return True if the loader was neither loaded nor removed by a setter, for a batch that loads it along with a sibling
+   */
+  boolean isPending(LoadPair loadPair) {
+    return loaderMap.get(getUppercaseFirstProperty(loadPair.property)) == loadPair;
+  }
+
   public void loadAll() throws SQLException {
     final Set<String> methodNameSet = loaderMap.keySet();
     String[] methodNames = methodNameSet.toArray(new String[methodNameSet.size()]);
@@ -123,6 +151,10 @@ public class ResultLoaderMap {
      * Result loader which loads unread properties.
      */
     private transient ResultLoader resultLoader;
+    /**
+     * Loaders of the same property of sibling objects, loaded together.
+     */
+    private transient LazyLoadBatch batch;
     /**
      * Wow, logger.
      */
@@ -206,6 +238,18 @@ public class ResultLoaderMap {
                 metaResultObject.getSetterType(this.property), null, null);
       }
 
+      if (this.batch != null && this.serializationCheck != null) {
+        this.batch.load(this);
+        return;
+      }
+
+      loadAlone();
+    }
+
+    /**
+     * Loads the property of this object only, even when it is part of a {@link LazyLoadBatch}.
+     */
+    void loadAlone() throws SQLException {
       /* We are using a new executor because we may be (and likely are) on a new thread
        * and executors aren't thread safe. (Is this sufficient?)
        *
@@ -219,6 +263,14 @@ public class ResultLoaderMap {
       this.metaResultObject.setValue(property, this.resultLoader.loadResult());
     }
 
+    void setValue(Object value) {
+      this.metaResultObject.setValue(property, value);
+    }
+
+    MetaObject getMetaResultObject() {
+      return metaResultObject;
+    }
+
     private Configuration getConfiguration() {
       if (this.configurationFactory == null) {
         throw new ExecutorException("Cannot get Configuration as configuration factory was not set.");
@@ -0,0 +1,199 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.ObjectTypeHandler;
+import org.apache.ibatis.type.TypeHandler;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.apache.ibatis.type.UnknownTypeHandler;
+
+/**
+ * The columns of a result set: their labels, JDBC types and Java class names.
+ * Result sets with the same columns share one instance, together with the type handlers,
+ * column indexes and {@link RowMapper}s resolved for them.
+ */
+final class ColumnSignature {
+
+  private static final Integer NOT_FOUND = 0;
+  private static final String TYPE_PACKAGE = TypeHandler.class.getName().substring(0, TypeHandler.class.getName().lastIndexOf('.') + 1);
+  private static final ClassValue<Boolean> BUILT_IN = new ClassValue<Boolean>() {
+    @Override
+    protected Boolean computeValue(Class<?> type) {
+      return type.getClassLoader() == TypeHandler.class.getClassLoader()
+          && type.getName().startsWith(TYPE_PACKAGE) && type.getName().indexOf('.', TYPE_PACKAGE.length()) < 0;
+    }
+  };
+
+  private final boolean columnLabels;
+  private final List<String> columnNames;
+  private final List<JdbcType> jdbcTypes;
+  private final List<String> classNames;
+  private final int hashCode;
+  private final ConcurrentMap<String, ConcurrentMap<Class<?>, TypeHandler<?>>> typeHandlers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Integer> columnIndexes = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, RowMapper> rowMappers = new ConcurrentHashMap<>();
+
+  /**
+   * @param columnLabels - whether the column names are the labels the driver resolves names with
+   */
+  ColumnSignature(boolean columnLabels, List<String> columnNames, List<JdbcType> jdbcTypes, List<String> classNames) {
+    this.columnLabels = columnLabels;
+    this.columnNames = Collections.unmodifiableList(columnNames);
+    this.jdbcTypes = Collections.unmodifiableList(jdbcTypes);
+    this.classNames = Collections.unmodifiableList(classNames);
+    this.hashCode = (((columnLabels ? 1 : 0) * 31 + columnNames.hashCode()) * 31 + jdbcTypes.hashCode()) * 31 + classNames.hashCode();
+  }
+
+  List<String> getColumnNames() {
+    return columnNames;
+  }
+
+  List<JdbcType> getJdbcTypes() {
+    return jdbcTypes;
+  }
+
+  List<String> getClassNames() {
+    return classNames;
+  }
+
+  /**
+   * Finds the column the driver reads for a column name: the first one whose label matches, ignoring case.
+   *
+   * @return The index of the column, 0 if it is not found or the names are not labels
+   */
+  int getColumnIndex(String columnName) {
+    if (!columnLabels || columnName == null) {
+      return 0;
+    }
+    Integer columnIndex = columnIndexes.get(columnName);
+    if (columnIndex == null) {
+      columnIndex = NOT_FOUND;
+      for (int i = 0; i < columnNames.size(); i++) {
+        if (columnName.equalsIgnoreCase(columnNames.get(i))) {
+          columnIndex = i + 1;
+          break;
+        }
+      }
+      columnIndexes.putIfAbsent(columnName, columnIndex);
+    }
+    return columnIndex;
+  }
+
+  /**
+   * The built-in type handlers read a column by index as they do by label. Other handlers may only implement
+   * the label variant, so they are still given the column name.
+   */
+  static boolean canReadByIndex(TypeHandler<?> typeHandler) {
+    return BUILT_IN.get(typeHandler.getClass());
+  }
+
+  JdbcType getJdbcType(String columnName) {
+    for (int i = 0; i < columnNames.size(); i++) {
+      if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+        return jdbcTypes.get(i);
+      }
+    }
+    return null;
+  }
+
+  TypeHandler<?> getTypeHandler(TypeHandlerRegistry typeHandlerRegistry, Class<?> propertyType, String columnName) {
+    if (propertyType == null || columnName == null) {
+      return resolveTypeHandler(typeHandlerRegistry, propertyType, columnName);
+    }
+    ConcurrentMap<Class<?>, TypeHandler<?>> columnHandlers = typeHandlers.computeIfAbsent(columnName, k -> new ConcurrentHashMap<>());
+    TypeHandler<?> handler = columnHandlers.get(propertyType);
+    if (handler == null) {
+      handler = resolveTypeHandler(typeHandlerRegistry, propertyType, columnName);
+      columnHandlers.putIfAbsent(propertyType, handler);
+    }
+    return handler;
+  }
+
+  private TypeHandler<?> resolveTypeHandler(TypeHandlerRegistry typeHandlerRegistry, Class<?> propertyType, String columnName) {
+    JdbcType jdbcType = getJdbcType(columnName);
+    TypeHandler<?> handler = typeHandlerRegistry.getTypeHandler(propertyType, jdbcType);
+    // Replicate logic of UnknownTypeHandler#resolveTypeHandler
+    // See issue #59 comment 10
+    if (handler == null || handler instanceof UnknownTypeHandler) {
+      final int index = columnNames.indexOf(columnName);
+      final Class<?> javaType = resolveClass(index < 0 ? null : classNames.get(index));
+      if (javaType != null && jdbcType != null) {
+        handler = typeHandlerRegistry.getTypeHandler(javaType, jdbcType);
+      } else if (javaType != null) {
+        handler = typeHandlerRegistry.getTypeHandler(javaType);
+      } else if (jdbcType != null) {
+        handler = typeHandlerRegistry.getTypeHandler(jdbcType);
+      }
+    }
+    if (handler == null || handler instanceof UnknownTypeHandler) {
+      handler = new ObjectTypeHandler();
+    }
+    return handler;
+  }
+
+  private Class<?> resolveClass(String className) {
+    try {
+      // #699 className could be null
+      if (className != null) {
+        return Resources.classForName(className);
+      }
+    } catch (ClassNotFoundException e) {
+      // ignore
+    }
+    return null;
+  }
+
+  RowMapper getRowMapper(ResultMap resultMap, String columnPrefix) {
+    final String mapKey = resultMap.getId() + ":" + columnPrefix;
+    RowMapper rowMapper = rowMappers.get(mapKey);
+    // result maps built outside of the configuration may reuse an id, so compare the instance too
+    if (rowMapper == null || rowMapper.getResultMap() != resultMap) {
+      rowMapper = new RowMapper(this, resultMap, columnPrefix);
+      rowMappers.put(mapKey, rowMapper);
+    }
+    return rowMapper;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ColumnSignature)) {
+      return false;
+    }
+    ColumnSignature that = (ColumnSignature) o;
+    return hashCode == that.hashCode
+        && columnLabels == that.columnLabels
+        && columnNames.equals(that.columnNames)
+        && jdbcTypes.equals(that.jdbcTypes)
+        && classNames.equals(that.classNames);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+}
@@ -0,0 +1,270 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.loader.ResultLoader;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.transaction.Transaction;
+
+/**
+ * Eager nested selects of one statement that run on the
+ * {@link Configuration#getNestedQueryThreadPool() nested query thread pool}.
+ * <p>
+ * A worker opens its own executor and borrows a connection before it takes a task. The calling thread, which holds
+ * the connection of the session, runs the tasks that no worker took by the time it joins them. So it never waits for
+ * a worker that waits for a connection, and a pool with no connection left to spare only makes the nested selects
+ * run on the calling thread, as they would without parallelism. Rows whose nested select has the same cache key
+ * share one task, which is what the local cache would have done for them. The values are set on the calling thread
+ * by {@link #join()}.
+ * <p>
+ * The nested selects of a statement whose nested selects can lead back to one of them run on the calling thread:
+ * the local cache of the session is what links the circular references to the objects being loaded.
+ */
+class ParallelNestedQueries {
+
+  private static final ThreadLocal<Boolean> WORKER = new ThreadLocal<>();
+
+  private final Configuration configuration;
+  private final ExecutorService threadPool;
+  private final Map<List<Object>, Task> tasks = new LinkedHashMap<>();
+  private final List<PendingValue> pendingValues = new ArrayList<>();
+
+  private ParallelNestedQueries(Configuration configuration, ExecutorService threadPool) {
+    this.configuration = configuration;
+    this.threadPool = threadPool;
+  }
+
+  /**
+   * @param configuration - the configuration
+   * @param mappedStatement - the statement whose results are read
+   * @return Null if nested selects must run on the calling thread: parallelism is off, there is no environment to
+   *         open connections from, the caller is itself running a parallel nested select, or the nested selects of
+   *         the statement can be circular
+   */
+  static ParallelNestedQueries newInstance(Configuration configuration, MappedStatement mappedStatement) {
+    Integer parallelism = configuration.getNestedQueryParallelism();
+    if (parallelism == null || parallelism <= 0 || configuration.getEnvironment() == null || WORKER.get() != null
+        || hasCircularNestedQueries(configuration, mappedStatement)) {
+      return null;
+    }
+    return new ParallelNestedQueries(configuration, configuration.getNestedQueryThreadPool());
+  }
+
+  void submit(ResultLoader resultLoader, MappedStatement nestedQuery, Object parameterObject, BoundSql boundSql,
+      CacheKey key, Class<?> targetType, MetaObject metaObject, String property) {
+    Task task = tasks.computeIfAbsent(Arrays.asList(key, targetType), k -> {
+      Task newTask = new Task(resultLoader);
+      newTask.future = threadPool.submit(() -> runOnWorker(newTask, nestedQuery, parameterObject, boundSql, key, targetType));
+      return newTask;
+    });
+    pendingValues.add(new PendingValue(task, metaObject, property));
+  }
+
+  /**
+   * Runs the nested selects no worker took, waits for the others and sets their values.
+   */
+  void join() throws SQLException {
+    for (Task task : tasks.values()) {
+      if (task.claim()) {
+        // no worker could take it yet, the session's own executor runs it
+        task.run(task.resultLoader);
+      }
+    }
+    for (PendingValue pendingValue : pendingValues) {
+      Object value = pendingValue.task.get();
+      MetaObject metaObject = pendingValue.metaObject;
+      String property = pendingValue.property;
+      if (value != null || (configuration.isCallSettersOnNulls() && !metaObject.getSetterType(property).isPrimitive())) {
+        metaObject.setValue(property, value);
+      }
+    }
+    pendingValues.clear();
+    tasks.clear();
+  }
+
+  /**
+   * Cancels the nested selects that did not start yet, after a failure.
+   */
+  void cancel() {
+    for (Task task : tasks.values()) {
+      task.claim();
+      task.future.cancel(false);
+    }
+    pendingValues.clear();
+    tasks.clear();
+  }
+
+  private void runOnWorker(Task task, MappedStatement nestedQuery, Object parameterObject, BoundSql boundSql,
+      CacheKey key, Class<?> targetType) {
+    WORKER.set(Boolean.TRUE);
+    Executor executor = null;
+    try {
+      executor = newExecutor();
+      // borrowed before the task is taken, the calling thread must never wait for a worker that waits for a connection
+      executor.getTransaction().getConnection();
+      if (task.claim()) {
+        task.run(new ResultLoader(configuration, executor, nestedQuery, parameterObject, targetType, key, boundSql));
+      }
+    } catch (SQLException | RuntimeException e) {
+      // the task was not taken, the calling thread runs it
+    } finally {
+      if (executor != null) {
+        executor.close(false);
+      }
+      WORKER.remove();
+    }
+  }
+
+  private Executor newExecutor() {
+    final Environment environment = configuration.getEnvironment();
+    final DataSource dataSource = environment.getDataSource();
+    final Transaction tx = environment.getTransactionFactory().newTransaction(dataSource, null, false);
+    return configuration.newExecutor(tx, ExecutorType.SIMPLE);
+  }
+
+  private static boolean hasCircularNestedQueries(Configuration configuration, MappedStatement mappedStatement) {
+    return leadsBack(configuration, mappedStatement, new HashSet<>(), new HashSet<>());
+  }
+
+  private static boolean leadsBack(Configuration configuration, MappedStatement statement, Set<String> path, Set<String> done) {
+    if (path.contains(statement.getId())) {
+      return true;
+    }
+    if (!done.add(statement.getId())) {
+      return false;
+    }
+    path.add(statement.getId());
+    Set<String> nestedQueryIds = new HashSet<>();
+    Set<String> visitedResultMaps = new HashSet<>();
+    for (ResultMap resultMap : statement.getResultMaps()) {
+      collectNestedQueryIds(configuration, resultMap, nestedQueryIds, visitedResultMaps);
+    }
+    for (String nestedQueryId : nestedQueryIds) {
+      if (configuration.hasStatement(nestedQueryId, false)
+          && leadsBack(configuration, configuration.getMappedStatement(nestedQueryId, false), path, done)) {
+        return true;
+      }
+    }
+    path.remove(statement.getId());
+    return false;
+  }
+
+  private static void collectNestedQueryIds(Configuration configuration, ResultMap resultMap, Set<String> nestedQueryIds, Set<String> visitedResultMaps) {
+    if (!visitedResultMaps.add(resultMap.getId())) {
+      return;
+    }
+    for (ResultMapping resultMapping : resultMap.getResultMappings()) {
+      if (resultMapping.getNestedQueryId() != null) {
+        nestedQueryIds.add(resultMapping.getNestedQueryId());
+      }
+      collectNestedQueryIds(configuration, resultMapping.getNestedResultMapId(), nestedQueryIds, visitedResultMaps);
+    }
+    if (resultMap.getDiscriminator() != null) {
+      for (String caseResultMapId : resultMap.getDiscriminator().getDiscriminatorMap().values()) {
+        collectNestedQueryIds(configuration, caseResultMapId, nestedQueryIds, visitedResultMaps);
+      }
+    }
+  }
+
+  private static void collectNestedQueryIds(Configuration configuration, String resultMapId, Set<String> nestedQueryIds, Set<String> visitedResultMaps) {
+    if (resultMapId != null && configuration.hasResultMap(resultMapId)) {
+      collectNestedQueryIds(configuration, configuration.getResultMap(resultMapId), nestedQueryIds, visitedResultMaps);
+    }
+  }
+
+  private static class Task {
+    private final ResultLoader resultLoader;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private Future<?> future;
+    private volatile Object value;
+    private volatile Throwable failure;
+
+    Task(ResultLoader resultLoader) {
+      this.resultLoader = resultLoader;
+    }
+
+    boolean claim() {
+      return claimed.compareAndSet(false, true);
+    }
+
+    void run(ResultLoader loader) {
+      try {
+        value = loader.loadResult();
+      } catch (SQLException | RuntimeException | Error e) {
+        failure = e;
+      } finally {
+        done.countDown();
+      }
+    }
+
+    Object get() throws SQLException {
+      try {
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ExecutorException("Interrupted while waiting for a nested query.", e);
+      }
+      Throwable cause = failure;
+      if (cause instanceof SQLException) {
+        throw (SQLException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      return value;
+    }
+  }
+
+  private static class PendingValue {
+    private final Task task;
+    private final MetaObject metaObject;
+    private final String property;
+
+    PendingValue(Task task, MetaObject metaObject, String property) {
+      this.task = task;
+      this.metaObject = metaObject;
+      this.property = property;
+    }
+  }
+
+}
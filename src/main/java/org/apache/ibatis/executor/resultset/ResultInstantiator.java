@@ -0,0 +1,85 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.Reflector;
+
+/**
+ * The constructor of a constructor-mapped result type, looked up once with the argument types of the mapping
+ * instead of with every row as {@link org.apache.ibatis.reflection.factory.DefaultObjectFactory} does.
+ * Only used while the configuration has the default object factory.
+ */
+final class ResultInstantiator {
+
+  private final Class<?> type;
+  private final Constructor<?> constructor;
+
+  private ResultInstantiator(Class<?> type, Constructor<?> constructor) {
+    this.type = type;
+    this.constructor = constructor;
+  }
+
+  /**
+   * @param type - the result type
+   * @param argTypes - the java types of the constructor mappings
+   * @return The instantiator, null when there is no such constructor and the object factory should report it
+   */
+  static ResultInstantiator forType(Class<?> type, Class<?>[] argTypes) {
+    try {
+      return forConstructor(type.getDeclaredConstructor(argTypes));
+    } catch (NoSuchMethodException | SecurityException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @param constructor - a constructor of the result type
+   * @return The instantiator, null when the type cannot be created this way
+   */
+  static ResultInstantiator forConstructor(Constructor<?> constructor) {
+    final Class<?> type = constructor.getDeclaringClass();
+    if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+      return null;
+    }
+    boolean accessible = Modifier.isPublic(constructor.getModifiers()) && Modifier.isPublic(type.getModifiers());
+    if (!accessible && Reflector.canControlMemberAccessible()) {
+      try {
+        constructor.setAccessible(true);
+      } catch (RuntimeException e) {
+        // a SecurityException, or an InaccessibleObjectException from a module that is not open, checked by newInstance()
+      }
+    }
+    return new ResultInstantiator(type, constructor);
+  }
+
+  Object newInstance(Object[] args) {
+    try {
+      return constructor.newInstance(args);
+    } catch (Exception e) {
+      // same as DefaultObjectFactory
+      String argTypes = Arrays.stream(constructor.getParameterTypes()).map(Class::getSimpleName).collect(Collectors.joining(","));
+      String argValues = Arrays.stream(args).map(String::valueOf).collect(Collectors.joining(","));
+      throw new ReflectionException("Error instantiating " + type + " with invalid types (" + argTypes + ") or values (" + argValues + "). Cause: " + e, e);
+    }
+  }
+
+}
@@ -0,0 +1,94 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import org.apache.ibatis.reflection.ArrayUtil;
+
+/**
+ * Identifies the object a row maps to with a nested result map, so that the following rows with the same key add to it.
+ * The columns are known from the {@link RowMapper.RowKeyColumns} that read the values, so unlike a
+ * {@link org.apache.ibatis.cache.CacheKey} the key only holds the values, and a nested key shares the key of its parent
+ * instead of copying it.
+ */
+final class RowKey {
+
+  /**
+   * The key of a row without any value identifying the object, such objects are never merged.
+   */
+  static final RowKey NULL_ROW_KEY = new RowKey(null, new Object[0], null);
+
+  private final Object columns;
+  private final Object[] values;
+  private final RowKey parent;
+  private final int hashCode;
+
+  RowKey(Object columns, Object[] values, RowKey parent) {
+    this.columns = columns;
+    this.values = values;
+    this.parent = parent;
+    int hashCode = System.identityHashCode(columns);
+    for (Object value : values) {
+      hashCode = 31 * hashCode + ArrayUtil.hashCode(value);
+    }
+    this.hashCode = parent == null ? hashCode : 31 * hashCode + parent.hashCode;
+  }
+
+  /**
+   * @param parentRowKey - the key of the object the nested object belongs to
+   * @return The key of the nested object within its parent, {@link #NULL_ROW_KEY} when one of them has no values
+   */
+  RowKey combine(RowKey parentRowKey) {
+    if (this == NULL_ROW_KEY || parentRowKey == NULL_ROW_KEY) {
+      return NULL_ROW_KEY;
+    }
+    return new RowKey(columns, values, parentRowKey);
+  }
+
+  @Override
+  public boolean equals(Object object) {
+    if (this == object) {
+      return true;
+    }
+    if (!(object instanceof RowKey)) {
+      return false;
+    }
+    final RowKey that = (RowKey) object;
+    if (hashCode != that.hashCode || columns != that.columns || values.length != that.values.length) {
+      return false;
+    }
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != that.values[i] && !ArrayUtil.equals(values[i], that.values[i])) {
+        return false;
+      }
+    }
+    return parent == null ? that.parent == null : parent.equals(that.parent);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder builder = new StringBuilder().append(hashCode);
+    for (Object value : values) {
+      builder.append(':').append(ArrayUtil.toString(value));
+    }
+    return parent == null ? builder.toString() : builder.append(" in ").append(parent).toString();
+  }
+
+}
@@ -0,0 +1,562 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.lang.reflect.Constructor;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ibatis.executor.result.ResultMapException;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.MetaClass;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.invoker.PrimitiveSetter;
+import org.apache.ibatis.reflection.wrapper.BeanWrapper;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.DoubleTypeHandler;
+import org.apache.ibatis.type.IntegerTypeHandler;
+import org.apache.ibatis.type.LongTypeHandler;
+import org.apache.ibatis.type.TypeHandler;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+
+/**
+ * What a result map reads from the rows of one {@link ColumnSignature}: which columns it maps explicitly,
+ * which of its property mappings have a column in the result set and how the remaining columns are auto-mapped.
+ * Everything is worked out once and shared by all the statements returning these columns.
+ */
+final class RowMapper {
+
+  private final ColumnSignature signature;
+  private final ResultMap resultMap;
+  private final List<String> mappedColumnNames;
+  private final List<String> unmappedColumnNames;
+  private final boolean[] propertyMappingApplicable;
+  private final int[] propertyColumnIndexes;
+  private final String columnPrefix;
+  // the java types of the constructor mappings and the columns their type handlers read, 0 to read them by label
+  private final Class<?>[] constructorArgTypes;
+  private final int[] constructorColumnIndexes;
+  private final ResultInstantiator constructorInstantiator;
+  private final boolean lazyNestedQueries;
+  // found with the first row, when the result type is created from the columns with one of its constructors
+  private volatile ConstructorAutoMapping constructorAutoMapping;
+  // compiled with the first row key, as the unmapped columns identifying an object depend on the configuration
+  private volatile RowKeyColumns rowKeyColumns;
+  // compiled with the first row, as the properties depend on the type of the result object
+  private volatile AutoMappings autoMappings;
+
+  RowMapper(ColumnSignature signature, ResultMap resultMap, String columnPrefix) {
+    this.signature = signature;
+    this.resultMap = resultMap;
+    this.columnPrefix = columnPrefix;
+    List<String> mappedColumnNames = new ArrayList<>();
+    List<String> unmappedColumnNames = new ArrayList<>();
+    final String upperColumnPrefix = columnPrefix == null ? null : columnPrefix.toUpperCase(Locale.ENGLISH);
+    final Set<String> mappedColumns = prependPrefixes(resultMap.getMappedColumns(), upperColumnPrefix);
+    for (String columnName : signature.getColumnNames()) {
+      final String upperColumnName = columnName.toUpperCase(Locale.ENGLISH);
+      if (mappedColumns.contains(upperColumnName)) {
+        mappedColumnNames.add(upperColumnName);
+      } else {
+        unmappedColumnNames.add(columnName);
+      }
+    }
+    this.mappedColumnNames = Collections.unmodifiableList(mappedColumnNames);
+    this.unmappedColumnNames = Collections.unmodifiableList(unmappedColumnNames);
+    final List<ResultMapping> propertyMappings = resultMap.getPropertyResultMappings();
+    this.propertyMappingApplicable = new boolean[propertyMappings.size()];
+    this.propertyColumnIndexes = new int[propertyMappings.size()];
+    for (int i = 0; i < propertyMappings.size(); i++) {
+      final ResultMapping propertyMapping = propertyMappings.get(i);
+      String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
+      if (propertyMapping.getNestedResultMapId() != null) {
+        // the user added a column attribute to a nested result map, ignore it
+        column = null;
+      }
+      propertyMappingApplicable[i] = propertyMapping.isCompositeResult()
+          || (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH)))
+          || propertyMapping.getResultSet() != null;
+      if (propertyMappingApplicable[i] && column != null && !propertyMapping.isCompositeResult()
+          && propertyMapping.getNestedQueryId() == null && propertyMapping.getResultSet() == null
+          && propertyMapping.getTypeHandler() != null && ColumnSignature.canReadByIndex(propertyMapping.getTypeHandler())) {
+        propertyColumnIndexes[i] = signature.getColumnIndex(column);
+      }
+    }
+    boolean lazyNestedQueries = false;
+    for (ResultMapping propertyMapping : propertyMappings) {
+      // issue gcode #109 && issue #149
+      if (propertyMapping.getNestedQueryId() != null && propertyMapping.isLazy()) {
+        lazyNestedQueries = true;
+        break;
+      }
+    }
+    this.lazyNestedQueries = lazyNestedQueries;
+    final List<ResultMapping> constructorMappings = resultMap.getConstructorResultMappings();
+    this.constructorArgTypes = new Class<?>[constructorMappings.size()];
+    this.constructorColumnIndexes = new int[constructorMappings.size()];
+    for (int i = 0; i < constructorMappings.size(); i++) {
+      final ResultMapping constructorMapping = constructorMappings.get(i);
+      constructorArgTypes[i] = constructorMapping.getJavaType();
+      if (constructorMapping.getNestedQueryId() == null && constructorMapping.getNestedResultMapId() == null
+          && constructorMapping.getColumn() != null && constructorMapping.getTypeHandler() != null
+          && ColumnSignature.canReadByIndex(constructorMapping.getTypeHandler())) {
+        constructorColumnIndexes[i] = signature.getColumnIndex(prependPrefix(constructorMapping.getColumn(), columnPrefix));
+      }
+    }
+    this.constructorInstantiator = constructorMappings.isEmpty() ? null : ResultInstantiator.forType(resultMap.getType(), constructorArgTypes);
+  }
+
+  ResultMap getResultMap() {
+    return resultMap;
+  }
+
+  List<String> getMappedColumnNames() {
+    return mappedColumnNames;
+  }
+
+  List<String> getUnmappedColumnNames() {
+    return unmappedColumnNames;
+  }
+
+  /**
+   * @param index - the index of the mapping in {@link ResultMap#getPropertyResultMappings()}
+   * @return Whether the property mapping has something to read from these columns
+   */
+  boolean isPropertyMappingApplicable(int index) {
+    return propertyMappingApplicable[index];
+  }
+
+  /**
+   * @param index - the index of the mapping in {@link ResultMap#getPropertyResultMappings()}
+   * @return The index of the column the property mapping reads with its type handler, 0 to read it by label
+   */
+  int getPropertyColumnIndex(int index) {
+    return propertyColumnIndexes[index];
+  }
+
+  /**
+   * @return Whether the result objects are proxied to load some of their properties lazily
+   */
+  boolean hasLazyNestedQueries() {
+    return lazyNestedQueries;
+  }
+
+  /**
+   * @return The java types of the constructor mappings, in the order of {@link ResultMap#getConstructorResultMappings()}
+   */
+  Class<?>[] getConstructorArgTypes() {
+    return constructorArgTypes;
+  }
+
+  /**
+   * @param index - the index of the mapping in {@link ResultMap#getConstructorResultMappings()}
+   * @return The index of the column the constructor mapping reads with its type handler, 0 to read it by label
+   */
+  int getConstructorColumnIndex(int index) {
+    return constructorColumnIndexes[index];
+  }
+
+  /**
+   * @return The constructor matching the constructor mappings, null if there is none
+   */
+  ResultInstantiator getConstructorInstantiator() {
+    return constructorInstantiator;
+  }
+
+  /**
+   * @return The constructor reading the columns, null until it was found with {@link #setConstructorAutoMapping(Constructor, TypeHandlerRegistry)}
+   */
+  ConstructorAutoMapping getConstructorAutoMapping() {
+    return constructorAutoMapping;
+  }
+
+  ConstructorAutoMapping setConstructorAutoMapping(Constructor<?> constructor, TypeHandlerRegistry typeHandlerRegistry) {
+    final ConstructorAutoMapping current = new ConstructorAutoMapping(constructor, typeHandlerRegistry);
+    constructorAutoMapping = current;
+    return current;
+  }
+
+  RowKeyColumns getRowKeyColumns(Configuration configuration) {
+    RowKeyColumns current = rowKeyColumns;
+    if (current == null || current.mapUnderscoreToCamelCase != configuration.isMapUnderscoreToCamelCase()) {
+      // row keys compare their columns by identity, so every thread must get the same instance
+      synchronized (this) {
+        current = rowKeyColumns;
+        if (current == null || current.mapUnderscoreToCamelCase != configuration.isMapUnderscoreToCamelCase()) {
+          current = new RowKeyColumns(configuration);
+          rowKeyColumns = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  AutoMappings getAutoMappings(MetaObject metaObject, Configuration configuration) {
+    AutoMappings current = autoMappings;
+    if (current == null || !current.matches(metaObject, configuration.isMapUnderscoreToCamelCase())) {
+      current = new AutoMappings(metaObject, configuration);
+      autoMappings = current;
+    }
+    return current;
+  }
+
+  private static String prependPrefix(String columnName, String prefix) {
+    if (columnName == null || columnName.length() == 0 || prefix == null || prefix.length() == 0) {
+      return columnName;
+    }
+    return prefix + columnName;
+  }
+
+  private static Set<String> prependPrefixes(Set<String> columnNames, String prefix) {
+    if (columnNames == null || columnNames.isEmpty() || prefix == null || prefix.length() == 0) {
+      return columnNames;
+    }
+    final Set<String> prefixed = new HashSet<>();
+    for (String columnName : columnNames) {
+      prefixed.add(prefix + columnName);
+    }
+    return prefixed;
+  }
+
+  /**
+   * The auto-mappings of the unmapped columns for one type of result object.
+   */
+  final class AutoMappings {
+
+    private final Class<?> objectType;
+    private final Class<?> wrapperType;
+    private final boolean mapUnderscoreToCamelCase;
+    final List<AutoMapping> mappings = new ArrayList<>();
+    final List<UnknownColumn> unknownColumns = new ArrayList<>();
+
+    private AutoMappings(MetaObject metaObject, Configuration configuration) {
+      this.objectType = metaObject.getOriginalObject().getClass();
+      this.wrapperType = metaObject.getObjectWrapper().getClass();
+      this.mapUnderscoreToCamelCase = configuration.isMapUnderscoreToCamelCase();
+      final TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+      for (String columnName : unmappedColumnNames) {
+        String propertyName = columnName;
+        if (columnPrefix != null && !columnPrefix.isEmpty()) {
+          // When columnPrefix is specified,
+          // ignore columns without the prefix.
+          if (columnName.toUpperCase(Locale.ENGLISH).startsWith(columnPrefix)) {
+            propertyName = columnName.substring(columnPrefix.length());
+          } else {
+            continue;
+          }
+        }
+        final String property = metaObject.findProperty(propertyName, mapUnderscoreToCamelCase);
+        if (property != null && metaObject.hasSetter(property)) {
+          if (resultMap.getMappedProperties().contains(property)) {
+            continue;
+          }
+          final Class<?> propertyType = metaObject.getSetterType(property);
+          if (typeHandlerRegistry.hasTypeHandler(propertyType, signature.getJdbcType(columnName))) {
+            final TypeHandler<?> typeHandler = signature.getTypeHandler(typeHandlerRegistry, propertyType, columnName);
+            Invoker setter = null;
+            if (wrapperType == BeanWrapper.class && property.indexOf('.') < 0 && property.indexOf('[') < 0) {
+              setter = configuration.getReflectorFactory().findForClass(objectType).getSetInvoker(property);
+            }
+            mappings.add(new AutoMapping(signature.getColumnIndex(columnName), columnName, property,
+                typeHandler, propertyType, setter));
+          } else {
+            unknownColumns.add(new UnknownColumn(columnName, property, propertyType));
+          }
+        } else {
+          unknownColumns.add(new UnknownColumn(columnName, (property != null) ? property : propertyName, null));
+        }
+      }
+    }
+
+    private boolean matches(MetaObject metaObject, boolean mapUnderscoreToCamelCase) {
+      return this.mapUnderscoreToCamelCase == mapUnderscoreToCamelCase
+          && objectType == metaObject.getOriginalObject().getClass()
+          && wrapperType == metaObject.getObjectWrapper().getClass();
+    }
+  }
+
+  /**
+   * The columns identifying the object of a row: the id mappings, or all the property mappings when there are none.
+   * Without any mapping, the unmapped columns of a property of the result type, or all the columns for a map.
+   */
+  final class RowKeyColumns {
+
+    private final boolean mapUnderscoreToCamelCase;
+    private final List<String> columns = new ArrayList<>();
+    // null when the column is read as a string and a null value leaves it out of the key
+    private final List<TypeHandler<?>> typeHandlers = new ArrayList<>();
+    // 0 when the column is read by label
+    private final int[] columnIndexes;
+
+    private RowKeyColumns(Configuration configuration) {
+      this.mapUnderscoreToCamelCase = configuration.isMapUnderscoreToCamelCase();
+      List<ResultMapping> resultMappings = resultMap.getIdResultMappings();
+      if (resultMappings.isEmpty()) {
+        resultMappings = resultMap.getPropertyResultMappings();
+      }
+      if (!resultMappings.isEmpty()) {
+        addMappedColumns(configuration, RowMapper.this, resultMappings, columnPrefix);
+      } else if (Map.class.isAssignableFrom(resultMap.getType())) {
+        for (String columnName : signature.getColumnNames()) {
+          addColumn(columnName, null);
+        }
+      } else {
+        final MetaClass metaType = MetaClass.forClass(resultMap.getType(), configuration.getReflectorFactory());
+        for (String column : unmappedColumnNames) {
+          String property = column;
+          if (columnPrefix != null && !columnPrefix.isEmpty()) {
+            // When columnPrefix is specified, ignore columns without the prefix.
+            if (column.toUpperCase(Locale.ENGLISH).startsWith(columnPrefix)) {
+              property = column.substring(columnPrefix.length());
+            } else {
+              continue;
+            }
+          }
+          if (metaType.findProperty(property, mapUnderscoreToCamelCase) != null) {
+            addColumn(column, null);
+          }
+        }
+      }
+      this.columnIndexes = new int[columns.size()];
+      for (int i = 0; i < columnIndexes.length; i++) {
+        final TypeHandler<?> typeHandler = typeHandlers.get(i);
+        if (typeHandler == null || ColumnSignature.canReadByIndex(typeHandler)) {
+          columnIndexes[i] = signature.getColumnIndex(columns.get(i));
+        }
+      }
+    }
+
+    private void addMappedColumns(Configuration configuration, RowMapper rowMapper, List<ResultMapping> resultMappings, String columnPrefix) {
+      for (ResultMapping resultMapping : resultMappings) {
+        if (resultMapping.getNestedResultMapId() != null && resultMapping.getResultSet() == null) {
+          // Issue #392
+          final ResultMap nestedResultMap = configuration.getResultMap(resultMapping.getNestedResultMapId());
+          final String nestedPrefix = prependPrefix(resultMapping.getColumnPrefix(), columnPrefix);
+          addMappedColumns(configuration, signature.getRowMapper(nestedResultMap, nestedPrefix),
+              nestedResultMap.getConstructorResultMappings(), nestedPrefix);
+        } else if (resultMapping.getNestedQueryId() == null) {
+          final String column = prependPrefix(resultMapping.getColumn(), columnPrefix);
+          // Issue #114
+          if (column != null && rowMapper.getMappedColumnNames().contains(column.toUpperCase(Locale.ENGLISH))) {
+            addColumn(column, resultMapping.getTypeHandler());
+          }
+        }
+      }
+    }
+
+    private void addColumn(String column, TypeHandler<?> typeHandler) {
+      columns.add(column);
+      typeHandlers.add(typeHandler);
+    }
+
+    /**
+     * @param rs - the result set on the current row
+     * @param returnInstanceForEmptyRow - whether null values of mapped columns still identify an object
+     * @return The key of the current row, {@link RowKey#NULL_ROW_KEY} when no column has a value
+     */
+    RowKey createRowKey(ResultSet rs, boolean returnInstanceForEmptyRow) throws SQLException {
+      final Object[] values = new Object[columnIndexes.length];
+      boolean found = false;
+      for (int i = 0; i < values.length; i++) {
+        final TypeHandler<?> typeHandler = typeHandlers.get(i);
+        final int columnIndex = columnIndexes[i];
+        final Object value;
+        if (typeHandler == null) {
+          value = columnIndex > 0 ? rs.getString(columnIndex) : rs.getString(columns.get(i));
+        } else {
+          value = columnIndex > 0 ? typeHandler.getResult(rs, columnIndex) : typeHandler.getResult(rs, columns.get(i));
+        }
+        if (value != null || (typeHandler != null && returnInstanceForEmptyRow)) {
+          values[i] = value;
+          found = true;
+        }
+      }
+      return found ? new RowKey(this, values, null) : RowKey.NULL_ROW_KEY;
+    }
+  }
+
+  /**
+   * The columns passed in order to a constructor of the result type.
+   */
+  final class ConstructorAutoMapping {
+
+    final Class<?>[] parameterTypes;
+    final String[] columns;
+    // 0 when the column is read by label
+    final int[] columnIndexes;
+    final TypeHandler<?>[] typeHandlers;
+    // null when the type cannot be created with this constructor, the object factory then reports it
+    final ResultInstantiator instantiator;
+
+    private ConstructorAutoMapping(Constructor<?> constructor, TypeHandlerRegistry typeHandlerRegistry) {
+      this.parameterTypes = constructor.getParameterTypes();
+      this.columns = new String[parameterTypes.length];
+      this.columnIndexes = new int[parameterTypes.length];
+      this.typeHandlers = new TypeHandler<?>[parameterTypes.length];
+      for (int i = 0; i < parameterTypes.length; i++) {
+        columns[i] = signature.getColumnNames().get(i);
+        typeHandlers[i] = signature.getTypeHandler(typeHandlerRegistry, parameterTypes[i], columns[i]);
+        if (typeHandlers[i] != null && ColumnSignature.canReadByIndex(typeHandlers[i])) {
+          columnIndexes[i] = signature.getColumnIndex(columns[i]);
+        }
+      }
+      this.instantiator = ResultInstantiator.forConstructor(constructor);
+    }
+  }
+
+  static final class AutoMapping {
+
+    private static final int BOXED = 0;
+    private static final int INT = 1;
+    private static final int LONG = 2;
+    private static final int DOUBLE = 3;
+
+    // 0 when the column is read by label
+    final int columnIndex;
+    final String column;
+    final String property;
+    final TypeHandler<?> typeHandler;
+    final boolean primitive;
+    // null when the property is not a plain bean property, the value is then set through the MetaObject
+    private final Invoker setter;
+    // primitive columns read with the built-in type handler are passed to a PrimitiveSetter without boxing
+    private final int unboxed;
+
+    private AutoMapping(int columnIndex, String column, String property, TypeHandler<?> typeHandler, Class<?> propertyType, Invoker setter) {
+      this.columnIndex = ColumnSignature.canReadByIndex(typeHandler) ? columnIndex : 0;
+      this.column = column;
+      this.property = property;
+      this.typeHandler = typeHandler;
+      this.primitive = propertyType.isPrimitive();
+      this.setter = setter;
+      if (!(setter instanceof PrimitiveSetter)) {
+        this.unboxed = BOXED;
+      } else if (propertyType == int.class && typeHandler.getClass() == IntegerTypeHandler.class) {
+        this.unboxed = INT;
+      } else if (propertyType == long.class && typeHandler.getClass() == LongTypeHandler.class) {
+        this.unboxed = LONG;
+      } else if (propertyType == double.class && typeHandler.getClass() == DoubleTypeHandler.class) {
+        this.unboxed = DOUBLE;
+      } else {
+        this.unboxed = BOXED;
+      }
+    }
+
+    /**
+     * Reads the column of the current row and sets it to the property.
+     *
+     * @return Whether the column was not null
+     */
+    boolean apply(ResultSet rs, MetaObject metaObject, boolean callSettersOnNulls) throws SQLException {
+      if (unboxed != BOXED) {
+        return applyUnboxed(rs, metaObject.getOriginalObject());
+      }
+      final Object value = columnIndex > 0 ? typeHandler.getResult(rs, columnIndex) : typeHandler.getResult(rs, column);
+      if (value != null || (callSettersOnNulls && !primitive)) {
+        // gcode issue #377, call setter on nulls (value is not 'found')
+        setValue(metaObject, value);
+      }
+      return value != null;
+    }
+
+    private boolean applyUnboxed(ResultSet rs, Object object) {
+      int intValue = 0;
+      long longValue = 0;
+      double doubleValue = 0;
+      // same reads and null checks as the built-in type handlers
+      try {
+        if (unboxed == INT) {
+          intValue = columnIndex > 0 ? rs.getInt(columnIndex) : rs.getInt(column);
+          if (intValue == 0 && rs.wasNull()) {
+            return false;
+          }
+        } else if (unboxed == LONG) {
+          longValue = columnIndex > 0 ? rs.getLong(columnIndex) : rs.getLong(column);
+          if (longValue == 0 && rs.wasNull()) {
+            return false;
+          }
+        } else {
+          doubleValue = columnIndex > 0 ? rs.getDouble(columnIndex) : rs.getDouble(column);
+          if (doubleValue == 0 && rs.wasNull()) {
+            return false;
+          }
+        }
+      } catch (Exception e) {
+        // same as BaseTypeHandler
+        final String target = columnIndex > 0 ? "#" + columnIndex : "'" + column + "'";
+        throw new ResultMapException("Error attempting to get column " + target + " from result set.  Cause: " + e, e);
+      }
+      final PrimitiveSetter primitiveSetter = (PrimitiveSetter) setter;
+      try {
+        if (unboxed == INT) {
+          primitiveSetter.setInt(object, intValue);
+        } else if (unboxed == LONG) {
+          primitiveSetter.setLong(object, longValue);
+        } else {
+          primitiveSetter.setDouble(object, doubleValue);
+        }
+      } catch (Throwable t) {
+        final Object value = unboxed == INT ? (Object) intValue : unboxed == LONG ? (Object) longValue : (Object) doubleValue;
+        throw setFailed(object, value, t);
+      }
+      return true;
+    }
+
+    private void setValue(MetaObject metaObject, Object value) {
+      if (setter == null) {
+        metaObject.setValue(property, value);
+        return;
+      }
+      final Object object = metaObject.getOriginalObject();
+      try {
+        setter.invoke(object, new Object[] {value});
+      } catch (Throwable t) {
+        throw setFailed(object, value, t);
+      }
+    }
+
+    private ReflectionException setFailed(Object object, Object value, Throwable t) {
+      // same as BeanWrapper
+      final Throwable cause = ExceptionUtil.unwrapThrowable(t);
+      return new ReflectionException("Could not set property '" + property + "' of '" + object.getClass() + "' with value '" + value + "' Cause: " + cause.toString(), cause);
+    }
+  }
+
+  static final class UnknownColumn {
+
+    final String column;
+    final String property;
+    final Class<?> propertyType;
+
+    private UnknownColumn(String column, String property, Class<?> propertyType) {
+      this.column = column;
+      this.property = property;
+      this.propertyType = propertyType;
+    }
+  }
+
+}
@@ -0,0 +1,64 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.type.JdbcType;
+
+/**
+ * Keeps the column signatures of the result sets read with a configuration, so that a statement executed again
+ * reuses the type handlers and row mappers worked out by the previous executions.
+ *
+ * @since 3.5.2
+ */
+public class RowMapperCache {
+
+  private static final int MAX_SIGNATURES = 2048;
+
+  private final ConcurrentMap<ColumnSignature, ColumnSignature> signatures = new ConcurrentHashMap<>();
+
+  ColumnSignature getSignature(boolean columnLabels, List<String> columnNames, List<JdbcType> jdbcTypes, List<String> classNames) {
+    final ColumnSignature signature = new ColumnSignature(columnLabels, columnNames, jdbcTypes, classNames);
+    final ColumnSignature cached = signatures.get(signature);
+    if (cached != null) {
+      return cached;
+    }
+    if (signatures.size() >= MAX_SIGNATURES) {
+      // statements built on the fly may return ever new columns, start over rather than grow without bound
+      signatures.clear();
+    }
+    final ColumnSignature previous = signatures.putIfAbsent(signature, signature);
+    return previous != null ? previous : signature;
+  }
+
+  /**
+   * @return How many different column signatures are cached
+   */
+  public int size() {
+    return signatures.size();
+  }
+
+  /**
+   * Forgets the cached signatures, e.g. after type handlers or result maps were changed at runtime.
+   */
+  public void clear() {
+    signatures.clear();
+  }
+
+}
@@ -17,6 +17,7 @@ package org.apache.ibatis.mapping;
 
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -24,13 +25,20 @@ import java.util.Properties;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
 import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.decorators.ConcurrentFifoCache;
+import org.apache.ibatis.cache.decorators.ConcurrentLruCache;
+import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LoggingCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
 import org.apache.ibatis.cache.decorators.SerializedCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.decorators.TinyLfuCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.serializer.JavaCacheSerializer;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.SystemMetaObject;
 
@@ -38,6 +46,16 @@ import org.apache.ibatis.reflection.SystemMetaObject;
  * @author Clinton Begin
  */
 public class CacheBuilder {
+  // thread safe replacements for the eviction decorators, used on top of a ConcurrentPerpetualCache
+  // (TinyLfuCache is thread safe by itself and maps to itself)
+  private static final Map<Class<? extends Cache>, Class<? extends Cache>> CONCURRENT_DECORATORS = new HashMap<>();
+
+  static {
+    CONCURRENT_DECORATORS.put(LruCache.class, ConcurrentLruCache.class);
+    CONCURRENT_DECORATORS.put(FifoCache.class, ConcurrentFifoCache.class);
+    CONCURRENT_DECORATORS.put(TinyLfuCache.class, TinyLfuCache.class);
+  }
+
   private final String id;
   private Class<? extends Cache> implementation;
   private final List<Class<? extends Cache>> decorators;
@@ -46,6 +64,9 @@ public class CacheBuilder {
   private boolean readWrite;
   private Properties properties;
   private boolean blocking;
+  private CacheSerializer serializer;
+  private CacheSerializer copySerializer;
+  private boolean refreshing;
 
   public CacheBuilder(String id) {
     this.id = id;
@@ -84,24 +105,57 @@ public class CacheBuilder {
     return this;
   }
 
+  /**
+   * @param serializer - makes the copies of a read/write cache, Java serialization is used when null
+   * @since 3.5.2
+   */
+  public CacheBuilder serializer(CacheSerializer serializer) {
+    this.serializer = serializer;
+    return this;
+  }
+
   public CacheBuilder properties(Properties properties) {
     this.properties = properties;
     return this;
   }
 
+  /**
+   * @return The serializer copying the values of the last built cache, null if it hands out the cached values themselves
+   * @since 3.5.2
+   */
+  public CacheSerializer getCopySerializer() {
+    return copySerializer;
+  }
+
+  /**
+   * @return Whether the last built cache reloads the entries put with a {@link org.apache.ibatis.cache.RefreshableCacheKey}
+   * @since 3.5.2
+   */
+  public boolean isRefreshing() {
+    return refreshing;
+  }
+
   public Cache build() {
+    copySerializer = null;
+    refreshing = false;
     //设置默认实现
     setDefaultImplementations();
     //创建实现类的实例
     Cache cache = newBaseCacheInstance(implementation, id);
     setCacheProperties(cache);
     // issue #352, do not apply decorators to custom caches
-    if (PerpetualCache.class.equals(cache.getClass())) {
+    if (PerpetualCache.class.equals(cache.getClass()) || ConcurrentPerpetualCache.class.equals(cache.getClass())) {
+      boolean concurrent = ConcurrentPerpetualCache.class.equals(cache.getClass());
+      boolean threadSafe = concurrent;
       for (Class<? extends Cache> decorator : decorators) {
+        if (concurrent) {
+          decorator = CONCURRENT_DECORATORS.getOrDefault(decorator, decorator);
+          threadSafe = threadSafe && CONCURRENT_DECORATORS.containsValue(decorator);
+        }
         cache = newCacheDecoratorInstance(decorator, cache);
         setCacheProperties(cache);
       }
-      cache = setStandardDecorators(cache);
+      cache = setStandardDecorators(cache, threadSafe);
     } else if (!LoggingCache.class.isAssignableFrom(cache.getClass())) {
       cache = new LoggingCache(cache);
     }
@@ -117,21 +171,30 @@ public class CacheBuilder {
     }
   }
 
-  private Cache setStandardDecorators(Cache cache) {
+  private Cache setStandardDecorators(Cache cache, boolean threadSafe) {
     try {
       MetaObject metaCache = SystemMetaObject.forObject(cache);
       if (size != null && metaCache.hasSetter("size")) {
         metaCache.setValue("size", size);
       }
-      if (clearInterval != null) {
+      boolean timeToLive = properties != null && properties.containsKey("timeToLive");
+      if (clearInterval != null || timeToLive) {
         cache = new ScheduledCache(cache);
-        ((ScheduledCache) cache).setClearInterval(clearInterval);
+        // without a flush interval only the entries expire
+        ((ScheduledCache) cache).setClearInterval(clearInterval == null ? 0 : clearInterval);
+        if (timeToLive) {
+          setCacheProperties(cache);
+        }
+        refreshing = ((ScheduledCache) cache).isRefreshing();
       }
       if (readWrite) {
-        cache = new SerializedCache(cache);
+        copySerializer = serializer == null ? new JavaCacheSerializer() : serializer;
+        cache = new SerializedCache(cache, copySerializer);
       }
       cache = new LoggingCache(cache);
-      cache = new SynchronizedCache(cache);
+      if (!threadSafe) {
+        cache = new SynchronizedCache(cache);
+      }
       if (blocking) {
         cache = new BlockingCache(cache);
       }
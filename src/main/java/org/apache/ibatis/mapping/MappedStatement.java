@@ -17,7 +17,10 @@ package org.apache.ibatis.mapping;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
@@ -25,6 +28,7 @@ import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.parsing.SqlTableExtractor;
 import org.apache.ibatis.scripting.LanguageDriver;
 import org.apache.ibatis.session.Configuration;
 
@@ -56,6 +60,11 @@ public final class MappedStatement {
   private Log statementLog;
   private LanguageDriver lang;
   private String[] resultSets;
+  private Set<String> tables;
+  private boolean reorderable;
+  private boolean cacheRefreshing;
+  // the tables found in the last SQL, dynamic SQL usually produces the same statement again
+  private volatile ExtractedTables extractedTables;
 
   MappedStatement() {
     // constructor disabled
@@ -174,6 +183,24 @@ public final class MappedStatement {
       return this;
     }
 
+    /**
+     * @param tables - comma separated names of the tables the statement reads or writes, found in the SQL when null
+     * @since 3.5.2
+     */
+    public Builder tables(String tables) {
+      mappedStatement.tables = delimitedStringToSet(tables);
+      return this;
+    }
+
+    /**
+     * @param reorderable - true if a grouping batch may run the statement before statements batched earlier
+     * @since 3.5.2
+     */
+    public Builder reorderable(boolean reorderable) {
+      mappedStatement.reorderable = reorderable;
+      return this;
+    }
+
     /**
      * @deprecated Use {@link #resultSets}
      */
@@ -189,6 +216,9 @@ public final class MappedStatement {
       assert mappedStatement.sqlSource != null;
       assert mappedStatement.lang != null;
       mappedStatement.resultMaps = Collections.unmodifiableList(mappedStatement.resultMaps);
+      // recorded when the cache was built from a mapper
+      mappedStatement.cacheRefreshing = mappedStatement.cache != null
+          && mappedStatement.configuration.isCacheRefreshing(mappedStatement.cache.getId());
       return mappedStatement;
     }
   }
@@ -249,6 +279,14 @@ public final class MappedStatement {
     return cache;
   }
 
+  /**
+   * @return Whether the cache reloads its entries, which then need a key that knows how to run the statement again
+   * @since 3.5.2
+   */
+  public boolean isCacheRefreshing() {
+    return cacheRefreshing;
+  }
+
   public boolean isFlushCacheRequired() {
     return flushCacheRequired;
   }
@@ -261,6 +299,15 @@ public final class MappedStatement {
     return resultOrdered;
   }
 
+  /**
+   * @return True if the statement does not depend on the rows written by the statements batched before it, so that
+   *     {@link org.apache.ibatis.session.Configuration#isBatchGroupingEnabled() batch grouping} may add it to an earlier group
+   * @since 3.5.2
+   */
+  public boolean isReorderable() {
+    return reorderable;
+  }
+
   public String getDatabaseId() {
     return databaseId;
   }
@@ -293,6 +340,34 @@ public final class MappedStatement {
     return resultSets;
   }
 
+  /**
+   * @return The declared tables, null if they are found in the SQL
+   * @since 3.5.2
+   */
+  public Set<String> getTables() {
+    return tables;
+  }
+
+  /**
+   * Returns the tables the statement reads (for a select) or writes (for an insert, update or delete).
+   *
+   * @param boundSql - the SQL the tables are found in when none were declared
+   * @return The lower cased table names, empty if they are unknown
+   * @since 3.5.2
+   */
+  public Set<String> getTables(BoundSql boundSql) {
+    if (tables != null) {
+      return tables;
+    }
+    String sql = boundSql.getSql();
+    ExtractedTables extracted = extractedTables;
+    if (extracted == null || !extracted.sql.equals(sql)) {
+      extracted = new ExtractedTables(sql, SqlTableExtractor.extractTables(sql));
+      extractedTables = extracted;
+    }
+    return extracted.tables;
+  }
+
   public BoundSql getBoundSql(Object parameterObject) {
     BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
     List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
@@ -314,6 +389,18 @@ public final class MappedStatement {
     return boundSql;
   }
 
+  private static Set<String> delimitedStringToSet(String in) {
+    String[] names = delimitedStringToArray(in);
+    if (names == null) {
+      return null;
+    }
+    Set<String> set = new LinkedHashSet<>();
+    for (String name : names) {
+      set.add(name.trim().toLowerCase(Locale.ENGLISH));
+    }
+    return Collections.unmodifiableSet(set);
+  }
+
   private static String[] delimitedStringToArray(String in) {
     if (in == null || in.trim().length() == 0) {
       return null;
@@ -322,4 +409,14 @@ public final class MappedStatement {
     }
   }
 
+  private static class ExtractedTables {
+    private final String sql;
+    private final Set<String> tables;
+
+    ExtractedTables(String sql, Set<String> tables) {
+      this.sql = sql;
+      this.tables = tables;
+    }
+  }
+
 }
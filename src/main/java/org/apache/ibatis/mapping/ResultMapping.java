@@ -45,6 +45,7 @@ public class ResultMapping {
   private String resultSet;
   private String foreignColumn;
   private boolean lazy;
+  private int batchSize;
 
   ResultMapping() {
   }
@@ -132,6 +133,11 @@ public class ResultMapping {
       return this;
     }
 
+    public Builder batchSize(int batchSize) {
+      resultMapping.batchSize = batchSize;
+      return this;
+    }
+
     public ResultMapping build() {
       // lock down collections
       resultMapping.flags = Collections.unmodifiableList(resultMapping.flags);
@@ -167,6 +173,14 @@ public class ResultMapping {
           throw new IllegalStateException("There should be the same number of columns and foreignColumns in property " + resultMapping.property);
         }
       }
+      if (resultMapping.batchSize > 0) {
+        if (resultMapping.nestedQueryId == null || resultMapping.foreignColumn == null) {
+          throw new IllegalStateException("A batchSize needs a nested select and a foreignColumn in property " + resultMapping.property);
+        }
+        if (!resultMapping.composites.isEmpty()) {
+          throw new IllegalStateException("A batchSize cannot be used with a composite column in property " + resultMapping.property);
+        }
+      }
     }
 
     /**
@@ -254,6 +268,14 @@ public class ResultMapping {
     this.lazy = lazy;
   }
 
+  /**
+   * @return How many parent keys a nested select loads at once, or 0 to load them one by one
+   * @since 3.5.2
+   */
+  public int getBatchSize() {
+    return batchSize;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -301,6 +323,7 @@ public class ResultMapping {
     sb.append(", resultSet='").append(resultSet).append('\'');
     sb.append(", foreignColumn='").append(foreignColumn).append('\'');
     sb.append(", lazy=").append(lazy);
+    sb.append(", batchSize=").append(batchSize);
     sb.append('}');
     return sb.toString();
   }
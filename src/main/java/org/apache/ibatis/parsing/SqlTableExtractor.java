@@ -0,0 +1,214 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.parsing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds the tables a SQL statement reads or writes, without a full SQL parser.
+ * <p>
+ * The names following FROM, JOIN, UPDATE, INTO, USING and DELETE are collected, including the ones of comma
+ * separated FROM lists and sub queries. Names are lower cased, unquoted and stripped of their schema. The result may
+ * contain a few names that are not tables, for example the column of {@code EXTRACT(YEAR FROM col)}, which is
+ * harmless when the result is used for cache invalidation. Views and tables used by stored procedures cannot be
+ * found, they must be declared on the statement.
+ *
+ * @since 3.5.2
+ */
+public class SqlTableExtractor {
+
+  private static final Set<String> TABLE_KEYWORDS = new HashSet<>(Arrays.asList(
+      "from", "join", "straight_join", "update", "into", "using", "delete", "table"));
+
+  private static final Set<String> TABLE_LIST_KEYWORDS = new HashSet<>(Arrays.asList(
+      "from", "update", "delete", "using"));
+
+  private static final Set<String> JOIN_KEYWORDS = new HashSet<>(Arrays.asList(
+      "join", "straight_join", "inner", "left", "right", "full", "cross", "outer", "natural", "on", "using", "and",
+      "or", "not", "lateral", "only"));
+
+  private static final Set<String> CLAUSE_KEYWORDS = new HashSet<>(Arrays.asList(
+      "where", "join", "inner", "left", "right", "full", "cross", "outer", "natural", "straight_join", "on", "using",
+      "group", "order", "having", "limit", "offset", "union", "intersect", "except", "minus", "set", "values", "select",
+      "fetch", "for", "window", "connect", "start", "returning", "partition", "with", "when", "then", "else", "end",
+      "and", "or", "not", "default", "output", "lateral", "only", "from", "into", "update", "delete", "table"));
+
+  private static final int NONE = 0;
+  private static final int EXPECT_TABLE = 1;
+  private static final int AFTER_TABLE = 2;
+
+  // indexes in the state of a parenthesis depth
+  private static final int POSITION = 0;
+  private static final int TABLE_LIST = 1;
+  private static final int WORDS_AFTER_TABLE = 2;
+
+  private SqlTableExtractor() {
+    // Prevent Instantiation
+  }
+
+  /**
+   * Returns the tables of the statement, or an empty set when they are unknown.
+   * <p>
+   * A table followed by more than an alias, for example an unknown join keyword or a table hint, makes the result
+   * unknown rather than incomplete: a cache entry registered under only some of the tables it reads would not be
+   * removed by writes to the others.
+   *
+   * @param sql - the statement, usually {@link org.apache.ibatis.mapping.BoundSql#getSql()}
+   * @return The names of the tables, empty if none could be found or the statement could not be read with certainty
+   */
+  public static Set<String> extractTables(String sql) {
+    List<String> tokens = tokenize(sql);
+    Set<String> tables = new LinkedHashSet<>();
+    // one state per parenthesis depth, so that sub queries do not end the FROM list around them
+    List<int[]> states = new ArrayList<>();
+    states.add(new int[] { NONE, 0, 0 });
+    for (int i = 0; i < tokens.size(); i++) {
+      String token = tokens.get(i);
+      int[] state = states.get(states.size() - 1);
+      if ("(".equals(token)) {
+        if (state[POSITION] == EXPECT_TABLE && !(i > 0 && "using".equalsIgnoreCase(tokens.get(i - 1)))) {
+          // a parenthesized join or a sub query, its first name is a table
+          states.add(new int[] { EXPECT_TABLE, state[TABLE_LIST], 0 });
+        } else {
+          states.add(new int[] { NONE, 0, 0 });
+        }
+      } else if (")".equals(token)) {
+        if (states.size() > 1) {
+          states.remove(states.size() - 1);
+          int[] outer = states.get(states.size() - 1);
+          if (outer[POSITION] == EXPECT_TABLE) {
+            // a sub query or a column list used as a table
+            outer[POSITION] = AFTER_TABLE;
+            outer[WORDS_AFTER_TABLE] = 0;
+          }
+        }
+      } else if (",".equals(token)) {
+        if (state[TABLE_LIST] == 1) {
+          // the comma of a FROM list, also after the ON clause of a join
+          state[POSITION] = EXPECT_TABLE;
+        } else {
+          state[POSITION] = NONE;
+        }
+      } else if (isWord(token)) {
+        String word = unquote(token);
+        boolean keyword = !isQuoted(token) && CLAUSE_KEYWORDS.contains(word);
+        if (keyword) {
+          if (!JOIN_KEYWORDS.contains(word)) {
+            state[TABLE_LIST] = TABLE_LIST_KEYWORDS.contains(word) ? 1 : 0;
+          } else if (TABLE_LIST_KEYWORDS.contains(word) && state[TABLE_LIST] == 0) {
+            // USING of a MERGE or a DELETE
+            state[TABLE_LIST] = 1;
+          }
+          state[POSITION] = TABLE_KEYWORDS.contains(word) ? EXPECT_TABLE : NONE;
+        } else if (state[POSITION] == EXPECT_TABLE) {
+          // schema.table, keep the last part
+          while (i + 2 < tokens.size() && ".".equals(tokens.get(i + 1)) && isWord(tokens.get(i + 2))) {
+            i += 2;
+            word = unquote(tokens.get(i));
+          }
+          tables.add(word);
+          state[POSITION] = AFTER_TABLE;
+          state[WORDS_AFTER_TABLE] = 0;
+        } else if (state[POSITION] == AFTER_TABLE && !"as".equals(word) && ++state[WORDS_AFTER_TABLE] > 1) {
+          // neither an alias nor a known keyword, the following tables could be missed
+          return Collections.emptySet();
+        }
+        // any other word is an alias or an expression
+      } else {
+        state[POSITION] = NONE;
+      }
+    }
+    return tables.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(tables);
+  }
+
+  private static List<String> tokenize(String sql) {
+    List<String> tokens = new ArrayList<>();
+    int length = sql.length();
+    int i = 0;
+    while (i < length) {
+      char c = sql.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+        int end = sql.indexOf('\n', i);
+        i = end < 0 ? length : end + 1;
+      } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+        int end = sql.indexOf("*/", i + 2);
+        i = end < 0 ? length : end + 2;
+      } else if (c == '\'') {
+        i = skipQuoted(sql, i, '\'');
+        tokens.add("'");
+      } else if (c == '"' || c == '`' || c == '[') {
+        int end = skipQuoted(sql, i, c == '[' ? ']' : c);
+        tokens.add(sql.substring(i, end));
+        i = end;
+      } else if (isWordPart(c)) {
+        int start = i;
+        while (i < length && isWordPart(sql.charAt(i))) {
+          i++;
+        }
+        tokens.add(sql.substring(start, i));
+      } else {
+        tokens.add(String.valueOf(c));
+        i++;
+      }
+    }
+    return tokens;
+  }
+
+  private static int skipQuoted(String sql, int start, char close) {
+    int i = start + 1;
+    while (i < sql.length()) {
+      if (sql.charAt(i) == close) {
+        if (i + 1 < sql.length() && sql.charAt(i + 1) == close) {
+          // doubled quote
+          i += 2;
+          continue;
+        }
+        return i + 1;
+      }
+      i++;
+    }
+    return sql.length();
+  }
+
+  private static boolean isWordPart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+  }
+
+  private static boolean isWord(String token) {
+    char c = token.charAt(0);
+    return isQuoted(token) || Character.isLetter(c) || c == '_';
+  }
+
+  private static boolean isQuoted(String token) {
+    char c = token.charAt(0);
+    return c == '"' || c == '`' || c == '[';
+  }
+
+  private static String unquote(String token) {
+    String name = isQuoted(token) ? token.substring(1, Math.max(1, token.length() - 1)) : token;
+    return name.toLowerCase(Locale.ENGLISH);
+  }
+
+}
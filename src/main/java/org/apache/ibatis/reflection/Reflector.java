@@ -32,10 +32,9 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import org.apache.ibatis.reflection.invoker.GetFieldInvoker;
 import org.apache.ibatis.reflection.invoker.Invoker;
-import org.apache.ibatis.reflection.invoker.MethodInvoker;
-import org.apache.ibatis.reflection.invoker.SetFieldInvoker;
+import org.apache.ibatis.reflection.invoker.InvokerFactory;
+import org.apache.ibatis.reflection.invoker.ReflectionInvokerFactory;
 import org.apache.ibatis.reflection.property.PropertyNamer;
 
 /**
@@ -47,6 +46,7 @@ import org.apache.ibatis.reflection.property.PropertyNamer;
 public class Reflector {
 
     private final Class<?> type;
+    private final InvokerFactory invokerFactory;
     private final String[] readablePropertyNames;
     private final String[] writablePropertyNames;
     private final Map<String, Invoker> setMethods = new HashMap<>();
@@ -58,8 +58,19 @@ public class Reflector {
     private Map<String, String> caseInsensitivePropertyMap = new HashMap<>();
 
     public Reflector(Class<?> clazz) {
+        this(clazz, ReflectionInvokerFactory.INSTANCE);
+    }
+
+    /**
+     * @param clazz - the class to describe
+     * @param invokerFactory - creates the invokers of the getters and setters
+     * @since 3.5.2
+     */
+    public Reflector(Class<?> clazz, InvokerFactory invokerFactory) {
         //设置类的class
         type = clazz;
+        //创建get/set方法对应Invoker的工厂
+        this.invokerFactory = invokerFactory;
         //设置默认的构造函数
         addDefaultConstructor(clazz);
         //设置get方法
@@ -160,7 +171,7 @@ public class Reflector {
 
     private void addGetMethod(String name, Method method) {
         if (isValidPropertyName(name)) {
-            getMethods.put(name, new MethodInvoker(method));
+            getMethods.put(name, invokerFactory.newGetInvoker(method));
             Type returnType = TypeParameterResolver.resolveReturnType(method, type);
             getTypes.put(name, typeToClass(returnType));
         }
@@ -245,7 +256,7 @@ public class Reflector {
 
     private void addSetMethod(String name, Method method) {
         if (isValidPropertyName(name)) {
-            setMethods.put(name, new MethodInvoker(method));
+            setMethods.put(name, invokerFactory.newSetInvoker(method));
             Type[] paramTypes = TypeParameterResolver.resolveParamTypes(method, type);
             setTypes.put(name, typeToClass(paramTypes[0]));
         }
@@ -324,7 +335,7 @@ public class Reflector {
         //如果字段不以$开头，并且不是class和serialVersionUID
         if (isValidPropertyName(field.getName())) {
             //存入set方法的map中
-            setMethods.put(field.getName(), new SetFieldInvoker(field));
+            setMethods.put(field.getName(), invokerFactory.newSetInvoker(field));
             Type fieldType = TypeParameterResolver.resolveFieldType(field, type);
             setTypes.put(field.getName(), typeToClass(fieldType));
         }
@@ -332,7 +343,7 @@ public class Reflector {
 
     private void addGetField(Field field) {
         if (isValidPropertyName(field.getName())) {
-            getMethods.put(field.getName(), new GetFieldInvoker(field));
+            getMethods.put(field.getName(), invokerFactory.newGetInvoker(field));
             Type fieldType = TypeParameterResolver.resolveFieldType(field, type);
             getTypes.put(field.getName(), typeToClass(fieldType));
         }
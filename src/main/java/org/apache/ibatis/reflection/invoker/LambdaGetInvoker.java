@@ -0,0 +1,61 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Reads a property through an accessor created by the {@link LambdaInvokerFactory}.
+ *
+ * @since 3.5.2
+ */
+public class LambdaGetInvoker implements Invoker {
+
+  private final Invoker delegate;
+  private final Class<?> targetType;
+  private final LambdaInvokerFactory.Getter getter;
+
+  LambdaGetInvoker(Invoker delegate, Class<?> targetType, LambdaInvokerFactory.Getter getter) {
+    this.delegate = delegate;
+    this.targetType = targetType;
+    this.getter = getter;
+  }
+
+  /**
+   * @return The reflective invoker of the same property, a {@link MethodInvoker} or a {@link GetFieldInvoker}
+   */
+  public Invoker getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public Object invoke(Object target, Object[] args) throws IllegalAccessException, InvocationTargetException {
+    if (!targetType.isInstance(target)) {
+      // let reflection report the error
+      return delegate.invoke(target, args);
+    }
+    try {
+      return getter.get(target);
+    } catch (Throwable t) {
+      throw new InvocationTargetException(t);
+    }
+  }
+
+  @Override
+  public Class<?> getType() {
+    return delegate.getType();
+  }
+}
@@ -0,0 +1,184 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates invokers that call getters and setters without reflection.
+ * <p>
+ * Each public getter or setter of a public class gets a class implementing its accessor, spun by the
+ * {@link LambdaMetafactory} as for a method reference. Setters of {@code int}, {@code long} and {@code double}
+ * properties also take unboxed values, see {@link PrimitiveSetter}.
+ * Fields, static or non-public methods and classes not visible from the class loader of MyBatis keep the reflective invokers.
+ * <p>
+ * The invokers are kept per method, so that reflectors built again, when the class cache of the reflector factory is
+ * disabled, do not spin new classes.
+ *
+ * @since 3.5.2
+ */
+public class LambdaInvokerFactory implements InvokerFactory {
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  private final ConcurrentMap<Method, Invoker> getInvokers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Method, Invoker> setInvokers = new ConcurrentHashMap<>();
+
+  @FunctionalInterface
+  interface Getter {
+    Object get(Object target);
+  }
+
+  @FunctionalInterface
+  interface Setter {
+    void set(Object target, Object value);
+  }
+
+  @FunctionalInterface
+  interface IntSetter {
+    void set(Object target, int value);
+  }
+
+  @FunctionalInterface
+  interface LongSetter {
+    void set(Object target, long value);
+  }
+
+  @FunctionalInterface
+  interface DoubleSetter {
+    void set(Object target, double value);
+  }
+
+  @Override
+  public Invoker newGetInvoker(Method method) {
+    return getInvokers.computeIfAbsent(method, LambdaInvokerFactory::createGetInvoker);
+  }
+
+  @Override
+  public Invoker newSetInvoker(Method method) {
+    return setInvokers.computeIfAbsent(method, LambdaInvokerFactory::createSetInvoker);
+  }
+
+  private static Invoker createGetInvoker(Method method) {
+    final Invoker delegate = new MethodInvoker(method);
+    if (!canSpinClassFor(method) || method.getReturnType() == void.class) {
+      return delegate;
+    }
+    try {
+      final Getter getter = (Getter) spin(Getter.class, "get", MethodType.methodType(Object.class, Object.class), method,
+          MethodType.methodType(wrap(method.getReturnType()), method.getDeclaringClass()));
+      return new LambdaGetInvoker(delegate, method.getDeclaringClass(), getter);
+    } catch (Throwable t) {
+      return delegate;
+    }
+  }
+
+  private static Invoker createSetInvoker(Method method) {
+    final Invoker delegate = new MethodInvoker(method);
+    if (!canSpinClassFor(method)) {
+      return delegate;
+    }
+    final Class<?> targetType = method.getDeclaringClass();
+    final Class<?> type = method.getParameterTypes()[0];
+    try {
+      if (type == int.class) {
+        final IntSetter setter = (IntSetter) spin(IntSetter.class, "set",
+            MethodType.methodType(void.class, Object.class, int.class), method, MethodType.methodType(void.class, targetType, type));
+        return new LambdaSetInvoker(delegate, targetType, type, null, setter, null, null);
+      } else if (type == long.class) {
+        final LongSetter setter = (LongSetter) spin(LongSetter.class, "set",
+            MethodType.methodType(void.class, Object.class, long.class), method, MethodType.methodType(void.class, targetType, type));
+        return new LambdaSetInvoker(delegate, targetType, type, null, null, setter, null);
+      } else if (type == double.class) {
+        final DoubleSetter setter = (DoubleSetter) spin(DoubleSetter.class, "set",
+            MethodType.methodType(void.class, Object.class, double.class), method, MethodType.methodType(void.class, targetType, type));
+        return new LambdaSetInvoker(delegate, targetType, type, null, null, null, setter);
+      } else {
+        // other primitives are unboxed by the spun class
+        final Setter setter = (Setter) spin(Setter.class, "set",
+            MethodType.methodType(void.class, Object.class, Object.class), method, MethodType.methodType(void.class, targetType, wrap(type)));
+        return new LambdaSetInvoker(delegate, targetType, type, setter, null, null, null);
+      }
+    } catch (Throwable t) {
+      return delegate;
+    }
+  }
+
+  @Override
+  public Invoker newGetInvoker(Field field) {
+    return new GetFieldInvoker(field);
+  }
+
+  @Override
+  public Invoker newSetInvoker(Field field) {
+    return new SetFieldInvoker(field);
+  }
+
+  private static Object spin(Class<?> functionalInterface, String name, MethodType samType, Method method,
+      MethodType instantiatedType) throws Throwable {
+    final MethodHandle handle = LOOKUP.unreflect(method);
+    final CallSite site = LambdaMetafactory.metafactory(LOOKUP, name, MethodType.methodType(functionalInterface),
+        samType, handle, instantiatedType);
+    return site.getTarget().invokeWithArguments();
+  }
+
+  /**
+   * The class spun for an accessor lives in the class loader of MyBatis and can only call what is public and visible from there.
+   */
+  private static boolean canSpinClassFor(Method method) {
+    if (Modifier.isStatic(method.getModifiers()) || !Modifier.isPublic(method.getModifiers())
+        || !isVisible(method.getDeclaringClass()) || !isVisible(method.getReturnType())) {
+      return false;
+    }
+    for (Class<?> parameterType : method.getParameterTypes()) {
+      if (!isVisible(parameterType)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isVisible(Class<?> type) {
+    while (type.isArray()) {
+      type = type.getComponentType();
+    }
+    if (type.isPrimitive()) {
+      return true;
+    }
+    if (!Modifier.isPublic(type.getModifiers())) {
+      return false;
+    }
+    try {
+      return Class.forName(type.getName(), false, LambdaInvokerFactory.class.getClassLoader()) == type;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  private static Class<?> wrap(Class<?> type) {
+    return type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type;
+  }
+
+}
@@ -0,0 +1,124 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Writes a property through an accessor created by the {@link LambdaInvokerFactory}.
+ * Arguments the accessor can not take, like a {@code null} for a primitive property, go to the reflective invoker
+ * so that they fail, or are converted, as before.
+ *
+ * @since 3.5.2
+ */
+public class LambdaSetInvoker implements PrimitiveSetter {
+
+  private final Invoker delegate;
+  private final Class<?> targetType;
+  private final Class<?> valueType;
+  private final boolean primitive;
+  private final LambdaInvokerFactory.Setter setter;
+  private final LambdaInvokerFactory.IntSetter intSetter;
+  private final LambdaInvokerFactory.LongSetter longSetter;
+  private final LambdaInvokerFactory.DoubleSetter doubleSetter;
+
+  LambdaSetInvoker(Invoker delegate, Class<?> targetType, Class<?> type, LambdaInvokerFactory.Setter setter,
+      LambdaInvokerFactory.IntSetter intSetter, LambdaInvokerFactory.LongSetter longSetter, LambdaInvokerFactory.DoubleSetter doubleSetter) {
+    this.delegate = delegate;
+    this.targetType = targetType;
+    this.valueType = type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type;
+    this.primitive = type.isPrimitive();
+    this.setter = setter;
+    this.intSetter = intSetter;
+    this.longSetter = longSetter;
+    this.doubleSetter = doubleSetter;
+  }
+
+  /**
+   * @return The reflective invoker of the same property, a {@link MethodInvoker} or a {@link SetFieldInvoker}
+   */
+  public Invoker getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public Object invoke(Object target, Object[] args) throws IllegalAccessException, InvocationTargetException {
+    final Object value = args[0];
+    if (!targetType.isInstance(target) || (value == null ? primitive : !valueType.isInstance(value))) {
+      // let reflection convert the value or report the error
+      return delegate.invoke(target, args);
+    }
+    try {
+      if (intSetter != null) {
+        intSetter.set(target, (Integer) value);
+      } else if (longSetter != null) {
+        longSetter.set(target, (Long) value);
+      } else if (doubleSetter != null) {
+        doubleSetter.set(target, (Double) value);
+      } else {
+        setter.set(target, value);
+      }
+    } catch (Throwable t) {
+      throw new InvocationTargetException(t);
+    }
+    return null;
+  }
+
+  @Override
+  public void setInt(Object target, int value) throws IllegalAccessException, InvocationTargetException {
+    if (intSetter == null || !targetType.isInstance(target)) {
+      invoke(target, new Object[] {value});
+      return;
+    }
+    try {
+      intSetter.set(target, value);
+    } catch (Throwable t) {
+      throw new InvocationTargetException(t);
+    }
+  }
+
+  @Override
+  public void setLong(Object target, long value) throws IllegalAccessException, InvocationTargetException {
+    if (longSetter == null || !targetType.isInstance(target)) {
+      invoke(target, new Object[] {value});
+      return;
+    }
+    try {
+      longSetter.set(target, value);
+    } catch (Throwable t) {
+      throw new InvocationTargetException(t);
+    }
+  }
+
+  @Override
+  public void setDouble(Object target, double value) throws IllegalAccessException, InvocationTargetException {
+    if (doubleSetter == null || !targetType.isInstance(target)) {
+      invoke(target, new Object[] {value});
+      return;
+    }
+    try {
+      doubleSetter.set(target, value);
+    } catch (Throwable t) {
+      throw new InvocationTargetException(t);
+    }
+  }
+
+  @Override
+  public Class<?> getType() {
+    return delegate.getType();
+  }
+}
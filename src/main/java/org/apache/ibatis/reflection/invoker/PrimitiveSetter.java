@@ -0,0 +1,34 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * A setter {@link Invoker} that can also take primitive values without boxing them.
+ * Values of another type than the one of the property are converted as by {@link #invoke(Object, Object[])}.
+ *
+ * @since 3.5.2
+ */
+public interface PrimitiveSetter extends Invoker {
+
+  void setInt(Object target, int value) throws IllegalAccessException, InvocationTargetException;
+
+  void setLong(Object target, long value) throws IllegalAccessException, InvocationTargetException;
+
+  void setDouble(Object target, double value) throws IllegalAccessException, InvocationTargetException;
+
+}
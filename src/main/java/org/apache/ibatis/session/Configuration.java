@@ -25,6 +25,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 
 import org.apache.ibatis.binding.MapperRegistry;
@@ -34,11 +39,23 @@ import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.builder.annotation.MethodResolver;
 import org.apache.ibatis.builder.xml.XMLStatementBuilder;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.cache.TableDependencyIndex;
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.SoftCache;
+import org.apache.ibatis.cache.decorators.TinyLfuCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
+import org.apache.ibatis.cache.decorators.WeightedCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.invalidation.InvalidationPublisher;
+import org.apache.ibatis.cache.invalidation.InvalidationReceiver;
+import org.apache.ibatis.cache.invalidation.InvalidationTransport;
+import org.apache.ibatis.cache.invalidation.LoopbackTransport;
+import org.apache.ibatis.cache.serializer.BinaryCacheSerializer;
+import org.apache.ibatis.cache.serializer.JavaCacheSerializer;
 import org.apache.ibatis.datasource.jndi.JndiDataSourceFactory;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
@@ -47,6 +64,8 @@ import org.apache.ibatis.executor.CachingExecutor;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ReuseExecutor;
 import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.executor.SingleFlightLoader;
+import org.apache.ibatis.executor.StatementCacheMetrics;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.loader.ProxyFactory;
 import org.apache.ibatis.executor.loader.cglib.CglibProxyFactory;
@@ -54,6 +73,7 @@ import org.apache.ibatis.executor.loader.javassist.JavassistProxyFactory;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.executor.resultset.RowMapperCache;
 import org.apache.ibatis.executor.statement.RoutingStatementHandler;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.io.VFS;
@@ -143,6 +163,32 @@ public class Configuration {
     protected Integer defaultFetchSize;
     //	配置默认的执行器。SIMPLE 就是普通的执行器；REUSE 执行器会重用预处理语句（prepared statements）； BATCH 执行器将重用语句并执行批量更新。
     protected ExecutorType defaultExecutorType = ExecutorType.SIMPLE;
+    //<settings>下的子节点。BATCH执行器中等待执行的语句条数上限，达到后自动执行批处理，未设置时不限制
+    protected Integer batchMaxSize;
+    //<settings>下的子节点。BATCH执行器中等待执行的参数估算字节数上限，达到后自动执行批处理，未设置时不限制
+    protected Integer batchMaxBytes;
+    //<settings>下的子节点。批处理执行后是否继续在BatchResult中保留参数对象，关闭可以降低大批量写入的内存占用
+    protected boolean batchRetainParameterObjects = true;
+    //<settings>下的子节点。根据每次批处理的耗时自动调整自动执行的条数，batchMaxSize为其上限
+    protected boolean batchAdaptiveSizing;
+    //<settings>下的子节点。自动调整条数时，每次批处理期望的耗时毫秒数
+    protected int batchTargetLatency = 100;
+    //<settings>下的子节点。BATCH执行器为每条不同的SQL保持一个打开的语句，声明了reorderable的语句交替调用时也可以合并到同一个批处理中
+    protected boolean batchGroupingEnabled;
+    //<settings>下的子节点。BATCH执行器把同一条单行INSERT ... VALUES (...)的多次执行合并为多行VALUES语句，用于驱动不支持改写批处理的数据库
+    protected boolean batchRewriteInserts;
+    //<settings>下的子节点。合并后的多行INSERT语句最多包含的参数个数
+    protected int batchRewriteMaxParameters = 1000;
+    //<settings>下的子节点。REUSE执行器在一个会话中最多保持打开的语句数，超出时关闭最近最少使用的语句，未设置时不限制
+    protected Integer reuseStatementCacheSize;
+    //所有REUSE执行器的语句重用命中、未命中与淘汰次数
+    protected final StatementCacheMetrics reuseStatementCacheMetrics = new StatementCacheMetrics();
+    //<settings>下的子节点。立即加载的嵌套查询（association/collection的select）最多同时执行的个数，每个嵌套查询使用自己的连接，未设置时在当前线程依次执行
+    protected Integer nestedQueryParallelism;
+    //执行并行嵌套查询的线程池，第一次使用时创建
+    private ExecutorService nestedQueryThreadPool;
+    //按结果集的列（列名、JDBC类型、Java类型）缓存已解析的TypeHandler与结果映射，同样的列再次查询时直接复用
+    protected final RowMapperCache rowMapperCache = new RowMapperCache();
     //指定 MyBatis 应如何自动映射列到字段或属性。 NONE 表示取消自动映射；PARTIAL 只会自动映射没有定义嵌套结果集映射的结果集。 FULL 会自动映射任意复杂的结果集（无论是否嵌套）。
     protected AutoMappingBehavior autoMappingBehavior = AutoMappingBehavior.PARTIAL;
     //指定发现自动映射目标未知列（或者未知属性类型）的行为。
@@ -158,6 +204,25 @@ public class Configuration {
 
     protected ObjectWrapperFactory objectWrapperFactory = new DefaultObjectWrapperFactory();
 
+    //<settings>下的子节点。读写缓存复制结果时使用的序列化器，<cache>上未指定serializer时使用，默认为Java序列化
+    protected CacheSerializer cacheSerializer = new JavaCacheSerializer();
+    //<settings>下的子节点。开启后，多个会话同时未命中二级缓存中同一个key时，只有一个会话查询数据库，其余会话等待并复用它的结果
+    protected boolean cacheSingleFlightEnabled;
+    //<settings>下的子节点。等待其他会话查询结果的最长毫秒数，超时后自己查询数据库，默认10秒，设为0时一直等待
+    protected Integer cacheSingleFlightTimeout = 10000;
+    //所有会话共享的正在进行中的二级缓存查询
+    protected final SingleFlightLoader singleFlightLoader = new SingleFlightLoader();
+    //<settings>下的子节点。增删改语句清除的二级缓存范围：NAMESPACE为整个命名空间的缓存（默认），TABLE为所有命名空间中读取了被修改表的缓存项
+    protected CacheFlushScope cacheFlushScope = CacheFlushScope.NAMESPACE;
+    //二级缓存项与其读取的表的对应关系，cacheFlushScope为TABLE时使用
+    protected final TableDependencyIndex tableDependencyIndex = new TableDependencyIndex();
+    //<settings>下的子节点。向集群中其他节点发送二级缓存失效事件的传输方式，未设置时只清除本节点的缓存
+    protected InvalidationTransport cacheInvalidationTransport;
+    //<settings>下的子节点。合并失效事件的毫秒数，期间提交的失效合并为一个事件发送，0为每次提交时立即发送
+    protected long cacheInvalidationBatchInterval;
+    //发送本节点提交的失效事件，设置了cacheInvalidationTransport时使用
+    protected InvalidationPublisher cacheInvalidationPublisher;
+
     //<settings>下的子节点。延迟加载的全局开关。当开启时，所有关联对象都会延迟加载。 特定关联关系中可通过设置 fetchType 属性来覆盖该项的开关状态。
     protected boolean lazyLoadingEnabled = false;
     //<settings>下的子节点。指定 Mybatis 创建具有延迟加载能力的对象所用到的代理工具。
@@ -189,6 +254,10 @@ public class Configuration {
                     ". please check " + savedValue.getResource() + " and " + targetValue.getResource());
     //存储xml映射文件中<cache>标签的解析出来的内容
     protected final Map<String, Cache> caches = new StrictMap<>("Caches collection");
+    //读写缓存复制结果时使用的序列化器，key为缓存id，只读缓存的值为null
+    protected final Map<String, CacheSerializer> cacheSerializers = new HashMap<>();
+    //在后台重新加载过期缓存项的缓存id
+    protected final Set<String> refreshingCaches = new HashSet<>();
     //存储xml映射文件中<ResultMap>标签的解析出来的内容
     protected final Map<String, ResultMap> resultMaps = new StrictMap<>("Result Maps collection");
     //存储xml映射文件中<ParameterMap>标签的解析出来的内容
@@ -236,18 +305,33 @@ public class Configuration {
         //mybatis会为每一个数据库操作创建一个新的连接，并关闭它。该方式适用于只有小规模数量并发用户的简单应用程序上。
         typeAliasRegistry.registerAlias("UNPOOLED", UnpooledDataSourceFactory.class);
 
-        //以下为缓存策略，在mapper配置文件中使用，eviction是缓存的淘汰算法，可选值有"LRU"、"FIFO"、"SOFT"、"WEAK"，缺省值是LRU
+        //以下为缓存策略，在mapper配置文件中使用，eviction是缓存的淘汰算法，可选值有"LRU"、"FIFO"、"TINYLFU"、"WEIGHTED"、"SOFT"、"WEAK"，缺省值是LRU
         //PERPETUAL为默认的缓存方式，可以自定义成其他的
         typeAliasRegistry.registerAlias("PERPETUAL", PerpetualCache.class);
+        //CONCURRENT：基于ConcurrentHashMap的线程安全缓存，读操作无锁，搭配LRU、FIFO时不再需要SynchronizedCache
+        typeAliasRegistry.registerAlias("CONCURRENT", ConcurrentPerpetualCache.class);
+        //OFFHEAP：把序列化后的结果存放在堆外内存（direct或mapped ByteBuffer）中，减少大缓存的GC压力
+        typeAliasRegistry.registerAlias("OFFHEAP", OffHeapCache.class);
         //FIFO：先进先出，按对象进入缓存的顺序来移除
         typeAliasRegistry.registerAlias("FIFO", FifoCache.class);
         //LRU：最近最少使用，移除最长时间不被使用的对象，默认策略
         typeAliasRegistry.registerAlias("LRU", LruCache.class);
+        //TINYLFU：W-TinyLFU，按访问频率决定新对象能否进入缓存，扫描类查询不会冲掉热点数据
+        typeAliasRegistry.registerAlias("TINYLFU", TinyLfuCache.class);
+        //WEIGHTED：按估算的字节数（maximumWeight）而不是条目数限制缓存大小，超出时按LRU移除
+        typeAliasRegistry.registerAlias("WEIGHTED", WeightedCache.class);
         //SOFT：软引用，移除基于垃圾回收器状态和软引用规则的对象
         typeAliasRegistry.registerAlias("SOFT", SoftCache.class);
         //WEAK：弱引用，更积极地移除基于垃圾收集器状态和弱引用规则的对象
         typeAliasRegistry.registerAlias("WEAK", WeakCache.class);
 
+        //读写缓存的序列化器：JAVA_SERIALIZER为默认的Java序列化，BINARY_SERIALIZER为按类缓存字段信息的紧凑二进制格式
+        typeAliasRegistry.registerAlias("JAVA_SERIALIZER", JavaCacheSerializer.class);
+        typeAliasRegistry.registerAlias("BINARY_SERIALIZER", BinaryCacheSerializer.class);
+
+        //集群节点间传递二级缓存失效事件的传输方式：LOOPBACK_TRANSPORT在同一个JVM内传递，多用于测试
+        typeAliasRegistry.registerAlias("LOOPBACK_TRANSPORT", LoopbackTransport.class);
+
         //MyBatis 可以根据不同的数据库厂商执行不同的语句，这种多厂商的支持是基于映射语句中的 databaseId 属性。
         // MyBatis 会加载不带 databaseId 属性和带有匹配当前数据库 databaseId 属性的所有语句。
         // 如果同时找到带有 databaseId 和不带 databaseId 的相同语句，则后者会被舍弃。
@@ -499,6 +583,174 @@ public class Configuration {
         this.defaultFetchSize = defaultFetchSize;
     }
 
+    public Integer getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    /**
+     * @param batchMaxSize - how many statements the batch executor adds before running the batch, null for no limit
+     * @since 3.5.2
+     */
+    public void setBatchMaxSize(Integer batchMaxSize) {
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    public Integer getBatchMaxBytes() {
+        return batchMaxBytes;
+    }
+
+    /**
+     * @param batchMaxBytes - the estimated size of the parameters the batch executor adds before running the batch, null for no limit
+     * @since 3.5.2
+     */
+    public void setBatchMaxBytes(Integer batchMaxBytes) {
+        this.batchMaxBytes = batchMaxBytes;
+    }
+
+    public boolean isBatchRetainParameterObjects() {
+        return batchRetainParameterObjects;
+    }
+
+    /**
+     * @param batchRetainParameterObjects - false to remove the parameter objects from the batch results once they were run
+     * @since 3.5.2
+     */
+    public void setBatchRetainParameterObjects(boolean batchRetainParameterObjects) {
+        this.batchRetainParameterObjects = batchRetainParameterObjects;
+    }
+
+    public boolean isBatchAdaptiveSizing() {
+        return batchAdaptiveSizing;
+    }
+
+    /**
+     * @param batchAdaptiveSizing - true to size the batches from the time they take, up to {@link #getBatchMaxSize()}
+     * @since 3.5.2
+     */
+    public void setBatchAdaptiveSizing(boolean batchAdaptiveSizing) {
+        this.batchAdaptiveSizing = batchAdaptiveSizing;
+    }
+
+    public int getBatchTargetLatency() {
+        return batchTargetLatency;
+    }
+
+    /**
+     * @param batchTargetLatency - the milliseconds an adaptively sized batch should take to run
+     * @since 3.5.2
+     */
+    public void setBatchTargetLatency(int batchTargetLatency) {
+        this.batchTargetLatency = batchTargetLatency;
+    }
+
+    public boolean isBatchGroupingEnabled() {
+        return batchGroupingEnabled;
+    }
+
+    /**
+     * @param batchGroupingEnabled - true to add an update of a {@link MappedStatement#isReorderable() reorderable} statement to
+     *     the open batch of its SQL even when other statements were batched since
+     * @since 3.5.2
+     */
+    public void setBatchGroupingEnabled(boolean batchGroupingEnabled) {
+        this.batchGroupingEnabled = batchGroupingEnabled;
+    }
+
+    public boolean isBatchRewriteInserts() {
+        return batchRewriteInserts;
+    }
+
+    /**
+     * @param batchRewriteInserts - true to run the rows batched for a single row insert as multi row inserts
+     * @since 3.5.2
+     */
+    public void setBatchRewriteInserts(boolean batchRewriteInserts) {
+        this.batchRewriteInserts = batchRewriteInserts;
+    }
+
+    public int getBatchRewriteMaxParameters() {
+        return batchRewriteMaxParameters;
+    }
+
+    /**
+     * @param batchRewriteMaxParameters - how many parameters a multi row insert may have
+     * @since 3.5.2
+     */
+    public void setBatchRewriteMaxParameters(int batchRewriteMaxParameters) {
+        this.batchRewriteMaxParameters = batchRewriteMaxParameters;
+    }
+
+    public Integer getReuseStatementCacheSize() {
+        return reuseStatementCacheSize;
+    }
+
+    /**
+     * @param reuseStatementCacheSize - how many statements a reuse executor keeps open, null for no limit
+     * @since 3.5.2
+     */
+    public void setReuseStatementCacheSize(Integer reuseStatementCacheSize) {
+        this.reuseStatementCacheSize = reuseStatementCacheSize;
+    }
+
+    /**
+     * @return How the statements of the reuse executors were reused
+     * @since 3.5.2
+     */
+    public StatementCacheMetrics getReuseStatementCacheMetrics() {
+        return reuseStatementCacheMetrics;
+    }
+
+    public Integer getNestedQueryParallelism() {
+        return nestedQueryParallelism;
+    }
+
+    /**
+     * Eager nested selects of a statement run on up to this many threads, each with a connection of its own, and are
+     * joined before the statement returns. Nested selects then do not see uncommitted changes of the session. The
+     * connections come from the same data source as the sessions': the nested selects that no thread could take,
+     * for example because no connection was left, run on the calling thread. Statements whose nested selects can
+     * lead back to one of them keep them all on the calling thread.
+     *
+     * @param nestedQueryParallelism - how many nested selects may run at the same time, null to run them one by one
+     * @since 3.5.2
+     */
+    public void setNestedQueryParallelism(Integer nestedQueryParallelism) {
+        this.nestedQueryParallelism = nestedQueryParallelism;
+        synchronized (this) {
+            if (nestedQueryThreadPool != null) {
+                nestedQueryThreadPool.shutdown();
+                nestedQueryThreadPool = null;
+            }
+        }
+    }
+
+    /**
+     * @return The thread pool that runs the nested selects when {@link #getNestedQueryParallelism()} is set
+     * @since 3.5.2
+     */
+    public synchronized ExecutorService getNestedQueryThreadPool() {
+        if (nestedQueryThreadPool == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            ThreadPoolExecutor threadPool = new ThreadPoolExecutor(nestedQueryParallelism, nestedQueryParallelism,
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "NestedQuery-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            threadPool.allowCoreThreadTimeOut(true);
+            nestedQueryThreadPool = threadPool;
+        }
+        return nestedQueryThreadPool;
+    }
+
+    /**
+     * @return The type handlers and row mappers resolved for the columns of the result sets read so far
+     * @since 3.5.2
+     */
+    public RowMapperCache getRowMapperCache() {
+        return rowMapperCache;
+    }
+
     public boolean isUseColumnLabel() {
         return useColumnLabel;
     }
@@ -566,6 +818,147 @@ public class Configuration {
         this.reflectorFactory = reflectorFactory;
     }
 
+    public CacheSerializer getCacheSerializer() {
+        return cacheSerializer;
+    }
+
+    /**
+     * @param cacheSerializer - the default serializer of read/write caches, Java serialization when null
+     * @since 3.5.2
+     */
+    public void setCacheSerializer(CacheSerializer cacheSerializer) {
+        this.cacheSerializer = cacheSerializer == null ? new JavaCacheSerializer() : cacheSerializer;
+    }
+
+    /**
+     * @param cacheId - the id of a second level cache
+     * @return The serializer copying the values of the cache, null if it hands out the cached values themselves, the
+     *     default serializer for a cache that was not built from a mapper
+     * @since 3.5.2
+     */
+    public CacheSerializer getCacheSerializer(String cacheId) {
+        return cacheSerializers.containsKey(cacheId) ? cacheSerializers.get(cacheId) : cacheSerializer;
+    }
+
+    /**
+     * @param cacheId - the id of a second level cache
+     * @param serializer - the serializer copying the values of the cache, null for a read-only cache
+     * @since 3.5.2
+     */
+    public void addCacheSerializer(String cacheId, CacheSerializer serializer) {
+        cacheSerializers.put(cacheId, serializer);
+    }
+
+    /**
+     * @param cacheId - the id of a second level cache
+     * @return Whether the cache reloads the entries put with a {@link org.apache.ibatis.cache.RefreshableCacheKey}
+     * @since 3.5.2
+     */
+    public boolean isCacheRefreshing(String cacheId) {
+        return refreshingCaches.contains(cacheId);
+    }
+
+    /**
+     * @param cacheId - the id of a second level cache that reloads its expired entries
+     * @since 3.5.2
+     */
+    public void addRefreshingCache(String cacheId) {
+        refreshingCaches.add(cacheId);
+    }
+
+    public boolean isCacheSingleFlightEnabled() {
+        return cacheSingleFlightEnabled;
+    }
+
+    /**
+     * @param cacheSingleFlightEnabled - when true, concurrent second level cache misses on the same key run one query
+     * @since 3.5.2
+     */
+    public void setCacheSingleFlightEnabled(boolean cacheSingleFlightEnabled) {
+        this.cacheSingleFlightEnabled = cacheSingleFlightEnabled;
+    }
+
+    public Integer getCacheSingleFlightTimeout() {
+        return cacheSingleFlightTimeout;
+    }
+
+    /**
+     * @param cacheSingleFlightTimeout - how long a session waits for a concurrent load in milliseconds before it runs
+     *     the query itself, 10 seconds by default, null or 0 to wait until the load is done
+     * @since 3.5.2
+     */
+    public void setCacheSingleFlightTimeout(Integer cacheSingleFlightTimeout) {
+        this.cacheSingleFlightTimeout = cacheSingleFlightTimeout;
+    }
+
+    public CacheFlushScope getCacheFlushScope() {
+        return cacheFlushScope;
+    }
+
+    /**
+     * @param cacheFlushScope - what a write statement removes from the second level caches
+     * @since 3.5.2
+     */
+    public void setCacheFlushScope(CacheFlushScope cacheFlushScope) {
+        this.cacheFlushScope = cacheFlushScope;
+    }
+
+    /**
+     * @return The tables each second level cache entry was read from, used when the flush scope is {@link CacheFlushScope#TABLE}
+     * @since 3.5.2
+     */
+    public TableDependencyIndex getTableDependencyIndex() {
+        return tableDependencyIndex;
+    }
+
+    public InvalidationTransport getCacheInvalidationTransport() {
+        return cacheInvalidationTransport;
+    }
+
+    /**
+     * Starts sending the invalidations committed on this node to the other nodes, and applying theirs.
+     * The previous transport, if any, is closed.
+     *
+     * @param cacheInvalidationTransport - connects this node to the others, null to only invalidate local caches
+     * @since 3.5.2
+     */
+    public void setCacheInvalidationTransport(InvalidationTransport cacheInvalidationTransport) {
+        if (this.cacheInvalidationTransport != null) {
+            cacheInvalidationPublisher.close();
+            this.cacheInvalidationTransport.close();
+        }
+        this.cacheInvalidationTransport = cacheInvalidationTransport;
+        if (cacheInvalidationTransport == null) {
+            cacheInvalidationPublisher = null;
+        } else {
+            cacheInvalidationPublisher = new InvalidationPublisher(cacheInvalidationTransport, cacheInvalidationBatchInterval);
+            cacheInvalidationTransport.open(new InvalidationReceiver(this, cacheInvalidationPublisher.getNodeId()));
+        }
+    }
+
+    public long getCacheInvalidationBatchInterval() {
+        return cacheInvalidationBatchInterval;
+    }
+
+    /**
+     * @param cacheInvalidationBatchInterval - how many milliseconds invalidations are coalesced before being sent to the other nodes
+     * @since 3.5.2
+     */
+    public void setCacheInvalidationBatchInterval(long cacheInvalidationBatchInterval) {
+        this.cacheInvalidationBatchInterval = cacheInvalidationBatchInterval;
+        if (cacheInvalidationPublisher != null) {
+            cacheInvalidationPublisher.setBatchInterval(cacheInvalidationBatchInterval);
+        }
+    }
+
+    /**
+     * @return The publisher of the invalidations committed on this node, null when no transport is set
+     * @since 3.5.2
+     */
+    public InvalidationPublisher getCacheInvalidationPublisher() {
+        return cacheInvalidationPublisher;
+    }
+
     public ObjectFactory getObjectFactory() {
         return objectFactory;
     }
@@ -662,7 +1055,8 @@ public class Configuration {
             executor = new SimpleExecutor(this, transaction);
         }
         if (cacheEnabled) {
-            executor = new CachingExecutor(executor);
+            executor = new CachingExecutor(executor, cacheSingleFlightEnabled ? singleFlightLoader : null,
+                cacheFlushScope == CacheFlushScope.TABLE ? tableDependencyIndex : null, cacheInvalidationPublisher);
         }
         executor = (Executor) interceptorChain.pluginAll(executor);
         return executor;
@@ -0,0 +1,118 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cache.serializer.BinaryCacheSerializer;
+import org.apache.ibatis.cache.serializer.JavaCacheSerializer;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Blog;
+import org.apache.ibatis.domain.blog.Post;
+import org.apache.ibatis.domain.blog.Section;
+import org.junit.jupiter.api.Test;
+
+class BinaryCacheSerializerTest {
+
+  private final CacheSerializer serializer = new BinaryCacheSerializer();
+
+  @Test
+  void shouldCopyMappedBeans() {
+    Author author = new Author(101, "jim", "********", "jim@ibatis.apache.org", "Something...", Section.NEWS);
+    Author copy = roundTrip(author);
+    assertNotSame(author, copy);
+    assertEquals(author, copy);
+  }
+
+  @Test
+  void shouldKeepSharedAndCyclicReferences() {
+    Author author = new Author(101, "jim", "********", "jim@ibatis.apache.org", "Something...", Section.NEWS);
+    Blog blog = new Blog(1, "Jim Business", author, new ArrayList<>());
+    for (int i = 0; i < 2; i++) {
+      Post post = new Post();
+      post.setId(i);
+      post.setBlog(blog);
+      post.setAuthor(author);
+      post.setCreatedOn(new Date(1000L * i));
+      blog.getPosts().add(post);
+    }
+    Blog copy = roundTrip(blog);
+    assertEquals("Jim Business", copy.getTitle());
+    assertEquals(2, copy.getPosts().size());
+    Post first = copy.getPosts().get(0);
+    assertSame(copy, first.getBlog());
+    assertSame(copy.getAuthor(), first.getAuthor());
+    assertSame(first.getAuthor(), copy.getPosts().get(1).getAuthor());
+    assertEquals(new Date(1000L), copy.getPosts().get(1).getCreatedOn());
+  }
+
+  @Test
+  void shouldCopyValuesAndCollections() {
+    Map<String, Object> row = new HashMap<>();
+    row.put("id", 1);
+    row.put("amount", new BigDecimal("12.50"));
+    row.put("active", Boolean.TRUE);
+    row.put("name", null);
+    row.put("tags", new String[] { "a", "b" });
+    List<Object> values = new ArrayList<>(Arrays.asList(row, 2L, 'c', (short) 3, 1.5d, 2.5f, (byte) 4, new byte[] { 5 }));
+    List<Object> copy = roundTrip(values);
+    @SuppressWarnings("unchecked")
+    Map<String, Object> rowCopy = (Map<String, Object>) copy.get(0);
+    assertEquals(1, rowCopy.get("id"));
+    assertEquals(new BigDecimal("12.50"), rowCopy.get("amount"));
+    assertEquals(Boolean.TRUE, rowCopy.get("active"));
+    assertTrue(rowCopy.containsKey("name"));
+    assertArrayEquals(new String[] { "a", "b" }, (String[]) rowCopy.get("tags"));
+    assertEquals(values.subList(1, 7), copy.subList(1, 7));
+    assertArrayEquals(new byte[] { 5 }, (byte[]) copy.get(7));
+  }
+
+  @Test
+  void shouldFallBackToJavaSerializationForOtherJdkTypes() {
+    Timestamp timestamp = new Timestamp(1000L);
+    timestamp.setNanos(123);
+    List<Object> values = new ArrayList<>(Arrays.asList(timestamp, LocalDate.of(2019, 1, 1), Arrays.asList(1, 2)));
+    assertEquals(values, roundTrip(values));
+  }
+
+  @Test
+  void shouldBeSmallerThanJavaSerialization() {
+    List<Author> authors = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      authors.add(new Author(i, "user" + i, "********", "user" + i + "@ibatis.apache.org", null, Section.NEWS));
+    }
+    byte[] binary = serializer.serialize(authors);
+    byte[] java = new JavaCacheSerializer().serialize(authors);
+    assertTrue(binary.length < java.length);
+    assertEquals(authors, serializer.deserialize(binary));
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T roundTrip(T value) {
+    return (T) serializer.deserialize(serializer.serialize(value));
+  }
+
+}
@@ -0,0 +1,93 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.Test;
+
+class BlockingCacheTest {
+
+  @Test
+  void shouldNotKeepLocksOnceReleased() {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    for (int i = 0; i < 100; i++) {
+      assertNull(cache.getObject(i));
+      cache.putObject(i, i);
+      assertEquals(i, cache.getObject(i));
+    }
+    for (int i = 100; i < 200; i++) {
+      assertNull(cache.getObject(i));
+      cache.removeObject(i);
+    }
+    assertEquals(0, cache.getLockCount());
+  }
+
+  @Test
+  void shouldLetTheSameThreadMissTwice() {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    assertNull(cache.getObject("key"));
+    assertNull(cache.getObject("key"));
+    cache.putObject("key", "value");
+    assertEquals(0, cache.getLockCount());
+  }
+
+  @Test
+  void shouldIgnoreReleaseOfUnlockedKey() {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    cache.removeObject("key");
+    cache.putObject("key", "value");
+    assertEquals("value", cache.getObject("key"));
+    assertEquals(0, cache.getLockCount());
+  }
+
+  @Test
+  void shouldBlockOtherThreadsUntilTheValueIsPut() throws Exception {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    assertNull(cache.getObject("key"));
+    CountDownLatch started = new CountDownLatch(1);
+    CompletableFuture<Object> reader = CompletableFuture.supplyAsync(() -> {
+      started.countDown();
+      return cache.getObject("key");
+    });
+    started.await();
+    Thread.sleep(50);
+    cache.putObject("key", "value");
+    assertEquals("value", reader.get(5, TimeUnit.SECONDS));
+    assertEquals(0, cache.getLockCount());
+  }
+
+  @Test
+  void shouldGiveUpAfterTimeout() throws Exception {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    cache.setTimeout(50);
+    assertNull(cache.getObject("key"));
+    CompletableFuture<Object> reader = CompletableFuture.supplyAsync(() -> cache.getObject("key"));
+    Exception e = assertThrows(Exception.class, () -> reader.get(5, TimeUnit.SECONDS));
+    assertEquals(CacheException.class, e.getCause().getClass());
+    cache.putObject("key", "value");
+    assertEquals(0, cache.getLockCount());
+  }
+
+}
@@ -25,7 +25,9 @@ import java.io.ByteArrayOutputStream;
 import java.io.NotSerializableException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
 import java.util.Date;
+import java.util.List;
 
 class CacheKeyTest {
 
@@ -78,6 +80,23 @@ class CacheKeyTest {
     assertEquals(key2, key1);
   }
 
+  @Test
+  void shouldTestCacheKeysWithManyValuesEqual() throws Exception {
+    CacheKey key1 = new CacheKey();
+    CacheKey key2 = new CacheKey();
+    for (int i = 0; i < 100; i++) {
+      key1.update(i);
+      key2.update(i);
+    }
+    assertEquals(100, key1.getUpdateCount());
+    assertEquals(key1, key2);
+    CacheKey clone = key1.clone();
+    clone.update("more");
+    assertEquals(key1, key2);
+    assertNotEquals(key1, clone);
+    assertEquals(101, clone.getUpdateCount());
+  }
+
   @Test
   void shouldTestCacheKeysWithBinaryArrays() {
     byte[] array1 = new byte[] { 1 };
@@ -103,6 +122,26 @@ class CacheKeyTest {
     Assertions.assertEquals(cacheKey, serialize(cacheKey));
   }
 
+  @Test
+  void serializationShouldKeepValuesBeyondInitialCapacity() throws Exception {
+    CacheKey cacheKey = new CacheKey();
+    for (int i = 0; i < 20; i++) {
+      cacheKey.update(i);
+    }
+    CacheKey copy = serialize(cacheKey);
+    Assertions.assertEquals(cacheKey, copy);
+    copy.update("more");
+    cacheKey.update("more");
+    Assertions.assertEquals(cacheKey, copy);
+  }
+
+  @Test
+  void serializedFormShouldKeepValuesInList() {
+    ObjectStreamClass descriptor = ObjectStreamClass.lookup(CacheKey.class);
+    Assertions.assertEquals(List.class, descriptor.getField("updateList").getType());
+    Assertions.assertEquals(1146682552656046210L, descriptor.getSerialVersionUID());
+  }
+
   private static <T> T serialize(T object) throws Exception {
       ByteArrayOutputStream baos = new ByteArrayOutputStream();
       new ObjectOutputStream(baos).writeObject(object);
@@ -0,0 +1,51 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.Test;
+
+class LoggingCacheTest {
+
+  @SuppressWarnings("deprecation")
+  static class CountingCache extends LoggingCache {
+    CountingCache(Cache delegate) {
+      super(delegate);
+    }
+
+    int getRequests() {
+      return requests;
+    }
+
+    int getHits() {
+      return hits;
+    }
+  }
+
+  @Test
+  void shouldKeepCountersUpToDateForSubclasses() {
+    CountingCache cache = new CountingCache(new PerpetualCache("default"));
+    cache.putObject("a", "A");
+    cache.getObject("a");
+    cache.getObject("b");
+    assertThat(cache.getRequests()).isEqualTo(2);
+    assertThat(cache.getHits()).isEqualTo(1);
+  }
+
+}
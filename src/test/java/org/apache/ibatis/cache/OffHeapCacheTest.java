@@ -0,0 +1,126 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import org.apache.ibatis.cache.impl.OffHeapCache;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OffHeapCacheTest {
+
+  @Test
+  void shouldReturnCopiesOfCachedObjects() {
+    OffHeapCache cache = new OffHeapCache("default");
+    List<String> value = new ArrayList<>(Arrays.asList("a", "b"));
+    cache.putObject(0, value);
+    Object cached = cache.getObject(0);
+    assertEquals(value, cached);
+    assertNotSame(value, cached);
+    assertNotSame(cached, cache.getObject(0));
+  }
+
+  @Test
+  void shouldStoreSerializedBytesAsIs() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.putObject(0, new byte[] { 1, 2, 3 });
+    assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) cache.getObject(0));
+    assertEquals(3, cache.getLiveBytes());
+  }
+
+  @Test
+  void shouldEvictLeastRecentlyUsedItemsWhenFull() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setSlabSize(1000);
+    cache.setCapacity(5000);
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, new byte[100]);
+      cache.getObject(0);
+    }
+    assertNotNull(cache.getObject(0));
+    assertNotNull(cache.getObject(99));
+    assertNull(cache.getObject(1));
+    assertTrue(cache.getLiveBytes() <= 3000);
+    assertEquals(100 - cache.getSize(), cache.getEvictionCount());
+  }
+
+  @Test
+  void shouldKeepValuesWhenSlabsAreCompacted() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setSlabSize(1000);
+    cache.setCapacity(4000);
+    for (int round = 0; round < 20; round++) {
+      for (int i = 0; i < 10; i++) {
+        byte[] value = new byte[100];
+        Arrays.fill(value, (byte) (round + i));
+        cache.putObject(i, value);
+      }
+      for (int i = 0; i < 10; i++) {
+        byte[] value = (byte[]) cache.getObject(i);
+        if (value != null) {
+          assertEquals((byte) (round + i), value[99]);
+        }
+      }
+    }
+    assertTrue(cache.getSize() > 0);
+  }
+
+  @Test
+  void shouldNotKeepItemLargerThanSlab() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setSlabSize(100);
+    cache.putObject(0, new byte[101]);
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  void shouldUseMemoryMappedSlabs(@TempDir Path directory) {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setDirectory(directory.toString());
+    cache.putObject(0, "value");
+    assertEquals("value", cache.getObject(0));
+  }
+
+  @Test
+  void shouldRemoveItemOnDemand() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.putObject(0, 0);
+    assertNotNull(cache.getObject(0));
+    cache.removeObject(0);
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getLiveBytes());
+  }
+
+  @Test
+  void shouldFlushAllItemsOnDemand() {
+    OffHeapCache cache = new OffHeapCache("default");
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertNull(cache.getObject(4));
+    assertEquals(0, cache.getSize());
+  }
+
+}
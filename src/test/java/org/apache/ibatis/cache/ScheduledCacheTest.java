@@ -15,6 +15,10 @@
  */
 package org.apache.ibatis.cache;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.ibatis.cache.decorators.LoggingCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
@@ -65,4 +69,93 @@ class ScheduledCacheTest {
     assertNull(cache.getObject(4));
   }
 
-}
\ No newline at end of file
+  @Test
+  void shouldExpireEntriesOnTheirOwn() throws Exception {
+    ScheduledCache cache = new ScheduledCache(new PerpetualCache("DefaultCache"));
+    cache.setClearInterval(0);
+    cache.setTimeToLive(100);
+    cache.putObject(key(0), "old");
+    Thread.sleep(60);
+    cache.putObject(key(1), "new");
+    Thread.sleep(60);
+    assertNull(cache.getObject(key(0)));
+    assertEquals("new", cache.getObject(key(1)));
+  }
+
+  @Test
+  void shouldRefreshAheadOfExpiry() throws Exception {
+    ScheduledCache cache = new ScheduledCache(new PerpetualCache("DefaultCache"));
+    cache.setTimeToLive(200);
+    cache.setRefreshAhead(150);
+    CountDownLatch refreshed = new CountDownLatch(1);
+    AtomicInteger refreshes = new AtomicInteger();
+    CacheRefresher refresher = key -> {
+      refreshes.incrementAndGet();
+      cache.putObject(key, "fresh");
+      refreshed.countDown();
+    };
+    cache.putObject(new RefreshableCacheKey(key(0), refresher), "current");
+    assertEquals("current", cache.getObject(key(0)));
+    Thread.sleep(80);
+    assertEquals("current", cache.getObject(key(0)));
+    assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+    assertEquals("fresh", cache.getObject(key(0)));
+    assertEquals(1, refreshes.get());
+  }
+
+  @Test
+  void shouldServeStaleEntriesWhileRevalidating() throws Exception {
+    ScheduledCache cache = new ScheduledCache(new PerpetualCache("DefaultCache"));
+    cache.setTimeToLive(50);
+    cache.setStaleWhileRevalidate(60000);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger refreshes = new AtomicInteger();
+    CacheRefresher refresher = key -> {
+      refreshes.incrementAndGet();
+      release.await();
+      cache.putObject(key, "fresh");
+    };
+    cache.putObject(new RefreshableCacheKey(key(0), refresher), "stale");
+    cache.putObject(key(1), "no refresher");
+    Thread.sleep(100);
+    for (int i = 0; i < 10; i++) {
+      assertEquals("stale", cache.getObject(key(0)));
+    }
+    assertNull(cache.getObject(key(1)));
+    release.countDown();
+    for (int i = 0; i < 100 && !"fresh".equals(cache.getObject(key(0))); i++) {
+      Thread.sleep(10);
+    }
+    assertEquals("fresh", cache.getObject(key(0)));
+    assertEquals(1, refreshes.get());
+  }
+
+  @Test
+  void shouldDropRefreshFinishedAfterClear() throws Exception {
+    ScheduledCache cache = new ScheduledCache(new PerpetualCache("DefaultCache"));
+    cache.setTimeToLive(50);
+    cache.setStaleWhileRevalidate(60000);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(1);
+    CacheRefresher refresher = key -> {
+      started.countDown();
+      release.await();
+      cache.putObject(key, "fresh");
+      done.countDown();
+    };
+    cache.putObject(new RefreshableCacheKey(key(0), refresher), "stale");
+    Thread.sleep(100);
+    assertEquals("stale", cache.getObject(key(0)));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    cache.clear();
+    release.countDown();
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertNull(cache.getObject(key(0)));
+  }
+
+  private static CacheKey key(int value) {
+    return new CacheKey(new Object[] { "select", value });
+  }
+
+}
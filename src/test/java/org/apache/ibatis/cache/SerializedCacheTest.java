@@ -0,0 +1,87 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Immutable;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.serializer.BinaryCacheSerializer;
+import org.apache.ibatis.domain.blog.Author;
+import org.junit.jupiter.api.Test;
+
+class SerializedCacheTest {
+
+  @Test
+  void shouldReturnCopyOfMutableObjects() {
+    Cache cache = new SerializedCache(new PerpetualCache("default"), new BinaryCacheSerializer());
+    Author author = new Author(1);
+    cache.putObject(0, new ArrayList<>(Arrays.asList(author)));
+    @SuppressWarnings("unchecked")
+    List<Author> cached = (List<Author>) cache.getObject(0);
+    assertEquals(author, cached.get(0));
+    assertNotSame(author, cached.get(0));
+  }
+
+  @Test
+  void shouldShareImmutableObjectsWithoutSerializing() {
+    PerpetualCache delegate = new PerpetualCache("default");
+    Cache cache = new SerializedCache(delegate);
+    Point point = new Point(1, 2);
+    List<Object> result = new ArrayList<>(Arrays.asList(point, "text", 3L, null));
+    cache.putObject(0, result);
+    assertFalse(delegate.getObject(0) instanceof byte[]);
+    result.clear();
+    @SuppressWarnings("unchecked")
+    List<Object> cached = (List<Object>) cache.getObject(0);
+    assertEquals(4, cached.size());
+    assertSame(point, cached.get(0));
+    cached.clear();
+    assertNotSame(cached, cache.getObject(0));
+    assertEquals(4, ((List<?>) cache.getObject(0)).size());
+  }
+
+  @Test
+  void shouldSerializeListsWithMutableElements() {
+    PerpetualCache delegate = new PerpetualCache("default");
+    Cache cache = new SerializedCache(delegate);
+    cache.putObject(0, new ArrayList<>(Arrays.asList("text", new Author(1))));
+    assertTrue(delegate.getObject(0) instanceof byte[]);
+  }
+
+  @Test
+  void shouldRejectNonSerializableObjects() {
+    Cache cache = new SerializedCache(new PerpetualCache("default"));
+    assertThrows(CacheException.class, () -> cache.putObject(0, new Object()));
+  }
+
+  @Immutable
+  static class Point {
+    private final int x;
+    private final int y;
+
+    Point(int x, int y) {
+      this.x = x;
+      this.y = y;
+    }
+  }
+
+}
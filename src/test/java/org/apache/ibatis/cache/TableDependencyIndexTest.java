@@ -0,0 +1,119 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.Test;
+
+class TableDependencyIndexTest {
+
+  @Test
+  void shouldRemoveOnlyEntriesReadFromChangedTables() {
+    TableDependencyIndex index = new TableDependencyIndex();
+    Cache orders = new PerpetualCache("orders");
+    Cache reports = new PerpetualCache("reports");
+    put(index, orders, "order", "orders");
+    put(index, orders, "orderWithCustomer", "orders", "customers");
+    put(index, reports, "customers", "customers");
+    put(index, reports, "products", "products");
+
+    index.invalidate(Collections.singleton("customers"));
+
+    assertNotNull(orders.getObject("order"));
+    assertNull(orders.getObject("orderWithCustomer"));
+    assertNull(reports.getObject("customers"));
+    assertNotNull(reports.getObject("products"));
+    assertEquals(0, index.getKeyCount(reports, "customers"));
+    assertEquals(1, index.getKeyCount(reports, "products"));
+  }
+
+  @Test
+  void shouldRemoveEntriesWithUnknownTablesOnAnyWrite() {
+    TableDependencyIndex index = new TableDependencyIndex();
+    Cache cache = new PerpetualCache("default");
+    put(index, cache, "unknown");
+    put(index, cache, "products", "products");
+
+    index.invalidate(Collections.singleton("orders"));
+
+    assertNull(cache.getObject("unknown"));
+    assertNotNull(cache.getObject("products"));
+  }
+
+  @Test
+  void shouldClearCacheWhenTooManyEntriesDependOnATable() {
+    TableDependencyIndex index = new TableDependencyIndex();
+    index.setMaxKeysPerTable(2);
+    Cache cache = new PerpetualCache("default");
+    put(index, cache, "a", "orders");
+    put(index, cache, "b", "orders");
+    put(index, cache, "c", "orders");
+    put(index, cache, "products", "products");
+    assertEquals(-1, index.getKeyCount(cache, "orders"));
+
+    index.invalidate(Collections.singleton("orders"));
+
+    assertEquals(0, cache.getSize());
+    assertEquals(0, index.getKeyCount(cache, "products"));
+  }
+
+  @Test
+  void shouldClearBlockingCacheAsItCannotRemoveEntries() {
+    TableDependencyIndex index = new TableDependencyIndex();
+    Cache cache = new BlockingCache(new PerpetualCache("default"));
+    put(index, cache, "a", "orders");
+    put(index, cache, "products", "products");
+
+    index.invalidate(Collections.singleton("orders"));
+
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  void shouldNotLoseEntriesRegisteredDuringAnInvalidation() throws Exception {
+    TableDependencyIndex index = new TableDependencyIndex();
+    Cache cache = new ConcurrentPerpetualCache("default");
+    Thread writer = new Thread(() -> {
+      for (int i = 0; i < 20000; i++) {
+        put(index, cache, "key" + i, "orders");
+      }
+    });
+    writer.start();
+    while (writer.isAlive()) {
+      index.invalidate(Collections.singleton("orders"));
+    }
+    writer.join();
+
+    index.invalidate(Collections.singleton("orders"));
+
+    assertEquals(0, cache.getSize());
+  }
+
+  private static void put(TableDependencyIndex index, Cache cache, String key, String... tables) {
+    cache.putObject(key, key);
+    index.register(cache, key, Arrays.asList(tables));
+  }
+
+}
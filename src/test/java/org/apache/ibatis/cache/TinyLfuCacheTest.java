@@ -0,0 +1,125 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import org.apache.ibatis.cache.decorators.TinyLfuCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TinyLfuCacheTest {
+
+  @Test
+  void shouldNotGrowBeyondSize() {
+    TinyLfuCache cache = new TinyLfuCache(new PerpetualCache("default"));
+    cache.setSize(5);
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, i);
+    }
+    assertEquals(5, cache.getSize());
+    assertEquals(95, cache.getEvictionCount());
+  }
+
+  @Test
+  void shouldKeepFrequentlyReadItemsDuringScan() {
+    TinyLfuCache cache = new TinyLfuCache(new ConcurrentPerpetualCache("default"));
+    cache.setSize(100);
+    for (int i = 0; i < 50; i++) {
+      cache.putObject(i, i);
+    }
+    for (int round = 0; round < 20; round++) {
+      for (int i = 0; i < 50; i++) {
+        cache.getObject(i);
+      }
+    }
+    // a scan of one-off keys, an LRU cache would lose all the hot keys here
+    for (int i = 1000; i < 2000; i++) {
+      cache.putObject(i, i);
+    }
+    int hotKeys = 0;
+    for (int i = 0; i < 50; i++) {
+      if (cache.getObject(i) != null) {
+        hotKeys++;
+      }
+    }
+    assertTrue(hotKeys >= 45, "only " + hotKeys + " hot keys survived the scan");
+  }
+
+  @Test
+  void shouldReportHitRatio() {
+    TinyLfuCache cache = new TinyLfuCache(new PerpetualCache("default"));
+    assertEquals(0, cache.getHitRatio());
+    cache.putObject(0, 0);
+    cache.getObject(0);
+    cache.getObject(0);
+    cache.getObject(0);
+    cache.getObject(1);
+    assertEquals(3, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(0.75, cache.getHitRatio());
+  }
+
+  @Test
+  void shouldRemoveItemOnDemand() {
+    Cache cache = new TinyLfuCache(new PerpetualCache("default"));
+    cache.putObject(0, 0);
+    assertNotNull(cache.getObject(0));
+    cache.removeObject(0);
+    assertNull(cache.getObject(0));
+  }
+
+  @Test
+  void shouldFlushAllItemsOnDemand() {
+    Cache cache = new TinyLfuCache(new PerpetualCache("default"));
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    assertNotNull(cache.getObject(0));
+    assertNotNull(cache.getObject(4));
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertNull(cache.getObject(4));
+  }
+
+  @Test
+  void shouldStayWithinSizeWhenAccessedConcurrently() throws Exception {
+    TinyLfuCache cache = new TinyLfuCache(new ConcurrentPerpetualCache("default"));
+    cache.setSize(100);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      final int offset = t * 10000;
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 10000; i++) {
+          cache.putObject(offset + i, i);
+          cache.getObject(offset + i % 200);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(cache.getSize() <= 100);
+  }
+
+}
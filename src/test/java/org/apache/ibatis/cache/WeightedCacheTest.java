@@ -0,0 +1,100 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import org.apache.ibatis.cache.decorators.WeightedCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+class WeightedCacheTest {
+
+  @Test
+  void shouldEvictLeastRecentlyUsedItemsBeyondMaximumWeight() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    cache.setMaximumWeight(500);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, new byte[100]);
+    }
+    assertEquals(500, cache.getWeight());
+    assertNotNull(cache.getObject(0));
+    cache.putObject(5, new byte[150]);
+    assertNull(cache.getObject(1));
+    assertNull(cache.getObject(2));
+    assertNotNull(cache.getObject(0));
+    assertEquals(450, cache.getWeight());
+    assertEquals(4, cache.getSize());
+    assertEquals(2, cache.getEvictionCount());
+  }
+
+  @Test
+  void shouldWeighListsByRowCount() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    cache.setEstimatedRowSize(10);
+    cache.putObject(0, Arrays.asList(1, 2, 3));
+    cache.putObject(1, "row");
+    cache.putObject(2, Collections.emptyList());
+    assertEquals(50, cache.getWeight());
+  }
+
+  @Test
+  void shouldNotKeepItemHeavierThanTheWholeCache() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    cache.setMaximumWeight(100);
+    cache.putObject(0, new byte[50]);
+    cache.putObject(1, new byte[200]);
+    assertNull(cache.getObject(1));
+    assertNotNull(cache.getObject(0));
+    assertEquals(50, cache.getWeight());
+  }
+
+  @Test
+  void shouldUseCustomWeigher() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    cache.setMaximumWeight(3);
+    cache.setWeigher((key, value) -> ((String) value).length());
+    cache.putObject(0, "ab");
+    cache.putObject(1, "cd");
+    assertNull(cache.getObject(0));
+    assertEquals(2, cache.getWeight());
+  }
+
+  @Test
+  void shouldReplaceWeightOfUpdatedItem() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    cache.putObject(0, new byte[10]);
+    cache.putObject(0, new byte[30]);
+    assertEquals(30, cache.getWeight());
+    cache.removeObject(0);
+    assertEquals(0, cache.getWeight());
+  }
+
+  @Test
+  void shouldFlushAllItemsOnDemand() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getWeight());
+  }
+
+}
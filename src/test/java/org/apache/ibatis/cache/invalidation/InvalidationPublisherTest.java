@@ -0,0 +1,107 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+class InvalidationPublisherTest {
+
+  @Test
+  void shouldSendEachCommitWithoutBatchInterval() {
+    RecordingTransport transport = new RecordingTransport();
+    InvalidationPublisher publisher = new InvalidationPublisher(transport, 0);
+    publisher.cacheCleared("a");
+    publisher.tablesInvalidated(Arrays.asList("person", "pet"));
+    assertThat(transport.events).hasSize(2);
+    assertThat(transport.events.get(0).getOrigin()).isEqualTo(publisher.getNodeId());
+    assertThat(transport.events.get(0).getCacheIds()).containsExactly("a");
+    assertThat(transport.events.get(1).getTables()).containsExactly("person", "pet");
+  }
+
+  @Test
+  void shouldCoalesceInvalidationsOfTheInterval() {
+    RecordingTransport transport = new RecordingTransport();
+    InvalidationPublisher publisher = new InvalidationPublisher(transport, 60000);
+    publisher.cacheCleared("a");
+    publisher.cacheCleared("b");
+    publisher.cacheCleared("a");
+    publisher.tablesInvalidated(Arrays.asList("person"));
+    publisher.tablesInvalidated(Arrays.asList("person", "pet"));
+    assertThat(transport.events).isEmpty();
+    publisher.close();
+    assertThat(transport.events).hasSize(1);
+    assertThat(transport.events.get(0).getCacheIds()).containsExactly("a", "b");
+    assertThat(transport.events.get(0).getTables()).containsExactly("person", "pet");
+  }
+
+  @Test
+  void shouldSendAtTheEndOfTheInterval() throws Exception {
+    CountDownLatch sent = new CountDownLatch(1);
+    RecordingTransport transport = new RecordingTransport() {
+      @Override
+      public void send(InvalidationEvent event) {
+        super.send(event);
+        sent.countDown();
+      }
+    };
+    InvalidationPublisher publisher = new InvalidationPublisher(transport, 50);
+    publisher.cacheCleared("a");
+    publisher.cacheCleared("b");
+    assertThat(sent.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(transport.events).hasSize(1);
+    assertThat(transport.events.get(0).getCacheIds()).containsExactly("a", "b");
+    publisher.close();
+  }
+
+  @Test
+  void shouldNotFailCommitWhenTransportFails() {
+    InvalidationPublisher publisher = new InvalidationPublisher(new RecordingTransport() {
+      @Override
+      public void send(InvalidationEvent event) {
+        throw new IllegalStateException("network is down");
+      }
+    }, 0);
+    publisher.cacheCleared("a");
+  }
+
+  private static class RecordingTransport implements InvalidationTransport {
+
+    final List<InvalidationEvent> events = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void open(Consumer<InvalidationEvent> receiver) {
+    }
+
+    @Override
+    public void send(InvalidationEvent event) {
+      events.add(event);
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+}
@@ -0,0 +1,94 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+class LoopbackTransportTest {
+
+  @Test
+  void shouldDeliverToTheOtherMembersOfTheChannel() {
+    List<InvalidationEvent> first = new CopyOnWriteArrayList<>();
+    List<InvalidationEvent> second = new CopyOnWriteArrayList<>();
+    List<InvalidationEvent> other = new CopyOnWriteArrayList<>();
+    LoopbackTransport firstTransport = new LoopbackTransport("loopback-test");
+    LoopbackTransport secondTransport = new LoopbackTransport("loopback-test");
+    LoopbackTransport otherTransport = new LoopbackTransport("loopback-test-other");
+    firstTransport.open(first::add);
+    secondTransport.open(second::add);
+    otherTransport.open(other::add);
+    try {
+      InvalidationEvent event = new InvalidationEvent("node", Collections.singleton("a"), Collections.emptySet());
+      firstTransport.send(event);
+      assertThat(first).isEmpty();
+      assertThat(second).containsExactly(event);
+      assertThat(other).isEmpty();
+
+      secondTransport.close();
+      firstTransport.send(event);
+      assertThat(second).hasSize(1);
+    } finally {
+      firstTransport.close();
+      otherTransport.close();
+    }
+  }
+
+  @Test
+  void shouldKeepDeliveringWhenAReceiverFails() {
+    List<InvalidationEvent> received = new CopyOnWriteArrayList<>();
+    LoopbackTransport sender = new LoopbackTransport("loopback-test-failure");
+    LoopbackTransport failing = new LoopbackTransport("loopback-test-failure");
+    LoopbackTransport working = new LoopbackTransport("loopback-test-failure");
+    sender.open(received::add);
+    failing.open(event -> {
+      throw new IllegalStateException("broken node");
+    });
+    working.open(received::add);
+    try {
+      sender.send(new InvalidationEvent("node", Collections.singleton("a"), Collections.emptySet()));
+      assertThat(received).hasSize(1);
+    } finally {
+      sender.close();
+      failing.close();
+      working.close();
+    }
+  }
+
+  @Test
+  void shouldNotKeepTransportsThatWereNeverClosed() throws Exception {
+    WeakReference<LoopbackTransport> dropped = openAndDrop("loopback-test-dropped");
+    for (int i = 0; i < 50 && dropped.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(dropped.get()).isNull();
+  }
+
+  private static WeakReference<LoopbackTransport> openAndDrop(String channel) {
+    LoopbackTransport transport = new LoopbackTransport(channel);
+    transport.open(event -> {
+    });
+    return new WeakReference<>(transport);
+  }
+
+}
@@ -17,9 +17,17 @@ package org.apache.ibatis.executor;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-
+import static org.mockito.AdditionalMatchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,12 +37,14 @@ import javassist.util.proxy.Proxy;
 import javax.sql.DataSource;
 
 import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.domain.blog.Author;
 import org.apache.ibatis.domain.blog.Blog;
 import org.apache.ibatis.domain.blog.Post;
 import org.apache.ibatis.domain.blog.Section;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.LocalCacheScope;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
 import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
@@ -43,7 +53,7 @@ import org.junit.jupiter.api.Test;
 
 class BaseExecutorTest extends BaseDataTest {
   protected final Configuration config;
-  private static DataSource ds;
+  protected static DataSource ds;
 
   @BeforeAll
   static void setup() throws Exception {
@@ -351,6 +361,56 @@ class BaseExecutorTest extends BaseDataTest {
     }
   }
 
+  @Test
+  void shouldSelectWithStatementLocalCacheScope() throws Exception {
+    config.setLocalCacheScope(LocalCacheScope.STATEMENT);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement selectStatement = ExecutorTestHelper.prepareSelectOneAuthorMappedStatement(config);
+      List<Author> first = executor.query(selectStatement, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      List<Author> second = executor.query(selectStatement, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      assertEquals(1, second.size());
+      assertEquals(first.get(0).toString(), second.get(0).toString());
+      assertNotSame(first.get(0), second.get(0));
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldResolveCircularNestedQueriesWithStatementLocalCacheScope() throws Exception {
+    config.setLocalCacheScope(LocalCacheScope.STATEMENT);
+    config.setLazyLoadingEnabled(false);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement selectBlog = ExecutorTestHelper.prepareComplexSelectBlogMappedStatement(config);
+      MappedStatement selectPosts = ExecutorTestHelper.prepareSelectPostsForBlogMappedStatement(config);
+      config.addMappedStatement(selectBlog);
+      config.addMappedStatement(selectPosts);
+      List<Post> posts = executor.query(selectPosts, 1, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      assertEquals(2, posts.size());
+      assertEquals(1, posts.get(1).getBlog().getId());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldKeepStatementScopedCacheKeyOfDiscriminatedResults() throws Exception {
+    config.setLocalCacheScope(LocalCacheScope.STATEMENT);
+    // a case of the discriminator may run nested queries that have to find the top level query again
+    SimpleExecutor executor = spy(new SimpleExecutor(config, null));
+    doReturn(Collections.emptyList()).when(executor).query(any(), any(), any(), any(), any(), any());
+    MappedStatement selectAuthor = ExecutorTestHelper.prepareSelectOneAuthorMappedStatement(config);
+    MappedStatement selectPosts = ExecutorTestHelper.prepareSelectDiscriminatedPost(config);
+    executor.query(selectAuthor, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+    executor.query(selectPosts, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+    verify(executor).query(same(selectAuthor), any(), any(), any(), same(CacheKey.NULL_CACHE_KEY), any());
+    verify(executor).query(same(selectPosts), any(), any(), any(), not(same(CacheKey.NULL_CACHE_KEY)), any());
+  }
+
   @Test
   void shouldFetchOneOrphanedPostWithNoBlog() throws Exception {
 
@@ -15,7 +15,22 @@
  */
 package org.apache.ibatis.executor;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Blog;
+import org.apache.ibatis.domain.blog.Section;
+import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
 import org.junit.jupiter.api.Test;
 
 class BatchExecutorTest extends BaseExecutorTest {
@@ -24,6 +39,214 @@ class BatchExecutorTest extends BaseExecutorTest {
   void dummy() {
   }
 
+  @Test
+  void shouldRunPendingBatchesWhenMaxSizeIsReached() throws Exception {
+    config.setBatchMaxSize(2);
+    Transaction transaction = new JdbcTransaction(ds, null, false);
+    Executor executor = createExecutor(transaction);
+    try {
+      MappedStatement insertStatement = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      for (int id = 500; id < 503; id++) {
+        executor.update(insertStatement, newAuthor(id));
+      }
+      assertEquals(2, countAuthors(transaction.getConnection()));
+      for (int id = 503; id < 505; id++) {
+        executor.update(insertStatement, newAuthor(id));
+      }
+      List<BatchResult> results = executor.flushStatements();
+      assertEquals(1, results.size());
+      assertArrayEquals(new int[] {1, 1, 1, 1, 1}, results.get(0).getUpdateCounts());
+      assertEquals(5, results.get(0).getParameterObjects().size());
+      assertEquals(5, countAuthors(transaction.getConnection()));
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldRunPendingBatchesInOrder() throws Exception {
+    config.setBatchMaxSize(3);
+    Transaction transaction = new JdbcTransaction(ds, null, false);
+    Executor executor = createExecutor(transaction);
+    try {
+      MappedStatement insertStatement = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      MappedStatement updateStatement = ExecutorTestHelper.prepareUpdateAuthorMappedStatement(config);
+      executor.update(insertStatement, newAuthor(500));
+      executor.update(updateStatement, newAuthor(500));
+      executor.update(insertStatement, newAuthor(501));
+      executor.update(insertStatement, newAuthor(502));
+      List<BatchResult> results = executor.flushStatements();
+      assertEquals(3, results.size());
+      assertArrayEquals(new int[] {1}, results.get(0).getUpdateCounts());
+      assertArrayEquals(new int[] {1}, results.get(1).getUpdateCounts());
+      assertArrayEquals(new int[] {1, 1}, results.get(2).getUpdateCounts());
+      assertEquals(3, countAuthors(transaction.getConnection()));
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldDropParameterObjectsOnceRun() throws Exception {
+    config.setBatchMaxSize(2);
+    config.setBatchRetainParameterObjects(false);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement insertStatement = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      for (int id = 500; id < 505; id++) {
+        executor.update(insertStatement, newAuthor(id));
+      }
+      List<BatchResult> results = executor.flushStatements();
+      assertEquals(1, results.size());
+      assertEquals(5, results.get(0).getUpdateCounts().length);
+      assertTrue(results.get(0).getParameterObjects().isEmpty());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldRunPendingBatchesWhenMaxBytesIsReached() throws Exception {
+    config.setBatchMaxBytes(1);
+    Transaction transaction = new JdbcTransaction(ds, null, false);
+    Executor executor = createExecutor(transaction);
+    try {
+      MappedStatement insertStatement = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      executor.update(insertStatement, newAuthor(500));
+      executor.update(insertStatement, newAuthor(501));
+      assertEquals(2, countAuthors(transaction.getConnection()));
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldGrowAdaptiveBatchSizeWhenBatchesAreFast() throws Exception {
+    config.setBatchAdaptiveSizing(true);
+    config.setBatchMaxSize(150);
+    config.setBatchTargetLatency(60000);
+    BatchExecutor executor = new BatchExecutor(config, new JdbcTransaction(ds, null, false));
+    try {
+      assertEquals(100, executor.getSizeLimit());
+      MappedStatement insertStatement = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      for (int id = 500; id < 600; id++) {
+        executor.update(insertStatement, newAuthor(id));
+      }
+      assertEquals(150, executor.getSizeLimit());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldGroupInterleavedStatements() throws Exception {
+    config.setBatchGroupingEnabled(true);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement insertAuthor = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config, true);
+      MappedStatement insertBlog = ExecutorTestHelper.prepareInsertBlogMappedStatement(config);
+      for (int id = 500; id < 503; id++) {
+        Author author = newAuthor(id);
+        executor.update(insertAuthor, author);
+        executor.update(insertBlog, new Blog(id, "title", author, null));
+      }
+      List<BatchResult> results = executor.flushStatements();
+      assertEquals(2, results.size());
+      assertEquals("insertAuthor", results.get(0).getMappedStatement().getId());
+      assertArrayEquals(new int[] {1, 1, 1}, results.get(0).getUpdateCounts());
+      assertEquals(3, results.get(0).getParameterObjects().size());
+      assertEquals("insertBlog", results.get(1).getMappedStatement().getId());
+      assertArrayEquals(new int[] {1, 1, 1}, results.get(1).getUpdateCounts());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldNotGroupAcrossStatementsOnTheSameTable() throws Exception {
+    config.setBatchGroupingEnabled(true);
+    Transaction transaction = new JdbcTransaction(ds, null, false);
+    Executor executor = createExecutor(transaction);
+    try {
+      MappedStatement insertAuthor = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      MappedStatement deleteAuthor = ExecutorTestHelper.prepareDeleteAuthorMappedStatement(config);
+      executor.update(insertAuthor, newAuthor(500));
+      executor.update(deleteAuthor, newAuthor(500));
+      executor.update(insertAuthor, newAuthor(500));
+      List<BatchResult> results = executor.flushStatements();
+      assertEquals(3, results.size());
+      assertEquals(1, countAuthors(transaction.getConnection()));
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldNotRunAStatementBeforeEarlierOnesUnlessReorderable() throws Exception {
+    config.setBatchGroupingEnabled(true);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement insertAuthor = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config, true);
+      MappedStatement insertBlog = ExecutorTestHelper.prepareInsertBlogMappedStatement(config);
+      Author existing = newAuthor(101);
+      executor.update(insertBlog, new Blog(500, "title", existing, null));
+      Author author = newAuthor(500);
+      executor.update(insertAuthor, author);
+      // the blog of the new author must not run with the first blog, before its author
+      executor.update(insertBlog, new Blog(501, "title", author, null));
+      List<BatchResult> results = executor.flushStatements();
+      assertEquals(3, results.size());
+      assertEquals("insertBlog", results.get(0).getMappedStatement().getId());
+      assertEquals("insertAuthor", results.get(1).getMappedStatement().getId());
+      assertEquals("insertBlog", results.get(2).getMappedStatement().getId());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldKeepGroupsOpenWhenMaxSizeIsReached() throws Exception {
+    config.setBatchGroupingEnabled(true);
+    config.setBatchMaxSize(4);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement insertAuthor = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config, true);
+      MappedStatement insertBlog = ExecutorTestHelper.prepareInsertBlogMappedStatement(config);
+      for (int id = 500; id < 505; id++) {
+        Author author = newAuthor(id);
+        executor.update(insertAuthor, author);
+        executor.update(insertBlog, new Blog(id, "title", author, null));
+      }
+      List<BatchResult> results = executor.flushStatements();
+      assertEquals(2, results.size());
+      assertEquals(5, results.get(0).getUpdateCounts().length);
+      assertEquals(5, results.get(1).getUpdateCounts().length);
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  private static Author newAuthor(int id) {
+    return new Author(id, "someone", "******", "someone@apache.org", null, Section.NEWS);
+  }
+
+  private static int countAuthors(Connection connection) throws SQLException {
+    try (Statement stmt = connection.createStatement();
+         ResultSet rs = stmt.executeQuery("select count(*) from author where id >= 500")) {
+      rs.next();
+      return rs.getInt(1);
+    }
+  }
+
   @Override
   protected Executor createExecutor(Transaction transaction) {
     return new BatchExecutor(config, transaction);
@@ -0,0 +1,117 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Section;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures building and comparing the {@link CacheKey} of a statement with six bean parameters.
+ * <p>
+ * {@code createCacheKeyWithMetaObjectPerParameter} replays how keys were built before, with a new
+ * {@link MetaObject} and an {@link ArrayList} backed key for each parameter, as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheKeyBenchmark {
+
+  private Configuration config;
+  private BaseExecutor executor;
+  private MappedStatement ms;
+  private Author author;
+  private BoundSql boundSql;
+  private Map<CacheKey, Object> localCache;
+  private CacheKey lookupKey;
+
+  @Setup
+  public void setup() {
+    config = new Configuration();
+    executor = new SimpleExecutor(config, null);
+    ms = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+    author = new Author(101, "jim", "********", "jim@ibatis.apache.org", "Something...", Section.NEWS);
+    boundSql = ms.getBoundSql(author);
+    localCache = new HashMap<>();
+    for (int i = 0; i < 100; i++) {
+      Author other = new Author(i, "jim", "********", "jim@ibatis.apache.org", "Something...", Section.NEWS);
+      localCache.put(executor.createCacheKey(ms, other, RowBounds.DEFAULT, ms.getBoundSql(other)), other);
+    }
+    lookupKey = executor.createCacheKey(ms, new Author(50, "jim", "********", "jim@ibatis.apache.org", "Something...", Section.NEWS),
+        RowBounds.DEFAULT, boundSql);
+  }
+
+  @Benchmark
+  public CacheKey createCacheKey() {
+    return executor.createCacheKey(ms, author, RowBounds.DEFAULT, boundSql);
+  }
+
+  @Benchmark
+  public List<Object> createCacheKeyWithMetaObjectPerParameter() {
+    List<Object> updateList = new ArrayList<>();
+    updateList.add(ms.getId());
+    updateList.add(RowBounds.DEFAULT.getOffset());
+    updateList.add(RowBounds.DEFAULT.getLimit());
+    updateList.add(boundSql.getSql());
+    int hashcode = 17;
+    for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+      MetaObject metaObject = config.newMetaObject(author);
+      Object value = metaObject.getValue(parameterMapping.getProperty());
+      hashcode = 37 * hashcode + (value == null ? 1 : value.hashCode());
+      updateList.add(value);
+    }
+    updateList.add(hashcode);
+    return updateList;
+  }
+
+  @Benchmark
+  public Object lookupLocalCache() {
+    return localCache.get(lookupKey);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(CacheKeyBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
@@ -0,0 +1,71 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.Test;
+
+class CachingExecutorTest {
+
+  private final Configuration config = new Configuration();
+  private final SingleFlightLoader loader = new SingleFlightLoader();
+  private final Cache cache = new PerpetualCache("authors");
+
+  @Test
+  void shouldNotLeadASingleFlightWithUncommittedWrites() throws Exception {
+    Executor delegate = mock(Executor.class);
+    AtomicInteger inFlight = new AtomicInteger();
+    when(delegate.createCacheKey(any(), any(), any(), any()))
+        .thenReturn(new CacheKey(new Object[] { 1 }), new CacheKey(new Object[] { 2 }), new CacheKey(new Object[] { 3 }));
+    when(delegate.query(any(), any(), any(), any(), any(CacheKey.class), any())).thenAnswer(invocation -> {
+      inFlight.set(loader.getInFlightCount());
+      return new ArrayList<>();
+    });
+    CachingExecutor executor = new CachingExecutor(delegate, loader);
+    MappedStatement select = new MappedStatement.Builder(config, "selectAuthor",
+        new StaticSqlSource(config, "select * from author"), SqlCommandType.SELECT).useCache(true).cache(cache).build();
+    // another namespace, and the cache is not flushed
+    MappedStatement update = new MappedStatement.Builder(config, "other.updatePost",
+        new StaticSqlSource(config, "update post set subject = 'x'"), SqlCommandType.UPDATE).flushCacheRequired(false).build();
+
+    executor.query(select, null, RowBounds.DEFAULT, null);
+    assertEquals(1, inFlight.get());
+
+    executor.update(update, null);
+    executor.query(select, null, RowBounds.DEFAULT, null);
+    assertEquals(0, inFlight.get());
+
+    executor.commit(true);
+    executor.query(select, null, RowBounds.DEFAULT, null);
+    assertEquals(1, inFlight.get());
+  }
+
+}
@@ -68,6 +68,10 @@ class ExecutorTestHelper {
   }
 
   static MappedStatement prepareInsertAuthorMappedStatement(final Configuration config) {
+    return prepareInsertAuthorMappedStatement(config, false);
+  }
+
+  static MappedStatement prepareInsertAuthorMappedStatement(final Configuration config, boolean reorderable) {
     final TypeHandlerRegistry registry = config.getTypeHandlerRegistry();
     return new MappedStatement.Builder(config, "insertAuthor", new StaticSqlSource(config,"INSERT INTO author (id,username,password,email,bio,favourite_section) values(?,?,?,?,?,?)"), SqlCommandType.INSERT)
         .parameterMap(
@@ -83,6 +87,7 @@ class ExecutorTestHelper {
                     add(new ParameterMapping.Builder(config, "favouriteSection", registry.getTypeHandler(Section.class)).jdbcType(JdbcType.VARCHAR).build());
                   }
                 }).build())
+        .reorderable(reorderable)
         .cache(authorCache).build();
   }
 
@@ -149,6 +154,20 @@ class ExecutorTestHelper {
         .build();
   }
 
+  static MappedStatement prepareInsertBlogMappedStatement(final Configuration config) {
+    final TypeHandlerRegistry registry = config.getTypeHandlerRegistry();
+    return new MappedStatement.Builder(config, "insertBlog", new StaticSqlSource(config,"INSERT INTO blog (id,author_id,title) values(?,?,?)"), SqlCommandType.INSERT)
+        .parameterMap(new ParameterMap.Builder(config, "defaultParameterMap", Blog.class,
+            new ArrayList<ParameterMapping>() {
+              {
+                add(new ParameterMapping.Builder(config, "id", registry.getTypeHandler(int.class)).build());
+                add(new ParameterMapping.Builder(config, "author.id", registry.getTypeHandler(int.class)).build());
+                add(new ParameterMapping.Builder(config, "title", registry.getTypeHandler(String.class)).build());
+              }
+            }).build())
+        .build();
+  }
+
   static MappedStatement prepareSelectOneAuthorMappedStatement(final Configuration config) {
     final TypeHandlerRegistry registry = config.getTypeHandlerRegistry();
 
@@ -15,7 +15,14 @@
  */
 package org.apache.ibatis.executor;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
 import org.junit.jupiter.api.Test;
 
 class ReuseExecutorTest extends BaseExecutorTest {
@@ -30,6 +37,81 @@ class ReuseExecutorTest extends BaseExecutorTest {
     super.shouldFetchPostWithBlogWithCompositeKey();
   }
 
+  @Test
+  void shouldCloseLeastRecentlyUsedStatement() throws Exception {
+    config.setReuseStatementCacheSize(2);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement selectOne = ExecutorTestHelper.prepareSelectOneAuthorMappedStatement(config);
+      MappedStatement selectAll = ExecutorTestHelper.prepareSelectAllAuthorsAutoMappedStatement(config);
+      MappedStatement selectPost = ExecutorTestHelper.prepareSelectDiscriminatedPost(config);
+      executor.query(selectOne, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      executor.query(selectAll, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      executor.query(selectOne, 102, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      // closes the statement of selectAll
+      executor.query(selectPost, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      executor.clearLocalCache();
+      executor.query(selectOne, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      executor.query(selectAll, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      StatementCacheMetrics metrics = config.getReuseStatementCacheMetrics();
+      assertEquals(2, metrics.getHitCount());
+      assertEquals(4, metrics.getMissCount());
+      assertEquals(2, metrics.getEvictionCount());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldNotCloseStatementOfOpenCursor() throws Exception {
+    config.setReuseStatementCacheSize(1);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement selectOne = ExecutorTestHelper.prepareSelectOneAuthorMappedStatement(config);
+      MappedStatement selectAll = ExecutorTestHelper.prepareSelectAllAuthorsAutoMappedStatement(config);
+      MappedStatement selectPost = ExecutorTestHelper.prepareSelectDiscriminatedPost(config);
+      try (Cursor<Author> cursor = executor.queryCursor(selectAll, null, RowBounds.DEFAULT)) {
+        executor.query(selectOne, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        executor.query(selectPost, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        int count = 0;
+        for (Author author : cursor) {
+          count++;
+        }
+        assertEquals(2, count);
+      }
+      assertEquals(1, config.getReuseStatementCacheMetrics().getEvictionCount());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldReleaseStatementOfClosedOrConsumedCursor() throws Exception {
+    config.setReuseStatementCacheSize(1);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement selectOne = ExecutorTestHelper.prepareSelectOneAuthorMappedStatement(config);
+      MappedStatement selectAll = ExecutorTestHelper.prepareSelectAllAuthorsAutoMappedStatement(config);
+      MappedStatement selectPost = ExecutorTestHelper.prepareSelectDiscriminatedPost(config);
+      Cursor<Author> closed = executor.queryCursor(selectAll, null, RowBounds.DEFAULT);
+      closed.close();
+      // closes the statement of the closed cursor
+      executor.query(selectOne, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      assertEquals(1, config.getReuseStatementCacheMetrics().getEvictionCount());
+
+      Cursor<Author> consumed = executor.queryCursor(selectAll, null, RowBounds.DEFAULT);
+      consumed.forEach(author -> { });
+      // closes the statement of the consumed cursor
+      executor.query(selectPost, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      assertEquals(3, config.getReuseStatementCacheMetrics().getEvictionCount());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
   @Override
   protected Executor createExecutor(Transaction transaction) {
     return new ReuseExecutor(config,transaction);
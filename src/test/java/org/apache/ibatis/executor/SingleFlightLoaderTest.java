@@ -0,0 +1,181 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.serializer.JavaCacheSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightLoaderTest {
+
+  private final SingleFlightLoader loader = new SingleFlightLoader();
+  private final Cache cache = new PerpetualCache("default");
+  private final CacheSerializer serializer = new JavaCacheSerializer();
+  private final CacheKey key = new CacheKey(new Object[] { "select", 1 });
+  private ExecutorService threads;
+
+  @BeforeEach
+  void setUp() {
+    threads = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterEach
+  void tearDown() {
+    threads.shutdownNow();
+  }
+
+  @Test
+  void shouldRunConcurrentMissesOnce() throws Exception {
+    AtomicInteger queries = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    Future<List<String>> leader = threads.submit(() -> loader.load(cache, key, serializer, 0, () -> {
+      queries.incrementAndGet();
+      await(release);
+      return new ArrayList<>(Collections.singletonList("row"));
+    }));
+    awaitInFlight();
+    List<Future<List<String>>> followers = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      followers.add(threads.submit(() -> loader.load(cache, key, serializer, 0, () -> {
+        queries.incrementAndGet();
+        return Collections.singletonList("other");
+      })));
+    }
+    Thread.sleep(50);
+    release.countDown();
+    List<String> result = leader.get(5, TimeUnit.SECONDS);
+    for (Future<List<String>> follower : followers) {
+      List<String> copy = follower.get(5, TimeUnit.SECONDS);
+      assertEquals(result, copy);
+      assertNotSame(result, copy);
+    }
+    assertEquals(1, queries.get());
+    assertEquals(0, loader.getInFlightCount());
+  }
+
+  @Test
+  void shouldPassTheLeaderFailureOn() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    Future<List<Object>> leader = threads.submit(() -> loader.load(cache, key, serializer, 0, () -> {
+      await(release);
+      throw new SQLException("boom");
+    }));
+    awaitInFlight();
+    Future<List<Object>> follower = threads.submit(() -> loader.load(cache, key, serializer, 0, Collections::emptyList));
+    Thread.sleep(50);
+    release.countDown();
+    ExecutionException leaderFailure = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+    assertEquals(SQLException.class, leaderFailure.getCause().getClass());
+    ExecutionException followerFailure = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+    assertEquals(ExecutorException.class, followerFailure.getCause().getClass());
+    assertSame(leaderFailure.getCause(), followerFailure.getCause().getCause());
+    assertEquals(0, loader.getInFlightCount());
+  }
+
+  @Test
+  void shouldQueryAloneAfterTimeout() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    Future<List<String>> leader = threads.submit(() -> loader.load(cache, key, serializer, 0, () -> {
+      await(release);
+      return Collections.singletonList("leader");
+    }));
+    awaitInFlight();
+    List<String> result = loader.load(cache, key, serializer, 50, () -> Collections.singletonList("follower"));
+    assertEquals(Collections.singletonList("follower"), result);
+    release.countDown();
+    assertEquals(Collections.singletonList("leader"), leader.get(5, TimeUnit.SECONDS));
+    assertEquals(0, loader.getInFlightCount());
+  }
+
+  @Test
+  void shouldQueryAloneWhenTheResultCannotBeSerialized() throws Exception {
+    Object row = new Object();
+    CountDownLatch release = new CountDownLatch(1);
+    Future<List<Object>> leader = threads.submit(() -> loader.load(cache, key, serializer, 0, () -> {
+      await(release);
+      return Collections.singletonList(row);
+    }));
+    awaitInFlight();
+    Object own = new Object();
+    Future<List<Object>> follower = threads.submit(() -> loader.load(cache, key, serializer, 0, () -> Collections.singletonList(own)));
+    Thread.sleep(50);
+    release.countDown();
+    leader.get(5, TimeUnit.SECONDS);
+    assertSame(own, follower.get(5, TimeUnit.SECONDS).get(0));
+  }
+
+  @Test
+  void shouldShareResultsOfReadOnlyCaches() throws Exception {
+    Object row = new Object();
+    CountDownLatch release = new CountDownLatch(1);
+    Future<List<Object>> leader = threads.submit(() -> loader.load(cache, key, null, 0, () -> {
+      await(release);
+      return Collections.singletonList(row);
+    }));
+    awaitInFlight();
+    Future<List<Object>> follower = threads.submit(() -> loader.load(cache, key, null, 0, Collections::emptyList));
+    Thread.sleep(50);
+    release.countDown();
+    leader.get(5, TimeUnit.SECONDS);
+    assertSame(row, follower.get(5, TimeUnit.SECONDS).get(0));
+  }
+
+  @Test
+  void shouldNotCoalesceDifferentKeys() throws Exception {
+    AtomicInteger queries = new AtomicInteger();
+    loader.load(cache, key, serializer, 0, () -> Collections.singletonList(queries.incrementAndGet()));
+    loader.load(cache, new CacheKey(new Object[] { "select", 2 }), serializer, 0, () -> Collections.singletonList(queries.incrementAndGet()));
+    loader.load(new PerpetualCache("other"), key, serializer, 0, () -> Collections.singletonList(queries.incrementAndGet()));
+    assertEquals(3, queries.get());
+  }
+
+  private static void await(CountDownLatch latch) throws SQLException {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new SQLException(e);
+    }
+  }
+
+  private void awaitInFlight() throws InterruptedException {
+    while (loader.getInFlightCount() == 0) {
+      Thread.sleep(1);
+    }
+  }
+
+}
@@ -38,6 +38,7 @@ import org.apache.ibatis.executor.ExecutorException;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultFlag;
 import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.mapping.SqlCommandType;
@@ -87,7 +88,7 @@ class DefaultResultSetHandlerTest {
     when(rs.getMetaData()).thenReturn(rsmd);
     when(rs.getType()).thenReturn(ResultSet.TYPE_FORWARD_ONLY);
     when(rs.next()).thenReturn(true).thenReturn(false);
-    when(rs.getInt("CoLuMn1")).thenReturn(100);
+    when(rs.getInt(1)).thenReturn(100);
     when(rsmd.getColumnCount()).thenReturn(1);
     when(rsmd.getColumnLabel(1)).thenReturn("CoLuMn1");
     when(rsmd.getColumnType(1)).thenReturn(Types.INTEGER);
@@ -109,18 +110,18 @@ class DefaultResultSetHandlerTest {
     final DefaultResultSetHandler defaultResultSetHandler = new DefaultResultSetHandler(null/*executor*/, ms,
             null/*parameterHandler*/, null/*resultHandler*/, null/*boundSql*/, rowBounds);
 
-    final ResultSetWrapper rsw = mock(ResultSetWrapper.class);
-    when(rsw.getResultSet()).thenReturn(mock(ResultSet.class));
+    when(rs.getMetaData()).thenReturn(rsmd);
+    final ResultSetWrapper rsw = new ResultSetWrapper(rs, ms.getConfiguration());
 
-    final ResultMapping resultMapping = mock(ResultMapping.class);
     final TypeHandler typeHandler = mock(TypeHandler.class);
-    when(resultMapping.getColumn()).thenReturn("column");
-    when(resultMapping.getTypeHandler()).thenReturn(typeHandler);
     when(typeHandler.getResult(any(ResultSet.class), any(String.class))).thenThrow(new SQLException("exception"));
-    List<ResultMapping> constructorMappings = Collections.singletonList(resultMapping);
+    final ResultMapping resultMapping = new ResultMapping.Builder(ms.getConfiguration(), null, "column", typeHandler)
+        .flags(Collections.singletonList(ResultFlag.CONSTRUCTOR)).build();
+    final ResultMap resultMap = new ResultMap.Builder(ms.getConfiguration(), "constructorMap", Object.class,
+        Collections.singletonList(resultMapping)).build();
 
     try {
-      defaultResultSetHandler.createParameterizedResultObject(rsw, null/*resultType*/, constructorMappings,
+      defaultResultSetHandler.createParameterizedResultObject(rsw, resultMap,
               null/*constructorArgTypes*/, null/*constructorArgs*/, null/*columnPrefix*/);
       Assertions.fail("Should have thrown ExecutorException");
     } catch (Exception e) {
@@ -0,0 +1,58 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Constructor;
+
+import org.junit.jupiter.api.Test;
+
+class ResultInstantiatorTest {
+
+  public static class PublicResult {
+    private final String name;
+
+    public PublicResult(String name) {
+      this.name = name;
+    }
+  }
+
+  static class PackagePrivateResult {
+    private final String name;
+
+    private PackagePrivateResult(String name) {
+      this.name = name;
+    }
+  }
+
+  @Test
+  void shouldNotChangeAccessOfPublicConstructor() throws Exception {
+    Constructor<PublicResult> constructor = PublicResult.class.getDeclaredConstructor(String.class);
+    ResultInstantiator instantiator = ResultInstantiator.forConstructor(constructor);
+    assertThat(constructor.isAccessible()).isFalse();
+    assertThat(((PublicResult) instantiator.newInstance(new Object[] {"a"})).name).isEqualTo("a");
+  }
+
+  @Test
+  void shouldOpenNonPublicConstructor() throws Exception {
+    Constructor<PackagePrivateResult> constructor = PackagePrivateResult.class.getDeclaredConstructor(String.class);
+    ResultInstantiator instantiator = ResultInstantiator.forConstructor(constructor);
+    assertThat(constructor.isAccessible()).isTrue();
+    assertThat(((PackagePrivateResult) instantiator.newInstance(new Object[] {"a"})).name).isEqualTo("a");
+  }
+
+}
@@ -0,0 +1,126 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.IntegerTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ResultSetWrapperTest {
+
+  @Mock
+  private ResultSet rs;
+  @Mock
+  private ResultSetMetaData rsmd;
+
+  private Configuration configuration;
+
+  @BeforeEach
+  void setUp() throws SQLException {
+    configuration = new Configuration();
+    when(rs.getMetaData()).thenReturn(rsmd);
+    when(rsmd.getColumnCount()).thenReturn(3);
+    when(rsmd.getColumnType(1)).thenReturn(Types.INTEGER);
+    when(rsmd.getColumnType(2)).thenReturn(Types.INTEGER);
+    when(rsmd.getColumnType(3)).thenReturn(Types.INTEGER);
+  }
+
+  private void columns(String... labels) throws SQLException {
+    for (int i = 0; i < labels.length; i++) {
+      if (configuration.isUseColumnLabel()) {
+        when(rsmd.getColumnLabel(i + 1)).thenReturn(labels[i]);
+      } else {
+        when(rsmd.getColumnName(i + 1)).thenReturn(labels[i]);
+      }
+    }
+  }
+
+  @Test
+  void shouldReadFirstMatchingColumnByIndexWithBuiltInHandler() throws SQLException {
+    columns("ID", "NAME", "id");
+    when(rs.getInt(1)).thenReturn(7);
+    ResultSetWrapper rsw = new ResultSetWrapper(rs, configuration);
+    assertThat(rsw.getResult(new IntegerTypeHandler(), "Id")).isEqualTo(7);
+  }
+
+  @Test
+  void shouldReadByLabelWithCustomHandler() throws SQLException {
+    columns("ID", "NAME", "AGE");
+    when(rs.getInt("ID")).thenReturn(7);
+    ResultSetWrapper rsw = new ResultSetWrapper(rs, configuration);
+    assertThat(rsw.getResult(new LabelOnlyTypeHandler(), "ID")).isEqualTo(7);
+  }
+
+  @Test
+  void shouldReadByLabelWhenColumnIsNotFound() throws SQLException {
+    columns("ID", "NAME", "AGE");
+    when(rs.getInt("OTHER")).thenReturn(7);
+    ResultSetWrapper rsw = new ResultSetWrapper(rs, configuration);
+    assertThat(rsw.getResult(new IntegerTypeHandler(), "OTHER")).isEqualTo(7);
+  }
+
+  @Test
+  void shouldReadByLabelWhenColumnNamesAreNotLabels() throws SQLException {
+    configuration.setUseColumnLabel(false);
+    columns("ID", "NAME", "AGE");
+    when(rs.getString("NAME")).thenReturn("jim");
+    ResultSetWrapper rsw = new ResultSetWrapper(rs, configuration);
+    assertThat(rsw.getString("NAME")).isEqualTo("jim");
+    verify(rs).getString("NAME");
+  }
+
+  static class LabelOnlyTypeHandler extends BaseTypeHandler<Integer> {
+
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int i, Integer parameter, JdbcType jdbcType) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Integer getNullableResult(ResultSet rs, String columnName) throws SQLException {
+      return rs.getInt(columnName);
+    }
+
+    @Override
+    public Integer getNullableResult(ResultSet rs, int columnIndex) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Integer getNullableResult(CallableStatement cs, int columnIndex) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+}
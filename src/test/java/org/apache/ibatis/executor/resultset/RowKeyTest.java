@@ -0,0 +1,67 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class RowKeyTest {
+
+  private final Object columns = new Object();
+  private final Object otherColumns = new Object();
+
+  @Test
+  void shouldBeEqualWithSameColumnsAndValues() {
+    RowKey key = new RowKey(columns, new Object[] {1, "a", null}, null);
+    RowKey same = new RowKey(columns, new Object[] {1, "a", null}, null);
+    assertThat(same).isEqualTo(key);
+    assertThat(same.hashCode()).isEqualTo(key.hashCode());
+  }
+
+  @Test
+  void shouldNotBeEqualWithOtherColumnsOrValues() {
+    RowKey key = new RowKey(columns, new Object[] {1, null}, null);
+    assertThat(new RowKey(otherColumns, new Object[] {1, null}, null)).isNotEqualTo(key);
+    assertThat(new RowKey(columns, new Object[] {null, 1}, null)).isNotEqualTo(key);
+    assertThat(new RowKey(columns, new Object[] {2, null}, null)).isNotEqualTo(key);
+  }
+
+  @Test
+  void shouldCompareArrayValuesByContent() {
+    RowKey key = new RowKey(columns, new Object[] {new byte[] {1, 2}}, null);
+    assertThat(new RowKey(columns, new Object[] {new byte[] {1, 2}}, null)).isEqualTo(key);
+    assertThat(new RowKey(columns, new Object[] {new byte[] {1, 3}}, null)).isNotEqualTo(key);
+  }
+
+  @Test
+  void shouldCombineWithParentKey() {
+    RowKey child = new RowKey(columns, new Object[] {1}, null);
+    RowKey parent = new RowKey(otherColumns, new Object[] {10}, null);
+    RowKey otherParent = new RowKey(otherColumns, new Object[] {11}, null);
+    assertThat(child.combine(parent)).isEqualTo(new RowKey(columns, new Object[] {1}, null).combine(parent));
+    assertThat(child.combine(parent)).isNotEqualTo(child.combine(otherParent));
+    assertThat(child.combine(parent)).isNotEqualTo(child);
+  }
+
+  @Test
+  void shouldNotCombineNullKey() {
+    RowKey key = new RowKey(columns, new Object[] {1}, null);
+    assertThat(key.combine(RowKey.NULL_ROW_KEY)).isSameAs(RowKey.NULL_ROW_KEY);
+    assertThat(RowKey.NULL_ROW_KEY.combine(key)).isSameAs(RowKey.NULL_ROW_KEY);
+  }
+
+}
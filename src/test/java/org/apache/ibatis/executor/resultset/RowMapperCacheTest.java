@@ -0,0 +1,211 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.annotations.Arg;
+import org.apache.ibatis.annotations.ConstructorArgs;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.reflection.LambdaReflectorFactory;
+import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
+import org.apache.ibatis.session.AutoMappingUnknownColumnBehavior;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionException;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.apache.ibatis.type.JdbcType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RowMapperCacheTest {
+
+  interface Mapper {
+    @Select("SELECT ID, USERNAME, EMAIL FROM AUTHOR WHERE ID = #{id}")
+    Author selectAuthor(int id);
+
+    @Select("SELECT ID, USERNAME FROM AUTHOR WHERE ID = #{id}")
+    Author selectAuthorName(int id);
+
+    @Select("SELECT ID, USERNAME, EMAIL FROM AUTHOR WHERE ID = #{id}")
+    Author selectSameColumns(int id);
+
+    @Select("SELECT ID, USERNAME AS USER_NAME FROM AUTHOR WHERE ID = #{id}")
+    Author selectUnknownColumn(int id);
+
+    @ConstructorArgs({
+        @Arg(column = "ID", javaType = int.class, id = true),
+        @Arg(column = "USERNAME", javaType = String.class)
+    })
+    @Select("SELECT ID, USERNAME FROM AUTHOR WHERE ID = #{id}")
+    AuthorName selectConstructorMapped(int id);
+
+    @Select("SELECT ID, USERNAME FROM AUTHOR WHERE ID = #{id}")
+    AuthorName selectConstructorAutoMapped(int id);
+  }
+
+  static class AuthorName {
+    private final int id;
+    private final String username;
+
+    AuthorName(int id, String username) {
+      this.id = id;
+      this.username = username;
+    }
+  }
+
+  static class CountingObjectFactory extends DefaultObjectFactory {
+    private int created;
+
+    @Override
+    public <T> T create(Class<T> type, List<Class<?>> constructorArgTypes, List<Object> constructorArgs) {
+      if (constructorArgs != null) {
+        created++;
+      }
+      return super.create(type, constructorArgTypes, constructorArgs);
+    }
+  }
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    DataSource dataSource = BaseDataTest.createBlogDataSource();
+    Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+    configuration.addMapper(Mapper.class);
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+  }
+
+  @Test
+  void shouldShareSignatureBetweenExecutionsAndStatements() {
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      Mapper mapper = session.getMapper(Mapper.class);
+      assertThat(mapper.selectAuthor(101).getEmail()).isEqualTo("jim@ibatis.apache.org");
+      session.clearCache();
+      assertThat(mapper.selectAuthor(102).getEmail()).isEqualTo("sally@ibatis.apache.org");
+      assertThat(mapper.selectSameColumns(101).getUsername()).isEqualTo("jim");
+      assertThat(sqlSessionFactory.getConfiguration().getRowMapperCache().size()).isEqualTo(1);
+
+      Author author = mapper.selectAuthorName(101);
+      assertThat(author.getUsername()).isEqualTo("jim");
+      assertThat(author.getEmail()).isNull();
+      assertThat(sqlSessionFactory.getConfiguration().getRowMapperCache().size()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  void shouldReuseRowMapperOfResultMap() {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    ResultMap resultMap = configuration.getMappedStatement(Mapper.class.getName() + ".selectAuthor").getResultMaps().get(0);
+    RowMapperCache cache = configuration.getRowMapperCache();
+    ColumnSignature first = cache.getSignature(true, list("ID", "USERNAME"), list(null, null), list("java.lang.Integer", "java.lang.String"));
+    ColumnSignature second = cache.getSignature(true, list("ID", "USERNAME"), list(null, null), list("java.lang.Integer", "java.lang.String"));
+    assertThat(second).isSameAs(first);
+    assertThat(second.getRowMapper(resultMap, null)).isSameAs(first.getRowMapper(resultMap, null));
+    assertThat(first.getRowMapper(resultMap, "A_")).isNotSameAs(first.getRowMapper(resultMap, null));
+  }
+
+  @Test
+  void shouldAutoMapThroughLambdaAccessors() {
+    sqlSessionFactory.getConfiguration().setReflectorFactory(new LambdaReflectorFactory());
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      Author author = session.getMapper(Mapper.class).selectAuthor(101);
+      assertThat(author.getId()).isEqualTo(101);
+      assertThat(author.getUsername()).isEqualTo("jim");
+      assertThat(author.getEmail()).isEqualTo("jim@ibatis.apache.org");
+    }
+  }
+
+  @Test
+  void shouldReportUnknownColumnOnEveryExecution() {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      Mapper mapper = session.getMapper(Mapper.class);
+      assertThat(mapper.selectUnknownColumn(101).getUsername()).isNull();
+      session.clearCache();
+      configuration.setAutoMappingUnknownColumnBehavior(AutoMappingUnknownColumnBehavior.FAILING);
+      assertThatThrownBy(() -> mapper.selectUnknownColumn(101))
+          .isInstanceOf(PersistenceException.class)
+          .hasCauseInstanceOf(SqlSessionException.class);
+    }
+  }
+
+  @Test
+  void shouldCreateConstructorMappedResultsWithCachedConstructor() {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      Mapper mapper = session.getMapper(Mapper.class);
+      AuthorName jim = mapper.selectConstructorMapped(101);
+      AuthorName sally = mapper.selectConstructorMapped(102);
+      assertThat(jim.id).isEqualTo(101);
+      assertThat(jim.username).isEqualTo("jim");
+      assertThat(sally.id).isEqualTo(102);
+      assertThat(sally.username).isEqualTo("sally");
+    }
+    ResultMap resultMap = configuration.getMappedStatement(Mapper.class.getName() + ".selectConstructorMapped").getResultMaps().get(0);
+    ColumnSignature signature = configuration.getRowMapperCache().getSignature(true, list("ID", "USERNAME"),
+        list(JdbcType.INTEGER, JdbcType.VARCHAR), list("java.lang.Integer", "java.lang.String"));
+    RowMapper rowMapper = signature.getRowMapper(resultMap, null);
+    assertThat(rowMapper.getConstructorInstantiator()).isNotNull();
+    assertThat(rowMapper.getConstructorColumnIndex(0)).isEqualTo(1);
+    assertThat(rowMapper.getConstructorColumnIndex(1)).isEqualTo(2);
+  }
+
+  @Test
+  void shouldCreateAutoMappedConstructorResultsWithCachedConstructor() {
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      Mapper mapper = session.getMapper(Mapper.class);
+      AuthorName jim = mapper.selectConstructorAutoMapped(101);
+      AuthorName sally = mapper.selectConstructorAutoMapped(102);
+      assertThat(jim.id).isEqualTo(101);
+      assertThat(jim.username).isEqualTo("jim");
+      assertThat(sally.id).isEqualTo(102);
+      assertThat(sally.username).isEqualTo("sally");
+    }
+  }
+
+  @Test
+  void shouldCreateConstructorMappedResultsWithCustomObjectFactory() {
+    CountingObjectFactory objectFactory = new CountingObjectFactory();
+    sqlSessionFactory.getConfiguration().setObjectFactory(objectFactory);
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      Mapper mapper = session.getMapper(Mapper.class);
+      assertThat(mapper.selectConstructorMapped(101).username).isEqualTo("jim");
+      assertThat(mapper.selectConstructorAutoMapped(102).username).isEqualTo("sally");
+    }
+    assertThat(objectFactory.created).isEqualTo(2);
+  }
+
+  @SafeVarargs
+  private static <T> List<T> list(T... values) {
+    return new ArrayList<>(Arrays.asList(values));
+  }
+
+}
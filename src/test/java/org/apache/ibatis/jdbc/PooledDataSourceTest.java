@@ -16,6 +16,9 @@
 package org.apache.ibatis.jdbc;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -24,16 +27,24 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 import org.apache.ibatis.BaseDataTest;
 import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
 import org.hsqldb.jdbc.JDBCConnection;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 class PooledDataSourceTest extends BaseDataTest {
 
+  private static final String SYSTEM_USERS_QUERY = "SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS";
+
   @Test
   void shouldProperlyMaintainPoolOf3ActiveAnd2IdleConnections() throws Exception {
     PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
@@ -75,6 +86,313 @@ class PooledDataSourceTest extends BaseDataTest {
     }
   }
 
+  @Test
+  void shouldProperlyMaintainLockFreePoolOf3ActiveAnd2IdleConnections() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolLockFree(true);
+      ds.setPoolMaximumActiveConnections(3);
+      ds.setPoolMaximumIdleConnections(2);
+      List<Connection> connections = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        connections.add(ds.getConnection());
+      }
+      assertEquals(3, ds.getPoolState().getActiveConnectionCount());
+      for (Connection c : connections) {
+        c.close();
+      }
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+      assertEquals(3, ds.getPoolState().getRequestCount());
+      assertEquals(0, ds.getPoolState().getBadConnectionCount());
+      assertEquals(0, ds.getPoolState().getHadToWaitCount());
+      assertNotNull(ds.getPoolState().toString());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldReuseConnectionReturnedLastByTheSameThreadInLockFreeMode() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolLockFree(true);
+      Connection c1 = ds.getConnection();
+      Connection c2 = ds.getConnection();
+      Connection real2 = PooledDataSource.unwrapConnection(c2);
+      c1.close();
+      c2.close();
+      Connection c3 = ds.getConnection();
+      assertSame(real2, PooledDataSource.unwrapConnection(c3));
+      c3.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldGiveBackTheSlotOfAConnectionThatCannotRollBackInLockFreeMode() throws Exception {
+    Connection broken = mock(Connection.class);
+    when(broken.getAutoCommit()).thenThrow(new SQLException("connection reset"));
+    Connection healthy = mock(Connection.class);
+    when(healthy.getAutoCommit()).thenReturn(true);
+    PooledDataSource ds = new PooledDataSource(new UnpooledDataSource() {
+      private int created;
+
+      @Override
+      public Connection getConnection() {
+        return created++ == 0 ? broken : healthy;
+      }
+    });
+    try {
+      ds.setPoolLockFree(true);
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolTimeToWait(100);
+      Connection c = ds.getConnection();
+      assertSame(healthy, PooledDataSource.unwrapConnection(c));
+      assertEquals(1, ds.getPoolState().getBadConnectionCount());
+      verify(broken).close();
+      c.close();
+      assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldHandOffConnectionToWaitingThreadInLockFreeMode() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      ds.setPoolLockFree(true);
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolTimeToWait(10000);
+      Connection c1 = ds.getConnection();
+      CountDownLatch started = new CountDownLatch(1);
+      Future<Connection> waiting = executor.submit(() -> {
+        started.countDown();
+        return ds.getConnection();
+      });
+      started.await();
+      while (ds.getPoolState().getWaitingThreadCount() == 0) {
+        Thread.sleep(10);
+      }
+      Connection real1 = PooledDataSource.unwrapConnection(c1);
+      c1.close();
+      Connection c2 = waiting.get(5, TimeUnit.SECONDS);
+      assertSame(real1, PooledDataSource.unwrapConnection(c2));
+      assertEquals(1, ds.getPoolState().getHadToWaitCount());
+      assertEquals(1, ds.getPoolState().getActiveConnectionCount());
+      c2.close();
+      assertEquals(0, ds.getPoolState().getWaitingThreadCount());
+    } finally {
+      executor.shutdownNow();
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldKeepLockFreePoolStatisticsAccurateUnderContention() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      ds.setPoolLockFree(true);
+      ds.setPoolMaximumActiveConnections(4);
+      ds.setPoolMaximumIdleConnections(4);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < 100; j++) {
+            try (Connection c = ds.getConnection()) {
+              assertTrue(ds.getPoolState().getActiveConnectionCount() <= 4);
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+      assertEquals(800, ds.getPoolState().getRequestCount());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertTrue(ds.getPoolState().getIdleConnectionCount() <= 4);
+      assertEquals(0, ds.getPoolState().getBadConnectionCount());
+    } finally {
+      executor.shutdownNow();
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldPreFillMinimumIdleConnectionsInTheBackground() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumIdleConnections(5);
+      ds.setPoolMinimumIdleConnections(3);
+      ds.setPoolMaintenanceInterval(50);
+      ds.getConnection().close();
+      assertTrue(waitFor(() -> ds.getPoolState().getIdleConnectionCount() == 3));
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    } finally {
+      ds.setPoolMaintenanceInterval(0);
+    }
+  }
+
+  @Test
+  void shouldEvictIdleConnectionsAfterIdleTimeout() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolLockFree(true);
+      ds.setPoolIdleTimeout(50);
+      ds.setPoolMaintenanceInterval(50);
+      Connection c1 = ds.getConnection();
+      Connection c2 = ds.getConnection();
+      c1.close();
+      c2.close();
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+      assertTrue(waitFor(() -> ds.getPoolState().getIdleConnectionCount() == 0));
+    } finally {
+      ds.setPoolMaintenanceInterval(0);
+    }
+  }
+
+  @Test
+  void shouldCloseExpiredConnectionWhenReturned() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumLifetime(50);
+      Connection c = ds.getConnection();
+      Thread.sleep(100);
+      c.close();
+      assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldReuseCachedPreparedStatementOfTheSameConnection() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolPreparedStatementCacheSize(5);
+      Connection c = ds.getConnection();
+      PreparedStatement first = c.prepareStatement(SYSTEM_USERS_QUERY);
+      try (ResultSet rs = first.executeQuery()) {
+        assertTrue(rs.next());
+      }
+      assertSame(c, first.getConnection());
+      PreparedStatement physical = first.unwrap(PreparedStatement.class);
+      first.close();
+      assertTrue(first.isClosed());
+      assertFalse(physical.isClosed());
+      assertThrows(SQLException.class, first::executeQuery);
+      c.close();
+
+      c = ds.getConnection();
+      PreparedStatement second = c.prepareStatement(SYSTEM_USERS_QUERY);
+      assertSame(physical, second.unwrap(PreparedStatement.class));
+      try (ResultSet rs = second.executeQuery()) {
+        assertTrue(rs.next());
+      }
+      second.close();
+      c.close();
+      assertEquals(1, ds.getPoolState().getStatementCacheHitCount());
+      assertEquals(1, ds.getPoolState().getStatementCacheMissCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldNotShareCachedPreparedStatementBetweenOpenStatements() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolPreparedStatementCacheSize(5);
+      try (Connection c = ds.getConnection()) {
+        PreparedStatement first = c.prepareStatement(SYSTEM_USERS_QUERY);
+        PreparedStatement second = c.prepareStatement(SYSTEM_USERS_QUERY);
+        PreparedStatement scrollable = c.prepareStatement(SYSTEM_USERS_QUERY, ResultSet.TYPE_SCROLL_INSENSITIVE,
+            ResultSet.CONCUR_READ_ONLY);
+        assertNotSame(first.unwrap(PreparedStatement.class), second.unwrap(PreparedStatement.class));
+        first.close();
+        second.close();
+        scrollable.close();
+        assertEquals(3, ds.getPoolState().getStatementCacheMissCount());
+
+        PreparedStatement third = c.prepareStatement(SYSTEM_USERS_QUERY, ResultSet.TYPE_SCROLL_INSENSITIVE,
+            ResultSet.CONCUR_READ_ONLY);
+        assertEquals(ResultSet.TYPE_SCROLL_INSENSITIVE, third.getResultSetType());
+        third.close();
+        assertEquals(1, ds.getPoolState().getStatementCacheHitCount());
+      }
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldCloseLeastRecentlyUsedCachedPreparedStatement() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolPreparedStatementCacheSize(1);
+      try (Connection c = ds.getConnection()) {
+        PreparedStatement first = c.prepareStatement(SYSTEM_USERS_QUERY);
+        PreparedStatement physical = first.unwrap(PreparedStatement.class);
+        first.close();
+        c.prepareStatement("SELECT 2 FROM INFORMATION_SCHEMA.SYSTEM_USERS").close();
+        assertTrue(physical.isClosed());
+        assertEquals(1, ds.getPoolState().getStatementCacheEvictionCount());
+      }
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldResetCachedPreparedStatementWhenClosed() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolPreparedStatementCacheSize(5);
+      try (Connection c = ds.getConnection()) {
+        PreparedStatement first = c.prepareStatement(SYSTEM_USERS_QUERY);
+        first.setMaxRows(1);
+        first.setQueryTimeout(7);
+        first.close();
+        PreparedStatement second = c.prepareStatement(SYSTEM_USERS_QUERY);
+        assertEquals(0, second.getMaxRows());
+        assertEquals(0, second.getQueryTimeout());
+        second.close();
+        assertEquals(1, ds.getPoolState().getStatementCacheHitCount());
+      }
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldNotCachePreparedStatementsByDefault() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try (Connection c = ds.getConnection()) {
+      PreparedStatement ps = c.prepareStatement(SYSTEM_USERS_QUERY);
+      ps.close();
+      assertTrue(ps.unwrap(PreparedStatement.class).isClosed());
+      assertEquals(0, ds.getPoolState().getStatementCacheMissCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  private boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+    for (int i = 0; i < 100; i++) {
+      if (condition.getAsBoolean()) {
+        return true;
+      }
+      Thread.sleep(50);
+    }
+    return false;
+  }
+
   @Test
   void shouldNotFailCallingToStringOverAnInvalidConnection() throws Exception {
     PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
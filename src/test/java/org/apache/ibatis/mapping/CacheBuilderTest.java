@@ -15,14 +15,28 @@
  */
 package org.apache.ibatis.mapping;
 
+import org.apache.ibatis.annotations.Immutable;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.decorators.ConcurrentLruCache;
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.decorators.SoftCache;
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.decorators.TinyLfuCache;
+import org.apache.ibatis.cache.decorators.WeightedCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.serializer.BinaryCacheSerializer;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 
 import static com.googlecode.catchexception.apis.BDDCatchException.*;
 import static org.assertj.core.api.BDDAssertions.then;
@@ -43,11 +57,102 @@ class CacheBuilderTest {
       .hasMessage("Failed cache initialization for 'test' on 'org.apache.ibatis.mapping.CacheBuilderTest$InitializingFailureCache'");
   }
 
+  @Test
+  void testConcurrentCacheWithoutSynchronizedCache() {
+    Cache cache = new CacheBuilder("test").implementation(ConcurrentPerpetualCache.class).addDecorator(LruCache.class).size(10).build();
+
+    Assertions.assertThat(cache).isInstanceOf(LoggingCache.class);
+    Assertions.assertThat((Cache) unwrap(cache)).isInstanceOf(ConcurrentLruCache.class);
+  }
+
+  @Test
+  void testConcurrentCacheWithUnsafeDecoratorIsSynchronized() {
+    Cache cache = new CacheBuilder("test").implementation(ConcurrentPerpetualCache.class).addDecorator(SoftCache.class).build();
+
+    Assertions.assertThat(cache).isInstanceOf(SynchronizedCache.class);
+  }
+
+  @Test
+  void testTinyLfuCache() {
+    Cache cache = new CacheBuilder("test").implementation(ConcurrentPerpetualCache.class).addDecorator(TinyLfuCache.class).size(10).build();
+
+    Assertions.assertThat(cache).isInstanceOf(LoggingCache.class);
+    Assertions.assertThat((Cache) unwrap(cache)).isInstanceOf(TinyLfuCache.class);
+  }
+
+  @Test
+  void testWeightedCacheProperties() {
+    Properties props = new Properties();
+    props.setProperty("maximumWeight", "1000");
+    props.setProperty("estimatedRowSize", "100");
+    Cache cache = new CacheBuilder("test").addDecorator(WeightedCache.class).properties(props).build();
+
+    WeightedCache weightedCache = unwrap(unwrap(cache));
+    Assertions.assertThat(weightedCache.getMaximumWeight()).isEqualTo(1000);
+    weightedCache.putObject(0, "row");
+    Assertions.assertThat(weightedCache.getWeight()).isEqualTo(100);
+  }
+
+  @Test
+  void testWeightedReadWriteCacheWeighsImmutableLists() {
+    Properties props = new Properties();
+    props.setProperty("maximumWeight", "100000");
+    props.setProperty("estimatedRowSize", "100");
+    Cache cache = new CacheBuilder("test").addDecorator(WeightedCache.class).readWrite(true).properties(props).build();
+
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      rows.add(new Row(i));
+    }
+    cache.putObject(0, rows);
+    WeightedCache weightedCache = unwrap(unwrap(unwrap(cache)));
+    Assertions.assertThat(weightedCache.getWeight()).isEqualTo(10000);
+    Assertions.assertThat(cache.getObject(0)).isEqualTo(rows).isNotSameAs(rows);
+  }
+
+  @Test
+  void testRefreshingCache() {
+    Properties props = new Properties();
+    props.setProperty("timeToLive", "1000");
+    CacheBuilder builder = new CacheBuilder("test").readWrite(true).properties(props);
+    builder.build();
+    Assertions.assertThat(builder.isRefreshing()).isFalse();
+    props.setProperty("refreshAhead", "100");
+    builder.build();
+    Assertions.assertThat(builder.isRefreshing()).isTrue();
+    builder = new CacheBuilder("test");
+    builder.build();
+    Assertions.assertThat(builder.isRefreshing()).isFalse();
+  }
+
+  @Test
+  void testSerializer() {
+    Cache cache = new CacheBuilder("test").readWrite(true).serializer(new BinaryCacheSerializer()).build();
+
+    SerializedCache serializedCache = unwrap(unwrap(cache));
+    Assertions.assertThat((Object) unwrap(serializedCache, "serializer")).isInstanceOf(BinaryCacheSerializer.class);
+  }
+
+  @Test
+  void testCopySerializer() {
+    CacheBuilder readWrite = new CacheBuilder("test").readWrite(true).serializer(new BinaryCacheSerializer());
+    readWrite.build();
+    Assertions.assertThat(readWrite.getCopySerializer()).isInstanceOf(BinaryCacheSerializer.class);
+    CacheBuilder readOnly = new CacheBuilder("test").serializer(new BinaryCacheSerializer());
+    readOnly.build();
+    Assertions.assertThat(readOnly.getCopySerializer()).isNull();
+  }
+
   @SuppressWarnings("unchecked")
   private <T> T unwrap(Cache cache) {
+    return unwrap(cache, "delegate");
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T unwrap(Cache cache, String fieldName) {
     Field field;
     try {
-      field = cache.getClass().getDeclaredField("delegate");
+      field = cache.getClass().getDeclaredField(fieldName);
     } catch (NoSuchFieldException e) {
       throw new IllegalStateException(e);
     }
@@ -89,4 +194,13 @@ class CacheBuilderTest {
 
   }
 
+  @Immutable
+  static class Row {
+    private final int id;
+
+    Row(int id) {
+      this.id = id;
+    }
+  }
+
 }
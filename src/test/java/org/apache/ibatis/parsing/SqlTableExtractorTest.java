@@ -0,0 +1,103 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.parsing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class SqlTableExtractorTest {
+
+  @Test
+  void shouldFindTablesOfSelect() {
+    assertThat(SqlTableExtractor.extractTables("select * from orders o where o.id = ?"))
+        .containsExactly("orders");
+    assertThat(SqlTableExtractor.extractTables("SELECT * FROM Orders AS o, customers c, shop.items WHERE o.id = c.id"))
+        .containsExactly("orders", "customers", "items");
+  }
+
+  @Test
+  void shouldFindJoinedTables() {
+    assertThat(SqlTableExtractor.extractTables(
+        "select * from orders o inner join customers c on c.id = o.customer_id left outer join \"Items\" i using (order_id)"))
+        .containsExactly("orders", "customers", "items");
+  }
+
+  @Test
+  void shouldFindTablesOfSubQueries() {
+    assertThat(SqlTableExtractor.extractTables(
+        "select * from (select id from orders where total > ?) o, customers c where c.id in (select customer_id from vip)"))
+        .containsExactly("orders", "customers", "vip");
+  }
+
+  @Test
+  void shouldFindTablesOfParenthesizedJoins() {
+    assertThat(SqlTableExtractor.extractTables(
+        "select * from (orders o join order_line l on l.order_id = o.id) where o.id = ?"))
+        .containsExactly("orders", "order_line");
+    assertThat(SqlTableExtractor.extractTables(
+        "select * from ((orders o join order_line l on l.order_id = o.id) left join items i on i.id = l.item_id)"))
+        .containsExactly("orders", "order_line", "items");
+  }
+
+  @Test
+  void shouldFindTablesListedAfterAJoin() {
+    assertThat(SqlTableExtractor.extractTables(
+        "select * from orders o join customer c on c.id = o.customer_id, region r where r.id = c.region_id"))
+        .containsExactly("orders", "customer", "region");
+    assertThat(SqlTableExtractor.extractTables(
+        "select * from orders o join customer c using (customer_id), region r"))
+        .containsExactly("orders", "customer", "region");
+  }
+
+  @Test
+  void shouldFindStraightJoinedTables() {
+    assertThat(SqlTableExtractor.extractTables("select * from orders o straight_join customer c on c.id = o.customer_id"))
+        .containsExactly("orders", "customer");
+  }
+
+  @Test
+  void shouldReturnEmptySetWhenATableIsFollowedByUnknownWords() {
+    assertThat(SqlTableExtractor.extractTables("select * from orders o semi_join customer c on c.id = o.customer_id"))
+        .isEmpty();
+    assertThat(SqlTableExtractor.extractTables("select * from orders force index (idx_total), customer")).isEmpty();
+  }
+
+  @Test
+  void shouldFindWrittenTables() {
+    assertThat(SqlTableExtractor.extractTables("insert into orders (id, total) values (?, ?)")).containsExactly("orders");
+    assertThat(SqlTableExtractor.extractTables("insert into archive select * from orders")).containsExactly("archive", "orders");
+    assertThat(SqlTableExtractor.extractTables("update `orders` set total = ? where id = ?")).containsExactly("orders");
+    assertThat(SqlTableExtractor.extractTables("delete from orders where id = ?")).containsExactly("orders");
+    assertThat(SqlTableExtractor.extractTables("delete orders where id = ?")).containsExactly("orders");
+    assertThat(SqlTableExtractor.extractTables("merge into orders o using staged s on (o.id = s.id) when matched then update set o.total = s.total"))
+        .contains("orders", "staged");
+  }
+
+  @Test
+  void shouldIgnoreLiteralsAndComments() {
+    assertThat(SqlTableExtractor.extractTables(
+        "select 'from fake' -- join other\n from /* update ignored */ orders where name = 'it''s from x'"))
+        .containsExactly("orders");
+  }
+
+  @Test
+  void shouldReturnEmptySetWhenNoTableIsFound() {
+    assertThat(SqlTableExtractor.extractTables("{call refresh_totals(?)}")).isEmpty();
+    assertThat(SqlTableExtractor.extractTables("select 1")).isEmpty();
+  }
+
+}
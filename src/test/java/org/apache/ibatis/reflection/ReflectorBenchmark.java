@@ -0,0 +1,306 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.invoker.PrimitiveSetter;
+import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures writing one row of a wide result map, sixteen properties of which twelve are primitives,
+ * with the reflective invokers of the {@link DefaultReflectorFactory} and with the accessors of the {@link LambdaReflectorFactory}.
+ * <p>
+ * The {@code *Invokers} benchmarks call the setters as auto-mapping does, the {@code *MetaObject} ones go through
+ * {@link MetaObject#setValue(String, Object)} as explicit result mappings do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReflectorBenchmark {
+
+  private static final String[] PROPERTIES = {"c1", "c2", "c3", "c4", "c5", "c6", "l1", "l2", "l3", "l4", "d1", "d2", "s1", "s2", "s3", "s4"};
+
+  private ReflectorFactory reflectiveFactory;
+  private ReflectorFactory lambdaFactory;
+  private Invoker[] reflectiveSetters;
+  private Invoker[] lambdaSetters;
+  private Object[] values;
+  private int[] intValues;
+  private long[] longValues;
+  private double[] doubleValues;
+
+  @Setup
+  public void setup() {
+    reflectiveFactory = new DefaultReflectorFactory();
+    lambdaFactory = new LambdaReflectorFactory();
+    reflectiveSetters = setters(reflectiveFactory);
+    lambdaSetters = setters(lambdaFactory);
+    values = new Object[PROPERTIES.length];
+    intValues = new int[6];
+    longValues = new long[4];
+    doubleValues = new double[2];
+    for (int i = 0; i < 6; i++) {
+      intValues[i] = i + 100;
+      values[i] = intValues[i];
+    }
+    for (int i = 0; i < 4; i++) {
+      longValues[i] = i + 10_000_000_000L;
+      values[6 + i] = longValues[i];
+    }
+    for (int i = 0; i < 2; i++) {
+      doubleValues[i] = i + 0.5;
+      values[10 + i] = doubleValues[i];
+    }
+    for (int i = 0; i < 4; i++) {
+      values[12 + i] = "value" + i;
+    }
+  }
+
+  private static Invoker[] setters(ReflectorFactory reflectorFactory) {
+    Reflector reflector = reflectorFactory.findForClass(WideRow.class);
+    Invoker[] setters = new Invoker[PROPERTIES.length];
+    for (int i = 0; i < PROPERTIES.length; i++) {
+      setters[i] = reflector.getSetInvoker(PROPERTIES[i]);
+    }
+    return setters;
+  }
+
+  @Benchmark
+  public WideRow reflectiveInvokers() throws Exception {
+    return setAll(reflectiveSetters);
+  }
+
+  @Benchmark
+  public WideRow lambdaInvokers() throws Exception {
+    return setAll(lambdaSetters);
+  }
+
+  @Benchmark
+  public WideRow lambdaPrimitiveSetters() throws Exception {
+    WideRow row = new WideRow();
+    for (int i = 0; i < 6; i++) {
+      ((PrimitiveSetter) lambdaSetters[i]).setInt(row, intValues[i]);
+    }
+    for (int i = 0; i < 4; i++) {
+      ((PrimitiveSetter) lambdaSetters[6 + i]).setLong(row, longValues[i]);
+    }
+    for (int i = 0; i < 2; i++) {
+      ((PrimitiveSetter) lambdaSetters[10 + i]).setDouble(row, doubleValues[i]);
+    }
+    for (int i = 12; i < PROPERTIES.length; i++) {
+      lambdaSetters[i].invoke(row, new Object[] {values[i]});
+    }
+    return row;
+  }
+
+  @Benchmark
+  public WideRow reflectiveMetaObject() {
+    return setAll(reflectiveFactory);
+  }
+
+  @Benchmark
+  public WideRow lambdaMetaObject() {
+    return setAll(lambdaFactory);
+  }
+
+  private WideRow setAll(Invoker[] setters) throws Exception {
+    WideRow row = new WideRow();
+    for (int i = 0; i < setters.length; i++) {
+      setters[i].invoke(row, new Object[] {values[i]});
+    }
+    return row;
+  }
+
+  private WideRow setAll(ReflectorFactory reflectorFactory) {
+    WideRow row = new WideRow();
+    MetaObject metaObject = MetaObject.forObject(row, new DefaultObjectFactory(), new DefaultObjectWrapperFactory(), reflectorFactory);
+    for (int i = 0; i < PROPERTIES.length; i++) {
+      metaObject.setValue(PROPERTIES[i], values[i]);
+    }
+    return row;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ReflectorBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  public static class WideRow {
+    private int c1;
+    private int c2;
+    private int c3;
+    private int c4;
+    private int c5;
+    private int c6;
+    private long l1;
+    private long l2;
+    private long l3;
+    private long l4;
+    private double d1;
+    private double d2;
+    private String s1;
+    private String s2;
+    private String s3;
+    private String s4;
+
+    public int getC1() {
+      return c1;
+    }
+
+    public void setC1(int c1) {
+      this.c1 = c1;
+    }
+
+    public int getC2() {
+      return c2;
+    }
+
+    public void setC2(int c2) {
+      this.c2 = c2;
+    }
+
+    public int getC3() {
+      return c3;
+    }
+
+    public void setC3(int c3) {
+      this.c3 = c3;
+    }
+
+    public int getC4() {
+      return c4;
+    }
+
+    public void setC4(int c4) {
+      this.c4 = c4;
+    }
+
+    public int getC5() {
+      return c5;
+    }
+
+    public void setC5(int c5) {
+      this.c5 = c5;
+    }
+
+    public int getC6() {
+      return c6;
+    }
+
+    public void setC6(int c6) {
+      this.c6 = c6;
+    }
+
+    public long getL1() {
+      return l1;
+    }
+
+    public void setL1(long l1) {
+      this.l1 = l1;
+    }
+
+    public long getL2() {
+      return l2;
+    }
+
+    public void setL2(long l2) {
+      this.l2 = l2;
+    }
+
+    public long getL3() {
+      return l3;
+    }
+
+    public void setL3(long l3) {
+      this.l3 = l3;
+    }
+
+    public long getL4() {
+      return l4;
+    }
+
+    public void setL4(long l4) {
+      this.l4 = l4;
+    }
+
+    public double getD1() {
+      return d1;
+    }
+
+    public void setD1(double d1) {
+      this.d1 = d1;
+    }
+
+    public double getD2() {
+      return d2;
+    }
+
+    public void setD2(double d2) {
+      this.d2 = d2;
+    }
+
+    public String getS1() {
+      return s1;
+    }
+
+    public void setS1(String s1) {
+      this.s1 = s1;
+    }
+
+    public String getS2() {
+      return s2;
+    }
+
+    public void setS2(String s2) {
+      this.s2 = s2;
+    }
+
+    public String getS3() {
+      return s3;
+    }
+
+    public void setS3(String s3) {
+      this.s3 = s3;
+    }
+
+    public String getS4() {
+      return s4;
+    }
+
+    public void setS4(String s4) {
+      this.s4 = s4;
+    }
+  }
+
+}
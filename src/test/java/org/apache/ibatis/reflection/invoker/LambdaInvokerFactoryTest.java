@@ -0,0 +1,197 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.apache.ibatis.reflection.LambdaReflectorFactory;
+import org.apache.ibatis.reflection.MetaClass;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+import org.junit.jupiter.api.Test;
+
+class LambdaInvokerFactoryTest {
+
+  private final ReflectorFactory reflectorFactory = new LambdaReflectorFactory();
+
+  public static class PublicBean {
+    private int count;
+    private long total;
+    private double ratio;
+    private boolean active;
+    private String name;
+    private String note;
+    private final String constant = "constant";
+
+    public int getCount() {
+      return count;
+    }
+
+    public void setCount(int count) {
+      this.count = count;
+    }
+
+    public long getTotal() {
+      return total;
+    }
+
+    public void setTotal(long total) {
+      this.total = total;
+    }
+
+    public double getRatio() {
+      return ratio;
+    }
+
+    public void setRatio(double ratio) {
+      this.ratio = ratio;
+    }
+
+    public boolean isActive() {
+      return active;
+    }
+
+    public void setActive(boolean active) {
+      this.active = active;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public PublicBean setName(String name) {
+      if ("fail".equals(name)) {
+        throw new IllegalStateException("name is fail");
+      }
+      this.name = name;
+      return this;
+    }
+  }
+
+  static class PackagePrivateBean {
+    private int count;
+    private String name;
+
+    int getCount() {
+      return count;
+    }
+
+    private void setCount(int count) {
+      this.count = count;
+    }
+  }
+
+  @Test
+  void shouldReadAndWriteProperties() throws Exception {
+    Reflector reflector = reflectorFactory.findForClass(PublicBean.class);
+    PublicBean bean = new PublicBean();
+    reflector.getSetInvoker("count").invoke(bean, new Object[] {1});
+    reflector.getSetInvoker("total").invoke(bean, new Object[] {2L});
+    reflector.getSetInvoker("ratio").invoke(bean, new Object[] {0.5});
+    reflector.getSetInvoker("active").invoke(bean, new Object[] {true});
+    reflector.getSetInvoker("name").invoke(bean, new Object[] {"foo"});
+    assertThat(reflector.getGetInvoker("count").invoke(bean, null)).isEqualTo(1);
+    assertThat(reflector.getGetInvoker("total").invoke(bean, null)).isEqualTo(2L);
+    assertThat(reflector.getGetInvoker("ratio").invoke(bean, null)).isEqualTo(0.5);
+    assertThat(reflector.getGetInvoker("active").invoke(bean, null)).isEqualTo(true);
+    assertThat(reflector.getGetInvoker("name").invoke(bean, null)).isEqualTo("foo");
+    assertThat(reflector.getGetInvoker("name")).isInstanceOf(LambdaGetInvoker.class);
+    assertThat(reflector.getSetInvoker("active")).isInstanceOf(LambdaSetInvoker.class);
+    assertThat(reflector.getSetInvoker("count").getType()).isEqualTo(int.class);
+    assertThat(reflector.getGetInvoker("name").getType()).isEqualTo(String.class);
+  }
+
+  @Test
+  void shouldSetPrimitivesWithoutBoxing() throws Exception {
+    Reflector reflector = reflectorFactory.findForClass(PublicBean.class);
+    PublicBean bean = new PublicBean();
+    ((PrimitiveSetter) reflector.getSetInvoker("count")).setInt(bean, 3);
+    ((PrimitiveSetter) reflector.getSetInvoker("total")).setLong(bean, 4L);
+    ((PrimitiveSetter) reflector.getSetInvoker("ratio")).setDouble(bean, 1.5);
+    // widened like Method.invoke does
+    ((PrimitiveSetter) reflector.getSetInvoker("total")).setInt(bean, 5);
+    assertThat(bean.getCount()).isEqualTo(3);
+    assertThat(bean.getTotal()).isEqualTo(5L);
+    assertThat(bean.getRatio()).isEqualTo(1.5);
+  }
+
+  @Test
+  void shouldKeepReflectionForFieldsAndNonPublicMembers() throws Exception {
+    Reflector reflector = reflectorFactory.findForClass(PackagePrivateBean.class);
+    assertThat(reflector.getSetInvoker("count")).isInstanceOf(MethodInvoker.class);
+    assertThat(reflector.getGetInvoker("name")).isInstanceOf(GetFieldInvoker.class);
+    PackagePrivateBean bean = new PackagePrivateBean();
+    reflector.getSetInvoker("count").invoke(bean, new Object[] {7});
+    reflector.getSetInvoker("name").invoke(bean, new Object[] {"bar"});
+    assertThat(reflector.getGetInvoker("count").invoke(bean, null)).isEqualTo(7);
+    assertThat(reflector.getGetInvoker("name").invoke(bean, null)).isEqualTo("bar");
+
+    Reflector publicReflector = reflectorFactory.findForClass(PublicBean.class);
+    PublicBean publicBean = new PublicBean();
+    publicReflector.getSetInvoker("note").invoke(publicBean, new Object[] {"note"});
+    assertThat(publicReflector.getGetInvoker("note").invoke(publicBean, null)).isEqualTo("note");
+    assertThat(publicReflector.getSetInvoker("constant")).isInstanceOf(SetFieldInvoker.class);
+  }
+
+  @Test
+  void shouldFailLikeReflection() {
+    Reflector reflector = reflectorFactory.findForClass(PublicBean.class);
+    PublicBean bean = new PublicBean();
+    assertThatThrownBy(() -> reflector.getSetInvoker("count").invoke(bean, new Object[] {null}))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> reflector.getSetInvoker("name").invoke(bean, new Object[] {1}))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> reflector.getGetInvoker("name").invoke("not a bean", null))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> reflector.getSetInvoker("name").invoke(bean, new Object[] {"fail"}))
+        .isInstanceOf(InvocationTargetException.class)
+        .hasCauseInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void shouldNotSpinNewClassesWhenReflectorsAreNotCached() throws Exception {
+    ReflectorFactory uncached = new LambdaReflectorFactory();
+    uncached.setClassCacheEnabled(false);
+    Reflector first = uncached.findForClass(PublicBean.class);
+    Reflector second = uncached.findForClass(PublicBean.class);
+    assertThat(second).isNotSameAs(first);
+    assertThat(first.getGetInvoker("name")).isInstanceOf(LambdaGetInvoker.class);
+    assertThat(second.getGetInvoker("name")).isSameAs(first.getGetInvoker("name"));
+    assertThat(second.getSetInvoker("count")).isSameAs(first.getSetInvoker("count"));
+  }
+
+  @Test
+  void shouldResolveGenericGetterType() {
+    MetaClass metaClass = MetaClass.forClass(GenericBean.class, reflectorFactory);
+    assertThat(metaClass.getGetterType("items[0]")).isEqualTo(String.class);
+  }
+
+  public static class GenericBean {
+    private java.util.List<String> items;
+
+    public java.util.List<String> getItems() {
+      return items;
+    }
+
+    public void setItems(java.util.List<String> items) {
+      this.items = items;
+    }
+  }
+
+}
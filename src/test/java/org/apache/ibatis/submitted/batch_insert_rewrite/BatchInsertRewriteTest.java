@@ -0,0 +1,122 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_insert_rewrite;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BatchInsertRewriteTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+  private final List<String> preparedSql = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    // create a SqlSessionFactory
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_insert_rewrite/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    sqlSessionFactory.getConfiguration().addInterceptor(new PrepareRecorder());
+
+    // populate in-memory database
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/batch_insert_rewrite/CreateDB.sql");
+  }
+
+  @Test
+  void shouldInsertRowsWithMultiRowStatements() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      PersonMapper mapper = sqlSession.getMapper(PersonMapper.class);
+      List<Person> persons = new ArrayList<>();
+      for (int i = 0; i < 7; i++) {
+        Person person = new Person("person" + i);
+        persons.add(person);
+        mapper.insert(person);
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertThat(results).hasSize(1);
+      assertThat(results.get(0).getUpdateCounts()).containsExactly(1, 1, 1, 1, 1, 1, 1);
+      assertThat(results.get(0).getParameterObjects()).hasSize(7);
+      // one statement for the chunks of three rows and one for the last row
+      assertThat(preparedSql).hasSize(2);
+      assertThat(preparedSql.get(0)).containsPattern("values \\(upper\\(\\?\\)\\),\\(upper\\(\\?\\)\\),\\(upper\\(\\?\\)\\)$");
+      assertThat(preparedSql.get(1)).endsWith("values (upper(?))");
+      for (int i = 0; i < 7; i++) {
+        assertThat(persons.get(i).getId()).isEqualTo(i + 1);
+      }
+      assertThat(mapper.findNames()).containsExactly("PERSON0", "PERSON1", "PERSON2", "PERSON3", "PERSON4", "PERSON5", "PERSON6");
+    }
+  }
+
+  @Test
+  void shouldNotRewriteInsertSelect() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      PersonMapper mapper = sqlSession.getMapper(PersonMapper.class);
+      mapper.insert(new Person("person"));
+      sqlSession.flushStatements();
+      preparedSql.clear();
+      mapper.insertCopy(1);
+      mapper.insertCopy(1);
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertThat(results.get(0).getUpdateCounts()).containsExactly(1, 1);
+      assertThat(preparedSql).containsExactly("insert into person (name) select name from person where id = ?");
+      assertThat(mapper.count()).isEqualTo(3);
+    }
+  }
+
+  @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+  private class PrepareRecorder implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      String sql = ((StatementHandler) invocation.getTarget()).getBoundSql().getSql();
+      if (sql.startsWith("insert")) {
+        preparedSql.add(sql.replaceAll("\\s+", " ").trim());
+      }
+      return invocation.proceed();
+    }
+
+    @Override
+    public Object plugin(Object target) {
+      return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+  }
+
+}
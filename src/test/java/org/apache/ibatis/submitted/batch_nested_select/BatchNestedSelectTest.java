@@ -0,0 +1,193 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_nested_select;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.Reader;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BatchNestedSelectTest {
+
+  private static final String LINES_QUERY = "select * from order_line where order_id in ";
+
+  private SqlSessionFactory sqlSessionFactory;
+  private final List<String> executedSql = new CopyOnWriteArrayList<>();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    // create a SqlSessionFactory
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_nested_select/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    sqlSessionFactory.getConfiguration().addInterceptor(new QueryRecorder());
+
+    // populate in-memory database
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/batch_nested_select/CreateDB.sql");
+  }
+
+  @Test
+  void shouldLoadNestedSelectsForChunksOfParents() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Order> orders = sqlSession.getMapper(OrderMapper.class).selectOrders();
+      assertThat(orders).hasSize(5);
+      assertThat(orders).extracting(order -> order.getCustomer().getName())
+          .containsExactly("John", "Jane", "John", "John", "Jane");
+      assertThat(orders.get(0).getLines()).extracting(Line::getProduct).containsExactly("Pen", "Ink");
+      assertThat(orders.get(1).getLines()).extracting(Line::getProduct).containsExactly("Paper");
+      assertThat(orders.get(2).getLines()).extracting(Line::getProduct).containsExactly("Stapler");
+      assertThat(orders.get(3).getLines()).isEmpty();
+      assertThat(orders.get(4).getLines()).extracting(Line::getProduct).containsExactly("Pencil");
+      // five orders with a batchSize of 2, and two distinct customers with a batchSize of 10
+      assertThat(executedSql).filteredOn(sql -> sql.contains("order_line")).hasSize(3);
+      assertThat(executedSql).filteredOn(sql -> sql.contains("customer")).hasSize(1);
+      assertThat(executedSql).filteredOn(sql -> sql.contains("customer")).first().asString().isEqualTo("select * from customer where id in ( ? , ? )");
+    }
+  }
+
+  @Test
+  void shouldKeepMappingsOfTheSamePropertyApart() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Order> orders = sqlSession.getMapper(OrderMapper.class).selectDiscriminatedOrders();
+      assertThat(orders).extracting(order -> order.getCustomer().getName())
+          .containsExactly("John", "JANE", "John", "John", "JANE");
+      assertThat(executedSql).filteredOn(sql -> sql.contains("customer")).hasSize(2);
+    }
+  }
+
+  @Test
+  void shouldLoadOneParentAtATimeWithResultHandler() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Order> orders = new ArrayList<>();
+      ResultHandler<Order> handler = context -> orders.add(context.getResultObject());
+      sqlSession.select("org.apache.ibatis.submitted.batch_nested_select.OrderMapper.selectOrders", handler);
+      assertThat(orders).hasSize(5);
+      assertThat(orders.get(0).getLines()).extracting(Line::getProduct).containsExactly("Pen", "Ink");
+      assertThat(orders.get(4).getCustomer().getName()).isEqualTo("Jane");
+      assertThat(executedSql).filteredOn(sql -> sql.contains("order_line")).hasSize(5);
+    }
+  }
+
+  @Test
+  void shouldLoadLazyPropertyOfSiblingsTogether() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Order> orders = sqlSession.getMapper(OrderMapper.class).selectLazyOrders();
+      assertThat(linesQueries()).isEmpty();
+      assertThat(orders.get(0).getLines()).extracting(Line::getProduct).containsExactly("Pen", "Ink");
+      assertThat(linesQueries()).containsExactly(LINES_QUERY + "( ? , ? ) order by id");
+      // loaded along with the first order
+      assertThat(orders.get(1).getLines()).extracting(Line::getProduct).containsExactly("Paper");
+      assertThat(linesQueries()).hasSize(1);
+      assertThat(orders.get(3).getLines()).isEmpty();
+      assertThat(orders.get(4).getLines()).extracting(Line::getProduct).containsExactly("Pencil");
+      assertThat(orders.get(2).getLines()).extracting(Line::getProduct).containsExactly("Stapler");
+      assertThat(linesQueries()).hasSize(3);
+    }
+  }
+
+  @Test
+  void shouldNotLoadLazyPropertyOfSiblingThatWasSet() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Order> orders = sqlSession.getMapper(OrderMapper.class).selectLazyOrders();
+      orders.get(1).setLines(new ArrayList<>());
+      assertThat(orders.get(0).getLines()).hasSize(2);
+      assertThat(orders.get(1).getLines()).isEmpty();
+      assertThat(linesQueries()).containsExactly(LINES_QUERY + "( ? , ? ) order by id");
+      assertThat(orders.get(2).getLines()).hasSize(1);
+    }
+  }
+
+  @Test
+  void shouldLoadLazyPropertyOfSiblingsFromConcurrentThreads() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(5);
+    try {
+      for (int round = 0; round < 50; round++) {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+          List<Order> orders = sqlSession.getMapper(OrderMapper.class).selectLazyOrders();
+          CyclicBarrier barrier = new CyclicBarrier(orders.size());
+          List<Future<Integer>> lineCounts = new ArrayList<>();
+          for (Order order : orders) {
+            lineCounts.add(executor.submit(() -> {
+              barrier.await();
+              return order.getLines().size();
+            }));
+          }
+          List<Integer> counts = new ArrayList<>();
+          for (Future<Integer> lineCount : lineCounts) {
+            counts.add(lineCount.get());
+          }
+          assertThat(counts).containsExactly(2, 1, 1, 0, 1);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private List<String> linesQueries() {
+    List<String> queries = new ArrayList<>();
+    for (String sql : executedSql) {
+      if (sql.startsWith(LINES_QUERY)) {
+        queries.add(sql);
+      }
+    }
+    return queries;
+  }
+
+  @Intercepts(@Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class}))
+  private class QueryRecorder implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      executedSql.add(((StatementHandler) invocation.getTarget()).getBoundSql().getSql().replaceAll("\\s+", " ").trim());
+      return invocation.proceed();
+    }
+
+    @Override
+    public Object plugin(Object target) {
+      return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+  }
+
+}
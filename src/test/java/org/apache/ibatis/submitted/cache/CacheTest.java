@@ -17,12 +17,16 @@ package org.apache.ibatis.submitted.cache;
 
 import java.io.Reader;
 import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.Statement;
 
 import org.apache.ibatis.BaseDataTest;
 import org.apache.ibatis.annotations.CacheNamespace;
 import org.apache.ibatis.annotations.Property;
+import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.serializer.BinaryCacheSerializer;
 import org.apache.ibatis.annotations.CacheNamespaceRef;
 import org.apache.ibatis.builder.BuilderException;
 import org.apache.ibatis.io.Resources;
@@ -293,6 +297,47 @@ class CacheTest {
       .hasMessage("Should be specified either value() or name() attribute in the @CacheNamespaceRef");
   }
 
+  @Test
+  void shouldApplyCacheSerializer() throws Exception {
+    sqlSessionFactory.getConfiguration().addMapper(BinarySerializerMapper.class);
+    Cache cache = sqlSessionFactory.getConfiguration().getCache(BinarySerializerMapper.class.getName());
+    // SynchronizedCache -> LoggingCache -> SerializedCache
+    Object serializedCache = readField(readField(cache, "delegate"), "delegate");
+    Assertions.assertTrue(readField(serializedCache, "serializer") instanceof BinaryCacheSerializer);
+  }
+
+  @Test
+  void shouldServeStaleEntryWhileItIsRefreshed() throws Exception {
+    sqlSessionFactory.getConfiguration().addMapper(RefreshAheadMapper.class);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Assertions.assertEquals("Jane", sqlSession.getMapper(RefreshAheadMapper.class).findById(1).getFirstname());
+    }
+    // change the row behind the cache's back
+    try (Connection conn = sqlSessionFactory.getConfiguration().getEnvironment().getDataSource().getConnection();
+         Statement stmt = conn.createStatement()) {
+      stmt.executeUpdate("update person set firstname = 'Janet' where id = 1");
+    }
+    Thread.sleep(300);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      // expired but within the stale window, served while the reload runs
+      Assertions.assertEquals("Jane", sqlSession.getMapper(RefreshAheadMapper.class).findById(1).getFirstname());
+    }
+    String firstname = null;
+    for (int i = 0; i < 100 && !"Janet".equals(firstname); i++) {
+      Thread.sleep(50);
+      try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+        firstname = sqlSession.getMapper(RefreshAheadMapper.class).findById(1).getFirstname();
+      }
+    }
+    Assertions.assertEquals("Janet", firstname);
+  }
+
+  private Object readField(Object target, String name) throws Exception {
+    Field field = target.getClass().getDeclaredField(name);
+    field.setAccessible(true);
+    return field.get(target);
+  }
+
   private CustomCache unwrap(Cache cache){
     Field field;
     try {
@@ -316,6 +361,19 @@ class CacheTest {
   private interface CustomCacheUnsupportedPropertyMapper {
   }
 
+  @CacheNamespace(serializer = BinaryCacheSerializer.class)
+  private interface BinarySerializerMapper {
+  }
+
+  @CacheNamespace(properties = {
+      @Property(name = "timeToLive", value = "200"),
+      @Property(name = "staleWhileRevalidate", value = "60000")
+  })
+  private interface RefreshAheadMapper {
+    @Select("select id, firstname, lastname from person where id = #{id}")
+    Person findById(int id);
+  }
+
   @CacheNamespaceRef(value = PersonMapper.class, name = "org.apache.ibatis.submitted.cache.PersonMapper")
   private interface InvalidCacheNamespaceRefBothMapper {
   }
@@ -0,0 +1,131 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.cache_invalidation_bus;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.Statement;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.CacheFlushScope;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Two session factories on the same database play two nodes of a cluster.
+ */
+class CacheInvalidationBusTest {
+
+  private SqlSessionFactory node1;
+  private SqlSessionFactory node2;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    node1 = build();
+    node2 = build();
+
+    // populate in-memory database
+    BaseDataTest.runScript(node1.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/cache_invalidation_bus/CreateDB.sql");
+  }
+
+  @AfterEach
+  void tearDown() {
+    node1.getConfiguration().setCacheInvalidationTransport(null);
+    node2.getConfiguration().setCacheInvalidationTransport(null);
+  }
+
+  @Test
+  void shouldClearTheNamespaceOnTheOtherNode() {
+    assertEquals("John", findName(node1));
+    assertEquals("John", findName(node2));
+    try (SqlSession sqlSession = node2.openSession()) {
+      sqlSession.getMapper(PersonMapper.class).rename(1, "Jack");
+      sqlSession.commit();
+    }
+    assertEquals("Jack", findName(node1));
+  }
+
+  @Test
+  void shouldNotClearOnRollback() throws Exception {
+    assertEquals("John", findName(node1));
+    // change the person table behind the caches
+    try (Connection conn = node2.getConfiguration().getEnvironment().getDataSource().getConnection();
+         Statement stmt = conn.createStatement()) {
+      conn.setAutoCommit(true);
+      stmt.executeUpdate("update person set name = 'Joe' where id = 1");
+    }
+    try (SqlSession sqlSession = node2.openSession()) {
+      sqlSession.getMapper(PersonMapper.class).rename(1, "Jack");
+      sqlSession.rollback(true);
+    }
+    assertEquals("John", findName(node1));
+  }
+
+  @Test
+  void shouldInvalidateTablesOnTheOtherNode() {
+    node1.getConfiguration().setCacheFlushScope(CacheFlushScope.TABLE);
+    node2.getConfiguration().setCacheFlushScope(CacheFlushScope.TABLE);
+    assertEquals("John", findOwnerName(node1));
+    try (SqlSession sqlSession = node2.openSession()) {
+      sqlSession.getMapper(PersonMapper.class).rename(1, "Jack");
+      sqlSession.commit();
+    }
+    assertEquals("Jack", findOwnerName(node1));
+  }
+
+  @Test
+  void shouldSendCoalescedInvalidationsOnFlush() {
+    node2.getConfiguration().setCacheInvalidationBatchInterval(60000);
+    assertEquals("John", findName(node1));
+    try (SqlSession sqlSession = node2.openSession()) {
+      sqlSession.getMapper(PersonMapper.class).rename(1, "Jack");
+      sqlSession.commit();
+      sqlSession.getMapper(PersonMapper.class).rename(2, "Jill");
+      sqlSession.commit();
+    }
+    // not sent yet
+    assertEquals("John", findName(node1));
+    node2.getConfiguration().getCacheInvalidationPublisher().flush();
+    assertEquals("Jack", findName(node1));
+  }
+
+  private SqlSessionFactory build() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cache_invalidation_bus/mybatis-config.xml")) {
+      return new SqlSessionFactoryBuilder().build(reader);
+    }
+  }
+
+  private String findName(SqlSessionFactory node) {
+    try (SqlSession sqlSession = node.openSession()) {
+      return sqlSession.getMapper(PersonMapper.class).findName(1);
+    }
+  }
+
+  private String findOwnerName(SqlSessionFactory node) {
+    try (SqlSession sqlSession = node.openSession()) {
+      return sqlSession.getMapper(PetMapper.class).findOwnerName(1);
+    }
+  }
+
+}
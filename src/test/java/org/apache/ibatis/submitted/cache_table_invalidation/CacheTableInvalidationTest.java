@@ -0,0 +1,140 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.cache_table_invalidation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.Statement;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CacheTableInvalidationTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    // create a SqlSessionFactory
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cache_table_invalidation/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+
+    // populate in-memory database
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/cache_table_invalidation/CreateDB.sql");
+  }
+
+  @Test
+  void shouldKeepEntriesOfUntouchedTables() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("Rex", sqlSession.getMapper(PetMapper.class).findAll().get(0).get("NAME"));
+    }
+    // change the pet table behind the cache
+    execute("update pet set name = 'Max' where id = 1");
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(PersonMapper.class).rename(1, "Jack");
+      sqlSession.commit();
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("Rex", sqlSession.getMapper(PetMapper.class).findAll().get(0).get("NAME"));
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(PetMapper.class).rename(2, "Kitty");
+      sqlSession.commit();
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("Max", sqlSession.getMapper(PetMapper.class).findAll().get(0).get("NAME"));
+    }
+  }
+
+  @Test
+  void shouldInvalidateJoinQueryOfAnotherNamespace() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("John", sqlSession.getMapper(PetMapper.class).findWithOwners().get(0).get("OWNER"));
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(PersonMapper.class).rename(1, "Jack");
+      sqlSession.commit();
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("Jack", sqlSession.getMapper(PetMapper.class).findWithOwners().get(0).get("OWNER"));
+    }
+  }
+
+  @Test
+  void shouldUseDeclaredTables() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("John", sqlSession.getMapper(PetMapper.class).findOwners().get(0));
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(PersonMapper.class).rename(1, "Jack");
+      sqlSession.commit();
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("Jack", sqlSession.getMapper(PetMapper.class).findOwners().get(0));
+    }
+  }
+
+  @Test
+  void shouldSeeOwnWritesBeforeCommit() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("John", sqlSession.getMapper(PetMapper.class).findWithOwners().get(0).get("OWNER"));
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      PetMapper petMapper = sqlSession.getMapper(PetMapper.class);
+      assertEquals("John", petMapper.findWithOwners().get(0).get("OWNER"));
+      sqlSession.getMapper(PersonMapper.class).rename(1, "Jack");
+      assertEquals("Jack", petMapper.findWithOwners().get(0).get("OWNER"));
+      sqlSession.commit();
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("Jack", sqlSession.getMapper(PetMapper.class).findWithOwners().get(0).get("OWNER"));
+    }
+  }
+
+  @Test
+  void shouldNotInvalidateOnRollback() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("John", sqlSession.getMapper(PersonMapper.class).findName(1));
+    }
+    // change the person table behind the cache
+    execute("update person set name = 'Joe' where id = 1");
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(PersonMapper.class).rename(1, "Jack");
+      sqlSession.rollback(true);
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("John", sqlSession.getMapper(PersonMapper.class).findName(1));
+    }
+  }
+
+  private void execute(String sql) throws Exception {
+    try (Connection conn = sqlSessionFactory.getConfiguration().getEnvironment().getDataSource().getConnection();
+         Statement stmt = conn.createStatement()) {
+      conn.setAutoCommit(true);
+      stmt.executeUpdate(sql);
+    }
+  }
+
+}
@@ -27,6 +27,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import java.io.Reader;
+import java.lang.ref.WeakReference;
 import java.util.Iterator;
 
 class CursorNestedTest {
@@ -105,4 +106,28 @@ class CursorNestedTest {
       Assertions.assertTrue(usersCursor.isConsumed());
     }
   }
+
+  @Test
+  void shouldNotKeepUsersThatWereAlreadyFetched() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Cursor<User> usersCursor = sqlSession.getMapper(Mapper.class).getAllUsers();
+      Iterator<User> iterator = usersCursor.iterator();
+
+      User user = iterator.next();
+      Assertions.assertEquals(2, user.getGroups().size());
+      WeakReference<User> firstUser = new WeakReference<>(user);
+      user = iterator.next();
+      Assertions.assertEquals("User2", user.getName());
+      user = iterator.next();
+      Assertions.assertEquals("User3", user.getName());
+
+      // the cursor is still open, but the first user and its nested objects must be gone
+      for (int i = 0; i < 10 && firstUser.get() != null; i++) {
+        System.gc();
+        Thread.sleep(10);
+      }
+      Assertions.assertNull(firstUser.get());
+      Assertions.assertTrue(usersCursor.isOpen());
+    }
+  }
 }
@@ -0,0 +1,50 @@
+--
+--    Copyright 2009-2019 the original author or authors.
+--
+--    Licensed under the Apache License, Version 2.0 (the "License");
+--    you may not use this file except in compliance with the License.
+--    You may obtain a copy of the License at
+--
+--       http://www.apache.org/licenses/LICENSE-2.0
+--
+--    Unless required by applicable law or agreed to in writing, software
+--    distributed under the License is distributed on an "AS IS" BASIS,
+--    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--    See the License for the specific language governing permissions and
+--    limitations under the License.
+--
+
+
+drop table pet if exists;
+drop table person if exists;
+drop table department if exists;
+
+create table department (
+  id int primary key,
+  name varchar(20),
+  head_id int
+);
+
+create table person (
+  id int primary key,
+  name varchar(20),
+  department_id int
+);
+
+create table pet (
+  id int primary key,
+  name varchar(20),
+  owner_id int
+);
+
+insert into department (id, name, head_id) values (1, 'Sales', 1);
+insert into department (id, name, head_id) values (2, 'Support', 3);
+
+insert into person (id, name, department_id) values (1, 'John', 1);
+insert into person (id, name, department_id) values (2, 'Jane', 1);
+insert into person (id, name, department_id) values (3, 'Bob', 2);
+insert into person (id, name, department_id) values (4, 'Alice', 1);
+
+insert into pet (id, name, owner_id) values (1, 'Rex', 1);
+insert into pet (id, name, owner_id) values (2, 'Tom', 1);
+insert into pet (id, name, owner_id) values (3, 'Kitty', 3);
@@ -0,0 +1,190 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.parallel_nested_query;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.Reader;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ParallelNestedQueryTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+  private final List<String> nestedQueryThreads = Collections.synchronizedList(new ArrayList<>());
+
+  @BeforeEach
+  void setUp() throws Exception {
+    // create a SqlSessionFactory
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/parallel_nested_query/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    sqlSessionFactory.getConfiguration().addInterceptor(new NestedQueryRecorder());
+
+    // populate in-memory database
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/parallel_nested_query/CreateDB.sql");
+  }
+
+  @Test
+  void shouldRunNestedSelectsInParallel() {
+    // reading a row takes a while, so that the workers take the nested selects of the previous rows
+    sqlSessionFactory.getConfiguration().setObjectFactory(new DefaultObjectFactory() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public <T> T create(Class<T> type) {
+        if (type == Person.class) {
+          try {
+            Thread.sleep(50);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return super.create(type);
+      }
+    });
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Person> persons = sqlSession.getMapper(PersonMapper.class).selectPersons();
+      assertThat(persons).extracting(Person::getName).containsExactly("John", "Jane", "Bob", "Alice");
+      assertThat(persons).extracting(person -> person.getDepartment().getName())
+          .containsExactly("Sales", "Sales", "Support", "Sales");
+      assertThat(persons.get(0).getPets()).extracting(Pet::getName).containsExactly("Rex", "Tom");
+      assertThat(persons.get(1).getPets()).isEmpty();
+      assertThat(persons.get(2).getPets()).extracting(Pet::getName).containsExactly("Kitty");
+      // rows with the same department share one nested select, as the local cache would have done
+      assertThat(persons.get(1).getDepartment()).isSameAs(persons.get(0).getDepartment());
+      // the calling thread runs the nested selects no worker took by the time it has read all the rows
+      assertThat(nestedQueryThreads).hasSize(6)
+          .allMatch(thread -> thread.startsWith("NestedQuery-") || thread.equals(Thread.currentThread().getName()))
+          .anyMatch(thread -> thread.startsWith("NestedQuery-"));
+    }
+  }
+
+  @Test
+  void shouldRunNestedSelectsOnCallingThreadWhenNoConnectionIsLeft() {
+    PooledDataSource dataSource = (PooledDataSource) sqlSessionFactory.getConfiguration().getEnvironment().getDataSource();
+    dataSource.setPoolMaximumActiveConnections(1);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<String> callingThread = new ArrayList<>();
+      // the only connection is the session's, a worker waiting for it must not block the statement
+      List<Person> persons = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+        callingThread.add(Thread.currentThread().getName());
+        return sqlSession.getMapper(PersonMapper.class).selectPersons();
+      });
+      assertThat(persons).extracting(person -> person.getDepartment().getName())
+          .containsExactly("Sales", "Sales", "Support", "Sales");
+      assertThat(persons.get(0).getPets()).extracting(Pet::getName).containsExactly("Rex", "Tom");
+      assertThat(nestedQueryThreads).hasSize(6).allMatch(thread -> thread.equals(callingThread.get(0)));
+    } finally {
+      dataSource.setPoolMaximumActiveConnections(10);
+    }
+  }
+
+  @Test
+  void shouldLinkCircularNestedSelectsToTheObjectsBeingLoaded() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Person john = sqlSession.getMapper(PersonMapper.class).selectPersonWithDepartmentHead(1);
+      assertThat(john.getDepartment().getName()).isEqualTo("Sales");
+      assertThat(john.getDepartment().getHead()).isSameAs(john);
+      assertThat(nestedQueryThreads).isNotEmpty().allMatch(thread -> thread.equals(Thread.currentThread().getName()));
+    }
+  }
+
+  @Test
+  void shouldRunNestedSelectsOnCallingThreadWithResultHandler() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Person> persons = new ArrayList<>();
+      ResultHandler<Person> handler = context -> {
+        // the nested values must already be set when the row is handed out
+        assertThat(context.getResultObject().getDepartment()).isNotNull();
+        persons.add(context.getResultObject());
+      };
+      sqlSession.select("org.apache.ibatis.submitted.parallel_nested_query.PersonMapper.selectPersons", handler);
+      assertThat(persons).hasSize(4);
+      assertThat(nestedQueryThreads).isNotEmpty().allMatch(thread -> thread.equals(Thread.currentThread().getName()));
+    }
+  }
+
+  @Test
+  void shouldRunNestedSelectsOnCallingThreadWithCursor() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      try (Cursor<Person> cursor = sqlSession.selectCursor("org.apache.ibatis.submitted.parallel_nested_query.PersonMapper.selectPersons")) {
+        for (Person person : cursor) {
+          assertThat(person.getDepartment()).isNotNull();
+        }
+      }
+      assertThat(nestedQueryThreads).isNotEmpty().allMatch(thread -> thread.equals(Thread.currentThread().getName()));
+    }
+  }
+
+  @Test
+  void shouldPropagateNestedSelectFailure() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      PersonMapper mapper = sqlSession.getMapper(PersonMapper.class);
+      PersistenceException e = assertThrows(PersistenceException.class, mapper::selectPersonsWithBrokenDepartment);
+      assertThat(e.getMessage()).containsIgnoringCase("missing_department");
+    }
+  }
+
+  @Intercepts(@Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class}))
+  private class NestedQueryRecorder implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      String sql = ((StatementHandler) invocation.getTarget()).getBoundSql().getSql();
+      if (!sql.contains("from person")) {
+        nestedQueryThreads.add(Thread.currentThread().getName());
+      }
+      return invocation.proceed();
+    }
+
+    @Override
+    public Object plugin(Object target) {
+      return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+  }
+
+}